@@ -0,0 +1,149 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.peaklistmethods.alignment.join.JoinAlignerModule;
+import net.sf.mzmine.modules.peaklistmethods.alignment.join.JoinAlignerParameters;
+import net.sf.mzmine.modules.peaklistmethods.alignment.ransac.RansacAlignerModule;
+import net.sf.mzmine.modules.peaklistmethods.alignment.ransac.RansacAlignerParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.parameters.parametertypes.selectors.PeakListsSelectionType;
+import net.sf.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Aligning the peak lists of several samples with the join aligner and with
+ * the RANSAC aligner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AlignerBenchmark {
+
+    @Param({ "10" })
+    public int samples;
+
+    private RawDataFile dataFiles[];
+    private PeakList peakLists[];
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        dataFiles = new RawDataFile[samples];
+        peakLists = new PeakList[samples];
+        for (int i = 0; i < samples; i++) {
+            dataFiles[i] = SyntheticData.createRawDataFile(i);
+            peakLists[i] = SyntheticData.createPeakList(dataFiles[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (RawDataFile dataFile : dataFiles)
+            dataFile.close();
+    }
+
+    @Benchmark
+    public PeakList[] joinAligner() {
+
+        return Benchmarks.runModule(
+                MZmineCore.getModuleInstance(JoinAlignerModule.class),
+                joinAlignerParameters(peakLists), peakLists);
+    }
+
+    @Benchmark
+    public PeakList[] ransacAligner() {
+
+        final ParameterSet parameters = MZmineCore.getConfiguration()
+                .getModuleParameters(RansacAlignerModule.class)
+                .cloneParameterSet();
+        parameters.getParameter(RansacAlignerParameters.peakLists).setValue(
+                PeakListsSelectionType.SPECIFIC_PEAKLISTS, peakLists);
+        parameters.getParameter(RansacAlignerParameters.MZTolerance).setValue(
+                SyntheticData.MZ_TOLERANCE);
+        parameters.getParameter(RansacAlignerParameters.RTToleranceBefore)
+                .setValue(new RTTolerance(true, 0.5));
+        parameters.getParameter(RansacAlignerParameters.RTToleranceAfter)
+                .setValue(new RTTolerance(true, 0.1));
+        parameters.getParameter(RansacAlignerParameters.Iterations).setValue(
+                0);
+        parameters.getParameter(RansacAlignerParameters.NMinPoints).setValue(
+                0.2);
+        parameters.getParameter(RansacAlignerParameters.Margin).setValue(0.1);
+        parameters.getParameter(RansacAlignerParameters.Linear).setValue(
+                false);
+        parameters.getParameter(RansacAlignerParameters.SameChargeRequired)
+                .setValue(false);
+
+        return Benchmarks.runModule(
+                MZmineCore.getModuleInstance(RansacAlignerModule.class),
+                parameters, peakLists);
+    }
+
+    /**
+     * Parameters of the join aligner for given peak lists, shared with the
+     * gap filling benchmark.
+     */
+    static ParameterSet joinAlignerParameters(PeakList peakLists[]) {
+
+        final ParameterSet parameters = MZmineCore.getConfiguration()
+                .getModuleParameters(JoinAlignerModule.class)
+                .cloneParameterSet();
+        parameters.getParameter(JoinAlignerParameters.peakLists).setValue(
+                PeakListsSelectionType.SPECIFIC_PEAKLISTS, peakLists);
+        parameters.getParameter(JoinAlignerParameters.MZTolerance).setValue(
+                SyntheticData.MZ_TOLERANCE);
+        parameters.getParameter(JoinAlignerParameters.MZWeight).setValue(1.0);
+        parameters.getParameter(JoinAlignerParameters.RTTolerance).setValue(
+                new RTTolerance(true, 0.2));
+        parameters.getParameter(JoinAlignerParameters.RTWeight).setValue(1.0);
+        parameters.getParameter(JoinAlignerParameters.SameChargeRequired)
+                .setValue(false);
+        parameters.getParameter(JoinAlignerParameters.SameIDRequired)
+                .setValue(false);
+        parameters.getParameter(JoinAlignerParameters.compareIsotopePattern)
+                .setValue(false);
+        return parameters;
+    }
+
+}
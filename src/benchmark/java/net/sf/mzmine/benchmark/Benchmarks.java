@@ -0,0 +1,69 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.modules.MZmineRunnableModule;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.project.impl.MZmineProjectImpl;
+import net.sf.mzmine.taskcontrol.Task;
+import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.util.ExitCode;
+
+/**
+ * Runs modules the way the batch mode does, but synchronously in the calling
+ * thread.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Runs given module on a new project holding given peak lists.
+     * 
+     * @return the peak lists of the project after the run.
+     */
+    static PeakList[] runModule(MZmineRunnableModule module,
+            ParameterSet parameters, PeakList peakLists[]) {
+
+        final MZmineProjectImpl project = new MZmineProjectImpl();
+        for (PeakList peakList : peakLists)
+            project.addPeakList(peakList);
+
+        final List<Task> tasks = new ArrayList<Task>();
+        final ExitCode exitCode = module.runModule(project, parameters, tasks);
+        if (exitCode != ExitCode.OK)
+            throw new IllegalStateException("Could not run " + module.getName());
+
+        for (Task task : tasks) {
+            task.run();
+            if (task.getStatus() != TaskStatus.FINISHED)
+                throw new IllegalStateException(task.getTaskDescription()
+                        + " did not finish: " + task.getErrorMessage());
+        }
+
+        return project.getPeakLists();
+    }
+
+}
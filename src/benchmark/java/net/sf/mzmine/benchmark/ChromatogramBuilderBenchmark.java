@@ -0,0 +1,85 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.masslistmethods.chromatogrambuilder.Chromatogram;
+import net.sf.mzmine.modules.masslistmethods.chromatogrambuilder.HighestDataPointConnector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Connecting the detected masses of all scans of a sample into chromatograms
+ * with {@link HighestDataPointConnector}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChromatogramBuilderBenchmark {
+
+    private RawDataFile sample;
+    private int scanNumbers[];
+    private DataPoint masses[][];
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        scanNumbers = sample.getScanNumbers(1);
+        masses = SyntheticData.detectMasses(sample);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sample.close();
+    }
+
+    @Benchmark
+    public Chromatogram[] connect() {
+
+        final HighestDataPointConnector connector = new HighestDataPointConnector(
+                sample, scanNumbers, SyntheticData.MIN_TIME_SPAN,
+                SyntheticData.MIN_HEIGHT, SyntheticData.MZ_TOLERANCE);
+        for (int i = 0; i < scanNumbers.length; i++)
+            connector.addScan(scanNumbers[i], masses[i]);
+        return connector.finishChromatograms();
+    }
+
+}
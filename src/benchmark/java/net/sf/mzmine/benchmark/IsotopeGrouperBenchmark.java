@@ -0,0 +1,103 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.peaklistmethods.isotopes.deisotoper.IsotopeGrouperModule;
+import net.sf.mzmine.modules.peaklistmethods.isotopes.deisotoper.IsotopeGrouperParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.parameters.parametertypes.selectors.PeakListsSelectionType;
+import net.sf.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Isotope pattern grouping of the peak list of a sample in which every
+ * compound has two 13C isotopes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IsotopeGrouperBenchmark {
+
+    private RawDataFile sample;
+    private PeakList peakList;
+    private ParameterSet parameters;
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        peakList = SyntheticData.createPeakList(sample);
+
+        parameters = MZmineCore.getConfiguration()
+                .getModuleParameters(IsotopeGrouperModule.class)
+                .cloneParameterSet();
+        parameters.getParameter(IsotopeGrouperParameters.peakLists).setValue(
+                PeakListsSelectionType.SPECIFIC_PEAKLISTS,
+                new PeakList[] { peakList });
+        parameters.getParameter(IsotopeGrouperParameters.mzTolerance)
+                .setValue(SyntheticData.MZ_TOLERANCE);
+        parameters.getParameter(IsotopeGrouperParameters.rtTolerance)
+                .setValue(new RTTolerance(true, 0.1));
+        parameters.getParameter(IsotopeGrouperParameters.monotonicShape)
+                .setValue(false);
+        parameters.getParameter(IsotopeGrouperParameters.maximumCharge)
+                .setValue(2);
+        parameters.getParameter(IsotopeGrouperParameters.representativeIsotope)
+                .setValue(IsotopeGrouperParameters.ChooseTopIntensity);
+        parameters.getParameter(IsotopeGrouperParameters.autoRemove).setValue(
+                false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sample.close();
+    }
+
+    @Benchmark
+    public PeakList[] groupIsotopes() {
+
+        return Benchmarks.runModule(
+                MZmineCore.getModuleInstance(IsotopeGrouperModule.class),
+                parameters, new PeakList[] { peakList });
+    }
+
+}
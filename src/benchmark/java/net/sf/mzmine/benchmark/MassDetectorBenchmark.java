@@ -0,0 +1,148 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.MassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.centroid.CentroidMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.centroid.CentroidMassDetectorParameters;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.exactmass.ExactMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.exactmass.ExactMassDetectorParameters;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.localmaxima.LocalMaxMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.localmaxima.LocalMaxMassDetectorParameters;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.recursive.RecursiveMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.recursive.RecursiveMassDetectorParameters;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.wavelet.WaveletMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.wavelet.WaveletMassDetectorParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mass detection on all scans of a profile mode sample, for each
+ * {@link MassDetector}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MassDetectorBenchmark {
+
+    @Param({ "centroid", "exactmass", "localmaxima", "recursive", "wavelet" })
+    public String detector;
+
+    private RawDataFile sample;
+    private Scan scans[];
+    private MassDetector massDetector;
+    private ParameterSet parameters;
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        scans = SyntheticData.loadScans(sample);
+
+        final double noiseLevel = SyntheticData.NOISE_LEVEL;
+        switch (detector) {
+        case "centroid":
+            massDetector = new CentroidMassDetector();
+            parameters = new CentroidMassDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(CentroidMassDetectorParameters.noiseLevel)
+                    .setValue(noiseLevel);
+            break;
+        case "exactmass":
+            massDetector = new ExactMassDetector();
+            parameters = new ExactMassDetectorParameters().cloneParameterSet();
+            parameters.getParameter(ExactMassDetectorParameters.noiseLevel)
+                    .setValue(noiseLevel);
+            break;
+        case "localmaxima":
+            massDetector = new LocalMaxMassDetector();
+            parameters = new LocalMaxMassDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(LocalMaxMassDetectorParameters.noiseLevel)
+                    .setValue(noiseLevel);
+            break;
+        case "recursive":
+            massDetector = new RecursiveMassDetector();
+            parameters = new RecursiveMassDetectorParameters()
+                    .cloneParameterSet();
+            parameters
+                    .getParameter(RecursiveMassDetectorParameters.noiseLevel)
+                    .setValue(noiseLevel);
+            parameters.getParameter(
+                    RecursiveMassDetectorParameters.minimumMZPeakWidth)
+                    .setValue(0.001);
+            parameters.getParameter(
+                    RecursiveMassDetectorParameters.maximumMZPeakWidth)
+                    .setValue(0.1);
+            break;
+        case "wavelet":
+            massDetector = new WaveletMassDetector();
+            parameters = new WaveletMassDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(WaveletMassDetectorParameters.noiseLevel)
+                    .setValue(noiseLevel);
+            parameters.getParameter(WaveletMassDetectorParameters.scaleLevel)
+                    .setValue(7);
+            parameters.getParameter(
+                    WaveletMassDetectorParameters.waveletWindow).setValue(0.3);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown mass detector "
+                    + detector);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sample.close();
+    }
+
+    @Benchmark
+    public void detectMasses(Blackhole blackhole) {
+
+        for (Scan scan : scans)
+            blackhole.consume(massDetector.getMassValues(scan, parameters));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.peaklistmethods.alignment.join.JoinAlignerModule;
+import net.sf.mzmine.modules.peaklistmethods.gapfilling.peakfinder.PeakFinderModule;
+import net.sf.mzmine.modules.peaklistmethods.gapfilling.peakfinder.PeakFinderParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.parameters.parametertypes.selectors.PeakListsSelectionType;
+import net.sf.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gap filling (peak finder) of an aligned peak list. Each sample misses some
+ * of the compounds, which leaves gaps to fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PeakFinderBenchmark {
+
+    @Param({ "10" })
+    public int samples;
+
+    private RawDataFile dataFiles[];
+    private PeakList alignedPeakList;
+    private ParameterSet parameters;
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        dataFiles = new RawDataFile[samples];
+        final PeakList peakLists[] = new PeakList[samples];
+        for (int i = 0; i < samples; i++) {
+            dataFiles[i] = SyntheticData.createRawDataFile(i);
+            peakLists[i] = SyntheticData.createPeakList(dataFiles[i]);
+        }
+
+        // The aligned peak list is the only one with several raw data files.
+        for (PeakList peakList : Benchmarks.runModule(
+                MZmineCore.getModuleInstance(JoinAlignerModule.class),
+                AlignerBenchmark.joinAlignerParameters(peakLists), peakLists)) {
+            if (peakList.getNumberOfRawDataFiles() > 1)
+                alignedPeakList = peakList;
+        }
+
+        parameters = MZmineCore.getConfiguration()
+                .getModuleParameters(PeakFinderModule.class)
+                .cloneParameterSet();
+        parameters.getParameter(PeakFinderParameters.peakLists).setValue(
+                PeakListsSelectionType.SPECIFIC_PEAKLISTS,
+                new PeakList[] { alignedPeakList });
+        parameters.getParameter(PeakFinderParameters.intTolerance).setValue(
+                0.2);
+        parameters.getParameter(PeakFinderParameters.MZTolerance).setValue(
+                SyntheticData.MZ_TOLERANCE);
+        parameters.getParameter(PeakFinderParameters.RTTolerance).setValue(
+                new RTTolerance(true, 0.2));
+        parameters.getParameter(PeakFinderParameters.RTCorrection).setValue(
+                false);
+        parameters.getParameter(PeakFinderParameters.autoRemove).setValue(
+                false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (RawDataFile dataFile : dataFiles)
+            dataFile.close();
+    }
+
+    @Benchmark
+    public PeakList[] fillGaps() {
+
+        return Benchmarks.runModule(
+                MZmineCore.getModuleInstance(PeakFinderModule.class),
+                parameters, new PeakList[] { alignedPeakList });
+    }
+
+}
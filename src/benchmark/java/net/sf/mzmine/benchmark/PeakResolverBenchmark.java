@@ -0,0 +1,192 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.PeakResolver;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.baseline.BaselinePeakDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.baseline.BaselinePeakDetectorParameters;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.PeakIntegrationMethod;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.minimumsearch.MinimumSearchPeakDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.minimumsearch.MinimumSearchPeakDetectorParameters;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.noiseamplitude.NoiseAmplitudePeakDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.noiseamplitude.NoiseAmplitudePeakDetectorParameters;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.savitzkygolay.SavitzkyGolayPeakDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.savitzkygolay.SavitzkyGolayPeakDetectorParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.util.R.RSessionWrapperException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Range;
+
+/**
+ * Resolving all chromatograms of a sample into peaks, for each
+ * {@link PeakResolver}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PeakResolverBenchmark {
+
+    @Param({ "baseline", "noiseamplitude", "savitzkygolay", "minimumsearch",
+            "centwave" })
+    public String resolver;
+
+    private RawDataFile sample;
+    private Feature chromatograms[];
+    private PeakResolver peakResolver;
+    private ParameterSet parameters;
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        chromatograms = SyntheticData.buildChromatograms(sample);
+
+        final Range<Double> peakDuration = Range.closed(0.0, 10.0);
+        final double minHeight = SyntheticData.MIN_HEIGHT;
+        switch (resolver) {
+        case "baseline":
+            peakResolver = new BaselinePeakDetector();
+            parameters = new BaselinePeakDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(
+                    BaselinePeakDetectorParameters.MIN_PEAK_HEIGHT).setValue(
+                    minHeight);
+            parameters.getParameter(
+                    BaselinePeakDetectorParameters.PEAK_DURATION).setValue(
+                    peakDuration);
+            parameters.getParameter(
+                    BaselinePeakDetectorParameters.BASELINE_LEVEL).setValue(
+                    SyntheticData.NOISE_LEVEL);
+            break;
+        case "noiseamplitude":
+            peakResolver = new NoiseAmplitudePeakDetector();
+            parameters = new NoiseAmplitudePeakDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(
+                    NoiseAmplitudePeakDetectorParameters.MIN_PEAK_HEIGHT)
+                    .setValue(minHeight);
+            parameters.getParameter(
+                    NoiseAmplitudePeakDetectorParameters.PEAK_DURATION)
+                    .setValue(peakDuration);
+            parameters.getParameter(
+                    NoiseAmplitudePeakDetectorParameters.NOISE_AMPLITUDE)
+                    .setValue(SyntheticData.NOISE_LEVEL);
+            break;
+        case "savitzkygolay":
+            peakResolver = new SavitzkyGolayPeakDetector();
+            parameters = new SavitzkyGolayPeakDetectorParameters()
+                    .cloneParameterSet();
+            parameters.getParameter(
+                    SavitzkyGolayPeakDetectorParameters.MIN_PEAK_HEIGHT)
+                    .setValue(minHeight);
+            parameters.getParameter(
+                    SavitzkyGolayPeakDetectorParameters.PEAK_DURATION)
+                    .setValue(peakDuration);
+            parameters
+                    .getParameter(
+                            SavitzkyGolayPeakDetectorParameters.DERIVATIVE_THRESHOLD_LEVEL)
+                    .setValue(0.2);
+            break;
+        case "minimumsearch":
+            peakResolver = new MinimumSearchPeakDetector();
+            parameters = new MinimumSearchPeakDetectorParameters()
+                    .cloneParameterSet();
+            parameters
+                    .getParameter(
+                            MinimumSearchPeakDetectorParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL)
+                    .setValue(0.9);
+            parameters.getParameter(
+                    MinimumSearchPeakDetectorParameters.SEARCH_RT_RANGE)
+                    .setValue(0.1);
+            parameters.getParameter(
+                    MinimumSearchPeakDetectorParameters.MIN_RELATIVE_HEIGHT)
+                    .setValue(0.05);
+            parameters.getParameter(
+                    MinimumSearchPeakDetectorParameters.MIN_ABSOLUTE_HEIGHT)
+                    .setValue(minHeight);
+            parameters.getParameter(
+                    MinimumSearchPeakDetectorParameters.MIN_RATIO).setValue(
+                    1.7);
+            parameters.getParameter(
+                    MinimumSearchPeakDetectorParameters.PEAK_DURATION)
+                    .setValue(peakDuration);
+            break;
+        case "centwave":
+            peakResolver = new CentWaveDetector();
+            parameters = new CentWaveDetectorParameters().cloneParameterSet();
+            parameters.getParameter(CentWaveDetectorParameters.PEAK_DURATION)
+                    .setValue(peakDuration);
+            parameters.getParameter(CentWaveDetectorParameters.PEAK_SCALES)
+                    .setValue(Range.closed(0.05, 0.5));
+            parameters.getParameter(CentWaveDetectorParameters.SN_THRESHOLD)
+                    .setValue(10.0);
+            parameters.getParameter(
+                    CentWaveDetectorParameters.INTEGRATION_METHOD).setValue(
+                    PeakIntegrationMethod.UseSmoothedData);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown peak resolver "
+                    + resolver);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sample.close();
+    }
+
+    @Benchmark
+    public void resolvePeaks(Blackhole blackhole)
+            throws RSessionWrapperException {
+
+        for (Feature chromatogram : chromatograms) {
+            blackhole.consume(peakResolver.resolvePeaks(chromatogram,
+                    parameters, null));
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.project.impl.DataPointsCodec;
+import net.sf.mzmine.project.impl.RawDataFileImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Storing and reading the data points of all scans of a sample in the
+ * temporary scan storage of {@link RawDataFileImpl}, with each codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RawDataFileBenchmark {
+
+    @Param({ "FLOAT", "DOUBLE_MZ", "DELTA", "DELTA_DEFLATE" })
+    public DataPointsCodec codec;
+
+    private RawDataFile sample;
+    private DataPoint spectra[][];
+    private RawDataFileImpl storage;
+    private int storageIDs[];
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        final Scan scans[] = SyntheticData.loadScans(sample);
+        spectra = new DataPoint[scans.length][];
+        for (int i = 0; i < scans.length; i++)
+            spectra[i] = scans[i].getDataPoints();
+
+        storage = new RawDataFileImpl("Benchmark storage");
+        storage.setDataPointsCodec(codec);
+        storageIDs = new int[spectra.length];
+        for (int i = 0; i < spectra.length; i++)
+            storageIDs[i] = storage.storeDataPoints(spectra[i]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.close();
+        sample.close();
+    }
+
+    /**
+     * Stores all spectra, then removes them again so the storage file does
+     * not grow from one invocation to the next.
+     */
+    @Benchmark
+    public void store() throws IOException {
+
+        final int ids[] = new int[spectra.length];
+        for (int i = 0; i < spectra.length; i++)
+            ids[i] = storage.storeDataPoints(spectra[i]);
+        for (int id : ids)
+            storage.removeStoredDataPoints(id);
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+
+        for (int id : storageIDs)
+            blackhole.consume(storage.readDataPoints(id));
+    }
+
+}
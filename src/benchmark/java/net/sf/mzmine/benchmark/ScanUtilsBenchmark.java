@@ -0,0 +1,108 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.util.ScanUtils;
+import net.sf.mzmine.util.ScanUtils.BinningType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Range;
+
+/**
+ * Binning the spectra of all scans of a sample with
+ * {@link ScanUtils#binValues}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanUtilsBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean interpolate;
+
+    @Param({ "SUM", "MAX" })
+    public BinningType binningType;
+
+    private static final int NUMBER_OF_BINS = 10000;
+
+    private RawDataFile sample;
+    private double mzValues[][];
+    private double intensityValues[][];
+
+    @Setup
+    public void setup() throws IOException {
+
+        MZmineCore.initHeadless();
+
+        sample = SyntheticData.createRawDataFile(0);
+        final Scan scans[] = SyntheticData.loadScans(sample);
+        mzValues = new double[scans.length][];
+        intensityValues = new double[scans.length][];
+        for (int i = 0; i < scans.length; i++) {
+            final DataPoint dataPoints[] = scans[i].getDataPoints();
+            mzValues[i] = new double[dataPoints.length];
+            intensityValues[i] = new double[dataPoints.length];
+            for (int j = 0; j < dataPoints.length; j++) {
+                mzValues[i][j] = dataPoints[j].getMZ();
+                intensityValues[i][j] = dataPoints[j].getIntensity();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sample.close();
+    }
+
+    @Benchmark
+    public void binValues(Blackhole blackhole) {
+
+        final Range<Double> binRange = Range.closed(100.0, 1010.0);
+        for (int i = 0; i < mzValues.length; i++) {
+            blackhole.consume(ScanUtils.binValues(mzValues[i],
+                    intensityValues[i], binRange, NUMBER_OF_BINS,
+                    interpolate, binningType));
+        }
+    }
+
+}
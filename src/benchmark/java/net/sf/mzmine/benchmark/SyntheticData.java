@@ -0,0 +1,178 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.MassSpectrumType;
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
+import net.sf.mzmine.datamodel.impl.SimplePeakListRow;
+import net.sf.mzmine.datamodel.impl.SimpleScan;
+import net.sf.mzmine.modules.masslistmethods.chromatogrambuilder.Chromatogram;
+import net.sf.mzmine.modules.masslistmethods.chromatogrambuilder.HighestDataPointConnector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.exactmass.ExactMassDetector;
+import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.exactmass.ExactMassDetectorParameters;
+import net.sf.mzmine.modules.rawdatamethods.syntheticdata.ElutionProfile;
+import net.sf.mzmine.modules.rawdatamethods.syntheticdata.SyntheticDataGenerator;
+import net.sf.mzmine.modules.rawdatamethods.syntheticdata.SyntheticDataParameters;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import net.sf.mzmine.util.PeakSorter;
+import net.sf.mzmine.util.SortingDirection;
+import net.sf.mzmine.util.SortingProperty;
+
+import com.google.common.collect.Range;
+
+/**
+ * Synthetic LC-MS data shared by the benchmarks, generated by the synthetic
+ * data module with a fixed seed, so all runs of a benchmark process exactly
+ * the same input.
+ */
+final class SyntheticData {
+
+    static final int NUM_SCANS = 600;
+    static final int NUM_COMPOUNDS = 300;
+    static final double RT_DRIFT = 0.05; // min
+
+    static final double NOISE_LEVEL = 500.0;
+    static final double MIN_HEIGHT = 2000.0;
+    static final double MIN_TIME_SPAN = 0.1; // min
+    static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.005, 10.0);
+
+    private static final int RANDOM_SEED = 42;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Creates sample number 'sample' (profile mode, MS1 only). Each sample
+     * is shifted by a random retention time drift of at most RT_DRIFT.
+     */
+    static RawDataFile createRawDataFile(int sample) throws IOException {
+
+        final ParameterSet parameters = new SyntheticDataParameters()
+                .cloneParameterSet();
+        parameters.getParameter(SyntheticDataParameters.numberOfScans)
+                .setValue(NUM_SCANS);
+        parameters.getParameter(SyntheticDataParameters.rtRange).setValue(
+                Range.closed(0.0, 30.0));
+        parameters.getParameter(SyntheticDataParameters.mzRange).setValue(
+                Range.closed(100.0, 1000.0));
+        parameters.getParameter(SyntheticDataParameters.pointsPerScan)
+                .setValue(1000);
+        parameters.getParameter(SyntheticDataParameters.spectrumType)
+                .setValue(MassSpectrumType.PROFILE);
+        parameters.getParameter(SyntheticDataParameters.numberOfCompounds)
+                .setValue(NUM_COMPOUNDS);
+        parameters.getParameter(SyntheticDataParameters.elutionProfile)
+                .setValue(ElutionProfile.GAUSSIAN);
+        parameters.getParameter(SyntheticDataParameters.peakWidth).setValue(
+                0.1);
+        parameters.getParameter(SyntheticDataParameters.heightRange)
+                .setValue(Range.closed(1.0E4, 1.0E6));
+        parameters.getParameter(SyntheticDataParameters.isotopes).setValue(2);
+        parameters.getParameter(SyntheticDataParameters.noiseLevel).setValue(
+                NOISE_LEVEL);
+        parameters.getParameter(SyntheticDataParameters.rtDrift).setValue(
+                RT_DRIFT);
+        parameters.getParameter(SyntheticDataParameters.randomSeed)
+                .setValue(RANDOM_SEED);
+
+        return new SyntheticDataGenerator(parameters).generateSample(sample);
+    }
+
+    /**
+     * Gets the masses of each scan of given file, as detected by the exact
+     * mass detector.
+     */
+    static DataPoint[][] detectMasses(RawDataFile dataFile) {
+
+        final ExactMassDetector massDetector = new ExactMassDetector();
+        final ParameterSet parameters = new ExactMassDetectorParameters()
+                .cloneParameterSet();
+        parameters.getParameter(ExactMassDetectorParameters.noiseLevel)
+                .setValue(NOISE_LEVEL);
+
+        final int scanNumbers[] = dataFile.getScanNumbers(1);
+        final DataPoint masses[][] = new DataPoint[scanNumbers.length][];
+        for (int i = 0; i < scanNumbers.length; i++) {
+            masses[i] = massDetector.getMassValues(
+                    dataFile.getScan(scanNumbers[i]), parameters);
+        }
+        return masses;
+    }
+
+    /**
+     * Builds the chromatograms of given file, sorted by m/z.
+     */
+    static Chromatogram[] buildChromatograms(RawDataFile dataFile) {
+
+        final int scanNumbers[] = dataFile.getScanNumbers(1);
+        final DataPoint masses[][] = detectMasses(dataFile);
+
+        final HighestDataPointConnector connector = new HighestDataPointConnector(
+                dataFile, scanNumbers, MIN_TIME_SPAN, MIN_HEIGHT,
+                MZ_TOLERANCE);
+        for (int i = 0; i < scanNumbers.length; i++)
+            connector.addScan(scanNumbers[i], masses[i]);
+
+        final Chromatogram chromatograms[] = connector.finishChromatograms();
+        Arrays.sort(chromatograms, new PeakSorter(SortingProperty.MZ,
+                SortingDirection.Ascending));
+        return chromatograms;
+    }
+
+    /**
+     * Creates a peak list holding one row per chromatogram of given file, like
+     * the chromatogram builder does.
+     */
+    static PeakList createPeakList(RawDataFile dataFile) {
+
+        final PeakList peakList = new SimplePeakList(dataFile
+                + " chromatograms", dataFile);
+        int rowID = 1;
+        for (final Feature chromatogram : buildChromatograms(dataFile)) {
+            final SimplePeakListRow row = new SimplePeakListRow(rowID++);
+            row.addPeak(dataFile, chromatogram);
+            peakList.addRow(row);
+        }
+        return peakList;
+    }
+
+    /**
+     * Copies the scans of given file to memory, so that reading the data
+     * points does not hit the disk.
+     */
+    static Scan[] loadScans(RawDataFile dataFile) {
+
+        final int scanNumbers[] = dataFile.getScanNumbers();
+        final Scan scans[] = new Scan[scanNumbers.length];
+        for (int i = 0; i < scanNumbers.length; i++)
+            scans[i] = new SimpleScan(dataFile.getScan(scanNumbers[i]));
+        return scans;
+    }
+
+}
@@ -36,4 +36,19 @@ public interface MassList {
     @Nonnull
     public DataPoint[] getDataPoints();
 
+    /**
+     * @return Number of detected masses in this mass list
+     */
+    public int getNumberOfDataPoints();
+
+    /**
+     * Copies the m/z and intensity values of all detected masses into given
+     * arrays, without creating DataPoint instances. Both arrays must have at
+     * least getNumberOfDataPoints() elements.
+     * 
+     * @return Number of data points copied into the arrays
+     */
+    public int getDataPointValues(@Nonnull double mzValues[],
+            @Nonnull double intensityValues[]);
+
 }
@@ -76,6 +76,21 @@ public interface MassSpectrum {
     @Nonnull
     public DataPoint[] getDataPoints();
 
+    /**
+     * Copies the m/z and intensity values of all data points, sorted in m/z
+     * order, into given arrays. Unlike getDataPoints(), this method does not
+     * create a DataPoint instance for each data point, so it should be
+     * preferred when processing large numbers of scans. Both arrays must have
+     * at least getNumberOfDataPoints() elements.
+     * 
+     * This method may need to read data from disk, therefore it may be quite
+     * slow.
+     * 
+     * @return Number of data points copied into the arrays
+     */
+    public int getDataPointValues(@Nonnull double mzValues[],
+            @Nonnull double intensityValues[]);
+
     /**
      * Returns data points in given m/z range, sorted in m/z order.
      * 
@@ -20,6 +20,8 @@
 
 package net.sf.mzmine.datamodel;
 
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import com.google.common.collect.Range;
@@ -138,6 +140,19 @@ public interface PeakList {
     public PeakListRow[] getRowsInsideScanAndMZRange(Range<Double> rtRange,
 	    Range<Double> mzRange);
 
+    /**
+     * Batch version of getRowsInsideScanAndMZRange(). Returns, for each pair of
+     * retention time and m/z ranges, all rows with average retention time and
+     * m/z within those ranges.
+     * 
+     * @param rtRanges
+     *            Retention time ranges
+     * @param mzRanges
+     *            m/z ranges, must have the same size as rtRanges
+     */
+    public PeakListRow[][] getRowsInsideScanAndMZRanges(
+	    List<Range<Double>> rtRanges, List<Range<Double>> mzRanges);
+
     /**
      * Returns all peaks overlapping with a retention time range
      * 
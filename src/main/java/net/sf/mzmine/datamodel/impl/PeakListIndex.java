@@ -0,0 +1,199 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.datamodel.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.google.common.collect.Range;
+
+/**
+ * Immutable two-dimensional (retention time x m/z) index over the rows or
+ * peaks of a peak list. Entries are sorted by m/z and packed into blocks of
+ * BLOCK_SIZE consecutive entries, each block remembering its retention time
+ * bounds, which makes it a single-level packed R-tree. A query finds the first
+ * entry inside the m/z range by binary search and skips every block whose
+ * retention time bounds do not overlap the requested range.
+ * 
+ * Query results are returned in the original order of the items, so indexed
+ * queries return exactly the same arrays as a linear scan would.
+ */
+final class PeakListIndex<T> {
+
+    private static final int BLOCK_SIZE = 32;
+
+    private final T items[];
+    private final long stamp;
+
+    // Sorted by m/z
+    private final double mzValues[], rtValues[];
+    private final int positions[];
+
+    // Retention time bounds of each block
+    private final double blockMinRT[], blockMaxRT[];
+
+    /**
+     * @param items
+     *            Indexed items in their original order
+     * @param rtValues
+     *            Retention time of each item
+     * @param mzValues
+     *            m/z of each item
+     * @param stamp
+     *            Position stamp of the peak list, taken before the positions
+     *            were read
+     */
+    PeakListIndex(T items[], final double rtValues[], final double mzValues[],
+	    long stamp) {
+
+	this.items = items;
+	this.stamp = stamp;
+
+	final int size = items.length;
+
+	// Sort positions by m/z, ties by original position
+	Integer order[] = new Integer[size];
+	for (int i = 0; i < size; i++)
+	    order[i] = i;
+	Arrays.sort(order, new Comparator<Integer>() {
+	    public int compare(Integer a, Integer b) {
+		int result = Double.compare(mzValues[a], mzValues[b]);
+		if (result != 0)
+		    return result;
+		return a.compareTo(b);
+	    }
+	});
+
+	this.positions = new int[size];
+	this.mzValues = new double[size];
+	this.rtValues = new double[size];
+	for (int i = 0; i < size; i++) {
+	    positions[i] = order[i];
+	    this.mzValues[i] = mzValues[order[i]];
+	    this.rtValues[i] = rtValues[order[i]];
+	}
+
+	final int numOfBlocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	blockMinRT = new double[numOfBlocks];
+	blockMaxRT = new double[numOfBlocks];
+	for (int block = 0; block < numOfBlocks; block++) {
+	    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+	    final int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+	    for (int i = block * BLOCK_SIZE; i < end; i++) {
+		min = Math.min(min, this.rtValues[i]);
+		max = Math.max(max, this.rtValues[i]);
+	    }
+	    blockMinRT[block] = min;
+	    blockMaxRT[block] = max;
+	}
+    }
+
+    /**
+     * @param currentStamp
+     *            Current position stamp of the peak list
+     * @return true if no row or peak has moved since this index was built
+     */
+    boolean isValid(long currentStamp) {
+	return stamp == currentStamp;
+    }
+
+    /**
+     * Returns the items inside given ranges, in their original order
+     * 
+     * @param result
+     *            Empty array of the runtime type of the result
+     */
+    T[] query(Range<Double> rtRange, Range<Double> mzRange, T result[]) {
+
+	final int size = mzValues.length;
+
+	int start = 0;
+	if (mzRange.hasLowerBound())
+	    start = findFirstIndex(mzRange.lowerEndpoint());
+
+	final boolean limitedMZ = mzRange.hasUpperBound();
+	final double maxMZ = limitedMZ ? mzRange.upperEndpoint() : 0;
+	final boolean limitedRT = rtRange.hasLowerBound()
+		|| rtRange.hasUpperBound();
+
+	int found[] = new int[16];
+	int numFound = 0;
+
+	int i = start;
+	while (i < size) {
+
+	    if (limitedMZ && (mzValues[i] > maxMZ))
+		break;
+
+	    final int block = i / BLOCK_SIZE;
+	    final int blockEnd = Math.min(size, (block + 1) * BLOCK_SIZE);
+
+	    // Skip whole blocks outside of the retention time range
+	    if (limitedRT && !overlaps(rtRange, blockMinRT[block],
+		    blockMaxRT[block])) {
+		i = blockEnd;
+		continue;
+	    }
+
+	    for (; i < blockEnd; i++) {
+		if (limitedMZ && (mzValues[i] > maxMZ))
+		    break;
+		if (rtRange.contains(rtValues[i])
+			&& mzRange.contains(mzValues[i])) {
+		    if (numFound == found.length)
+			found = Arrays.copyOf(found, numFound * 2);
+		    found[numFound++] = positions[i];
+		}
+	    }
+	}
+
+	// Restore the original order
+	Arrays.sort(found, 0, numFound);
+
+	result = Arrays.copyOf(result, numFound);
+	for (int j = 0; j < numFound; j++)
+	    result[j] = items[found[j]];
+	return result;
+    }
+
+    /**
+     * Returns the index of the first entry with m/z >= given value
+     */
+    private int findFirstIndex(double mz) {
+	int low = 0, high = mzValues.length;
+	while (low < high) {
+	    final int middle = (low + high) >>> 1;
+	    if (mzValues[middle] < mz)
+		low = middle + 1;
+	    else
+		high = middle;
+	}
+	return low;
+    }
+
+    private static boolean overlaps(Range<Double> range, double min, double max) {
+	if (range.hasLowerBound() && (max < range.lowerEndpoint()))
+	    return false;
+	if (range.hasUpperBound() && (min > range.upperEndpoint()))
+	    return false;
+	return true;
+    }
+
+}
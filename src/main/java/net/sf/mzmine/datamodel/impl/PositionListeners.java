@@ -0,0 +1,87 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.datamodel.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The containers of a row or peak which need to know when its retention time
+ * or m/z changes: the peak lists containing a row, or the rows containing a
+ * peak. A row or peak may belong to several containers, e.g. peaks are shared
+ * by the rows of a peak list and of the aligned peak list. The containers are
+ * referenced weakly, so a row or peak does not keep a removed peak list in
+ * memory. Most rows and peaks have a single container, so the references are
+ * kept in a small array, which is copied on every change.
+ */
+final class PositionListeners<T> {
+
+    @SuppressWarnings("unchecked")
+    private static final WeakReference<Object> NONE[] = new WeakReference[0];
+
+    @SuppressWarnings("unchecked")
+    private volatile WeakReference<T> listeners[] = (WeakReference<T>[]) (Object) NONE;
+
+    synchronized void add(T listener) {
+	List<WeakReference<T>> newListeners = new ArrayList<WeakReference<T>>(
+		listeners.length + 1);
+	for (WeakReference<T> reference : listeners) {
+	    final T current = reference.get();
+	    if (current == listener)
+		return;
+	    if (current != null)
+		newListeners.add(reference);
+	}
+	newListeners.add(new WeakReference<T>(listener));
+	setListeners(newListeners);
+    }
+
+    synchronized void remove(T listener) {
+	List<WeakReference<T>> newListeners = new ArrayList<WeakReference<T>>(
+		listeners.length);
+	for (WeakReference<T> reference : listeners) {
+	    final T current = reference.get();
+	    if ((current != null) && (current != listener))
+		newListeners.add(reference);
+	}
+	setListeners(newListeners);
+    }
+
+    /**
+     * @return the containers which still exist
+     */
+    List<T> getListeners() {
+	final WeakReference<T> current[] = listeners;
+	List<T> result = new ArrayList<T>(current.length);
+	for (WeakReference<T> reference : current) {
+	    final T listener = reference.get();
+	    if (listener != null)
+		result.add(listener);
+	}
+	return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setListeners(List<WeakReference<T>> newListeners) {
+	listeners = newListeners.toArray(new WeakReference[newListeners.size()]);
+    }
+
+}
@@ -57,6 +57,9 @@ public class SimpleFeature implements Feature {
     // Number of most intense fragment scan
     private int fragmentScanNumber;
 
+    // Peak list rows containing this peak, notified when the peak moves
+    private final PositionListeners<SimplePeakListRow> rows = new PositionListeners<SimplePeakListRow>();
+
     // Isotope pattern. Null by default but can be set later by deisotoping
     // method.
     private IsotopePattern isotopePattern;
@@ -146,10 +149,25 @@ public class SimpleFeature implements Feature {
 
     public void setMZ(double mz) {
 	this.mz = mz;
+	positionsChanged();
     }
 
     public void setRT(double rt) {
 	this.rt = rt;
+	positionsChanged();
+    }
+
+    void addRow(SimplePeakListRow row) {
+	rows.add(row);
+    }
+
+    void removeRow(SimplePeakListRow row) {
+	rows.remove(row);
+    }
+
+    private void positionsChanged() {
+	for (SimplePeakListRow row : rows.getListeners())
+	    row.positionsChanged();
     }
 
     /**
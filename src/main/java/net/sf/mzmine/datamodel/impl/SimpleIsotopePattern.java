@@ -55,6 +55,13 @@ public class SimpleIsotopePattern implements IsotopePattern {
 	return dataPoints;
     }
 
+    @Override
+    public int getDataPointValues(@Nonnull double mzValues[],
+	    @Nonnull double intensityValues[]) {
+	return ScanUtils.copyDataPointValues(dataPoints, mzValues,
+		intensityValues);
+    }
+
     @Override
     public int getNumberOfDataPoints() {
 	return dataPoints.length;
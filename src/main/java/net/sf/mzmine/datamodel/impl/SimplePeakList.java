@@ -25,7 +25,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.mzmine.datamodel.Feature;
 import net.sf.mzmine.datamodel.PeakList;
@@ -50,6 +53,22 @@ public class SimplePeakList implements PeakList {
     private String dateCreated;
     private Range<Double> mzRange, rtRange;
 
+    // Set whenever the peak list changes, cleared when the project is saved.
+    // Changes of single rows are tracked by the rows.
+    private volatile boolean modified = true;
+
+    /**
+     * Lazily built RT x m/z indexes of rows and of peaks of each data file.
+     * Dropped whenever rows are added or removed, and rebuilt when a row or
+     * peak changes its position.
+     */
+    private volatile PeakListIndex<PeakListRow> rowIndex;
+    private final Map<RawDataFile, PeakListIndex<Feature>> peakIndexes = new ConcurrentHashMap<RawDataFile, PeakListIndex<Feature>>();
+
+    // Counter of position changes of the rows and peaks of this peak list,
+    // indexes built with a different value are stale
+    private final AtomicLong positionStamp = new AtomicLong();
+
     public static DateFormat dateFormat = new SimpleDateFormat(
 	    "yyyy/MM/dd HH:mm:ss");
 
@@ -73,7 +92,11 @@ public class SimplePeakList implements PeakList {
 	peakListRows = new ArrayList<PeakListRow>();
 	descriptionOfAppliedTasks = new Vector<PeakListAppliedMethod>();
 
-	dateCreated = dateFormat.format(new Date());
+	// Peak lists can be created by several threads, e.g. when a project
+	// is loaded, and SimpleDateFormat is not thread-safe
+	synchronized (dateFormat) {
+	    dateCreated = dateFormat.format(new Date());
+	}
 
     }
 
@@ -161,15 +184,80 @@ public class SimplePeakList implements PeakList {
 
     public PeakListRow[] getRowsInsideScanAndMZRange(Range<Double> rtRange,
 	    Range<Double> mzRange) {
-	Vector<PeakListRow> rowsInside = new Vector<PeakListRow>();
+	return getRowIndex().query(rtRange, mzRange, new PeakListRow[0]);
+    }
+
+    /**
+     * @see net.sf.mzmine.datamodel.PeakList#getRowsInsideScanAndMZRanges(java.util.List,
+     *      java.util.List)
+     */
+    public PeakListRow[][] getRowsInsideScanAndMZRanges(
+	    List<Range<Double>> rtRanges, List<Range<Double>> mzRanges) {
+	if (rtRanges.size() != mzRanges.size())
+	    throw new IllegalArgumentException(
+		    "The number of retention time and m/z ranges must be equal");
+
+	final PeakListIndex<PeakListRow> index = getRowIndex();
+	PeakListRow result[][] = new PeakListRow[rtRanges.size()][];
+	for (int i = 0; i < result.length; i++) {
+	    result[i] = index.query(rtRanges.get(i), mzRanges.get(i),
+		    new PeakListRow[0]);
+	}
+	return result;
+    }
 
-	for (PeakListRow row : peakListRows) {
-	    if (rtRange.contains(row.getAverageRT())
-		    && mzRange.contains(row.getAverageMZ()))
-		rowsInside.add(row);
+    PeakListIndex<PeakListRow> getRowIndex() {
+	PeakListIndex<PeakListRow> index = rowIndex;
+	final long stamp = positionStamp.get();
+	if ((index != null) && index.isValid(stamp))
+	    return index;
+
+	PeakListRow rows[] = getRows();
+	double rtValues[] = new double[rows.length];
+	double mzValues[] = new double[rows.length];
+	for (int i = 0; i < rows.length; i++) {
+	    rtValues[i] = rows[i].getAverageRT();
+	    mzValues[i] = rows[i].getAverageMZ();
+	}
+	index = new PeakListIndex<PeakListRow>(rows, rtValues, mzValues, stamp);
+	rowIndex = index;
+	return index;
+    }
+
+    PeakListIndex<Feature> getPeakIndex(RawDataFile file) {
+	PeakListIndex<Feature> index = peakIndexes.get(file);
+	final long stamp = positionStamp.get();
+	if ((index != null) && index.isValid(stamp))
+	    return index;
+
+	Feature peaks[] = getPeaks(file);
+	double rtValues[] = new double[peaks.length];
+	double mzValues[] = new double[peaks.length];
+	for (int i = 0; i < peaks.length; i++) {
+	    rtValues[i] = peaks[i].getRT();
+	    mzValues[i] = peaks[i].getMZ();
 	}
+	index = new PeakListIndex<Feature>(peaks, rtValues, mzValues, stamp);
+	peakIndexes.put(file, index);
+	return index;
+    }
+
+    /**
+     * Called when rows are added or removed. The stamp is changed as well, so
+     * an index built concurrently from the previous rows is not valid.
+     */
+    private void invalidateIndexes() {
+	positionStamp.incrementAndGet();
+	rowIndex = null;
+	peakIndexes.clear();
+    }
 
-	return rowsInside.toArray(new PeakListRow[0]);
+    /**
+     * Called by the rows of this peak list, and by their peaks, whenever their
+     * retention time or m/z changes
+     */
+    void positionsChanged() {
+	positionStamp.incrementAndGet();
     }
 
     public void addRow(PeakListRow row) {
@@ -180,6 +268,10 @@ public class SimplePeakList implements PeakList {
 			+ " is not in this peak list"));
 	}
 	peakListRows.add(row);
+	if (row instanceof SimplePeakListRow)
+	    ((SimplePeakListRow) row).addPeakList(this);
+	invalidateIndexes();
+	modified = true;
 	if (row.getDataPointMaxIntensity() > maxDataPointIntensity) {
 	    maxDataPointIntensity = row.getDataPointMaxIntensity();
 	}
@@ -224,15 +316,7 @@ public class SimplePeakList implements PeakList {
      */
     public Feature[] getPeaksInsideScanAndMZRange(RawDataFile file,
 	    Range<Double> rtRange, Range<Double> mzRange) {
-	Vector<Feature> peaksInside = new Vector<Feature>();
-
-	Feature[] peaks = getPeaks(file);
-	for (Feature p : peaks) {
-	    if (rtRange.contains(p.getRT()) && mzRange.contains(p.getMZ()))
-		peaksInside.add(p);
-	}
-
-	return peaksInside.toArray(new Feature[0]);
+	return getPeakIndex(file).query(rtRange, mzRange, new Feature[0]);
     }
 
     /**
@@ -240,6 +324,10 @@ public class SimplePeakList implements PeakList {
      */
     public void removeRow(PeakListRow row) {
 	peakListRows.remove(row);
+	if (row instanceof SimplePeakListRow)
+	    ((SimplePeakListRow) row).removePeakList(this);
+	invalidateIndexes();
+	modified = true;
 
 	// We have to update the project tree model
 	MZmineProjectImpl project = (MZmineProjectImpl) MZmineCore
@@ -316,10 +404,12 @@ public class SimplePeakList implements PeakList {
 
     public void setName(String name) {
 	this.name = name;
+	modified = true;
     }
 
     public void addDescriptionOfAppliedTask(PeakListAppliedMethod appliedMethod) {
 	descriptionOfAppliedTasks.add(appliedMethod);
+	modified = true;
     }
 
     public PeakListAppliedMethod[] getAppliedMethods() {
@@ -332,6 +422,7 @@ public class SimplePeakList implements PeakList {
 
     public void setDateCreated(String date) {
 	this.dateCreated = date;
+	modified = true;
     }
 
     public Range<Double> getRowsMZRange() {
@@ -344,4 +435,31 @@ public class SimplePeakList implements PeakList {
 	return rtRange;
     }
 
+    /**
+     * Returns true if this peak list or any of its rows was changed since it
+     * was last saved to or loaded from a project. New peak lists are always
+     * modified.
+     */
+    public boolean isModified() {
+	if (modified)
+	    return true;
+	for (PeakListRow row : getRows()) {
+	    if (!(row instanceof SimplePeakListRow)
+		    || ((SimplePeakListRow) row).isModified())
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Sets the modification flag of this peak list and all its rows
+     */
+    public void setModified(boolean modified) {
+	this.modified = modified;
+	for (PeakListRow row : getRows()) {
+	    if (row instanceof SimplePeakListRow)
+		((SimplePeakListRow) row).setModified(modified);
+	}
+    }
+
 }
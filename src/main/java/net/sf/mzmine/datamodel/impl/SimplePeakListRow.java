@@ -55,6 +55,12 @@ public class SimplePeakListRow implements PeakListRow {
     private double averageRT, averageMZ, averageHeight, averageArea;
     private int rowCharge;
 
+    // Set whenever the row changes, cleared when the project is saved
+    private volatile boolean modified = true;
+
+    // Peak lists containing this row, notified when the row moves
+    private final PositionListeners<SimplePeakList> peakLists = new PositionListeners<SimplePeakList>();
+
     public SimplePeakListRow(int myID) {
 	this.myID = myID;
 	peaks = new Hashtable<RawDataFile, Feature>();
@@ -76,8 +82,11 @@ public class SimplePeakListRow implements PeakListRow {
     }
 
     public void removePeak(RawDataFile file) {
-	this.peaks.remove(file);
+	Feature removedPeak = this.peaks.remove(file);
+	if (removedPeak instanceof SimpleFeature)
+	    ((SimpleFeature) removedPeak).removeRow(this);
 	calculateAverageValues();
+	modified = true;
     }
 
     /**
@@ -100,11 +109,16 @@ public class SimplePeakListRow implements PeakListRow {
 	    throw new IllegalArgumentException(
 		    "Cannot add null peak to a peak list row");
 
-	peaks.put(rawData, peak);
+	Feature replacedPeak = peaks.put(rawData, peak);
+	if ((replacedPeak instanceof SimpleFeature) && (replacedPeak != peak))
+	    ((SimpleFeature) replacedPeak).removeRow(this);
+	if (peak instanceof SimpleFeature)
+	    ((SimpleFeature) peak).addRow(this);
 	if (peak.getRawDataPointsIntensityRange().upperEndpoint() > maxDataPointIntensity)
 	    maxDataPointIntensity = peak.getRawDataPointsIntensityRange()
 		    .upperEndpoint();
 	calculateAverageValues();
+	modified = true;
 
     }
 
@@ -128,6 +142,24 @@ public class SimplePeakListRow implements PeakListRow {
 	return rowCharge;
     }
 
+    void addPeakList(SimplePeakList peakList) {
+	peakLists.add(peakList);
+    }
+
+    void removePeakList(SimplePeakList peakList) {
+	peakLists.remove(peakList);
+    }
+
+    /**
+     * Invalidates the indexes of the peak lists containing this row. Called
+     * when the average position of this row or the position of one of its
+     * peaks changes.
+     */
+    void positionsChanged() {
+	for (SimplePeakList peakList : peakLists.getListeners())
+	    peakList.positionsChanged();
+    }
+
     private synchronized void calculateAverageValues() {
 	double rtSum = 0, mzSum = 0, heightSum = 0, areaSum = 0;
 	int charge = 0;
@@ -149,6 +181,7 @@ public class SimplePeakListRow implements PeakListRow {
 	averageHeight = heightSum / peaks.size();
 	averageArea = areaSum / peaks.size();
 	if (chargeArr.size() < 2) { rowCharge = charge; } else { rowCharge = 0; }
+	positionsChanged();
     }
 
     /**
@@ -185,6 +218,7 @@ public class SimplePeakListRow implements PeakListRow {
      */
     public void setComment(String comment) {
 	this.comment = comment;
+	modified = true;
     }
     
     /**
@@ -192,6 +226,8 @@ public class SimplePeakListRow implements PeakListRow {
      */
     public void setAverageMZ(double mz) {
 	this.averageMZ = mz;
+	modified = true;
+	positionsChanged();
     }
 
     /**
@@ -199,6 +235,8 @@ public class SimplePeakListRow implements PeakListRow {
      */
     public void setAverageRT(double rt) {
 	this.averageRT = rt;
+	modified = true;
+	positionsChanged();
     }
 
     /**
@@ -215,6 +253,7 @@ public class SimplePeakListRow implements PeakListRow {
 	}
 
 	identities.add(identity);
+	modified = true;
 	if ((preferredIdentity == null) || (preferred)) {
 	    setPreferredPeakIdentity(identity);
 	}
@@ -225,6 +264,7 @@ public class SimplePeakListRow implements PeakListRow {
      */
     public synchronized void removePeakIdentity(PeakIdentity identity) {
 	identities.remove(identity);
+	modified = true;
 	if (preferredIdentity == identity) {
 	    if (identities.size() > 0) {
 		PeakIdentity[] identitiesArray = identities
@@ -263,6 +303,20 @@ public class SimplePeakListRow implements PeakListRow {
 	    identities.add(identity);
 	}
 
+	modified = true;
+
+    }
+
+    /**
+     * Returns true if this row was changed since its peak list was last saved
+     * to or loaded from a project. New rows are always modified.
+     */
+    public boolean isModified() {
+	return modified;
+    }
+
+    public void setModified(boolean modified) {
+	this.modified = modified;
     }
 
     /**
@@ -20,7 +20,6 @@
 package net.sf.mzmine.datamodel.impl;
 
 import java.util.TreeSet;
-import java.util.Vector;
 
 import javax.annotation.Nonnull;
 
@@ -101,47 +100,29 @@ public class SimpleScan implements Scan {
 	return dataPoints;
     }
 
+    /**
+     * @see net.sf.mzmine.datamodel.MassSpectrum#getDataPointValues(double[],
+     *      double[])
+     */
+    public int getDataPointValues(@Nonnull double mzValues[],
+	    @Nonnull double intensityValues[]) {
+	return ScanUtils.copyDataPointValues(dataPoints, mzValues,
+		intensityValues);
+    }
+
     /**
      * @return Returns scan datapoints within a given range
      */
     public @Nonnull DataPoint[] getDataPointsByMass(
 	    @Nonnull Range<Double> mzRange) {
-
-	int startIndex, endIndex;
-	for (startIndex = 0; startIndex < dataPoints.length; startIndex++) {
-	    if (dataPoints[startIndex].getMZ() >= mzRange.lowerEndpoint())
-		break;
-	}
-
-	for (endIndex = startIndex; endIndex < dataPoints.length; endIndex++) {
-	    if (dataPoints[endIndex].getMZ() > mzRange.upperEndpoint())
-		break;
-	}
-
-	DataPoint pointsWithinRange[] = new DataPoint[endIndex - startIndex];
-
-	// Copy the relevant points
-	System.arraycopy(dataPoints, startIndex, pointsWithinRange, 0, endIndex
-		- startIndex);
-
-	return pointsWithinRange;
+	return ScanUtils.selectSortedDataPointsByMass(dataPoints, mzRange);
     }
 
     /**
      * @return Returns scan datapoints over certain intensity
      */
     public @Nonnull DataPoint[] getDataPointsOverIntensity(double intensity) {
-	int index;
-	Vector<DataPoint> points = new Vector<DataPoint>();
-
-	for (index = 0; index < dataPoints.length; index++) {
-	    if (dataPoints[index].getIntensity() >= intensity)
-		points.add(dataPoints[index]);
-	}
-
-	DataPoint pointsOverIntensity[] = points.toArray(new DataPoint[0]);
-
-	return pointsOverIntensity;
+	return ScanUtils.selectDataPointsOverIntensity(dataPoints, intensity);
     }
 
     /**
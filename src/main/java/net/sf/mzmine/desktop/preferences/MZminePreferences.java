@@ -23,19 +23,26 @@ import java.awt.Window;
 import java.text.DecimalFormat;
 
 import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.modules.projectmethods.projectsave.ProjectCompression;
 import net.sf.mzmine.parameters.Parameter;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.parameters.impl.SimpleParameterSet;
 import net.sf.mzmine.parameters.parametertypes.BooleanParameter;
+import net.sf.mzmine.parameters.parametertypes.ComboParameter;
+import net.sf.mzmine.parameters.parametertypes.IntegerParameter;
 import net.sf.mzmine.parameters.parametertypes.OptionalModuleParameter;
 import net.sf.mzmine.parameters.parametertypes.WindowSettingsParameter;
 import net.sf.mzmine.parameters.parametertypes.filenames.FileNameParameter;
+import net.sf.mzmine.project.impl.DataPointsCodec;
+import net.sf.mzmine.project.impl.ScanDataCache;
 import net.sf.mzmine.util.ExitCode;
 
 import org.w3c.dom.Element;
 
 public class MZminePreferences extends SimpleParameterSet {
 
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
     public static final NumberFormatParameter mzFormat = new NumberFormatParameter(
             "m/z value format", "Format of m/z values", false,
             new DecimalFormat("0.0000"));
@@ -50,6 +57,26 @@ public class MZminePreferences extends SimpleParameterSet {
 
     public static final NumOfThreadsParameter numOfThreads = new NumOfThreadsParameter();
 
+    public static final IntegerParameter scanCacheSize = new IntegerParameter(
+            "Scan cache size (MB)",
+            "Memory used to keep recently read scans and mass lists in decoded form, shared by all raw data files. A single scan is only cached if it takes at most a quarter of this size (about 40 bytes per data point). 0 disables the cache.",
+            ScanDataCache.DEFAULT_SIZE_MB, 0, null);
+
+    public static final ComboParameter<DataPointsCodec> scanDataCodec = new ComboParameter<DataPointsCodec>(
+            "Scan data encoding",
+            "Encoding of the scans and mass lists of newly imported raw data files, in the temporary files and in saved projects. The delta encodings need several times less disk space, but round the intensities to 0.05%. Projects using other encodings than the 32-bit one cannot be opened by older MZmine versions.",
+            DataPointsCodec.values(), DataPointsCodec.FLOAT);
+
+    public static final ComboParameter<ProjectCompression> projectCompression = new ComboParameter<ProjectCompression>(
+            "Project compression",
+            "Compression of the peak lists and descriptions in saved projects. Scan data are always stored uncompressed.",
+            ProjectCompression.values(), ProjectCompression.DEFLATE);
+
+    public static final IntegerParameter projectCompressionLevel = new IntegerParameter(
+            "Project compression level",
+            "Compression level from 1 (fastest) to 9 (smallest project files)",
+            DEFAULT_COMPRESSION_LEVEL, 1, 9);
+
     public static final OptionalModuleParameter proxySettings = new OptionalModuleParameter(
             "Use proxy", "Use proxy for internet connection?",
             new ProxySettings());
@@ -67,8 +94,9 @@ public class MZminePreferences extends SimpleParameterSet {
 
     public MZminePreferences() {
         super(new Parameter[] { mzFormat, rtFormat, intensityFormat,
-                numOfThreads, proxySettings, rExecPath, sendStatistics,
-                windowSetttings });
+                numOfThreads, scanCacheSize, scanDataCodec,
+                projectCompression, projectCompressionLevel, proxySettings,
+                rExecPath, sendStatistics, windowSetttings });
     }
 
     @Override
@@ -81,6 +109,8 @@ public class MZminePreferences extends SimpleParameterSet {
             // Update proxy settings
             updateSystemProxySettings();
 
+            updateScanCacheSize();
+
             // Repaint windows to update number formats
             MZmineCore.getDesktop().getMainWindow().repaint();
         }
@@ -91,6 +121,48 @@ public class MZminePreferences extends SimpleParameterSet {
     public void loadValuesFromXML(Element xmlElement) {
         super.loadValuesFromXML(xmlElement);
         updateSystemProxySettings();
+        updateScanCacheSize();
+    }
+
+    /**
+     * Returns the number of threads processing tasks should use, resolving the
+     * automatic setting to the number of available processors
+     */
+    public int getNumOfThreads() {
+        NumOfThreadsParameter parameter = getParameter(numOfThreads);
+        if (parameter.isAutomatic() || (parameter.getValue() == null))
+            return Runtime.getRuntime().availableProcessors();
+        return parameter.getValue();
+    }
+
+    /**
+     * Returns the compression level for saved projects, 0 meaning no
+     * compression
+     */
+    public int getProjectCompressionLevel() {
+        if (getParameter(projectCompression).getValue() == ProjectCompression.NONE)
+            return 0;
+        Integer level = getParameter(projectCompressionLevel).getValue();
+        if (level == null)
+            return DEFAULT_COMPRESSION_LEVEL;
+        return Math.max(1, Math.min(9, level));
+    }
+
+    /**
+     * Returns the codec for the data points of new raw data files
+     */
+    public DataPointsCodec getScanDataCodec() {
+        DataPointsCodec codec = getParameter(scanDataCodec).getValue();
+        if (codec == null)
+            return DataPointsCodec.FLOAT;
+        return codec;
+    }
+
+    private void updateScanCacheSize() {
+        Integer cacheSize = getParameter(scanCacheSize).getValue();
+        if (cacheSize == null)
+            return;
+        ScanDataCache.getSharedCache().setMaxSize(cacheSize * 1024L * 1024L);
     }
 
     private void updateSystemProxySettings() {
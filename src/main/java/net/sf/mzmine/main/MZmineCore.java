@@ -71,7 +71,6 @@ public final class MZmineCore {
     /**
      * Main method
      */
-    @SuppressWarnings("unchecked")
     public static void main(String args[]) {
 
 	// In the beginning, set the default locale to English, to avoid
@@ -98,52 +97,7 @@ public final class MZmineCore {
 
 	logger.fine("Loading core classes..");
 
-	// create instance of configuration
-	configuration = new MZmineConfigurationImpl();
-
-	// create instances of core modules
-	projectManager = new ProjectManagerImpl();
-	taskController = new TaskControllerImpl();
-
-	logger.fine("Initializing core classes..");
-
-	projectManager.initModule();
-	taskController.initModule();
-
-	logger.fine("Loading modules");
-
-	for (Class<?> moduleClass : MZmineModulesList.MODULES) {
-
-	    try {
-
-		logger.finest("Loading module " + moduleClass.getName());
-
-		// Create instance and init module
-		MZmineModule moduleInstance = (MZmineModule) moduleClass
-			.newInstance();
-
-		// Add to the module list
-		initializedModules.put(moduleClass, moduleInstance);
-
-		// Create an instance of parameter set
-		Class<? extends ParameterSet> parameterSetClass = moduleInstance
-			.getParameterSetClass();
-		ParameterSet parameterSetInstance = parameterSetClass
-			.newInstance();
-
-		// Add the parameter set to the configuration
-		configuration
-			.setModuleParameters((Class<MZmineModule>) moduleClass,
-				parameterSetInstance);
-
-	    } catch (Throwable e) {
-		logger.log(Level.SEVERE,
-			"Could not load module " + moduleClass, e);
-		e.printStackTrace();
-		continue;
-	    }
-
-	}
+	initCore();
 
 	// If we have no arguments, run in GUI mode, otherwise run in batch mode
 	if (args.length == 0) {
@@ -259,6 +213,80 @@ public final class MZmineCore {
 
     }
 
+    /**
+     * Initializes MZmine without GUI and without running a batch, so that
+     * modules and tasks can be used from other programs, such as benchmarks or
+     * tests. The configuration file is not loaded, all parameters have their
+     * default values. Does nothing if MZmine has already been initialized.
+     */
+    public static synchronized void initHeadless() {
+
+	if (configuration != null)
+	    return;
+
+	Locale.setDefault(new Locale("en", "US"));
+
+	initCore();
+
+	desktop = new HeadLessDesktop();
+
+    }
+
+    /**
+     * Creates the configuration, the core modules and all MZmine modules.
+     */
+    @SuppressWarnings("unchecked")
+    private static void initCore() {
+
+	// create instance of configuration
+	configuration = new MZmineConfigurationImpl();
+
+	// create instances of core modules
+	projectManager = new ProjectManagerImpl();
+	taskController = new TaskControllerImpl();
+
+	logger.fine("Initializing core classes..");
+
+	projectManager.initModule();
+	taskController.initModule();
+
+	logger.fine("Loading modules");
+
+	for (Class<?> moduleClass : MZmineModulesList.MODULES) {
+
+	    try {
+
+		logger.finest("Loading module " + moduleClass.getName());
+
+		// Create instance and init module
+		MZmineModule moduleInstance = (MZmineModule) moduleClass
+			.newInstance();
+
+		// Add to the module list
+		initializedModules.put(moduleClass, moduleInstance);
+
+		// Create an instance of parameter set
+		Class<? extends ParameterSet> parameterSetClass = moduleInstance
+			.getParameterSetClass();
+		ParameterSet parameterSetInstance = parameterSetClass
+			.newInstance();
+
+		// Add the parameter set to the configuration
+		configuration
+			.setModuleParameters((Class<MZmineModule>) moduleClass,
+				parameterSetInstance);
+
+	    } catch (Throwable e) {
+		logger.log(Level.SEVERE,
+			"Could not load module " + moduleClass, e);
+		e.printStackTrace();
+		continue;
+	    }
+
+	}
+
+    }
+
     @Nonnull
     public static TaskController getTaskController() {
 	return taskController;
@@ -294,7 +322,10 @@ public final class MZmineCore {
 
     public static RawDataFileWriter createNewFile(String name)
 	    throws IOException {
-	return new RawDataFileImpl(name);
+	RawDataFileImpl newFile = new RawDataFileImpl(name);
+	newFile.setDataPointsCodec(getConfiguration().getPreferences()
+		.getScanDataCodec());
+	return newFile;
     }
 
     @Nonnull
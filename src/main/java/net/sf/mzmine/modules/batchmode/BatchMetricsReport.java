@@ -0,0 +1,106 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.batchmode;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+import net.sf.mzmine.taskcontrol.TaskMetrics;
+
+/**
+ * Resources used by each step of a batch, summed over the tasks of the step.
+ * Times are in milliseconds. CPU time and allocated bytes are -1 if they could
+ * not be measured.
+ */
+class BatchMetricsReport {
+
+    private Logger logger = Logger.getLogger(this.getClass().getName());
+
+    private static final String HEADER = "Step,Module,Tasks,Step time (ms),Task time (ms),CPU time (ms),Allocated bytes,Scans read,Bytes read";
+
+    private final List<String> lines = new ArrayList<String>();
+
+    /**
+     * Adds one step of the batch
+     * 
+     * @param stepTime
+     *            wall time of the whole step in nanoseconds
+     */
+    synchronized void addStep(int stepNumber, String moduleName,
+            long stepTime, Collection<TaskMetrics> taskMetrics) {
+
+        long taskTime = 0, cpuTime = 0, allocatedBytes = 0, scansRead = 0,
+                bytesRead = 0;
+        for (TaskMetrics metrics : taskMetrics) {
+            taskTime += metrics.getWallTime();
+            cpuTime = sumMeasured(cpuTime, metrics.getCpuTime());
+            allocatedBytes = sumMeasured(allocatedBytes,
+                    metrics.getAllocatedBytes());
+            scansRead += metrics.getScansRead();
+            bytesRead += metrics.getBytesRead();
+        }
+
+        logger.info("Batch step # " + stepNumber + " (" + moduleName
+                + "): " + taskMetrics.size() + " tasks, "
+                + stepTime / 1000000 + " ms, CPU time "
+                + toMillis(cpuTime) + " ms, allocated " + allocatedBytes
+                + " bytes, read " + scansRead + " scans (" + bytesRead
+                + " bytes)");
+
+        lines.add(stepNumber + ",\"" + moduleName.replace("\"", "\"\"")
+                + "\"," + taskMetrics.size() + "," + stepTime / 1000000
+                + "," + taskTime / 1000000 + "," + toMillis(cpuTime) + ","
+                + allocatedBytes + "," + scansRead + "," + bytesRead);
+    }
+
+    /**
+     * Writes the report in CSV format
+     */
+    synchronized void writeCSV(File file) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static long sumMeasured(long sum, long value) {
+        if ((sum < 0) || (value < 0))
+            return -1;
+        return sum + value;
+    }
+
+    private static long toMillis(long nanoseconds) {
+        return nanoseconds < 0 ? -1 : nanoseconds / 1000000;
+    }
+
+}
@@ -20,6 +20,7 @@
 package net.sf.mzmine.modules.batchmode;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -98,8 +99,9 @@ public class BatchModeModule implements MZmineProcessingModule {
 	    ParameterSet parameters = new BatchModeParameters();
 	    parameters.getParameter(BatchModeParameters.batchQueue).setValue(
 		    newQueue);
-	    Task batchTask = new BatchTask(project, parameters);
+	    BatchTask batchTask = new BatchTask(project, parameters);
 	    batchTask.run();
+	    writeMetricsReport(batchTask, batchFile);
 	    if (batchTask.getStatus() == TaskStatus.FINISHED)
 		return ExitCode.OK;
 	    else
@@ -112,6 +114,25 @@ public class BatchModeModule implements MZmineProcessingModule {
 
     }
 
+    /**
+     * Writes the resources used by each batch step next to the batch file, as
+     * <batch file name>-metrics.csv
+     */
+    private static void writeMetricsReport(BatchTask batchTask, File batchFile) {
+	String reportName = batchFile.getName();
+	if (reportName.lastIndexOf('.') > 0)
+	    reportName = reportName.substring(0, reportName.lastIndexOf('.'));
+	File reportFile = new File(batchFile.getAbsoluteFile().getParentFile(),
+		reportName + "-metrics.csv");
+	try {
+	    batchTask.getMetricsReport().writeCSV(reportFile);
+	    logger.info("Batch metrics written to " + reportFile);
+	} catch (IOException e) {
+	    logger.log(Level.WARNING, "Could not write batch metrics to "
+		    + reportFile, e);
+	}
+    }
+
     @Override
     public @Nonnull Class<? extends ParameterSet> getParameterSetClass() {
 	return BatchModeParameters.class;
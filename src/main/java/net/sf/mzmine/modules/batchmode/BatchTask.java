@@ -37,6 +37,8 @@ import net.sf.mzmine.parameters.parametertypes.selectors.PeakListsParameter;
 import net.sf.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.Task;
+import net.sf.mzmine.taskcontrol.TaskListener;
+import net.sf.mzmine.taskcontrol.TaskMetrics;
 import net.sf.mzmine.taskcontrol.TaskStatus;
 import net.sf.mzmine.util.ExitCode;
 
@@ -55,6 +57,28 @@ public class BatchTask extends AbstractTask {
     private final List<RawDataFile> createdDataFiles, previousCreatedDataFiles;
     private final List<PeakList> createdPeakLists, previousCreatedPeakLists;
 
+    private final BatchMetricsReport metricsReport = new BatchMetricsReport();
+
+    /**
+     * Maximum time to wait for a status change of the step tasks, in ms
+     */
+    private static final int MAX_WAIT_TIME = 1000;
+
+    /**
+     * Wakes up the batch thread waiting for the tasks of the current step.
+     * Access to statusChanged is guarded by the listener's lock.
+     */
+    private final TaskListener stepTaskListener = new TaskListener() {
+        @Override
+        public void statusChanged(Task task, TaskStatus newStatus) {
+            synchronized (this) {
+                statusChanged = true;
+                this.notifyAll();
+            }
+        }
+    };
+    private boolean statusChanged = false;
+
     BatchTask(MZmineProject project, ParameterSet parameters) {
         this.project = project;
         this.queue = parameters.getParameter(BatchModeParameters.batchQueue)
@@ -109,6 +133,8 @@ public class BatchTask extends AbstractTask {
 
         logger.info("Starting step # " + (stepNumber + 1));
 
+        final long stepStartTime = System.nanoTime();
+
         // Run next step of the batch
         MZmineProcessingStep<?> currentStep = queue.get(stepNumber);
         MZmineProcessingModule method = (MZmineProcessingModule) currentStep
@@ -175,15 +201,46 @@ public class BatchTask extends AbstractTask {
         }
 
         // If current step didn't produce any tasks, continue with next step
-        if (currentStepTasks.isEmpty())
+        if (currentStepTasks.isEmpty()) {
+            recordStepMetrics(stepNumber, method, stepStartTime,
+                    currentStepTasks);
             return;
+        }
 
-        boolean allTasksFinished = false;
+        // Wake up as soon as any of the tasks changes its status
+        for (Task stepTask : currentStepTasks) {
+            if (stepTask instanceof AbstractTask)
+                ((AbstractTask) stepTask).addTaskListener(stepTaskListener);
+        }
 
         // Submit the tasks to the task controller for processing
         MZmineCore.getTaskController()
                 .addTasks(currentStepTasks.toArray(new Task[0]));
 
+        try {
+            waitForStepTasks(currentStepTasks);
+            recordStepMetrics(stepNumber, method, stepStartTime,
+                    currentStepTasks);
+        } finally {
+            for (Task stepTask : currentStepTasks) {
+                if (stepTask instanceof AbstractTask)
+                    ((AbstractTask) stepTask)
+                            .removeTaskListener(stepTaskListener);
+            }
+        }
+
+    }
+
+    /**
+     * Waits until all tasks of the current step are finished. The tasks
+     * notify stepTaskListener when their status changes, so the batch
+     * continues as soon as the last task finishes. Tasks which do not extend
+     * AbstractTask are checked every MAX_WAIT_TIME ms.
+     */
+    private void waitForStepTasks(List<Task> currentStepTasks) {
+
+        boolean allTasksFinished = false;
+
         while (!allTasksFinished) {
 
             // If we canceled the batch, cancel all running tasks
@@ -223,13 +280,17 @@ public class BatchTask extends AbstractTask {
 
             }
 
-            // Wait 1s before checking the tasks again
+            // Wait until some task changes its status
             if (!allTasksFinished) {
-                synchronized (this) {
+                synchronized (stepTaskListener) {
                     try {
-                        this.wait(1000);
+                        if (!statusChanged)
+                            stepTaskListener.wait(MAX_WAIT_TIME);
+                        statusChanged = false;
                     } catch (InterruptedException e) {
-                        // ignore
+                        // Cancel the batch, which cancels the step tasks
+                        Thread.currentThread().interrupt();
+                        cancel();
                     }
                 }
             }
@@ -238,6 +299,48 @@ public class BatchTask extends AbstractTask {
 
     }
 
+    /**
+     * Adds the resources used by the tasks of given step to the metrics
+     * report
+     */
+    private void recordStepMetrics(int stepNumber,
+            MZmineProcessingModule method, long stepStartTime,
+            List<Task> stepTasks) {
+
+        List<TaskMetrics> stepMetrics = new ArrayList<TaskMetrics>();
+        for (Task stepTask : stepTasks) {
+            TaskMetrics metrics = MZmineCore.getTaskController()
+                    .getTaskMetrics(stepTask);
+            if (metrics == null)
+                continue;
+            try {
+                metrics.waitUntilStopped();
+            } catch (InterruptedException e) {
+                // Record the values measured so far
+                Thread.currentThread().interrupt();
+            }
+            stepMetrics.add(metrics);
+        }
+
+        metricsReport.addStep(stepNumber + 1, method.getName(),
+                System.nanoTime() - stepStartTime, stepMetrics);
+    }
+
+    /**
+     * @return resources used by the steps processed so far
+     */
+    BatchMetricsReport getMetricsReport() {
+        return metricsReport;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+
+        // Wake up the batch thread if it is waiting for the step tasks
+        stepTaskListener.statusChanged(this, TaskStatus.CANCELED);
+    }
+
     public double getFinishedPercentage() {
         if (totalSteps == 0)
             return 0;
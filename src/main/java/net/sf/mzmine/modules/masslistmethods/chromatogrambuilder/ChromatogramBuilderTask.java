@@ -22,7 +22,6 @@ package net.sf.mzmine.modules.masslistmethods.chromatogrambuilder;
 import java.util.Arrays;
 import java.util.logging.Logger;
 
-import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.Feature;
 import net.sf.mzmine.datamodel.MZmineProject;
 import net.sf.mzmine.datamodel.MassList;
@@ -149,6 +148,10 @@ public class ChromatogramBuilderTask extends AbstractTask {
                 dataFile, allScanNumbers, minimumTimeSpan, minimumHeight,
                 mzTolerance);
 
+        // Buffers for the m/z and intensity values, reused for all scans
+        double mzBuffer[] = new double[0];
+        double intensityBuffer[] = new double[0];
+
         for (Scan scan : scans) {
 
             if (isCanceled())
@@ -162,17 +165,16 @@ public class ChromatogramBuilderTask extends AbstractTask {
                 return;
             }
 
-            DataPoint mzValues[] = massList.getDataPoints();
-
-            if (mzValues == null) {
-                setStatus(TaskStatus.ERROR);
-                setErrorMessage("Mass list " + massListName
-                        + " does not contain m/z values for scan #"
-                        + scan.getScanNumber() + " of file " + dataFile);
-                return;
+            final int numOfMasses = massList.getNumberOfDataPoints();
+            if (mzBuffer.length < numOfMasses) {
+                mzBuffer = new double[numOfMasses * 2];
+                intensityBuffer = new double[numOfMasses * 2];
             }
+            final int size = massList.getDataPointValues(mzBuffer,
+                    intensityBuffer);
 
-            massConnector.addScan(scan.getScanNumber(), mzValues);
+            massConnector.addScan(scan.getScanNumber(), mzBuffer,
+                    intensityBuffer, size);
             processedScans++;
         }
 
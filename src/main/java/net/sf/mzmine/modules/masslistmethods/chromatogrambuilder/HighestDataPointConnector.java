@@ -28,10 +28,9 @@ import com.google.common.collect.Range;
 
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import net.sf.mzmine.util.DataPointSorter;
-import net.sf.mzmine.util.SortingDirection;
-import net.sf.mzmine.util.SortingProperty;
+import net.sf.mzmine.util.ScanUtils;
 
 public class HighestDataPointConnector {
 
@@ -61,31 +60,74 @@ public class HighestDataPointConnector {
     }
 
     public void addScan(int scanNumber, DataPoint mzValues[]) {
+        double mzArray[] = new double[mzValues.length];
+        double intensityArray[] = new double[mzValues.length];
+        ScanUtils.copyDataPointValues(mzValues, mzArray, intensityArray);
+        addScan(scanNumber, mzArray, intensityArray, mzValues.length);
+    }
+
+    /**
+     * Connects the detected masses of one scan, given as m/z and intensity
+     * arrays, to the chromatograms. The first size elements of the arrays are
+     * used and the arrays are reordered by this method. DataPoint instances are
+     * only created for masses which are added to a chromatogram.
+     */
+    public void addScan(int scanNumber, double mzValues[],
+            double intensityValues[], int size) {
 
         // Sort m/z peaks by descending intensity
-        Arrays.sort(mzValues, new DataPointSorter(SortingProperty.Intensity,
-                SortingDirection.Descending));
+        ScanUtils.sortDataPointValuesByIntensity(mzValues, intensityValues,
+                size);
 
         // Set of already connected chromatograms in each iteration
         Set<Chromatogram> connectedChromatograms = new LinkedHashSet<Chromatogram>();
 
-        // TODO: these two nested cycles should be optimized for speed
-        for (DataPoint mzPeak : mzValues) {
+        // Index of the currently building chromatograms, sorted by the m/z of
+        // their last data point
+        final BuildingChromatogram index[] = createMzIndex();
+        final double indexMZ[] = new double[index.length];
+        for (int i = 0; i < index.length; i++)
+            indexMZ[i] = index[i].lastMZ;
+
+        for (int i = 0; i < size; i++) {
+
+            final double mz = mzValues[i];
+
+            // Search for best chromatogram, which has highest last data point.
+            // The last data point of a chromatogram connected in this scan may
+            // have moved by up to one tolerance from its indexed m/z, so we
+            // search a window of twice the tolerance and then check the
+            // current last data point. We assume the tolerance is smaller than
+            // half of the m/z value.
+            final Range<Double> windowTolerance = mzTolerance
+                    .getToleranceRange(2 * mz);
+            final double window = 2 * (windowTolerance.upperEndpoint() - 2 * mz);
+            final double windowEnd = mz + window;
 
-            // Search for best chromatogram, which has highest last data point
             Chromatogram bestChromatogram = null;
+            int bestOrder = -1;
 
-            for (Chromatogram testChrom : buildingChromatograms) {
+            for (int j = ScanUtils.findFirstIndexAbove(indexMZ,
+                    indexMZ.length, mz - window); (j < indexMZ.length)
+                            && (indexMZ[j] <= windowEnd); j++) {
 
+                final Chromatogram testChrom = index[j].chromatogram;
                 DataPoint lastMzPeak = testChrom.getLastMzPeak();
                 Range<Double> toleranceRange = mzTolerance
                         .getToleranceRange(lastMzPeak.getMZ());
-                if (toleranceRange.contains(mzPeak.getMZ())) {
-                    if ((bestChromatogram == null) || (testChrom.getLastMzPeak()
-                            .getIntensity() > bestChromatogram.getLastMzPeak()
-                                    .getIntensity())) {
-                        bestChromatogram = testChrom;
-                    }
+                if (!toleranceRange.contains(mz))
+                    continue;
+
+                // Prefer highest last data point, in case of a tie the
+                // chromatogram which was created first
+                if ((bestChromatogram == null)
+                        || (lastMzPeak.getIntensity() > bestChromatogram
+                                .getLastMzPeak().getIntensity())
+                        || ((lastMzPeak.getIntensity() == bestChromatogram
+                                .getLastMzPeak().getIntensity())
+                                && (index[j].order < bestOrder))) {
+                    bestChromatogram = testChrom;
+                    bestOrder = index[j].order;
                 }
 
             }
@@ -102,7 +144,8 @@ public class HighestDataPointConnector {
             }
 
             // Add this mzPeak to the chromatogram
-            bestChromatogram.addMzPeak(scanNumber, mzPeak);
+            bestChromatogram.addMzPeak(scanNumber,
+                    new SimpleDataPoint(mz, intensityValues[i]));
 
             // Move the chromatogram to the set of connected chromatograms
             connectedChromatograms.add(bestChromatogram);
@@ -143,6 +186,48 @@ public class HighestDataPointConnector {
 
     }
 
+    /**
+     * Creates a snapshot of the currently building chromatograms sorted by the
+     * m/z value of their last data point, keeping their original order for
+     * tie-breaking.
+     */
+    private BuildingChromatogram[] createMzIndex() {
+        BuildingChromatogram index[] = new BuildingChromatogram[buildingChromatograms
+                .size()];
+        int order = 0;
+        for (Chromatogram chromatogram : buildingChromatograms) {
+            index[order] = new BuildingChromatogram(chromatogram, order);
+            order++;
+        }
+        Arrays.sort(index);
+        return index;
+    }
+
+    /**
+     * Entry of the m/z index of building chromatograms
+     */
+    private static class BuildingChromatogram
+            implements Comparable<BuildingChromatogram> {
+
+        private final Chromatogram chromatogram;
+        private final double lastMZ;
+        private final int order;
+
+        BuildingChromatogram(Chromatogram chromatogram, int order) {
+            this.chromatogram = chromatogram;
+            this.lastMZ = chromatogram.getLastMzPeak().getMZ();
+            this.order = order;
+        }
+
+        public int compareTo(BuildingChromatogram other) {
+            int result = Double.compare(lastMZ, other.lastMZ);
+            if (result == 0)
+                result = order - other.order;
+            return result;
+        }
+
+    }
+
     public Chromatogram[] finishChromatograms() {
 
         // Iterate through current chromatograms and remove those which do not
@@ -19,10 +19,16 @@
 
 package net.sf.mzmine.modules.peaklistmethods.alignment.join;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.mzmine.datamodel.IsotopePattern;
@@ -39,6 +45,7 @@ import net.sf.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import net.sf.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 import net.sf.mzmine.util.PeakUtils;
 import net.sf.mzmine.util.RangeUtils;
 
@@ -46,6 +53,11 @@ import com.google.common.collect.Range;
 
 class JoinAlignerTask extends AbstractTask {
 
+    /**
+     * Number of consecutive rows scored by one job of the thread pool
+     */
+    private static final int ROWS_PER_JOB = 256;
+
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
     private final MZmineProject project;
@@ -164,66 +176,24 @@ class JoinAlignerTask extends AbstractTask {
 
             PeakListRow allRows[] = peakList.getRows();
 
-            // Calculate scores for all possible alignments of this row
-            for (PeakListRow row : allRows) {
-
-                if (isCanceled())
-                    return;
-
-                // Calculate limits for a row with which the row can be aligned
-                Range<Double> mzRange = mzTolerance.getToleranceRange(row
-                        .getAverageMZ());
-                Range<Double> rtRange = rtTolerance.getToleranceRange(row
-                        .getAverageRT());
-
-                // Get all rows of the aligned peaklist within parameter limits
-                PeakListRow candidateRows[] = alignedPeakList
-                        .getRowsInsideScanAndMZRange(rtRange, mzRange);
-
-                // Calculate scores and store them
-                for (PeakListRow candidate : candidateRows) {
-
-                    if (sameChargeRequired) {
-                        if (!PeakUtils.compareChargeState(row, candidate))
-                            continue;
-                    }
-
-                    if (sameIDRequired) {
-                        if (!PeakUtils.compareIdentities(row, candidate))
-                            continue;
-                    }
-
-                    if (compareIsotopePattern) {
-                        IsotopePattern ip1 = row.getBestIsotopePattern();
-                        IsotopePattern ip2 = candidate.getBestIsotopePattern();
-
-                        if ((ip1 != null) && (ip2 != null)) {
-                            ParameterSet isotopeParams = parameters
-                                    .getParameter(
-                                            JoinAlignerParameters.compareIsotopePattern)
-                                    .getEmbeddedParameters();
-
-                            if (!IsotopePatternScoreCalculator.checkMatch(ip1,
-                                    ip2, isotopeParams)) {
-                                continue;
-                            }
-                        }
-                    }
-
-                    RowVsRowScore score = new RowVsRowScore(row, candidate,
-                            RangeUtils.rangeLength(mzRange) / 2.0, mzWeight,
-                            RangeUtils.rangeLength(rtRange) / 2.0, rtWeight);
-
+            // Calculate scores for all possible alignments of each row. The
+            // aligned peak list is not modified until all scores are known,
+            // so the rows can be scored in parallel.
+            RowVsRowScore rowScores[][] = calculateScores(allRows);
+            if (rowScores == null)
+                return;
+
+            // Sort the scores in the order of rows, exactly as if they were
+            // calculated one by one. RowVsRowScore never compares as equal,
+            // so the order of insertion decides between identical scores.
+            for (RowVsRowScore scores[] : rowScores) {
+                for (RowVsRowScore score : scores)
                     scoreSet.add(score);
-
-                }
-
-                processedRows++;
-
             }
 
             // Create a table of mappings for best scores
             Hashtable<PeakListRow, PeakListRow> alignmentMapping = new Hashtable<PeakListRow, PeakListRow>();
+            HashSet<PeakListRow> filledRows = new HashSet<PeakListRow>();
 
             // Iterate scores by descending order
             Iterator<RowVsRowScore> scoreIterator = scoreSet.iterator();
@@ -236,11 +206,12 @@ class JoinAlignerTask extends AbstractTask {
                     continue;
 
                 // Check if the aligned row is already filled
-                if (alignmentMapping.containsValue(score.getAlignedRow()))
+                if (filledRows.contains(score.getAlignedRow()))
                     continue;
 
                 alignmentMapping.put(score.getPeakListRow(),
                         score.getAlignedRow());
+                filledRows.add(score.getAlignedRow());
 
             }
 
@@ -284,4 +255,132 @@ class JoinAlignerTask extends AbstractTask {
 
     }
 
+    /**
+     * Calculates the scores of all rows against the aligned peak list, using
+     * up to the configured number of threads. Each thread handles a block of
+     * ROWS_PER_JOB consecutive rows.
+     * 
+     * @return Scores of each row, in the order of given rows, or null if the
+     *         task was canceled or failed
+     */
+    private RowVsRowScore[][] calculateScores(final PeakListRow rows[]) {
+
+        final RowVsRowScore rowScores[][] = new RowVsRowScore[rows.length][];
+
+        final WorkerExecutor executor = new WorkerExecutor();
+
+        try {
+            List<Future<?>> jobs = new ArrayList<Future<?>>();
+            for (int start = 0; start < rows.length; start += ROWS_PER_JOB) {
+                final int from = start;
+                final int to = Math.min(rows.length, start + ROWS_PER_JOB);
+                jobs.add(executor.submit(new Runnable() {
+                    public void run() {
+                        calculateScores(rows, rowScores, from, to);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < jobs.size(); i++) {
+                jobs.get(i).get();
+                if (isCanceled())
+                    return null;
+                processedRows += Math.min(ROWS_PER_JOB, rows.length - i
+                        * ROWS_PER_JOB);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setStatus(TaskStatus.CANCELED);
+            return null;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Error while aligning peak lists",
+                    e.getCause());
+            setStatus(TaskStatus.ERROR);
+            setErrorMessage("Error while aligning peak lists: "
+                    + e.getCause());
+            return null;
+        } finally {
+            executor.cancelAll();
+        }
+
+        return rowScores;
+    }
+
+    /**
+     * Calculates the scores of rows from..to-1. Only reads the aligned peak
+     * list, so it may run concurrently for different blocks of rows.
+     */
+    private void calculateScores(PeakListRow rows[],
+            RowVsRowScore rowScores[][], int from, int to) {
+
+        // Calculate limits for each row with which the row can be aligned
+        List<Range<Double>> mzRanges = new ArrayList<Range<Double>>();
+        List<Range<Double>> rtRanges = new ArrayList<Range<Double>>();
+        for (int i = from; i < to; i++) {
+            mzRanges.add(mzTolerance.getToleranceRange(rows[i]
+                    .getAverageMZ()));
+            rtRanges.add(rtTolerance.getToleranceRange(rows[i]
+                    .getAverageRT()));
+        }
+
+        // Get all rows of the aligned peaklist within parameter limits
+        PeakListRow candidateRows[][] = alignedPeakList
+                .getRowsInsideScanAndMZRanges(rtRanges, mzRanges);
+
+        for (int i = from; i < to; i++) {
+
+            if (isCanceled())
+                return;
+
+            rowScores[i] = calculateScores(rows[i], candidateRows[i - from],
+                    mzRanges.get(i - from), rtRanges.get(i - from));
+        }
+    }
+
+    private RowVsRowScore[] calculateScores(PeakListRow row,
+            PeakListRow candidateRows[], Range<Double> mzRange,
+            Range<Double> rtRange) {
+
+        List<RowVsRowScore> scores = new ArrayList<RowVsRowScore>();
+
+        // Calculate scores and store them
+        for (PeakListRow candidate : candidateRows) {
+
+            if (sameChargeRequired) {
+                if (!PeakUtils.compareChargeState(row, candidate))
+                    continue;
+            }
+
+            if (sameIDRequired) {
+                if (!PeakUtils.compareIdentities(row, candidate))
+                    continue;
+            }
+
+            if (compareIsotopePattern) {
+                IsotopePattern ip1 = row.getBestIsotopePattern();
+                IsotopePattern ip2 = candidate.getBestIsotopePattern();
+
+                if ((ip1 != null) && (ip2 != null)) {
+                    ParameterSet isotopeParams = parameters.getParameter(
+                            JoinAlignerParameters.compareIsotopePattern)
+                            .getEmbeddedParameters();
+
+                    if (!IsotopePatternScoreCalculator.checkMatch(ip1, ip2,
+                            isotopeParams)) {
+                        continue;
+                    }
+                }
+            }
+
+            RowVsRowScore score = new RowVsRowScore(row, candidate,
+                    RangeUtils.rangeLength(mzRange) / 2.0, mzWeight,
+                    RangeUtils.rangeLength(rtRange) / 2.0, rtWeight);
+
+            scores.add(score);
+
+        }
+
+        return scores.toArray(new RowVsRowScore[0]);
+    }
+
 }
@@ -162,45 +162,40 @@ public class HeatMapTask extends AbstractTask {
                 }
             }
 
-            rSession.eval("dataset<- matrix(\"\",nrow =" + newPeakList[0].length
-                    + ",ncol=" + newPeakList.length + ")");
+            // Build the data set (and stars) matrices, and send them in one
+            // go each.
+            final int numRows = newPeakList[0].length;
+            final int numColumns = newPeakList.length;
+            final double[][] dataset = new double[numRows][numColumns];
+            final String[] stars = plegend ? new String[numRows * numColumns]
+                    : null;
+            for (int row = 0; row < numRows; row++) {
 
-            if (plegend) {
-                rSession.eval(
-                        "stars<- matrix(\"\",nrow =" + newPeakList[0].length
-                                + ",ncol=" + newPeakList.length + ")");
-            }
-
-            // assing the values to the matrix
-            for (int row = 0; row < newPeakList[0].length; row++) {
-
-                for (int column = 0; column < newPeakList.length; column++) {
-
-                    int r = row + 1;
-                    int c = column + 1;
+                for (int column = 0; column < numColumns; column++) {
 
                     double value = newPeakList[column][row];
 
                     if (plegend) {
-                        String pValue = pValueMatrix[column][row];
-                        rSession.eval("stars[" + r + "," + c + "] = \"" + pValue
-                                + "\"");
+                        // R matrices are filled column by column.
+                        stars[column * numRows + row] = pValueMatrix[column][row];
                     }
 
-                    if (!Double.isInfinite(value) && !Double.isNaN(value)) {
+                    // Infinite values are missing values (NA) for R.
+                    dataset[row][column] = Double.isInfinite(value)
+                            ? Double.NaN : value;
+                }
+            }
 
-                        rSession.eval(
-                                "dataset[" + r + "," + c + "] = " + value);
-                    } else {
+            rSession.assignDoubleMatrix("dataset", dataset);
+            rSession.eval("dataset[is.nan(dataset)] <- NA");
 
-                        rSession.eval("dataset[" + r + "," + c + "] = NA");
-                    }
-                }
+            if (plegend) {
+                rSession.assign("stars", stars);
+                rSession.eval("stars <- matrix(stars, nrow=" + numRows
+                        + ", ncol=" + numColumns + ")");
             }
             finishedPercentage = 0.4f;
 
-            rSession.eval("dataset <- apply(dataset, 2, as.numeric)");
-
             // Assign row names to the data set
             rSession.assign("rowNames", rowNames);
             rSession.eval("rownames(dataset)<-rowNames");
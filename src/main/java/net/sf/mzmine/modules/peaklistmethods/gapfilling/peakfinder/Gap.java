@@ -23,8 +23,8 @@ import java.util.List;
 import java.util.Vector;
 
 import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature;
 import net.sf.mzmine.datamodel.Feature.FeatureStatus;
-import net.sf.mzmine.datamodel.PeakListRow;
 import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.datamodel.Scan;
 import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
@@ -36,7 +36,6 @@ import com.google.common.collect.Range;
 
 class Gap {
 
-    private PeakListRow peakListRow;
     private RawDataFile rawDataFile;
 
     private Range<Double> mzRange, rtRange;
@@ -55,10 +54,9 @@ class Gap {
      * @param rt
      *            RT coordinate of this empty gap
      */
-    Gap(PeakListRow peakListRow, RawDataFile rawDataFile,
-	    Range<Double> mzRange, Range<Double> rtRange, double intTolerance) {
+    Gap(RawDataFile rawDataFile, Range<Double> mzRange,
+	    Range<Double> rtRange, double intTolerance) {
 
-	this.peakListRow = peakListRow;
 	this.rawDataFile = rawDataFile;
 	this.intTolerance = intTolerance;
 	this.mzRange = mzRange;
@@ -66,7 +64,25 @@ class Gap {
 
     }
 
-    void offerNextScan(Scan scan) {
+    Range<Double> getRTRange() {
+	return rtRange;
+    }
+
+    /**
+     * Returns true if the scans following a scan at given retention time can
+     * no longer affect this gap
+     */
+    boolean isClosed(double scanRT) {
+	return (scanRT > rtRange.upperEndpoint())
+		&& (currentPeakDataPoints == null);
+    }
+
+    /**
+     * Offers the next scan, whose data points are given as the first
+     * numOfDataPoints elements of the m/z and intensity arrays
+     */
+    void offerNextScan(Scan scan, double mzValues[], double intensityValues[],
+	    int numOfDataPoints) {
 
 	double scanRT = scan.getRetentionTime();
 
@@ -80,12 +96,13 @@ class Gap {
 	    return;
 
 	// Find top m/z peak in our range
-	DataPoint basePeak = ScanUtils.findBasePeak(scan, mzRange);
+	final int basePeak = ScanUtils.findBasePeakIndex(mzValues,
+		intensityValues, numOfDataPoints, mzRange);
 
 	GapDataPoint currentDataPoint;
-	if (basePeak != null) {
+	if (basePeak != -1) {
 	    currentDataPoint = new GapDataPoint(scan.getScanNumber(),
-		    basePeak.getMZ(), scanRT, basePeak.getIntensity());
+		    mzValues[basePeak], scanRT, intensityValues[basePeak]);
 	} else {
 	    currentDataPoint = new GapDataPoint(scan.getScanNumber(),
 		    RangeUtils.rangeCenter(mzRange), scanRT, 0);
@@ -116,7 +133,12 @@ class Gap {
 
     }
 
-    public void noMoreOffers() {
+    /**
+     * Finishes the gap
+     * 
+     * @return the peak filling this gap, or null if no peak was found
+     */
+    public Feature noMoreOffers() {
 
 	// Check peak that was last constructed
 	if (currentPeakDataPoints != null) {
@@ -198,10 +220,11 @@ class Gap {
 		    FeatureStatus.ESTIMATED, representativeScan, fragmentScan,
 		    finalRTRange, finalMZRange, finalIntensityRange);
 
-	    // Fill the gap
-	    peakListRow.addPeak(rawDataFile, newPeak);
+	    return newPeak;
 	}
 
+	return null;
+
     }
 
     /**
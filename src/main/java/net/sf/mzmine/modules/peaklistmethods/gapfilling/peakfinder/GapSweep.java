@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.peaklistmethods.gapfilling.peakfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.Scan;
+
+/**
+ * Feeds a sequence of scans, ordered by retention time, to a set of gaps of
+ * one raw data file. Gaps are sorted by the start of their retention time
+ * range and only the gaps whose range has already opened, and which have not
+ * yet closed, receive the scans. Each scan's data points are read only once
+ * for all gaps.
+ */
+class GapSweep {
+
+    private final List<Gap> gaps;
+
+    // Gaps sorted by the start of their RT range
+    private final Gap sortedGaps[];
+    private int nextGap = 0;
+
+    private final List<Gap> activeGaps = new ArrayList<Gap>();
+
+    private double mzBuffer[] = new double[0];
+    private double intensityBuffer[] = new double[0];
+
+    GapSweep(List<Gap> gaps) {
+	this.gaps = gaps;
+	sortedGaps = gaps.toArray(new Gap[0]);
+	Arrays.sort(sortedGaps, new Comparator<Gap>() {
+	    public int compare(Gap g1, Gap g2) {
+		return Double.compare(g1.getRTRange().lowerEndpoint(), g2
+			.getRTRange().lowerEndpoint());
+	    }
+	});
+    }
+
+    void offerNextScan(Scan scan) {
+
+	final double scanRT = scan.getRetentionTime();
+
+	// Open the gaps whose RT range has started
+	while ((nextGap < sortedGaps.length)
+		&& (sortedGaps[nextGap].getRTRange().lowerEndpoint() <= scanRT)) {
+	    activeGaps.add(sortedGaps[nextGap]);
+	    nextGap++;
+	}
+
+	if (activeGaps.isEmpty())
+	    return;
+
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	if (mzBuffer.length < numOfDataPoints) {
+	    mzBuffer = new double[numOfDataPoints];
+	    intensityBuffer = new double[numOfDataPoints];
+	}
+	scan.getDataPointValues(mzBuffer, intensityBuffer);
+
+	// Feed the scan to the active gaps and drop the closed ones
+	int kept = 0;
+	for (int i = 0; i < activeGaps.size(); i++) {
+	    Gap gap = activeGaps.get(i);
+	    gap.offerNextScan(scan, mzBuffer, intensityBuffer, numOfDataPoints);
+	    if (!gap.isClosed(scanRT))
+		activeGaps.set(kept++, gap);
+	}
+	activeGaps.subList(kept, activeGaps.size()).clear();
+    }
+
+    /**
+     * Finalizes all gaps
+     * 
+     * @return the peaks filling the gaps, in the original order of the gaps,
+     *         with null for gaps where no peak was found
+     */
+    Feature[] noMoreOffers() {
+	Feature peaks[] = new Feature[gaps.size()];
+	for (int i = 0; i < peaks.length; i++) {
+	    peaks[i] = gaps.get(i).noMoreOffers();
+	}
+	return peaks;
+    }
+
+}
@@ -19,7 +19,14 @@
 
 package net.sf.mzmine.modules.peaklistmethods.gapfilling.peakfinder;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.mzmine.datamodel.Feature;
@@ -38,6 +45,7 @@ import net.sf.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import net.sf.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 
 import com.google.common.collect.Range;
 
@@ -53,7 +61,8 @@ class PeakFinderTask extends AbstractTask {
     private RTTolerance rtTolerance;
     private boolean rtCorrection;
     private ParameterSet parameters;
-    private int processedScans, totalScans;
+    private final AtomicInteger processedScans = new AtomicInteger();
+    private int totalScans;
     private boolean MASTERLIST = true, removeOriginal;
     private int masterSample = 0;
 
@@ -114,114 +123,128 @@ class PeakFinderTask extends AbstractTask {
 	    // to fill the gaps of the other samples
 	    masterSample = (int) Math.floor(Math.random()
 		    * peakList.getNumberOfRawDataFiles());
-	    fillList(MASTERLIST);
+	    if (!fillList(MASTERLIST))
+		return;
 
 	    // Process all raw data files
-	    fillList(!MASTERLIST);
+	    if (!fillList(!MASTERLIST))
+		return;
 
 	} else {
 
 	    // Process all raw data files
-	    for (RawDataFile dataFile : peakList.getRawDataFiles()) {
+	    List<RawDataFile> columns = new ArrayList<RawDataFile>();
+	    List<Callable<Feature[]>> jobs = new ArrayList<Callable<Feature[]>>();
+	    for (final RawDataFile dataFile : peakList.getRawDataFiles()) {
+		columns.add(dataFile);
+		jobs.add(new Callable<Feature[]>() {
+		    public Feature[] call() {
+			return fillColumn(dataFile);
+		    }
+		});
+	    }
 
-		// Canceled?
-		if (isCanceled()) {
-		    return;
-		}
+	    if (!fillColumns(columns, jobs))
+		return;
+	}
 
-		Vector<Gap> gaps = new Vector<Gap>();
+	// Append processed peak list to the project
+	project.addPeakList(processedPeakList);
 
-		// Fill each row of this raw data file column, create new empty
-		// gaps
-		// if necessary
-		for (int row = 0; row < peakList.getNumberOfRows(); row++) {
-		    PeakListRow sourceRow = peakList.getRow(row);
-		    PeakListRow newRow = processedPeakList.getRow(row);
+        // Add quality parameters to peaks
+	QualityParameters.calculateQualityParameters(processedPeakList);
 
-		    Feature sourcePeak = sourceRow.getPeak(dataFile);
+	// Add task description to peakList
+	processedPeakList
+		.addDescriptionOfAppliedTask(new SimplePeakListAppliedMethod(
+			"Gap filling ", parameters));
 
-		    if (sourcePeak == null) {
+	// Remove the original peaklist if requested
+	if (removeOriginal)
+	    project.removePeakList(peakList);
 
-			// Create a new gap
+	logger.info("Finished gap-filling on " + peakList);
+	setStatus(TaskStatus.FINISHED);
 
-			Range<Double> mzRange = mzTolerance
-				.getToleranceRange(sourceRow.getAverageMZ());
-			Range<Double> rtRange = rtTolerance
-				.getToleranceRange(sourceRow.getAverageRT());
+    }
 
-			Gap newGap = new Gap(newRow, dataFile, mzRange,
-				rtRange, intTolerance);
+    /**
+     * Fills the gaps of given raw data file. Only reads the original peak list
+     * and does not modify any rows, so several raw data files can be processed
+     * at the same time.
+     * 
+     * @return for each row, the original or gap-filling peak of given raw data
+     *         file, or null if there is none; null if the task was canceled
+     */
+    private Feature[] fillColumn(RawDataFile dataFile) {
 
-			gaps.add(newGap);
+	Feature peaks[] = new Feature[peakList.getNumberOfRows()];
 
-		    } else {
-			newRow.addPeak(dataFile, sourcePeak);
-		    }
+	Vector<Gap> gaps = new Vector<Gap>();
+	List<Integer> gapRows = new ArrayList<Integer>();
 
-		}
+	// Fill each row of this raw data file column, create new empty
+	// gaps
+	// if necessary
+	for (int row = 0; row < peakList.getNumberOfRows(); row++) {
+	    PeakListRow sourceRow = peakList.getRow(row);
 
-		// Stop processing this file if there are no gaps
-		if (gaps.size() == 0) {
-		    processedScans += dataFile.getNumOfScans();
-		    continue;
-		}
+	    Feature sourcePeak = sourceRow.getPeak(dataFile);
 
-		// Get all scans of this data file
-		int scanNumbers[] = dataFile.getScanNumbers(1);
+	    if (sourcePeak == null) {
 
-		// Process each scan
-		for (int scanNumber : scanNumbers) {
+		// Create a new gap
 
-		    // Canceled?
-		    if (isCanceled()) {
-			return;
-		    }
+		Range<Double> mzRange = mzTolerance.getToleranceRange(sourceRow
+			.getAverageMZ());
+		Range<Double> rtRange = rtTolerance.getToleranceRange(sourceRow
+			.getAverageRT());
 
-		    // Get the scan
-		    Scan scan = dataFile.getScan(scanNumber);
+		Gap newGap = new Gap(dataFile, mzRange, rtRange, intTolerance);
 
-		    // Feed this scan to all gaps
-		    for (Gap gap : gaps) {
-			gap.offerNextScan(scan);
-		    }
+		gaps.add(newGap);
+		gapRows.add(row);
 
-		    processedScans++;
-		}
+	    } else {
+		peaks[row] = sourcePeak;
+	    }
 
-		// Finalize gaps
-		for (Gap gap : gaps) {
-		    gap.noMoreOffers();
-		}
+	}
 
-	    }
+	// Stop processing this file if there are no gaps
+	if (gaps.size() == 0) {
+	    processedScans.addAndGet(dataFile.getNumOfScans());
+	    return peaks;
 	}
 
-	// Append processed peak list to the project
-	project.addPeakList(processedPeakList);
+	GapSweep sweep = new GapSweep(gaps);
+	if (!fillGaps(dataFile, sweep))
+	    return null;
 
-        // Add quality parameters to peaks
-	QualityParameters.calculateQualityParameters(processedPeakList);
+	Feature filledPeaks[] = sweep.noMoreOffers();
+	for (int i = 0; i < filledPeaks.length; i++) {
+	    peaks[gapRows.get(i)] = filledPeaks[i];
+	}
 
-	// Add task description to peakList
-	processedPeakList
-		.addDescriptionOfAppliedTask(new SimplePeakListAppliedMethod(
-			"Gap filling ", parameters));
+	return peaks;
+    }
 
-	// Remove the original peaklist if requested
-	if (removeOriginal)
-	    project.removePeakList(peakList);
+    /**
+     * Fills the gaps of the master sample or of the other samples, using a
+     * retention time regression between each sample and the master sample.
+     * 
+     * @return false if the task was canceled or failed
+     */
+    private boolean fillList(final boolean masterList) {
 
-	logger.info("Finished gap-filling on " + peakList);
-	setStatus(TaskStatus.FINISHED);
+	List<RawDataFile> columns = new ArrayList<RawDataFile>();
+	List<Callable<Feature[]>> jobs = new ArrayList<Callable<Feature[]>>();
 
-    }
-
-    public void fillList(boolean masterList) {
 	for (int i = 0; i < peakList.getNumberOfRawDataFiles(); i++) {
 	    if (i != masterSample) {
 
-		RawDataFile datafile1;
-		RawDataFile datafile2;
+		final RawDataFile datafile1;
+		final RawDataFile datafile2;
 
 		if (masterList) {
 		    datafile1 = peakList.getRawDataFile(masterSample);
@@ -230,117 +253,207 @@ class PeakFinderTask extends AbstractTask {
 		    datafile1 = peakList.getRawDataFile(i);
 		    datafile2 = peakList.getRawDataFile(masterSample);
 		}
-		RegressionInfo info = new RegressionInfo();
 
-		for (PeakListRow row : peakList.getRows()) {
-		    Feature peaki = row.getPeak(datafile1);
-		    Feature peake = row.getPeak(datafile2);
-		    if (peaki != null && peake != null) {
-			info.addData(peake.getRT(), peaki.getRT());
+		columns.add(datafile1);
+		jobs.add(new Callable<Feature[]>() {
+		    public Feature[] call() {
+			return fillColumn(datafile1, datafile2, masterList);
 		    }
-		}
+		});
+	    }
+	}
 
-		info.setFunction();
+	// When filling the master list, all jobs fill the column of the
+	// master sample and the results are merged in the original order, so
+	// the result of the last sample wins, as before. The other samples
+	// only read the master sample column, which is not modified any more.
+	return fillColumns(columns, jobs);
+    }
 
-		// Canceled?
-		if (isCanceled()) {
-		    return;
-		}
+    /**
+     * Fills the gaps of datafile1, predicting their retention time from the
+     * peaks of datafile2.
+     * 
+     * @return for each row, the original or gap-filling peak of datafile1, or
+     *         null if there is none; null if the task was canceled
+     */
+    private Feature[] fillColumn(RawDataFile datafile1,
+	    RawDataFile datafile2, boolean masterList) {
+
+	RegressionInfo info = new RegressionInfo();
+
+	for (PeakListRow row : peakList.getRows()) {
+	    Feature peaki = row.getPeak(datafile1);
+	    Feature peake = row.getPeak(datafile2);
+	    if (peaki != null && peake != null) {
+		info.addData(peake.getRT(), peaki.getRT());
+	    }
+	}
 
-		Vector<Gap> gaps = new Vector<Gap>();
+	info.setFunction();
 
-		// Fill each row of this raw data file column, create new empty
-		// gaps
-		// if necessary
-		for (int row = 0; row < peakList.getNumberOfRows(); row++) {
-		    PeakListRow sourceRow = peakList.getRow(row);
-		    PeakListRow newRow = processedPeakList.getRow(row);
+	// Canceled?
+	if (isCanceled()) {
+	    return null;
+	}
 
-		    Feature sourcePeak = sourceRow.getPeak(datafile1);
+	Feature peaks[] = new Feature[peakList.getNumberOfRows()];
 
-		    if (sourcePeak == null) {
+	Vector<Gap> gaps = new Vector<Gap>();
+	List<Integer> gapRows = new ArrayList<Integer>();
 
-			// Create a new gap
+	// Fill each row of this raw data file column, create new empty
+	// gaps
+	// if necessary
+	for (int row = 0; row < peakList.getNumberOfRows(); row++) {
+	    PeakListRow sourceRow = peakList.getRow(row);
 
-			double mz = sourceRow.getAverageMZ();
-			double rt2 = -1;
-			if (!masterList) {
-			    if (processedPeakList.getRow(row)
-				    .getPeak(datafile2) != null) {
-				rt2 = processedPeakList.getRow(row)
-					.getPeak(datafile2).getRT();
-			    }
-			} else {
-			    if (peakList.getRow(row).getPeak(datafile2) != null) {
-				rt2 = peakList.getRow(row).getPeak(datafile2)
-					.getRT();
-			    }
-			}
+	    Feature sourcePeak = sourceRow.getPeak(datafile1);
 
-			if (rt2 > -1) {
+	    if (sourcePeak == null) {
 
-			    double rt = info.predict(rt2);
+		// Create a new gap
 
-			    if (rt != -1) {
+		double mz = sourceRow.getAverageMZ();
+		double rt2 = -1;
+		if (!masterList) {
+		    if (processedPeakList.getRow(row).getPeak(datafile2) != null) {
+			rt2 = processedPeakList.getRow(row).getPeak(datafile2)
+				.getRT();
+		    }
+		} else {
+		    if (peakList.getRow(row).getPeak(datafile2) != null) {
+			rt2 = peakList.getRow(row).getPeak(datafile2).getRT();
+		    }
+		}
 
-				Range<Double> mzRange = mzTolerance
-					.getToleranceRange(mz);
-				Range<Double> rtRange = rtTolerance
-					.getToleranceRange(rt);
+		if (rt2 > -1) {
 
-				Gap newGap = new Gap(newRow, datafile1,
-					mzRange, rtRange, intTolerance);
+		    double rt = info.predict(rt2);
 
-				gaps.add(newGap);
-			    }
-			}
+		    if (rt != -1) {
 
-		    } else {
-			newRow.addPeak(datafile1, sourcePeak);
-		    }
+			Range<Double> mzRange = mzTolerance
+				.getToleranceRange(mz);
+			Range<Double> rtRange = rtTolerance
+				.getToleranceRange(rt);
 
-		}
+			Gap newGap = new Gap(datafile1, mzRange, rtRange,
+				intTolerance);
 
-		// Stop processing this file if there are no gaps
-		if (gaps.size() == 0) {
-		    processedScans += datafile1.getNumOfScans();
-		    continue;
+			gaps.add(newGap);
+			gapRows.add(row);
+		    }
 		}
 
-		// Get all scans of this data file
-		int scanNumbers[] = datafile1.getScanNumbers(1);
+	    } else {
+		peaks[row] = sourcePeak;
+	    }
 
-		// Process each scan
-		for (int scanNumber : scanNumbers) {
+	}
 
-		    // Canceled?
-		    if (isCanceled()) {
-			return;
-		    }
+	// Stop processing this file if there are no gaps
+	if (gaps.size() == 0) {
+	    processedScans.addAndGet(datafile1.getNumOfScans());
+	    return peaks;
+	}
 
-		    // Get the scan
-		    Scan scan = datafile1.getScan(scanNumber);
+	GapSweep sweep = new GapSweep(gaps);
+	if (!fillGaps(datafile1, sweep))
+	    return null;
 
-		    // Feed this scan to all gaps
-		    for (Gap gap : gaps) {
-			gap.offerNextScan(scan);
-		    }
-		    processedScans++;
-		}
+	Feature filledPeaks[] = sweep.noMoreOffers();
+	for (int i = 0; i < filledPeaks.length; i++) {
+	    peaks[gapRows.get(i)] = filledPeaks[i];
+	}
+
+	return peaks;
+    }
+
+    /**
+     * Feeds all MS1 scans of given raw data file to the gaps
+     * 
+     * @return false if the task was canceled
+     */
+    private boolean fillGaps(RawDataFile dataFile, GapSweep sweep) {
+
+	// Get all scans of this data file
+	int scanNumbers[] = dataFile.getScanNumbers(1);
+
+	// Process each scan
+	for (int scanNumber : scanNumbers) {
+
+	    // Canceled?
+	    if (isCanceled()) {
+		return false;
+	    }
+
+	    // Get the scan
+	    Scan scan = dataFile.getScan(scanNumber);
 
-		// Finalize gaps
-		for (Gap gap : gaps) {
-		    gap.noMoreOffers();
+	    // Feed this scan to the gaps within its RT
+	    sweep.offerNextScan(scan);
+
+	    processedScans.incrementAndGet();
+	}
+
+	return true;
+    }
+
+    /**
+     * Runs the jobs filling the columns of the processed peak list, using up
+     * to the configured number of threads. The results are added to the rows
+     * by this thread in the order of the jobs, so the processed peak list is
+     * the same as if the columns were filled one by one.
+     * 
+     * @return false if the task was canceled or failed
+     */
+    private boolean fillColumns(List<RawDataFile> columns,
+	    List<Callable<Feature[]>> jobs) {
+
+	final WorkerExecutor executor = new WorkerExecutor();
+
+	try {
+	    List<Future<Feature[]>> results = new ArrayList<Future<Feature[]>>();
+	    for (Callable<Feature[]> job : jobs)
+		results.add(executor.submit(job));
+
+	    for (int i = 0; i < results.size(); i++) {
+
+		Feature peaks[] = results.get(i).get();
+
+		// Canceled?
+		if ((peaks == null) || isCanceled())
+		    return false;
+
+		RawDataFile column = columns.get(i);
+		for (int row = 0; row < peaks.length; row++) {
+		    if (peaks[row] != null)
+			processedPeakList.getRow(row).addPeak(column,
+				peaks[row]);
 		}
 	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    setStatus(TaskStatus.CANCELED);
+	    return false;
+	} catch (ExecutionException e) {
+	    logger.log(Level.WARNING, "Error while filling gaps", e.getCause());
+	    setStatus(TaskStatus.ERROR);
+	    setErrorMessage("Error while filling gaps: " + e.getCause());
+	    return false;
+	} finally {
+	    executor.cancelAll();
 	}
+
+	return true;
     }
 
     public double getFinishedPercentage() {
 	if (totalScans == 0) {
 	    return 0;
 	}
-	return (double) processedScans / (double) totalScans;
+	return (double) processedScans.get() / (double) totalScans;
 
     }
 
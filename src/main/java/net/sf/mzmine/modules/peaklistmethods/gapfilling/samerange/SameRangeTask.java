@@ -19,6 +19,13 @@
 
 package net.sf.mzmine.modules.peaklistmethods.gapfilling.samerange;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.mzmine.datamodel.DataPoint;
@@ -38,6 +45,7 @@ import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 import net.sf.mzmine.util.RangeUtils;
 import net.sf.mzmine.util.ScanUtils;
 
@@ -54,7 +62,8 @@ class SameRangeTask extends AbstractTask {
     private MZTolerance mzTolerance;
     private boolean removeOriginal;
 
-    private int processedRows, totalRows;
+    private int totalRows;
+    private final AtomicInteger processedPeaks = new AtomicInteger();
 
     private ParameterSet parameters;
 
@@ -89,7 +98,12 @@ class SameRangeTask extends AbstractTask {
 	// Create new peak list
 	processedPeakList = new SimplePeakList(peakList + " " + suffix, columns);
 
-	// Fill gaps in given column
+	// Fill the gaps of all columns, possibly in parallel
+	Feature filledPeaks[][] = fillColumns(columns);
+	if (filledPeaks == null)
+	    return;
+
+	// Build the rows in the original order
 	for (int row = 0; row < totalRows; row++) {
 
 	    // Canceled?
@@ -109,30 +123,24 @@ class SameRangeTask extends AbstractTask {
 		newRow.setPreferredPeakIdentity(sourceRow
 			.getPreferredPeakIdentity());
 
-	    // Copy each peaks and fill gaps
-	    for (RawDataFile column : columns) {
-
-		// Canceled?
-		if (isCanceled())
-		    return;
+	    // Copy each peaks and filled gaps
+	    for (int column = 0; column < columns.length; column++) {
 
 		// Get current peak
-		Feature currentPeak = sourceRow.getPeak(column);
+		Feature currentPeak = sourceRow.getPeak(columns[column]);
 
-		// If there is a gap, try to fill it
+		// If there is a gap, take the peak filling it
 		if (currentPeak == null)
-		    currentPeak = fillGap(sourceRow, column);
+		    currentPeak = filledPeaks[column][row];
 
 		// If a peak was found or created, add it
 		if (currentPeak != null)
-		    newRow.addPeak(column, currentPeak);
+		    newRow.addPeak(columns[column], currentPeak);
 
 	    }
 
 	    processedPeakList.addRow(newRow);
 
-	    processedRows++;
-
 	}
 
 	// Append processed peak list to the project
@@ -156,6 +164,79 @@ class SameRangeTask extends AbstractTask {
 
     }
 
+    /**
+     * Fills the gaps of all columns using up to the configured number of
+     * threads. Each column is independent and only reads the original peak
+     * list.
+     * 
+     * @return for each column and row, the peak filling the gap, or null if
+     *         there is no gap or it could not be filled; null if the task was
+     *         canceled or failed
+     */
+    private Feature[][] fillColumns(RawDataFile columns[]) {
+
+	final WorkerExecutor executor = new WorkerExecutor();
+
+	try {
+	    List<Future<Feature[]>> results = new ArrayList<Future<Feature[]>>();
+	    for (final RawDataFile column : columns) {
+		results.add(executor.submit(new Callable<Feature[]>() {
+		    public Feature[] call() {
+			return fillColumn(column);
+		    }
+		}));
+	    }
+
+	    Feature filledPeaks[][] = new Feature[columns.length][];
+	    for (int i = 0; i < columns.length; i++) {
+		filledPeaks[i] = results.get(i).get();
+		if ((filledPeaks[i] == null) || isCanceled())
+		    return null;
+	    }
+	    return filledPeaks;
+
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    setStatus(TaskStatus.CANCELED);
+	    return null;
+	} catch (ExecutionException e) {
+	    logger.log(Level.WARNING, "Error while filling gaps", e.getCause());
+	    setStatus(TaskStatus.ERROR);
+	    setErrorMessage("Error while filling gaps: " + e.getCause());
+	    return null;
+	} finally {
+	    executor.cancelAll();
+	}
+    }
+
+    /**
+     * Fills all gaps in given column
+     * 
+     * @return the peaks filling the gaps, indexed by row, or null if the task
+     *         was canceled
+     */
+    private Feature[] fillColumn(RawDataFile column) {
+
+	Feature filledPeaks[] = new Feature[totalRows];
+
+	for (int row = 0; row < totalRows; row++) {
+
+	    // Canceled?
+	    if (isCanceled())
+		return null;
+
+	    PeakListRow sourceRow = peakList.getRow(row);
+
+	    // If there is a gap, try to fill it
+	    if (sourceRow.getPeak(column) == null)
+		filledPeaks[row] = fillGap(sourceRow, column);
+
+	    processedPeaks.incrementAndGet();
+	}
+
+	return filledPeaks;
+    }
+
     private Feature fillGap(PeakListRow row, RawDataFile column) {
 
 	SameRangePeak newPeak = new SameRangePeak(column);
@@ -220,9 +301,10 @@ class SameRangeTask extends AbstractTask {
     }
 
     public double getFinishedPercentage() {
-	if (totalRows == 0)
+	final int totalPeaks = totalRows * peakList.getNumberOfRawDataFiles();
+	if (totalPeaks == 0)
 	    return 0;
-	return (double) processedRows / (double) totalRows;
+	return (double) processedPeaks.get() / (double) totalPeaks;
 
     }
 
@@ -228,6 +228,8 @@ public class CameraSearchTask extends AbstractTask {
 			// Add peaks.
 			// 80 percents for building peaks list.
 			double progressInc = 0.8 / (double) peaks.length;
+			final double[][] peakMatrix = new double[peaks.length][];
+			int peakIndex = 0;
 			for (final Feature peak : peaks) {
 
 				// Get peak data.
@@ -279,21 +281,26 @@ public class CameraSearchTask extends AbstractTask {
 						.getRawDataPointsRTRange() : rtRange).upperEndpoint();
 
 				// Add peak row.
-				this.rSession.eval("peaks <- rbind(peaks, c(" + mz + ", " // mz
-						+ mz + ", " // mzmin: use the same as mz.
-						+ mz + ", " // mzmax: use the same as mz.
-						+ peak.getRT() + ", " // rt
-						+ rtMin + ", " // rtmin
-						+ rtMax + ", " // rtmax
-						+ area + ", " // into: peak area.
-						+ area + ", " // intb: doesn't affect result, use area.
-						+ maxo + ", " // maxo
-						+ SIGNAL_TO_NOISE + "))", 
-						false);
+				peakMatrix[peakIndex++] = new double[] { mz, // mz
+						mz, // mzmin: use the same as mz.
+						mz, // mzmax: use the same as mz.
+						peak.getRT(), // rt
+						rtMin, // rtmin
+						rtMax, // rtmax
+						area, // into: peak area.
+						area, // intb: doesn't affect result, use area.
+						maxo, // maxo
+						SIGNAL_TO_NOISE };
 
 				progress += progressInc;
 			}
 
+			// Send all peak rows at once.
+			if (peakMatrix.length > 0) {
+				this.rSession.assignDoubleMatrix("peaks", peakMatrix);
+				this.rSession.eval("colnames(peaks) <- columnHeadings");
+			}
+
 			// 20 percents (5*4) for building pseudo-isotopes groups.
 			progressInc = 0.05;
 
@@ -323,10 +330,10 @@ public class CameraSearchTask extends AbstractTask {
 			}
 
 			// Set vectors.
-			this.rSession.assign("scantime", scanTimes);
-			this.rSession.assign("scanindex", scanIndices);
-			this.rSession.assign("mass", masses);
-			this.rSession.assign("intensity", intensities);
+			this.rSession.assignDoubleArray("scantime", scanTimes);
+			this.rSession.assignIntArray("scanindex", scanIndices);
+			this.rSession.assignDoubleArray("mass", masses);
+			this.rSession.assignDoubleArray("intensity", intensities);
 
 			// Construct xcmsRaw object
 			this.rSession.eval("xRaw <- new(\"xcmsRaw\")");
@@ -379,7 +386,7 @@ public class CameraSearchTask extends AbstractTask {
 			// list.
 			rSession.eval("pcgroup <- as.integer(peakList$pcgroup)");
 			rSession.eval("isotopes <- peakList$isotopes");
-			final int[] spectra = (int[]) rSession.collect("pcgroup");
+			final int[] spectra = rSession.collectIntArray("pcgroup");
 			final String[] isotopes = (String[]) rSession.collect("isotopes");
 
 			// Add identities.
@@ -88,6 +88,16 @@ public class PeptideScan implements Scan {
 	return dataPoints;
     }
 
+    /**
+     * @see net.sf.mzmine.datamodel.MassSpectrum#getDataPointValues(double[],
+     *      double[])
+     */
+    public int getDataPointValues(@Nonnull double mzValues[],
+	    @Nonnull double intensityValues[]) {
+	return ScanUtils.copyDataPointValues(dataPoints, mzValues,
+		intensityValues);
+    }
+
     /**
      * @return Returns scan datapoints within a given range
      */
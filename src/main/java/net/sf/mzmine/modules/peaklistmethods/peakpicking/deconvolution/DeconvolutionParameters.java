@@ -21,6 +21,7 @@ package net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution;
 
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.baseline.BaselinePeakDetector;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetector;
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveJavaDetector;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.minimumsearch.MinimumSearchPeakDetector;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.noiseamplitude.NoiseAmplitudePeakDetector;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.savitzkygolay.SavitzkyGolayPeakDetector;
@@ -36,7 +37,7 @@ public class DeconvolutionParameters extends SimpleParameterSet {
     private static final PeakResolver[] RESOLVERS = {
 	    new BaselinePeakDetector(), new NoiseAmplitudePeakDetector(),
 	    new SavitzkyGolayPeakDetector(), new MinimumSearchPeakDetector(),
-	    new CentWaveDetector() };
+	    new CentWaveDetector(), new CentWaveJavaDetector() };
 
     public static final PeakListsParameter PEAK_LISTS = new PeakListsParameter();
 
@@ -23,6 +23,11 @@ import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.De
 import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.DeconvolutionParameters.PEAK_RESOLVER;
 import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.DeconvolutionParameters.SUFFIX;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,11 +40,13 @@ import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.datamodel.impl.SimplePeakList;
 import net.sf.mzmine.datamodel.impl.SimplePeakListAppliedMethod;
 import net.sf.mzmine.datamodel.impl.SimplePeakListRow;
+import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.MZmineProcessingStep;
 import net.sf.mzmine.modules.peaklistmethods.qualityparameters.QualityParameters;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 import net.sf.mzmine.util.R.RSessionWrapper;
 import net.sf.mzmine.util.R.RSessionWrapperException;
 
@@ -54,8 +61,11 @@ public class DeconvolutionTask extends AbstractTask {
     private final PeakList originalPeakList;
     private PeakList newPeakList;
 
+    // Number of chromatograms resolved by one parallel job.
+    private static final int CHROMATOGRAMS_PER_JOB = 4;
+
     // Counters.
-    private int processedRows;
+    private final AtomicInteger processedRows;
     private int totalRows;
 
     // User parameters
@@ -80,7 +90,7 @@ public class DeconvolutionTask extends AbstractTask {
         parameters = parameterSet;
         originalPeakList = list;
         newPeakList = null;
-        processedRows = 0;
+        processedRows = new AtomicInteger();
         totalRows = 0;
     }
 
@@ -93,7 +103,7 @@ public class DeconvolutionTask extends AbstractTask {
     @Override
     public double getFinishedPercentage() {
 
-        return totalRows == 0 ? 0.0 : (double) processedRows
+        return totalRows == 0 ? 0.0 : (double) processedRows.get()
                 / (double) totalRows;
     }
 
@@ -234,20 +244,66 @@ public class DeconvolutionTask extends AbstractTask {
                                 .getParameterSet()));
 
         // Initialise counters.
-        processedRows = 0;
+        processedRows.set(0);
         totalRows = peakList.getNumberOfRows();
         int peakId = 1;
 
         // Process each chromatogram.
         final Feature[] chromatograms = peakList.getPeaks(dataFile);
         final int chromatogramCount = chromatograms.length;
+        final PeakResolver resolverModule = resolver.getModule();
+        final ParameterSet resolverParams = resolver.getParameterSet();
+        final int numOfThreads = MZmineCore.getConfiguration()
+                .getPreferences().getNumOfThreads();
+
+        if (rSession == null && resolverModule.isThreadSafe()
+                && numOfThreads > 1 && chromatogramCount > 1) {
+
+            // Resolve the chromatograms concurrently, then add the peaks in
+            // chromatogram order so the row IDs do not depend on scheduling.
+            final Feature[][] resolved = new Feature[chromatogramCount][];
+            final WorkerExecutor executor = new WorkerExecutor();
+            try {
+                final List<Future<?>> jobs = new ArrayList<Future<?>>();
+                for (int start = 0; start < chromatogramCount;
+                        start += CHROMATOGRAMS_PER_JOB) {
+                    jobs.add(executor.submit(new ResolveChromatogramsJob(
+                            chromatograms, resolved, resolverModule,
+                            resolverParams, start, Math.min(chromatogramCount,
+                                    start + CHROMATOGRAMS_PER_JOB))));
+                }
+                for (final Future<?> job : jobs) {
+                    job.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                setStatus(TaskStatus.CANCELED);
+                return resolvedPeaks;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                executor.cancelAll();
+            }
+
+            for (int index = 0; !isCanceled() && index < chromatogramCount; index++) {
+
+                // Add peaks to the new peak list.
+                for (final Feature peak : resolved[index]) {
+
+                    final PeakListRow newRow = new SimplePeakListRow(peakId++);
+                    newRow.addPeak(dataFile, peak);
+                    resolvedPeaks.addRow(newRow);
+                }
+            }
+
+            return resolvedPeaks;
+        }
+
         for (int index = 0; !isCanceled() && index < chromatogramCount; index++) {
 
             final Feature chromatogram = chromatograms[index];
 
             // Resolve peaks.
-            final PeakResolver resolverModule = resolver.getModule();
-            final ParameterSet resolverParams = resolver.getParameterSet();
             final Feature[] peaks = resolverModule.resolvePeaks(chromatogram,
                     resolverParams,
                     rSession);
@@ -260,12 +316,59 @@ public class DeconvolutionTask extends AbstractTask {
                 resolvedPeaks.addRow(newRow);
             }
 
-            processedRows++;
+            processedRows.incrementAndGet();
         }
 
         return resolvedPeaks;
     }
 
+    /**
+     * Resolves a range of chromatograms on a worker thread. Results are stored
+     * by chromatogram index.
+     */
+    private class ResolveChromatogramsJob implements Runnable {
+
+        private final Feature[] chromatograms;
+        private final Feature[][] resolved;
+        private final PeakResolver resolverModule;
+        private final ParameterSet resolverParams;
+        private final int start, end;
+
+        ResolveChromatogramsJob(final Feature[] chromatograms,
+                final Feature[][] resolved, final PeakResolver resolverModule,
+                final ParameterSet resolverParams, final int start,
+                final int end) {
+            this.chromatograms = chromatograms;
+            this.resolved = resolved;
+            this.resolverModule = resolverModule;
+            this.resolverParams = resolverParams;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+
+            for (int index = start; index < end; index++) {
+
+                if (isCanceled()) {
+                    resolved[index] = new Feature[0];
+                    continue;
+                }
+
+                try {
+                    resolved[index] = resolverModule.resolvePeaks(
+                            chromatograms[index], resolverParams, null);
+                } catch (RSessionWrapperException e) {
+                    // Thread-safe resolvers do not use R.
+                    throw new IllegalStateException(e);
+                }
+
+                processedRows.incrementAndGet();
+            }
+        }
+    }
+
     @Override
     public void cancel() {
 
@@ -43,6 +43,13 @@ public interface PeakResolver extends MZmineModule {
      */
     public String[] getRequiredRPackagesVersions();
 
+    /**
+     * Gets if {@link #resolvePeaks} may be called concurrently for different
+     * chromatograms, i.e. the resolver keeps no state between calls. Only
+     * resolvers not requiring R are ever run concurrently.
+     */
+    public boolean isThreadSafe();
+
     /**
      * Resolve a peaks found within given chromatogram. For easy use, three
      * arrays (scanNumbers, retentionTimes and intensities) are provided,
@@ -149,4 +149,9 @@ public class BaselinePeakDetector implements PeakResolver {
     public String[] getRequiredRPackagesVersions() {
         return null;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -0,0 +1,1009 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.PeakIntegrationMethod;
+
+import com.google.common.collect.Range;
+
+/**
+ * Java implementation of the centWave algorithm of XCMS
+ * (findPeaks.centWave), as applied by CentWaveJavaDetector to a single
+ * chromatogram: each section of non-zero intensities is a region of interest,
+ * which is analyzed by continuous wavelet transform (Mexican hat) after
+ * estimating its baseline and noise level.
+ * 
+ * The steps, constants and quirks of XCMS (and of the MassSpecWavelet code it
+ * embeds) are reproduced, so that the same peaks should be found. This has
+ * not been verified against stored XCMS results yet, so CentWaveDetector
+ * (which calls XCMS in R) remains the reference. Cases where R would stop
+ * with an error yield no peak instead.
+ * 
+ * Tautenhahn R, Boettcher C, Neumann S: Highly sensitive feature detection for
+ * high resolution LC/MS. BMC Bioinformatics 2008, 9:504.
+ */
+final class CentWave {
+
+    // Minutes <-> seconds.
+    private static final double SECONDS_PER_MINUTE = 60.0;
+
+    // Trimming used by the first (global) noise estimation.
+    private static final double NOISE_TRIM = 0.05;
+
+    // Ridge lines may skip that many scales without a local maximum.
+    private static final int RIDGE_GAP_THRESHOLD = 3;
+
+    // Minimum window size used for local maxima and ridge lines.
+    private static final int MIN_WINDOW_SIZE = 5;
+
+    // Adjacent peaks are allowed when removing overlapping ones.
+    private static final double RT_DIFF = -0.00001;
+
+    // Mexican hat wavelet, sampled as in xcms' MSW.cwt.
+    private static final int PSI_LENGTH = 256;
+    private static final double[] PSI = new double[PSI_LENGTH];
+    private static final double PSI_DX;
+    private static final double PSI_XMAX;
+    static {
+        final double from = -6.0, to = 6.0;
+        final double by = (to - from) / (PSI_LENGTH - 1);
+        final double factor = 2.0 / Math.sqrt(3.0) * Math.pow(Math.PI, -0.25);
+        for (int i = 0; i < PSI_LENGTH; i++) {
+            final double x = from + i * by;
+            PSI[i] = factor * (1.0 - x * x) * Math.exp(-x * x / 2.0);
+        }
+        PSI_DX = (from + by) - from;
+        PSI_XMAX = (from + (PSI_LENGTH - 1) * by) - from;
+    }
+
+    private CentWave() {
+    }
+
+    /**
+     * Detect peaks in a chromatogram.
+     * 
+     * @param scanTimes
+     *            retention times (minutes) of the chromatogram's scans.
+     * @param intensities
+     *            intensities of the chromatogram (0 if no data point).
+     * @param peakWidth
+     *            peak width range (minutes).
+     * @param snrThreshold
+     *            signal:noise ratio threshold.
+     * @param integrationMethod
+     *            integration method.
+     * @return the detected peaks, as { first scan index, last scan index }
+     *         pairs, in the order XCMS reports them.
+     */
+    static List<int[]> findPeaks(final double[] scanTimes,
+            final double[] intensities, final Range<Double> peakWidth,
+            final double snrThreshold,
+            final PeakIntegrationMethod integrationMethod) {
+
+        final List<int[]> result = new ArrayList<int[]>();
+        final int numScans = scanTimes.length;
+        if (numScans < 2)
+            return result;
+
+        // Scan times in seconds, as they are in the xcmsRaw object.
+        final double[] times = new double[numScans];
+        for (int i = 0; i < numScans; i++)
+            times[i] = scanTimes[i] * SECONDS_PER_MINUTE;
+
+        final int[] scales = getScales(times, peakWidth);
+        if (scales == null)
+            return result;
+
+        final int minPeakWidth = scales[0];
+        final int maxNoiseRange = scales[scales.length - 1] * 3;
+        final int noiseRange = minPeakWidth * 3;
+        final int minPtsAboveBaseLine = Math.max(4, minPeakWidth - 2);
+        final int scRangeTol = minPeakWidth / 2;
+        final int maxDescOutlier = scRangeTol;
+
+        final List<Peak> peaks = new ArrayList<Peak>();
+
+        // Regions of interest: sections of non-zero intensities.
+        for (int start = 0; start < numScans; start++) {
+
+            if (intensities[start] > 0.0) {
+
+                int end = start;
+                while (end + 1 < numScans && intensities[end + 1] > 0.0)
+                    end++;
+
+                findPeaksInROI(times, intensities, start, end, scales,
+                        maxNoiseRange, noiseRange, minPtsAboveBaseLine,
+                        scRangeTol, maxDescOutlier, snrThreshold,
+                        integrationMethod, peaks);
+
+                start = end;
+            }
+        }
+
+        // Remove overlapping peaks, keeping the most intense ones.
+        for (final Peak peak : removeOverlaps(times, peaks))
+            result.add(new int[] { peak.left, peak.right });
+
+        return result;
+    }
+
+    /**
+     * Wavelet scales (number of scans) matching the peak width range.
+     */
+    private static int[] getScales(final double[] times,
+            final Range<Double> peakWidth) {
+
+        double sum = 0.0;
+        for (int i = 1; i < times.length; i++)
+            sum += times[i] - times[i - 1];
+        final double meanDiff = sum / (times.length - 1);
+
+        final int lower = (int) Math.rint(peakWidth.lowerEndpoint()
+                * SECONDS_PER_MINUTE / meanDiff / 2.0);
+        final int upper = (int) Math.rint(peakWidth.upperEndpoint()
+                * SECONDS_PER_MINUTE / meanDiff / 2.0);
+
+        if (lower == 0 && upper == 0)
+            return null;
+        if (lower == 0 || upper == 0)
+            return new int[] { Math.max(lower, upper) };
+        if (upper < lower)
+            return null;
+
+        final int[] scales = new int[(upper - lower) / 2 + 1];
+        for (int i = 0; i < scales.length; i++)
+            scales[i] = lower + 2 * i;
+        return scales;
+    }
+
+    /**
+     * Detect peaks in the region of interest [scMin, scMax].
+     */
+    private static void findPeaksInROI(final double[] times,
+            final double[] intensities, final int scMin, final int scMax,
+            final int[] scales, final int maxNoiseRange, final int noiseRange,
+            final int minPtsAboveBaseLine, final int scRangeTol,
+            final int maxDescOutlier, final double snrThreshold,
+            final PeakIntegrationMethod integrationMethod,
+            final List<Peak> peaks) {
+
+        final int numScans = times.length;
+        final int roiLength = scMax - scMin + 1;
+
+        // ROI extended by the noise range, used for baseline detection and
+        // wavelet analysis.
+        final int srMin = Math.max(0, scMin - maxNoiseRange);
+        final int srMax = Math.min(numScans - 1, scMax + maxNoiseRange);
+        final double[] d = Arrays.copyOfRange(intensities, srMin, srMax + 1);
+        final int n = d.length;
+
+        // ROI extended by the scan range tolerance.
+        final int ftdMin = Math.max(srMin, scMin - scRangeTol);
+        final int ftdMax = Math.min(srMax, scMax + scRangeTol);
+        final double[] fd = Arrays.copyOfRange(intensities, ftdMin,
+                ftdMax + 1);
+
+        // First baseline: trimmed mean (of the whole chromatogram for very
+        // long mass traces).
+        final double noise = estimateChromNoise(
+                roiLength >= 10 * scales[0] ? intensities : d,
+                3 * scales[0]);
+
+        // Any continuous data above the first baseline?
+        if (!continuousPtsAboveThreshold(fd, noise, minPtsAboveBaseLine))
+            return;
+
+        // Second baseline, from the data outside of the peak range.
+        final double[] localNoise = getLocalNoiseEstimate(d, ftdMin - srMin,
+                ftdMax - srMin, noiseRange, numScans, noise,
+                minPtsAboveBaseLine);
+        final double baseline = Math.max(1.0,
+                Math.min(localNoise[0], noise));
+        final double sdNoise = Math.max(1.0, localNoise[1]);
+        final double sdThreshold = sdNoise * snrThreshold;
+
+        // Is there any data above the S/N threshold?
+        boolean above = false;
+        for (final double v : fd)
+            above |= v - baseline >= sdThreshold;
+        if (!above)
+            return;
+
+        final double[][] wCoefs = cwt(d, scales);
+        if (wCoefs.length == 0)
+            return;
+        above = false;
+        for (final double[] coefs : wCoefs)
+            for (final double c : coefs)
+                above |= c - baseline >= sdThreshold;
+        if (!above)
+            return;
+
+        // Work-around from XCMS for ROIs reaching the last scan.
+        if (srMax == numScans - 1) {
+            if (n < 2)
+                return;
+            for (final double[] coefs : wCoefs)
+                coefs[n - 1] = coefs[n - 2] * 0.99;
+        }
+
+        final int[] computedScales = Arrays.copyOf(scales, wCoefs.length);
+        final boolean[][] localMax = getLocalMaximumCWT(wCoefs,
+                computedScales);
+        final List<int[]> ridges = getRidges(localMax, computedScales);
+
+        // Check each ridge.
+        final List<int[]> peakInfos = new ArrayList<int[]>();
+        for (final int[] ridge : ridges) {
+
+            // Only the coefficients of the first scale are checked (as in
+            // XCMS).
+            boolean isPeak = false;
+            for (final int pos : ridge)
+                isPeak |= wCoefs[0][pos] - baseline >= sdThreshold;
+            if (!isPeak)
+                continue;
+
+            // Peak in original data range, and final S/N check.
+            final Set<Integer> uniquePositions = new LinkedHashSet<Integer>();
+            for (final int pos : ridge)
+                uniquePositions.add(pos);
+            boolean inRange = false, aboveThreshold = false;
+            for (final int pos : uniquePositions) {
+                if (srMin + pos >= ftdMin && srMin + pos <= ftdMax) {
+                    inRange = true;
+                    aboveThreshold |= d[pos] - baseline >= sdThreshold;
+                }
+            }
+            if (!inRange || !aboveThreshold)
+                continue;
+
+            // Decide which scale describes the peak best.
+            final int halfRange = (scales[0] + 1) / 2;
+            int bestScaleNr = 0;
+            double maxIntensity = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < ridge.length; k++) {
+                final int from = Math.max(0, ridge[k] - halfRange);
+                final int to = Math.min(n - 1, ridge[k] + halfRange);
+                double sum = 0.0;
+                for (int i = from; i <= to; i++)
+                    sum += d[i];
+                if (sum > maxIntensity) {
+                    maxIntensity = sum;
+                    bestScaleNr = k;
+                }
+            }
+
+            // R yields NA beyond the scales (orphan ridges).
+            if (bestScaleNr >= scales.length)
+                continue;
+
+            final int bestScale = scales[bestScaleNr];
+            final int bestScalePos = ridge[bestScaleNr];
+            final int lwPos = Math.max(0, bestScalePos - bestScale);
+            final int rwPos = Math.min(n - 1, bestScalePos + bestScale);
+            peakInfos.add(new int[] { bestScaleNr, bestScalePos, lwPos,
+                    rwPos });
+        }
+
+        // Find peak boundaries.
+        for (final int[] info : peakInfos) {
+
+            int[] lm;
+            if (integrationMethod == PeakIntegrationMethod.UseSmoothedData) {
+
+                // R fails on scales which could not be computed.
+                if (info[0] >= wCoefs.length)
+                    continue;
+
+                lm = descendMin(wCoefs[info[0]], info[1]);
+                boolean gap = true;
+                for (int i = lm[0]; i <= lm[1]; i++)
+                    gap &= d[i] == 0.0;
+                if (lm[0] == lm[1] || gap)
+                    lm = descendMinTol(d, info[2], info[3], maxDescOutlier);
+
+            } else {
+
+                lm = descendMinTol(d, info[2], info[3], maxDescOutlier);
+            }
+
+            // Narrow down peak boundaries by skipping zeros.
+            final int np = lm[1] - lm[0] + 1;
+            int left = 0;
+            while (left < np && d[lm[0] + left] < 1.0)
+                left++;
+            int right = 0;
+            while (right < np && d[lm[1] - right] < 1.0)
+                right++;
+            final int first = lm[0] + Math.max(0, left - 1);
+            final int last = lm[1] - Math.max(0, right - 1);
+
+            final int peakLeft = srMin + first;
+            final int peakRight = srMin + last;
+
+            double width = (times[peakRight] - times[peakLeft])
+                    / (peakRight - peakLeft);
+            if (Double.isNaN(width))
+                width = 1.0;
+            double sum = 0.0;
+            for (int i = Math.min(first, last); i <= Math.max(first, last); i++)
+                sum += d[i];
+
+            peaks.add(new Peak(peakLeft, peakRight, width * sum));
+        }
+    }
+
+    /**
+     * Remove peaks overlapping in RT with a more intense one, keeping the
+     * original order (XCMS' rectUnique).
+     */
+    private static List<Peak> removeOverlaps(final double[] times,
+            final List<Peak> peaks) {
+
+        final List<Peak> byIntensity = new ArrayList<Peak>(peaks);
+        Collections.sort(byIntensity, new Comparator<Peak>() {
+            @Override
+            public int compare(final Peak p1, final Peak p2) {
+                return Double.compare(p2.area, p1.area);
+            }
+        });
+
+        final List<Peak> kept = new ArrayList<Peak>();
+        for (final Peak peak : byIntensity) {
+            boolean overlap = false;
+            for (final Peak other : kept) {
+                if (!(times[peak.left] - times[other.right] > RT_DIFF || times[other.left]
+                        - times[peak.right] > RT_DIFF)) {
+                    overlap = true;
+                    break;
+                }
+            }
+            if (!overlap)
+                kept.add(peak);
+        }
+
+        final List<Peak> result = new ArrayList<Peak>(kept.size());
+        for (final Peak peak : peaks)
+            if (kept.contains(peak))
+                result.add(peak);
+        return result;
+    }
+
+    /**
+     * Trimmed mean of the positive values, or plain mean if there are too
+     * few of them (XCMS' estimateChromNoise).
+     */
+    static double estimateChromNoise(final double[] x, final int minPts) {
+
+        int positive = 0;
+        double sum = 0.0;
+        for (final double v : x) {
+            sum += v;
+            if (v > 0.0)
+                positive++;
+        }
+        if (positive < minPts)
+            return sum / x.length;
+
+        final double[] values = new double[positive];
+        int i = 0;
+        for (final double v : x)
+            if (v > 0.0)
+                values[i++] = v;
+        Arrays.sort(values);
+
+        final int trim = (int) Math.floor(positive * NOISE_TRIM);
+        return mean(values, trim, positive - trim);
+    }
+
+    /**
+     * Whether there are at least num consecutive points above threshold.
+     */
+    static boolean continuousPtsAboveThreshold(final double[] y,
+            final double threshold, final int num) {
+
+        int count = 0;
+        for (final double v : y) {
+            if (v > threshold) {
+                if (++count >= num)
+                    return true;
+            } else {
+                count = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flags the points belonging to runs of at least num consecutive points
+     * above threshold.
+     */
+    private static boolean[] continuousPtsAboveThresholdIdx(final double[] y,
+            final double threshold, final int num) {
+
+        final boolean[] flags = new boolean[y.length];
+        int count = 0;
+        for (int i = 0; i <= y.length; i++) {
+            if (i < y.length && y[i] > threshold) {
+                count++;
+            } else {
+                if (count >= num)
+                    Arrays.fill(flags, i - count, i, true);
+                count = 0;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Local baseline and noise estimation (XCMS' getLocalNoiseEstimate).
+     * 
+     * @return { baseline, standard deviation of the noise }
+     */
+    private static double[] getLocalNoiseEstimate(final double[] d,
+            final int dRangeMin, final int dRangeMax, final int noiseRange,
+            final int numScans, final double threshold, final int num) {
+
+        if (d.length < numScans) {
+
+            // Region outside the detected ROI (wide).
+            final double[] n1 = new double[d.length
+                    - (dRangeMax - dRangeMin + 1)];
+            int k = 0;
+            for (int i = 0; i < d.length; i++)
+                if (i < dRangeMin || i > dRangeMax)
+                    n1[k++] = d[i];
+            final double[] noise1 = meanAndSd(withoutPeaks(n1, threshold, num));
+
+            // Region outside the detected ROI (narrow).
+            final int from = Math.max(0, dRangeMin - noiseRange);
+            final int to = Math.min(d.length - 1, dRangeMax + noiseRange);
+            final double[] n2 = new double[(dRangeMin - from + 1)
+                    + (to - dRangeMax + 1)];
+            k = 0;
+            for (int i = from; i <= dRangeMin; i++)
+                n2[k++] = d[i];
+            for (int i = dRangeMax; i <= to; i++)
+                n2[k++] = d[i];
+            final double[] noise2 = meanAndSd(withoutPeaks(n2, threshold, num));
+
+            return new double[] { Math.min(noise1[0], noise2[0]),
+                    Math.min(noise1[1], noise2[1]) };
+
+        } else {
+
+            // Whole chromatogram: 5% - 95% of the positive values.
+            int positive = 0;
+            for (final double v : d)
+                if (v > 0.0)
+                    positive++;
+            final double[] values = new double[positive];
+            int k = 0;
+            for (final double v : d)
+                if (v > 0.0)
+                    values[k++] = v;
+            Arrays.sort(values);
+
+            final int from = (int) Math.rint(positive * 0.05 + 1.0) - 1;
+            final int to = (int) Math.rint(positive * 0.95);
+            if (from >= to || positive == 0)
+                return new double[] { Double.NaN, Double.NaN };
+            final double[] trimmed = Arrays.copyOfRange(values, from, to);
+            return new double[] { mean(trimmed, 0, trimmed.length),
+                    sd(trimmed) };
+        }
+    }
+
+    /**
+     * Drops the points belonging to peaks (continuous points above the first
+     * baseline).
+     */
+    private static double[] withoutPeaks(final double[] x,
+            final double threshold, final int num) {
+
+        final boolean[] flags = continuousPtsAboveThresholdIdx(x, threshold,
+                num);
+        int count = 0;
+        for (final boolean flag : flags)
+            if (!flag)
+                count++;
+        final double[] result = new double[count];
+        int k = 0;
+        for (int i = 0; i < x.length; i++)
+            if (!flags[i])
+                result[k++] = x[i];
+        return result;
+    }
+
+    /**
+     * Mean and standard deviation, or { 1, 1 } for less than two values.
+     */
+    private static double[] meanAndSd(final double[] x) {
+
+        if (x.length > 1)
+            return new double[] { mean(x, 0, x.length), sd(x) };
+        else
+            return new double[] { 1.0, 1.0 };
+    }
+
+    private static double mean(final double[] x, final int from, final int to) {
+
+        double sum = 0.0;
+        for (int i = from; i < to; i++)
+            sum += x[i];
+        return sum / (to - from);
+    }
+
+    private static double sd(final double[] x) {
+
+        final double mean = mean(x, 0, x.length);
+        double sum = 0.0;
+        for (final double v : x)
+            sum += (v - mean) * (v - mean);
+        return Math.sqrt(sum / (x.length - 1));
+    }
+
+    /**
+     * Continuous wavelet transform with the Mexican hat wavelet (xcms'
+     * MSW.cwt). The signal is extended to a power of two by reflection and
+     * circularly cross-correlated with the wavelet at each scale. Scales
+     * whose wavelet is longer than the extended signal are not computed.
+     * 
+     * @return the coefficients, as double[scale index][point index].
+     */
+    static double[][] cwt(final double[] signal, final int[] scales) {
+
+        final int oldLength = signal.length;
+        int length = 1;
+        while (length < oldLength)
+            length <<= 1;
+
+        // Extend by reflection (to the right).
+        final double[] extended = Arrays.copyOf(signal, length);
+        for (int i = oldLength; i < length; i++)
+            extended[i] = signal[2 * oldLength - 1 - i];
+
+        final double[] signalRe = extended;
+        final double[] signalIm = new double[length];
+        fft(signalRe, signalIm, false);
+
+        final List<double[]> coefficients = new ArrayList<double[]>();
+        for (final int scale : scales) {
+
+            // Sampled wavelet.
+            final int waveLength = Math
+                    .max(2, (int) Math.floor(scale * PSI_XMAX) + 1);
+            if (waveLength > length)
+                break;
+            final int[] j = new int[waveLength];
+            double waveMean = 0.0;
+            for (int t = 0; t < waveLength; t++) {
+                j[t] = scale * PSI_XMAX < 1.0 ? 0 : (int) Math.floor(t
+                        / (scale * PSI_DX));
+                waveMean += PSI[j[t]];
+            }
+            waveMean /= waveLength;
+
+            final double[] waveRe = new double[length];
+            final double[] waveIm = new double[length];
+            for (int t = 0; t < waveLength; t++)
+                waveRe[t] = PSI[j[waveLength - 1 - t]] - waveMean;
+            fft(waveRe, waveIm, false);
+
+            // Circular cross-correlation: signal * conj(wavelet).
+            for (int i = 0; i < length; i++) {
+                final double re = signalRe[i] * waveRe[i] + signalIm[i]
+                        * waveIm[i];
+                final double im = signalIm[i] * waveRe[i] - signalRe[i]
+                        * waveIm[i];
+                waveRe[i] = re;
+                waveIm[i] = im;
+            }
+            fft(waveRe, waveIm, true);
+
+            // Shift the position with half wavelet width.
+            final int shift = waveLength / 2;
+            final double factor = 1.0 / Math.sqrt(scale) / length;
+            final double[] coefs = new double[oldLength];
+            for (int t = 0; t < oldLength; t++)
+                coefs[t] = factor * waveRe[(t - shift + length) % length];
+            coefficients.add(coefs);
+        }
+
+        return coefficients.toArray(new double[coefficients.size()][]);
+    }
+
+    /**
+     * In-place radix-2 fast Fourier transform (unnormalized in both
+     * directions). The length must be a power of two.
+     */
+    private static void fft(final double[] re, final double[] im,
+            final boolean inverse) {
+
+        final int n = re.length;
+
+        // Bit reversal permutation.
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1)
+                j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
+        }
+
+        for (int len = 2; len <= n; len <<= 1) {
+            final double angle = 2.0 * Math.PI / len * (inverse ? 1.0 : -1.0);
+            final int half = len / 2;
+            for (int k = 0; k < half; k++) {
+                final double wRe = Math.cos(angle * k);
+                final double wIm = Math.sin(angle * k);
+                for (int i = k; i < n; i += len) {
+                    final int j = i + half;
+                    final double tRe = re[j] * wRe - im[j] * wIm;
+                    final double tIm = re[j] * wIm + im[j] * wRe;
+                    re[j] = re[i] - tRe;
+                    im[j] = im[i] - tIm;
+                    re[i] += tRe;
+                    im[i] += tIm;
+                }
+            }
+        }
+    }
+
+    /**
+     * Local maxima of the coefficients at each scale, ignoring negative
+     * coefficients (MSW.getLocalMaximumCWT).
+     */
+    private static boolean[][] getLocalMaximumCWT(final double[][] wCoefs,
+            final int[] scales) {
+
+        final boolean[][] localMax = new boolean[wCoefs.length][];
+        for (int i = 0; i < wCoefs.length; i++) {
+            localMax[i] = localMaximum(wCoefs[i],
+                    Math.max(2 * scales[i] + 1, MIN_WINDOW_SIZE));
+            for (int j = 0; j < wCoefs[i].length; j++)
+                if (wCoefs[i][j] < 0.0)
+                    localMax[i][j] = false;
+        }
+        return localMax;
+    }
+
+    /**
+     * Local maxima within windows of the given size (MSW.localMaximum).
+     */
+    static boolean[] localMaximum(final double[] x, final int winSize) {
+
+        final int len = x.length;
+        final boolean[] localMax = new boolean[len];
+
+        // Maximum of each window, the windows being shifted by half their
+        // size in the second pass.
+        for (final int shift : new int[] { 0, winSize / 2 }) {
+            final int numWindows = (len + shift + winSize - 1) / winSize;
+            for (int w = 0; w < numWindows; w++) {
+                int maxIndex = 0;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < winSize; k++) {
+                    final double v = paddedValue(x, w * winSize + k - shift);
+                    if (v > max) {
+                        max = v;
+                        maxIndex = k;
+                    }
+                }
+                if (max > paddedValue(x, w * winSize - shift)
+                        && max > paddedValue(x, w * winSize + winSize - 1
+                                - shift))
+                    localMax[w * winSize + maxIndex - shift] = true;
+            }
+        }
+
+        // Keep only the highest of maxima closer than the window size.
+        final List<Integer> maxima = new ArrayList<Integer>();
+        for (int i = 0; i < len; i++)
+            if (localMax[i])
+                maxima.add(i);
+        final List<Integer> cleared = new ArrayList<Integer>();
+        for (int k = 0; k + 1 < maxima.size(); k++) {
+            final int i1 = maxima.get(k), i2 = maxima.get(k + 1);
+            if (i2 - i1 < winSize)
+                cleared.add(x[i1] - x[i2] <= 0.0 ? i1 : i2);
+        }
+        for (final int i : cleared)
+            localMax[i] = false;
+
+        return localMax;
+    }
+
+    private static double paddedValue(final double[] x, final int index) {
+        return x[Math.max(0, Math.min(x.length - 1, index))];
+    }
+
+    /**
+     * Identify the ridge lines (MSW.getRidge), from the largest scale to the
+     * smallest one. A ridge line is returned as the positions of its local
+     * maxima from the smallest scale on.
+     */
+    private static List<int[]> getRidges(final boolean[][] localMax,
+            final int[] scales) {
+
+        final int numScales = localMax.length;
+        final int numPoints = localMax[0].length;
+
+        final List<Ridge> ridges = new ArrayList<Ridge>();
+        final List<Ridge> orphans = new ArrayList<Ridge>();
+
+        List<Integer> maxIndCurr = maxima(localMax[numScales - 1]);
+        for (final int pos : maxIndCurr)
+            ridges.add(new Ridge(String.valueOf(pos), pos));
+
+        final int firstColumn = numScales > 1 ? numScales - 2 : 0;
+        for (int col = firstColumn; col >= 0; col--) {
+
+            final int scale = scales[col];
+
+            if (maxIndCurr.isEmpty()) {
+                maxIndCurr = maxima(localMax[col]);
+                continue;
+            }
+
+            final int winSize = Math.max(scale / 2, MIN_WINDOW_SIZE);
+
+            final List<Integer> selPeaks = new ArrayList<Integer>();
+            final Set<String> removed = new LinkedHashSet<String>();
+            for (final int ind : maxIndCurr) {
+
+                final String name = String.valueOf(ind);
+                Ridge ridge = find(ridges, name);
+
+                final int start = Math.max(0, ind - winSize);
+                final int end = Math.min(numPoints - 1, ind + winSize);
+                int indCurr = -1;
+                for (int i = start; i <= end; i++) {
+                    if (localMax[col][i]
+                            && (indCurr < 0 || Math.abs(i - ind) < Math
+                                    .abs(indCurr - ind)))
+                        indCurr = i;
+                }
+
+                final int status;
+                if (indCurr < 0) {
+                    final int oldStatus = ridge == null ? RIDGE_GAP_THRESHOLD + 1
+                            : ridge.status;
+                    if (oldStatus > RIDGE_GAP_THRESHOLD && scale >= 2) {
+                        final Ridge orphan = new Ridge((col + 1 + oldStatus + 1)
+                                + "_" + ind);
+                        if (ridge != null)
+                            orphan.path.addAll(ridge.path.subList(0,
+                                    ridge.path.size() - oldStatus));
+                        orphans.add(orphan);
+                        removed.add(name);
+                        continue;
+                    }
+                    indCurr = ind;
+                    status = oldStatus + 1;
+                } else {
+                    status = 0;
+                }
+
+                if (ridge == null) {
+                    ridge = new Ridge(name);
+                    ridges.add(ridge);
+                }
+                ridge.status = status;
+                ridge.path.add(indCurr);
+                selPeaks.add(indCurr);
+            }
+
+            // Remove the disconnected lines.
+            for (int i = ridges.size() - 1; i >= 0; i--)
+                if (removed.contains(ridges.get(i).name))
+                    ridges.remove(i);
+
+            // Check for duplicated selected peaks and only keep the one with
+            // the longest path. As in MassSpecWavelet, the line recorded as
+            // orphan is picked by its index among the duplicates.
+            final Set<Integer> duplicates = new LinkedHashSet<Integer>();
+            for (int i = 0; i < selPeaks.size(); i++)
+                if (selPeaks.subList(0, i).contains(selPeaks.get(i)))
+                    duplicates.add(selPeaks.get(i));
+            if (!duplicates.isEmpty()) {
+                final Set<Integer> removeInd = new LinkedHashSet<Integer>();
+                for (final int dup : duplicates) {
+                    final List<Integer> selInd = new ArrayList<Integer>();
+                    for (int i = 0; i < selPeaks.size(); i++)
+                        if (selPeaks.get(i) == dup)
+                            selInd.add(i);
+                    int longest = 0;
+                    for (int i = 1; i < selInd.size(); i++)
+                        if (ridges.get(selInd.get(i)).path.size() > ridges
+                                .get(selInd.get(longest)).path.size())
+                            longest = i;
+                    for (int i = 0; i < selInd.size(); i++)
+                        if (i != longest)
+                            removeInd.add(selInd.get(i));
+                    final Ridge orphan = new Ridge((col + 1) + "_"
+                            + selPeaks.get(longest));
+                    orphan.path.addAll(ridges.get(longest).path);
+                    orphans.add(orphan);
+                }
+                final List<Integer> toRemove = new ArrayList<Integer>(
+                        removeInd);
+                Collections.sort(toRemove, Collections.reverseOrder());
+                for (final int i : toRemove) {
+                    selPeaks.remove(i);
+                    ridges.remove(i);
+                }
+            }
+
+            // Rename the lines after the selected peaks.
+            for (int i = 0; i < ridges.size(); i++)
+                ridges.get(i).name = String.valueOf(selPeaks.get(i));
+
+            // Add the unselected peaks at this level.
+            maxIndCurr = new ArrayList<Integer>(selPeaks);
+            if (scale >= 2) {
+                for (final int pos : maxima(localMax[col])) {
+                    if (!selPeaks.contains(pos)) {
+                        ridges.add(new Ridge(String.valueOf(pos), pos));
+                        maxIndCurr.add(pos);
+                    }
+                }
+            }
+        }
+
+        // Combine ridge lines and orphans, from the smallest scale on, and
+        // remove duplicated names.
+        final List<int[]> result = new ArrayList<int[]>();
+        final Set<String> names = new LinkedHashSet<String>();
+        for (final Ridge ridge : ridges)
+            ridge.name = "1_" + ridge.name;
+        final List<Ridge> all = new ArrayList<Ridge>(ridges);
+        all.addAll(orphans);
+        for (final Ridge ridge : all) {
+            if (!names.add(ridge.name))
+                continue;
+            final int[] path = new int[ridge.path.size()];
+            for (int i = 0; i < path.length; i++)
+                path[i] = ridge.path.get(path.length - 1 - i);
+            result.add(path);
+        }
+        return result;
+    }
+
+    private static List<Integer> maxima(final boolean[] localMax) {
+        final List<Integer> maxima = new ArrayList<Integer>();
+        for (int i = 0; i < localMax.length; i++)
+            if (localMax[i])
+                maxima.add(i);
+        return maxima;
+    }
+
+    private static Ridge find(final List<Ridge> ridges, final String name) {
+        for (final Ridge ridge : ridges)
+            if (ridge.name.equals(name))
+                return ridge;
+        return null;
+    }
+
+    /**
+     * Descend from istart to the closest minima on both sides (XCMS'
+     * descendMin).
+     */
+    static int[] descendMin(final double[] y, final int istart) {
+
+        int left = istart;
+        while (left > 0 && y[left - 1] < y[left])
+            left--;
+        int right = istart;
+        while (right < y.length - 1 && y[right + 1] < y[right])
+            right++;
+        return new int[] { left, right };
+    }
+
+    /**
+     * Descend from [left, right] while intensities decrease, tolerating a
+     * few outliers (XCMS' descendMinTol).
+     */
+    static int[] descendMinTol(final double[] d, final int left,
+            final int right, final int maxDescOutlier) {
+
+        int l = left, outliers = 0, outlierPos = 0;
+        while (l > 0 && d[l] > 0.0 && outliers <= maxDescOutlier) {
+            final int vpos = outliers > 0 ? outlierPos : l;
+            if (d[l - 1] > d[vpos])
+                outliers++;
+            else
+                outliers = 0;
+            if (outliers == 1)
+                outlierPos = l;
+            l--;
+        }
+        if (outliers > 0)
+            l += outliers;
+
+        int r = right;
+        outliers = 0;
+        while (r < d.length - 1 && d[r] > 0.0 && outliers <= maxDescOutlier) {
+            final int vpos = outliers > 0 ? outlierPos : r;
+            if (d[r + 1] > d[vpos])
+                outliers++;
+            else
+                outliers = 0;
+            if (outliers == 1)
+                outlierPos = r;
+            r++;
+        }
+        if (outliers > 0)
+            r -= outliers;
+
+        return new int[] { l, r };
+    }
+
+    /**
+     * Ridge line being followed through the scales.
+     */
+    private static final class Ridge {
+
+        private String name;
+        private final List<Integer> path = new ArrayList<Integer>();
+        private int status;
+
+        private Ridge(final String name) {
+            this.name = name;
+        }
+
+        private Ridge(final String name, final int position) {
+            this(name);
+            path.add(position);
+        }
+    }
+
+    /**
+     * Detected peak (scan indexes) and its area.
+     */
+    private static final class Peak {
+
+        private final int left, right;
+        private final double area;
+
+        private Peak(final int left, final int right, final double area) {
+            this.left = left;
+            this.right = right;
+            this.area = area;
+        }
+    }
+}
@@ -40,7 +40,6 @@ import net.sf.mzmine.datamodel.Feature;
 import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.PeakResolver;
 import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.ResolvedPeak;
-import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.PeakIntegrationMethod;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.util.R.RSessionWrapper;
 import net.sf.mzmine.util.R.RSessionWrapperException;
@@ -48,7 +47,8 @@ import net.sf.mzmine.util.R.RSessionWrapperException;
 import com.google.common.collect.Range;
 
 /**
- * Use XCMS findPeaks.centWave to identify peaks.
+ * Use XCMS findPeaks.centWave to identify peaks. CentWaveJavaDetector runs a
+ * Java port of the same algorithm instead.
  */
 public class CentWaveDetector implements PeakResolver {
 
@@ -94,11 +94,16 @@ public class CentWaveDetector implements PeakResolver {
         return new String[] { XCMS_VERSION };
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     @Override
     public Feature[] resolvePeaks(final Feature chromatogram,
-            final ParameterSet parameters,
-            RSessionWrapper rSession) throws RSessionWrapperException {
-        
+            final ParameterSet parameters, RSessionWrapper rSession)
+            throws RSessionWrapperException {
+
         int scanNumbers[] = chromatogram.getScanNumbers();
         final int scanCount = scanNumbers.length;
         double retentionTimes[] = new double[scanCount];
@@ -113,61 +118,49 @@ public class CentWaveDetector implements PeakResolver {
             else
                 intensities[i] = 0.0;
         }
-        
-        // Call findPeaks.centWave.
-        double[][] peakMatrix = null;
-
-        peakMatrix = centWave(rSession, retentionTimes, intensities,
-                chromatogram.getMZ(), parameters.getParameter(SN_THRESHOLD)
-                        .getValue(), parameters.getParameter(PEAK_SCALES)
-                        .getValue(), parameters
-                        .getParameter(INTEGRATION_METHOD).getValue());
-
-        final List<ResolvedPeak> resolvedPeaks;
-        if (peakMatrix == null) {
-
-            resolvedPeaks = new ArrayList<ResolvedPeak>(0);
 
-        } else {
-
-            LOG.finest("Processing peak matrix...");
+        // Call centWave.
+        LOG.finest("Detecting peaks.");
+        final List<int[]> peakRanges = findPeakRanges(rSession,
+                retentionTimes, intensities, chromatogram.getMZ(), parameters);
 
-            final Range<Double> peakDuration = parameters.getParameter(
-                    PEAK_DURATION).getValue();
+        final Range<Double> peakDuration = parameters.getParameter(
+                PEAK_DURATION).getValue();
 
-            // Process peak matrix.
-            resolvedPeaks = new ArrayList<ResolvedPeak>(peakMatrix.length);
+        // Process peak ranges.
+        final List<ResolvedPeak> resolvedPeaks = new ArrayList<ResolvedPeak>(
+                peakRanges.size());
 
-            for (final double[] peakRow : peakMatrix) {
+        for (final int[] peakRange : peakRanges) {
 
-                // Get peak start and end.
-                final int peakLeft = findRTIndex(retentionTimes, peakRow[4]);
-                final int peakRight = findRTIndex(retentionTimes, peakRow[5]);
+            // Get peak start and end.
+            final int peakLeft = peakRange[0];
+            final int peakRight = peakRange[1];
 
-                // Partition into sections bounded by null data points, creating
-                // a peak for each.
-                for (int start = peakLeft; start < peakRight; start++) {
+            // Partition into sections bounded by null data points, creating
+            // a peak for each.
+            for (int start = peakLeft; start < peakRight; start++) {
 
-                    if (chromatogram.getDataPoint(scanNumbers[start]) != null) {
+                if (chromatogram.getDataPoint(scanNumbers[start]) != null) {
 
-                        int end = start;
-                        
-                        while (end < peakRight
-                                && chromatogram
-                                        .getDataPoint(scanNumbers[end + 1]) != null) {
+                    int end = start;
 
-                            end++;
-                        }
+                    while (end < peakRight
+                            && chromatogram
+                                    .getDataPoint(scanNumbers[end + 1]) != null) {
 
-                        if ((end > start) && (peakDuration.contains(retentionTimes[end]
-                                - retentionTimes[start]))) {
+                        end++;
+                    }
 
-                            resolvedPeaks.add(new ResolvedPeak(chromatogram,
-                                    start, end));
-                        }
+                    if ((end > start)
+                            && (peakDuration.contains(retentionTimes[end]
+                                    - retentionTimes[start]))) {
 
-                        start = end;
+                        resolvedPeaks.add(new ResolvedPeak(chromatogram,
+                                start, end));
                     }
+
+                    start = end;
                 }
             }
         }
@@ -175,98 +168,121 @@ public class CentWaveDetector implements PeakResolver {
         return resolvedPeaks.toArray(new ResolvedPeak[resolvedPeaks.size()]);
     }
 
-    private static int findRTIndex(final double[] rtMinutes, final double rtSec) {
-
-        final int i = Arrays
-                .binarySearch(rtMinutes, rtSec / SECONDS_PER_MINUTE);
-        return i >= 0 ? i : -i - 2;
-    }
-
     /**
-     * Do peak picking using xcms::findPeaks.centWave.
+     * Detects the peaks of a chromatogram using xcms::findPeaks.centWave.
+     * Each section of the chromatogram with non-zero intensities is a region
+     * of interest. All data is transferred as native R vectors and the peaks
+     * are found by a single evaluation.
      * 
-     * @param scanTime
-     *            retention times (for each scan).
-     * @param intensity
-     *            intensity values (for each scan).
+     * @param retentionTimes
+     *            retention times (minutes) of the chromatogram's scans.
+     * @param intensities
+     *            intensities of the chromatogram (0 if no data point).
      * @param mz
-     *            fixed m/z value for EIC.
-     * @param snrThreshold
-     *            signal:noise ratio threshold.
-     * @param peakWidth
-     *            peak width range.
-     * @param integrationMethod
-     *            integration method.
-     * @return a matrix with a row for each detected peak.
+     *            m/z of the chromatogram.
+     * @return the detected peaks, as { first scan index, last scan index }
+     *         pairs.
      * @throws RSessionWrapperException
      */
-    private static double[][] centWave(RSessionWrapper rSession,
-            final double[] scanTime, final double[] intensity, final double mz,
-            final double snrThreshold, final Range<Double> peakWidth,
-            final PeakIntegrationMethod integrationMethod)
+    protected List<int[]> findPeakRanges(final RSessionWrapper rSession,
+            final double[] retentionTimes, final double[] intensities,
+            final double mz, final ParameterSet parameters)
             throws RSessionWrapperException {
 
-        LOG.finest("Detecting peaks.");
-
-        final double[][] peaks;
+        final List<int[]> peakRanges = new ArrayList<int[]>();
 
-        // Set vectors.
-        rSession.assign("scantime", scanTime);
-        rSession.assign("intensity", intensity);
-
-        // Initialize.
-        rSession.eval("mz <- " + mz);
-        rSession.eval("numPoints <- length(intensity)");
-
-        // Construct xcmsRaw object
-        rSession.eval("xRaw <- new(\"xcmsRaw\")");
-        rSession.eval("xRaw@tic <- intensity");
-        rSession.eval("xRaw@scantime <- scantime * " + SECONDS_PER_MINUTE);
-        rSession.eval("xRaw@scanindex <- 1:numPoints");
-        rSession.eval("xRaw@env$mz <- rep(mz, numPoints)");
-        rSession.eval("xRaw@env$intensity <- intensity");
-
-        // Construct ROIs.
-        rSession.eval("ROIs <- list()");
-        int roi = 1;
-        for (int start = 0; start < intensity.length; start++) {
+        // Find the ROIs (1-based first and last scans).
+        int roiStarts[] = new int[intensities.length];
+        int roiEnds[] = new int[intensities.length];
+        int numOfROIs = 0;
+        for (int start = 0; start < intensities.length; start++) {
 
             // Found non-zero section.
-            if (intensity[start] > 0.0) {
+            if (intensities[start] > 0.0) {
 
                 // Look for end.
                 int end = start + 1;
-                while (end < intensity.length && intensity[end] > 0.0) {
+                while (end < intensities.length && intensities[end] > 0.0) {
 
                     end++;
                 }
 
-                // Add ROI to list.
-                rSession.eval("ROIs[[" + roi + "]] <- list('scmin'="
-                        + (start + 1) + ", 'scmax'=" + end
-                        + ", 'mzmin'=mz, 'mzmax'=mz)");
-
-                // Next ROI.
+                roiStarts[numOfROIs] = start + 1;
+                roiEnds[numOfROIs] = end;
+                numOfROIs++;
                 start = end;
-                roi++;
-
             }
         }
 
-        // Do peak picking.
-        final Object centWave = roi <= 1 ? null : (double[][]) rSession
-                .collect(
-                        "findPeaks.centWave(xRaw, ppm=0, mzdiff=0, verbose=TRUE"
-                                + ", peakwidth=c(" + peakWidth.lowerEndpoint()
-                                * SECONDS_PER_MINUTE + ", "
-                                + peakWidth.upperEndpoint()
-                                * SECONDS_PER_MINUTE + ')' + ", snthresh="
-                                + snrThreshold + ", integrate="
-                                + integrationMethod.getIndex()
-                                + ", ROI.list=ROIs)", false);
-
-        peaks = (centWave == null) ? null : (double[][]) centWave;
-
-        return peaks;
+        if (numOfROIs == 0)
+            return peakRanges;
+
+        final Range<Double> peakWidth = parameters.getParameter(PEAK_SCALES)
+                .getValue();
+
+        // Set vectors.
+        rSession.assignDoubleArray("scantime", retentionTimes);
+        rSession.assignDoubleArray("intensity", intensities);
+        rSession.assignDoubleArray("mz", new double[] { mz });
+        rSession.assignIntArray("scmin", Arrays.copyOf(roiStarts, numOfROIs));
+        rSession.assignIntArray("scmax", Arrays.copyOf(roiEnds, numOfROIs));
+
+        // Construct the xcmsRaw object, each scan holding a single data
+        // point. The scan index is the (0-based) position of the first data
+        // point of each scan. Then do peak picking.
+        rSession.eval("numPoints <- length(intensity)\n"
+                + "xRaw <- new(\"xcmsRaw\")\n"
+                + "xRaw@tic <- intensity\n"
+                + "xRaw@scantime <- scantime * "
+                + SECONDS_PER_MINUTE
+                + "\n"
+                + "xRaw@scanindex <- 0:(numPoints - 1)\n"
+                + "xRaw@env$mz <- rep(mz, numPoints)\n"
+                + "xRaw@env$intensity <- intensity\n"
+                + "ROIs <- mapply(function(scmin, scmax) list(scmin=scmin, "
+                + "scmax=scmax, mzmin=mz, mzmax=mz), scmin, scmax, "
+                + "SIMPLIFY=FALSE)\n"
+                + "peaks <- findPeaks.centWave(xRaw, ppm=0, mzdiff=0, "
+                + "verbose=TRUE, peakwidth=c("
+                + peakWidth.lowerEndpoint() * SECONDS_PER_MINUTE + ", "
+                + peakWidth.upperEndpoint() * SECONDS_PER_MINUTE
+                + "), snthresh="
+                + parameters.getParameter(SN_THRESHOLD).getValue()
+                + ", integrate="
+                + parameters.getParameter(INTEGRATION_METHOD).getValue()
+                        .getIndex() + ", ROI.list=ROIs)");
+
+        final double[][] peaks = rSession
+                .collectDoubleMatrix("peaks[, c(\"rtmin\", \"rtmax\"), drop=FALSE]");
+        if (peaks == null)
+            return peakRanges;
+
+        for (final double[] peak : peaks) {
+            peakRanges.add(new int[] { findRTIndex(retentionTimes, peak[0]),
+                    findRTIndex(retentionTimes, peak[1]) });
+        }
+
+        return peakRanges;
+    }
+
+    /**
+     * Finds the scan closest to given retention time. XCMS reports the
+     * boundaries in seconds, converted back to minutes they may differ from
+     * the scan's retention time in the last digits, on either side.
+     */
+    private static int findRTIndex(final double[] rtMinutes, final double rtSec) {
+
+        final double rt = rtSec / SECONDS_PER_MINUTE;
+        final int i = Arrays.binarySearch(rtMinutes, rt);
+        if (i >= 0)
+            return i;
+
+        final int next = -i - 1;
+        if (next == 0)
+            return 0;
+        if (next == rtMinutes.length)
+            return next - 1;
+        return rt - rtMinutes[next - 1] <= rtMinutes[next] - rt ? next - 1
+                : next;
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave;
+
+import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.INTEGRATION_METHOD;
+import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.PEAK_SCALES;
+import static net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.SN_THRESHOLD;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.util.R.RSessionWrapper;
+
+/**
+ * Use the Java port of the centWave algorithm (see CentWave) to identify
+ * peaks, without R. Until the port is validated against XCMS, CentWaveDetector
+ * remains the reference.
+ */
+public class CentWaveJavaDetector extends CentWaveDetector {
+
+    // Name.
+    private static final String NAME = "Wavelets (CentWave, Java)";
+
+    @Nonnull
+    @Override
+    public String getName() {
+
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public Class<? extends ParameterSet> getParameterSetClass() {
+
+        return CentWaveJavaDetectorParameters.class;
+    }
+
+    @Override
+    public boolean getRequiresR() {
+        return false;
+    }
+
+    @Override
+    public String[] getRequiredRPackages() {
+        return null;
+    }
+
+    @Override
+    public String[] getRequiredRPackagesVersions() {
+        return null;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Do peak picking using CentWave.findPeaks.
+     */
+    @Override
+    protected List<int[]> findPeakRanges(final RSessionWrapper rSession,
+            final double[] retentionTimes, final double[] intensities,
+            final double mz, final ParameterSet parameters) {
+
+        return CentWave.findPeaks(retentionTimes, intensities, parameters
+                .getParameter(PEAK_SCALES).getValue(),
+                parameters.getParameter(SN_THRESHOLD).getValue(), parameters
+                        .getParameter(INTEGRATION_METHOD).getValue());
+    }
+}
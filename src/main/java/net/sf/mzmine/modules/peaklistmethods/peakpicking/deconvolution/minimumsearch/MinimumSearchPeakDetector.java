@@ -236,4 +236,9 @@ public class MinimumSearchPeakDetector implements PeakResolver {
         return null;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
@@ -226,4 +226,9 @@ public class NoiseAmplitudePeakDetector implements PeakResolver {
     public String[] getRequiredRPackagesVersions() {
         return null;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
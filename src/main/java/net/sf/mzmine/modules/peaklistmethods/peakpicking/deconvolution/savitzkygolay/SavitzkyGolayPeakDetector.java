@@ -350,4 +350,9 @@ public class SavitzkyGolayPeakDetector implements PeakResolver {
     public String[] getRequiredRPackagesVersions() {
         return null;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.projectmethods.projectload;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Hashtable;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature.FeatureStatus;
+import net.sf.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleFeature;
+import net.sf.mzmine.datamodel.impl.SimpleIsotopePattern;
+import net.sf.mzmine.datamodel.impl.SimplePeakIdentity;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
+import net.sf.mzmine.datamodel.impl.SimplePeakListAppliedMethod;
+import net.sf.mzmine.datamodel.impl.SimplePeakListRow;
+import net.sf.mzmine.modules.projectmethods.projectsave.PeakListBinarySaveHandler;
+
+import com.google.common.collect.Range;
+
+/**
+ * Reads peak lists saved by PeakListBinarySaveHandler. The binary format has
+ * its own version number, independent of the MZmine version which saved the
+ * project.
+ */
+public class PeakListBinaryOpenHandler implements PeakListOpenHandler {
+
+    private Hashtable<String, RawDataFile> dataFilesIDMap;
+
+    private DataInputStream inputStream;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private FeatureStatus states[];
+
+    private int parsedRows, totalRows;
+
+    private volatile boolean canceled = false;
+
+    public PeakListBinaryOpenHandler(
+            Hashtable<String, RawDataFile> dataFilesIDMap) {
+        this.dataFilesIDMap = dataFilesIDMap;
+    }
+
+    /**
+     * Load the peak list from the zip file reading the binary peak list file
+     */
+    public PeakList readPeakList(InputStream peakListStream)
+            throws IOException {
+
+        totalRows = 0;
+        parsedRows = 0;
+
+        inputStream = new DataInputStream(new BufferedInputStream(
+                peakListStream, 1 << 16));
+
+        if (inputStream.readInt() != PeakListBinarySaveHandler.MAGIC)
+            throw new IOException("Invalid binary peak list");
+        int formatVersion = inputStream.readInt();
+        if (formatVersion > PeakListBinarySaveHandler.FORMAT_VERSION) {
+            throw new IOException("Binary peak list format version "
+                    + formatVersion
+                    + " was saved with a newer version of MZmine");
+        }
+
+        // Name and date
+        String peakListName = readString();
+        String dateCreated = readString();
+
+        // Applied methods
+        final int numOfMethods = inputStream.readInt();
+        String methodNames[] = new String[numOfMethods];
+        String methodParameters[] = new String[numOfMethods];
+        for (int i = 0; i < numOfMethods; i++) {
+            methodNames[i] = readString();
+            methodParameters[i] = readString();
+        }
+
+        // Raw data files
+        RawDataFile dataFiles[] = new RawDataFile[inputStream.readInt()];
+        for (int i = 0; i < dataFiles.length; i++)
+            dataFiles[i] = getDataFile(inputStream.readInt());
+
+        SimplePeakList peakList = new SimplePeakList(peakListName, dataFiles);
+        for (int i = 0; i < numOfMethods; i++) {
+            peakList.addDescriptionOfAppliedTask(new SimplePeakListAppliedMethod(
+                    methodNames[i], methodParameters[i]));
+        }
+        if (dateCreated != null)
+            peakList.setDateCreated(dateCreated);
+
+        // Table of peak states
+        states = new FeatureStatus[inputStream.readInt()];
+        for (int i = 0; i < states.length; i++)
+            states[i] = FeatureStatus.valueOf(readString());
+
+        // Rows
+        totalRows = inputStream.readInt();
+        while (parsedRows < totalRows) {
+            if (canceled)
+                throw new IOException("Loading canceled");
+            readBlock(peakList);
+        }
+
+        return peakList;
+
+    }
+
+    /**
+     * Reads a block of rows written by PeakListBinarySaveHandler.writeBlock()
+     * and adds them to the peak list
+     */
+    private void readBlock(SimplePeakList peakList) throws IOException {
+
+        final int numOfRows = inputStream.readInt();
+
+        // Row columns
+        int rowIDs[] = readInts(numOfRows);
+        int peakCounts[] = readInts(numOfRows);
+        int identityCounts[] = readInts(numOfRows);
+        SimplePeakListRow rows[] = new SimplePeakListRow[numOfRows];
+        int numOfPeaks = 0;
+        for (int i = 0; i < numOfRows; i++) {
+            rows[i] = new SimplePeakListRow(rowIDs[i]);
+            rows[i].setComment(readString());
+            numOfPeaks += peakCounts[i];
+        }
+
+        // Identities
+        for (int i = 0; i < numOfRows; i++) {
+            for (int j = 0; j < identityCounts[i]; j++) {
+                boolean preferred = inputStream.readBoolean();
+                final int numOfProperties = inputStream.readInt();
+                Hashtable<String, String> identityProperties = new Hashtable<String, String>();
+                for (int k = 0; k < numOfProperties; k++)
+                    identityProperties.put(readString(), readString());
+                rows[i].addPeakIdentity(new SimplePeakIdentity(
+                        identityProperties), preferred);
+            }
+        }
+
+        // Peak columns
+        int dataFileIDs[] = readInts(numOfPeaks);
+        double mzValues[] = readDoubles(numOfPeaks);
+        double rtValues[] = readDoubles(numOfPeaks);
+        double heights[] = readDoubles(numOfPeaks);
+        double areas[] = readDoubles(numOfPeaks);
+        byte peakStates[] = readBytes(numOfPeaks);
+        int charges[] = readInts(numOfPeaks);
+        int representativeScans[] = readInts(numOfPeaks);
+        int fragmentScans[] = readInts(numOfPeaks);
+        int dataPointCounts[] = readInts(numOfPeaks);
+        byte isotopePatternFlags[] = readBytes(numOfPeaks);
+
+        // Isotope patterns
+        SimpleIsotopePattern isotopePatterns[] = new SimpleIsotopePattern[numOfPeaks];
+        for (int i = 0; i < numOfPeaks; i++) {
+            if (isotopePatternFlags[i] == 0)
+                continue;
+            IsotopePatternStatus status = IsotopePatternStatus
+                    .valueOf(readString());
+            String description = readString();
+            final int numOfIsotopes = inputStream.readInt();
+            double isotopeMZValues[] = readDoubles(numOfIsotopes);
+            double isotopeIntensities[] = readDoubles(numOfIsotopes);
+            DataPoint isotopes[] = new DataPoint[numOfIsotopes];
+            for (int j = 0; j < numOfIsotopes; j++) {
+                isotopes[j] = new SimpleDataPoint(isotopeMZValues[j],
+                        isotopeIntensities[j]);
+            }
+            isotopePatterns[i] = new SimpleIsotopePattern(isotopes, status,
+                    description);
+        }
+
+        // Data point columns
+        int numOfDataPoints = 0;
+        for (int i = 0; i < numOfPeaks; i++)
+            numOfDataPoints += dataPointCounts[i];
+        int dataPointScans[] = readInts(numOfDataPoints);
+        float dataPointMZValues[] = readFloats(numOfDataPoints);
+        float dataPointIntensities[] = readFloats(numOfDataPoints);
+
+        // Create the peaks and add them to the rows
+        int peakIndex = 0, dataPointIndex = 0;
+        for (int i = 0; i < numOfRows; i++) {
+            for (int j = 0; j < peakCounts[i]; j++, peakIndex++) {
+
+                RawDataFile dataFile = getDataFile(dataFileIDs[peakIndex]);
+
+                final int numOfMZpeaks = dataPointCounts[peakIndex];
+                int scanNumbers[] = new int[numOfMZpeaks];
+                DataPoint mzPeaks[] = new DataPoint[numOfMZpeaks];
+                Range<Double> peakRTRange = null, peakMZRange = null, peakIntensityRange = null;
+
+                for (int k = 0; k < numOfMZpeaks; k++, dataPointIndex++) {
+
+                    scanNumbers[k] = dataPointScans[dataPointIndex];
+                    Scan sc = dataFile.getScan(scanNumbers[k]);
+                    if (sc == null) {
+                        throw new IOException("Error in project: scan #"
+                                + scanNumbers[k] + " not found in data file "
+                                + dataFile);
+                    }
+                    double retentionTime = sc.getRetentionTime();
+
+                    double mz = dataPointMZValues[dataPointIndex];
+                    double intensity = dataPointIntensities[dataPointIndex];
+
+                    if (peakIntensityRange == null) {
+                        peakIntensityRange = Range.singleton(intensity);
+                    } else {
+                        peakIntensityRange = peakIntensityRange.span(Range
+                                .singleton(intensity));
+                    }
+                    if (intensity > 0) {
+                        if (peakRTRange == null) {
+                            peakRTRange = Range.singleton(retentionTime);
+                        } else {
+                            peakRTRange = peakRTRange.span(Range
+                                    .singleton(retentionTime));
+                        }
+                    }
+
+                    if (mz > 0.0) {
+                        mzPeaks[k] = new SimpleDataPoint(mz, intensity);
+                        if (peakMZRange == null)
+                            peakMZRange = Range.singleton(mz);
+                        else
+                            peakMZRange = peakMZRange.span(Range.singleton(mz));
+                    }
+                }
+
+                if (peakStates[peakIndex] >= states.length)
+                    throw new IOException("Invalid peak status in project");
+
+                SimpleFeature peak = new SimpleFeature(dataFile,
+                        mzValues[peakIndex], rtValues[peakIndex],
+                        heights[peakIndex], areas[peakIndex], scanNumbers,
+                        mzPeaks, states[peakStates[peakIndex]],
+                        representativeScans[peakIndex],
+                        fragmentScans[peakIndex], peakRTRange, peakMZRange,
+                        peakIntensityRange);
+                peak.setCharge(charges[peakIndex]);
+                if (isotopePatterns[peakIndex] != null)
+                    peak.setIsotopePattern(isotopePatterns[peakIndex]);
+
+                rows[i].addPeak(dataFile, peak);
+            }
+        }
+
+        for (SimplePeakListRow row : rows) {
+            peakList.addRow(row);
+            parsedRows++;
+        }
+
+    }
+
+    private RawDataFile getDataFile(int id) throws IOException {
+        RawDataFile dataFile = dataFilesIDMap.get(String.valueOf(id));
+        if (dataFile == null) {
+            throw new IOException(
+                    "Cannot open peak list, because raw data file " + id
+                            + " is missing.");
+        }
+        return dataFile;
+    }
+
+    private String readString() throws IOException {
+        final int length = inputStream.readInt();
+        if (length < 0)
+            return null;
+        byte bytes[] = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(int count) throws IOException {
+        byte values[] = new byte[count];
+        inputStream.readFully(values);
+        return values;
+    }
+
+    private int[] readInts(int count) throws IOException {
+        int values[] = new int[count];
+        readBuffer(count * 4).asIntBuffer().get(values);
+        return values;
+    }
+
+    private float[] readFloats(int count) throws IOException {
+        float values[] = new float[count];
+        readBuffer(count * 4).asFloatBuffer().get(values);
+        return values;
+    }
+
+    private double[] readDoubles(int count) throws IOException {
+        double values[] = new double[count];
+        readBuffer(count * 8).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    private ByteBuffer readBuffer(int size) throws IOException {
+        if (buffer.capacity() < size)
+            buffer = ByteBuffer.allocate(size);
+        inputStream.readFully(buffer.array(), 0, size);
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * @return the progress of these functions loading the peak list from the
+     *         zip file.
+     */
+    public double getProgress() {
+        if (totalRows == 0)
+            return 0;
+        return (double) parsedRows / totalRows;
+    }
+
+    public void cancel() {
+        canceled = true;
+    }
+
+}
@@ -25,8 +25,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,6 +46,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import net.sf.mzmine.datamodel.PeakList;
 import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.peaklistmethods.qualityparameters.QualityParameters;
 import net.sf.mzmine.modules.projectmethods.projectload.version_2_0.PeakListOpenHandler_2_0;
@@ -51,37 +60,69 @@ import net.sf.mzmine.modules.projectmethods.projectload.version_2_5.UserParamete
 import net.sf.mzmine.modules.projectmethods.projectsave.ProjectSavingTask;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.project.ProjectManager;
+import net.sf.mzmine.project.impl.DataPointsCodec;
 import net.sf.mzmine.project.impl.MZmineProjectImpl;
 import net.sf.mzmine.project.impl.RawDataFileImpl;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 import net.sf.mzmine.util.ExceptionUtils;
 import net.sf.mzmine.util.GUIUtils;
 import net.sf.mzmine.util.StreamCopy;
+import net.sf.mzmine.util.ZipUtils;
 
 import org.xml.sax.SAXException;
 
-import com.google.common.io.CountingInputStream;
-
 public class ProjectOpeningTask extends AbstractTask {
 
+    private static final Pattern rawFilePattern = Pattern
+            .compile("Raw data file #([\\d]+) (.*)\\.xml$");
+    private static final Pattern scansFilePattern = Pattern
+            .compile("Raw data file #([\\d]+) (.*)\\.scans$");
+    // Peak lists are saved in binary format (.peaks), projects saved by older
+    // versions contain XML peak lists
+    private static final Pattern peakListPattern = Pattern
+            .compile("Peak list #([\\d]+) (.*)\\.(xml|peaks)$");
+
+    /**
+     * Format of the opened project, which determines the handlers used to
+     * read its entries
+     */
+    private enum ProjectFormat {
+        VERSION_2_0, VERSION_2_3, VERSION_2_5
+    }
+
+    // Newest project format (see ProjectSavingTask.FORMAT_VERSION_FILENAME)
+    // which this version can read
+    private static final int MAX_PROJECT_FORMAT = ProjectSavingTask.PROJECT_FORMAT_DATA_POINTS_CODECS;
+
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
     private File openFile;
+    private ZipFile zipFile;
     private MZmineProjectImpl newProject;
+    private ProjectFormat projectFormat;
 
-    private RawDataFileOpenHandler rawDataFileOpenHandler;
-    private PeakListOpenHandler peakListOpenHandler;
+    // Raw data files and peak lists are read by several threads at once, each
+    // with its own handler. We keep the active handlers to cancel them.
+    private final List<RawDataFileOpenHandler> rawDataFileOpenHandlers = new CopyOnWriteArrayList<>();
+    private final List<PeakListOpenHandler> peakListOpenHandlers = new CopyOnWriteArrayList<>();
+    private final List<StreamCopy> copyMachines = new CopyOnWriteArrayList<>();
     private UserParameterOpenHandler userParameterOpenHandler;
-    private StreamCopy copyMachine;
 
-    private CountingInputStream cis;
     private long totalBytes, finishedBytes;
     private String currentLoadedObjectName;
 
     // This hashtable maps stored IDs to raw data file objects
     private final Hashtable<String, RawDataFile> dataFilesIDMap = new Hashtable<>();
-    private final Hashtable<String, File> scanFilesIDMap = new Hashtable<>();
+    private final Hashtable<String, ZipEntry> scanEntriesIDMap = new Hashtable<>();
+
+    // Positions of the uncompressed entries within the project file
+    private Map<String, Long> storedEntryOffsets;
+
+    // Entries in the current format can be copied to the project file as
+    // they are, when the project is saved again
+    private boolean currentFormat = false;
 
     public ProjectOpeningTask(ParameterSet parameters) {
         this.openFile = parameters.getParameter(
@@ -101,20 +142,19 @@ public class ProjectOpeningTask extends AbstractTask {
     /**
      * @see net.sf.mzmine.taskcontrol.Task#getFinishedPercentage()
      */
-    public double getFinishedPercentage() {
+    public synchronized double getFinishedPercentage() {
 
         if (totalBytes == 0)
             return 0;
 
-        long totalReadBytes = this.finishedBytes;
-
-        // Add the current ZIP entry progress to totalReadBytes
-        synchronized (this) {
-            if (cis != null)
-                totalReadBytes += cis.getCount();
-        }
+        return (double) finishedBytes / totalBytes;
+    }
 
-        return (double) totalReadBytes / totalBytes;
+    /**
+     * Adds the uncompressed size of a loaded entry to finishedBytes
+     */
+    private synchronized void entryFinished(ZipEntry entry) {
+        finishedBytes += entry.getSize();
     }
 
     /**
@@ -152,97 +192,84 @@ public class ProjectOpeningTask extends AbstractTask {
             projectManager.setCurrentProject(newProject);
 
             // Open the ZIP file
-            ZipFile zipFile = new ZipFile(openFile);
-
-            // Get total uncompressed size
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                totalBytes += entry.getSize();
+            zipFile = new ZipFile(openFile);
+
+            // Scan data saved without compression can be read directly from
+            // the project file. If the positions cannot be determined, all
+            // scan data are extracted to temporary files instead.
+            try {
+                storedEntryOffsets = ZipUtils.getStoredEntryOffsets(openFile);
+            } catch (IOException e) {
+                logger.warning("Could not read the structure of project file "
+                        + openFile + ": "
+                        + ExceptionUtils.exceptionToString(e));
+                storedEntryOffsets = Collections.emptyMap();
             }
 
-            final Pattern rawFilePattern = Pattern
-                    .compile("Raw data file #([\\d]+) (.*)\\.xml$");
-            final Pattern scansFilePattern = Pattern
-                    .compile("Raw data file #([\\d]+) (.*)\\.scans$");
-            final Pattern peakListPattern = Pattern
-                    .compile("Peak list #([\\d]+) (.*)\\.xml$");
-
-            boolean versionInformationLoaded = false;
-
-            // Iterate over the entries and read them
-            entries = zipFile.entries();
+            // Sort the entries by their type and get total uncompressed size
+            ZipEntry versionEntry = null, configEntry = null, parametersEntry = null;
+            final List<ZipEntry> rawFileEntries = new ArrayList<>();
+            final List<ZipEntry> peakListEntries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
             while (entries.hasMoreElements()) {
-
-                if (isCanceled()) {
-                    zipFile.close();
-                    return;
-                }
-
                 ZipEntry entry = entries.nextElement();
                 String entryName = entry.getName();
-                cis = new CountingInputStream(zipFile.getInputStream(entry));
-
-                // Load version
-                if (entryName.equals(ProjectSavingTask.VERSION_FILENAME)) {
-                    loadVersion(cis);
-                    versionInformationLoaded = true;
-                }
+                totalBytes += entry.getSize();
 
-                // Load configuration
+                if (entryName.equals(ProjectSavingTask.VERSION_FILENAME)
+                        || entryName
+                                .equals(ProjectSavingTask.FORMAT_VERSION_FILENAME))
+                    versionEntry = entry;
                 if (entryName.equals(ProjectSavingTask.CONFIG_FILENAME))
-                    loadConfiguration(cis);
-
-                // Load user parameters
-                if (entryName.equals(ProjectSavingTask.PARAMETERS_FILENAME)) {
-                    loadUserParameters(cis);
-                }
-
-                // Load a raw data file
-                final Matcher rawFileMatcher = rawFilePattern
-                        .matcher(entryName);
-                if (rawFileMatcher.matches()) {
-                    final String fileID = rawFileMatcher.group(1);
-                    final String fileName = rawFileMatcher.group(2);
-                    loadRawDataFile(cis, fileID, fileName);
-                }
-
-                // Load the scan data of a raw data file
-                final Matcher scansFileMatcher = scansFilePattern
-                        .matcher(entryName);
-                if (scansFileMatcher.matches()) {
-                    final String fileID = scansFileMatcher.group(1);
-                    final String fileName = scansFileMatcher.group(2);
-                    loadScansFile(cis, fileID, fileName);
-                }
+                    configEntry = entry;
+                if (entryName.equals(ProjectSavingTask.PARAMETERS_FILENAME))
+                    parametersEntry = entry;
+                if (rawFilePattern.matcher(entryName).matches())
+                    rawFileEntries.add(entry);
+                if (peakListPattern.matcher(entryName).matches())
+                    peakListEntries.add(entry);
+
+                Matcher scansFileMatcher = scansFilePattern.matcher(entryName);
+                if (scansFileMatcher.matches())
+                    scanEntriesIDMap.put(scansFileMatcher.group(1), entry);
+            }
 
-                // Load a peak list
-                final Matcher peakListMatcher = peakListPattern
-                        .matcher(entryName);
-                if (peakListMatcher.matches()) {
-                    final String peakListName = peakListMatcher.group(2);
-                    loadPeakList(cis, peakListName);
-                }
+            if (versionEntry == null) {
+                throw new IOException(
+                        "This file is not valid MZmine 2 project. It does not contain version information.");
+            }
 
-                // Close the ZIP entry
-                cis.close();
+            // Load version
+            InputStream is = zipFile.getInputStream(versionEntry);
+            loadVersion(is);
+            is.close();
+            entryFinished(versionEntry);
+
+            // Load configuration
+            if (configEntry != null) {
+                is = zipFile.getInputStream(configEntry);
+                loadConfiguration(is);
+                is.close();
+                entryFinished(configEntry);
+            }
 
-                // Add the uncompressed entry size finishedBytes
-                synchronized (this) {
-                    finishedBytes += entry.getSize();
-                    cis = null;
-                }
+            // Load raw data files and peak lists
+            if (!loadItems(rawFileEntries, peakListEntries)) {
+                zipFile.close();
+                return;
+            }
 
+            // Load user parameters
+            if (parametersEntry != null) {
+                is = zipFile.getInputStream(parametersEntry);
+                loadUserParameters(is);
+                is.close();
+                entryFinished(parametersEntry);
             }
 
             // Finish and close the project ZIP file
             zipFile.close();
 
-            if (!versionInformationLoaded) {
-                throw new IOException(
-                        "This file is not valid MZmine 2 project. It does not contain version information.");
-            }
-
             // Final check for cancel
             if (isCanceled())
                 return;
@@ -275,20 +302,114 @@ public class ProjectOpeningTask extends AbstractTask {
 
         setStatus(TaskStatus.CANCELED);
 
-        if (rawDataFileOpenHandler != null)
-            rawDataFileOpenHandler.cancel();
+        for (RawDataFileOpenHandler handler : rawDataFileOpenHandlers)
+            handler.cancel();
 
-        if (peakListOpenHandler != null)
-            peakListOpenHandler.cancel();
+        for (PeakListOpenHandler handler : peakListOpenHandlers)
+            handler.cancel();
 
         if (userParameterOpenHandler != null)
             userParameterOpenHandler.cancel();
 
-        if (copyMachine != null)
+        for (StreamCopy copyMachine : copyMachines)
             copyMachine.cancel();
 
     }
 
+    /**
+     * Loads the raw data files and then the peak lists on a pool of worker
+     * threads. Raw data files are independent of each other, and so are the
+     * peak lists, but peak lists refer to the raw data files, so they are
+     * loaded only after all raw data files. This thread adds the loaded items
+     * to the project in the order of the project file.
+     * 
+     * @return false if the task was canceled
+     */
+    private boolean loadItems(List<ZipEntry> rawFileEntries,
+            List<ZipEntry> peakListEntries) throws Exception {
+
+        final WorkerExecutor executor = new WorkerExecutor();
+
+        try {
+
+            final List<Future<RawDataFile>> rawDataFiles = new ArrayList<>();
+            for (final ZipEntry entry : rawFileEntries) {
+                rawDataFiles.add(executor.submit(new Callable<RawDataFile>() {
+                    public RawDataFile call() throws Exception {
+                        return loadRawDataFile(entry);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < rawFileEntries.size(); i++) {
+
+                if (isCanceled())
+                    return false;
+
+                final Matcher rawFileMatcher = rawFilePattern
+                        .matcher(rawFileEntries.get(i).getName());
+                rawFileMatcher.matches();
+                final String fileID = rawFileMatcher.group(1);
+                currentLoadedObjectName = rawFileMatcher.group(2);
+
+                RawDataFile newFile = rawDataFiles.get(i).get();
+                newProject.addFile(newFile);
+                dataFilesIDMap.put(fileID, newFile);
+
+                if (currentFormat) {
+                    newProject.setProjectFileID(newFile,
+                            Integer.parseInt(fileID));
+                    ((RawDataFileImpl) newFile).setModified(false);
+                }
+            }
+
+            final List<Future<PeakList>> peakLists = new ArrayList<>();
+            for (final ZipEntry entry : peakListEntries) {
+                peakLists.add(executor.submit(new Callable<PeakList>() {
+                    public PeakList call() throws Exception {
+                        return loadPeakList(entry);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < peakListEntries.size(); i++) {
+
+                if (isCanceled())
+                    return false;
+
+                final Matcher peakListMatcher = peakListPattern
+                        .matcher(peakListEntries.get(i).getName());
+                peakListMatcher.matches();
+                final String peakListID = peakListMatcher.group(1);
+                currentLoadedObjectName = peakListMatcher.group(2);
+
+                PeakList newPeakList = peakLists.get(i).get();
+                newProject.addPeakList(newPeakList);
+
+                if (currentFormat && (newPeakList instanceof SimplePeakList)) {
+                    newProject.setProjectFileID(newPeakList,
+                            Integer.parseInt(peakListID));
+                    ((SimplePeakList) newPeakList).setModified(false);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setStatus(TaskStatus.CANCELED);
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw e;
+        } finally {
+            executor.cancelAll();
+        }
+
+        return !isCanceled();
+
+    }
+
     /**
      * Load the version info from the ZIP file and checks whether such version
      * can be opened with this MZmine
@@ -303,6 +424,7 @@ public class ProjectOpeningTask extends AbstractTask {
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
         String projectVersionString = reader.readLine();
+        String projectFormatString = reader.readLine();
         String mzmineVersionString = MZmineCore.getMZmineVersion();
 
         Matcher m = versionPattern.matcher(mzmineVersionString);
@@ -321,6 +443,26 @@ public class ProjectOpeningTask extends AbstractTask {
         int projectMajorVersion = Integer.valueOf(m.group(1));
         int projectMinorVersion = Integer.valueOf(m.group(2));
 
+        // Check if the project format is known to this version, unknown
+        // formats may store data in a way which would be misread
+        if (projectFormatString != null) {
+            int projectFormatNumber;
+            try {
+                projectFormatNumber = Integer.parseInt(projectFormatString
+                        .trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid project format "
+                        + projectFormatString);
+            }
+            if (projectFormatNumber > MAX_PROJECT_FORMAT) {
+                throw new IOException(
+                        "This project was saved with a newer version (MZmine "
+                                + projectVersionString
+                                + ") in a format which cannot be opened in MZmine "
+                                + mzmineVersionString);
+            }
+        }
+
         // Check if project was saved with an old version
         if (projectMajorVersion == 1) {
             throw new IOException(
@@ -332,15 +474,13 @@ public class ProjectOpeningTask extends AbstractTask {
 
         // Check if the project version is 2.0 to 2.2
         if ((projectMajorVersion == 2) && (projectMinorVersion <= 2)) {
-            rawDataFileOpenHandler = new RawDataFileOpenHandler_2_0();
-            peakListOpenHandler = new PeakListOpenHandler_2_0(dataFilesIDMap);
+            projectFormat = ProjectFormat.VERSION_2_0;
             return;
         }
 
         // Check if the project version is 2.3 to 2.4
         if ((projectMajorVersion == 2) && (projectMinorVersion <= 4)) {
-            rawDataFileOpenHandler = new RawDataFileOpenHandler_2_3();
-            peakListOpenHandler = new PeakListOpenHandler_2_3(dataFilesIDMap);
+            projectFormat = ProjectFormat.VERSION_2_3;
             userParameterOpenHandler = new UserParameterOpenHandler_2_3(
                     newProject, dataFilesIDMap);
             return;
@@ -359,10 +499,10 @@ public class ProjectOpeningTask extends AbstractTask {
         }
 
         // Default opening handler for MZmine 2.5 and higher
-        rawDataFileOpenHandler = new RawDataFileOpenHandler_2_5();
-        peakListOpenHandler = new PeakListOpenHandler_2_5(dataFilesIDMap);
+        projectFormat = ProjectFormat.VERSION_2_5;
         userParameterOpenHandler = new UserParameterOpenHandler_2_5(newProject,
                 dataFilesIDMap);
+        currentFormat = true;
 
     }
 
@@ -377,8 +517,10 @@ public class ProjectOpeningTask extends AbstractTask {
 
         File tempConfigFile = File.createTempFile("mzmineconfig", ".tmp");
         FileOutputStream fileStream = new FileOutputStream(tempConfigFile);
-        copyMachine = new StreamCopy();
+        StreamCopy copyMachine = new StreamCopy();
+        copyMachines.add(copyMachine);
         copyMachine.copy(is, fileStream);
+        copyMachines.remove(copyMachine);
         fileStream.close();
 
         try {
@@ -391,58 +533,137 @@ public class ProjectOpeningTask extends AbstractTask {
         tempConfigFile.delete();
     }
 
-    private void loadRawDataFile(InputStream is, String fileID, String fileName)
-            throws IOException, ParserConfigurationException, SAXException,
-            InstantiationException, IllegalAccessException {
+    /**
+     * Loads a raw data file, together with its scan data. This method is
+     * called by the worker threads.
+     */
+    private RawDataFile loadRawDataFile(ZipEntry entry) throws IOException,
+            ParserConfigurationException, SAXException {
+
+        final Matcher rawFileMatcher = rawFilePattern.matcher(entry.getName());
+        rawFileMatcher.matches();
+        final String fileID = rawFileMatcher.group(1);
+        final String fileName = rawFileMatcher.group(2);
 
         logger.info("Loading raw data file #" + fileID + ": " + fileName);
 
-        currentLoadedObjectName = fileName;
+        RawDataFileImpl newDataFile = (RawDataFileImpl) MZmineCore
+                .createNewFile(null);
+
+        // Older projects store the data points as floats, newer ones specify
+        // the codec in the raw data description
+        newDataFile.setDataPointsCodec(DataPointsCodec.FLOAT);
 
-        File scansFile = scanFilesIDMap.get(fileID);
-        if (scansFile == null) {
+        // Scan data saved without compression are read directly from the
+        // project file, other scan data are extracted to a temporary file
+        ZipEntry scansEntry = scanEntriesIDMap.get(fileID);
+        if (scansEntry == null) {
             throw new IOException("Missing scans data for file ID " + fileID);
+        } else if (storedEntryOffsets.containsKey(scansEntry.getName())) {
+            logger.info("Mapping scans data #" + fileID + ": " + fileName);
+            newDataFile.openDataPointsArchive(openFile,
+                    storedEntryOffsets.get(scansEntry.getName()),
+                    scansEntry.getSize());
+        } else {
+            newDataFile.openDataPointsFile(loadScansFile(scansEntry, fileID,
+                    fileName));
         }
+        entryFinished(scansEntry);
 
+        RawDataFileOpenHandler rawDataFileOpenHandler = createRawDataFileOpenHandler();
+        rawDataFileOpenHandlers.add(rawDataFileOpenHandler);
+        if (isCanceled())
+            rawDataFileOpenHandler.cancel();
+
+        InputStream is = zipFile.getInputStream(entry);
         RawDataFile newFile = rawDataFileOpenHandler.readRawDataFile(is,
-                scansFile);
-        newProject.addFile(newFile);
-        dataFilesIDMap.put(fileID, newFile);
+                newDataFile);
+        is.close();
+        rawDataFileOpenHandlers.remove(rawDataFileOpenHandler);
+        entryFinished(entry);
+
+        return newFile;
 
     }
 
-    private void loadScansFile(InputStream is, String fileID, String fileName)
+    /**
+     * Extracts the scan data of a raw data file to a temporary file
+     */
+    private File loadScansFile(ZipEntry entry, String fileID, String fileName)
             throws IOException {
 
         logger.info("Loading scans data #" + fileID + ": " + fileName);
 
-        currentLoadedObjectName = fileName + " scan data";
-
         final File tempFile = RawDataFileImpl.createNewDataPointsFile();
         final FileOutputStream os = new FileOutputStream(tempFile);
+        final InputStream is = zipFile.getInputStream(entry);
 
-        copyMachine = new StreamCopy();
+        StreamCopy copyMachine = new StreamCopy();
+        copyMachines.add(copyMachine);
         copyMachine.copy(is, os);
+        copyMachines.remove(copyMachine);
+        is.close();
         os.close();
 
-        scanFilesIDMap.put(fileID, tempFile);
+        return tempFile;
 
     }
 
-    private void loadPeakList(InputStream is, String peakListName)
-            throws IOException, ParserConfigurationException, SAXException,
-            InstantiationException, IllegalAccessException {
+    /**
+     * Loads a peak list and calculates the quality parameters of its peaks.
+     * This method is called by the worker threads.
+     */
+    private PeakList loadPeakList(ZipEntry entry) throws IOException,
+            ParserConfigurationException, SAXException {
+
+        final Matcher peakListMatcher = peakListPattern.matcher(entry
+                .getName());
+        peakListMatcher.matches();
+        final String peakListName = peakListMatcher.group(2);
+        final boolean binary = peakListMatcher.group(3).equals("peaks");
 
         logger.info("Loading peak list " + peakListName);
 
-        currentLoadedObjectName = peakListName;
+        PeakListOpenHandler peakListOpenHandler = createPeakListOpenHandler(binary);
+        peakListOpenHandlers.add(peakListOpenHandler);
+        if (isCanceled())
+            peakListOpenHandler.cancel();
 
+        InputStream is = zipFile.getInputStream(entry);
         PeakList newPeakList = peakListOpenHandler.readPeakList(is);
-
-        newProject.addPeakList(newPeakList);
+        is.close();
+        peakListOpenHandlers.remove(peakListOpenHandler);
 
         // Add quality parameters to peaks
         QualityParameters.calculateQualityParameters(newPeakList);
+
+        entryFinished(entry);
+
+        return newPeakList;
+    }
+
+    private RawDataFileOpenHandler createRawDataFileOpenHandler() {
+        switch (projectFormat) {
+        case VERSION_2_0:
+            return new RawDataFileOpenHandler_2_0();
+        case VERSION_2_3:
+            return new RawDataFileOpenHandler_2_3();
+        default:
+            return new RawDataFileOpenHandler_2_5();
+        }
+    }
+
+    private PeakListOpenHandler createPeakListOpenHandler(boolean binary) {
+        if (binary)
+            return new PeakListBinaryOpenHandler(dataFilesIDMap);
+        switch (projectFormat) {
+        case VERSION_2_0:
+            return new PeakListOpenHandler_2_0(dataFilesIDMap);
+        case VERSION_2_3:
+            return new PeakListOpenHandler_2_3(dataFilesIDMap);
+        default:
+            return new PeakListOpenHandler_2_5(dataFilesIDMap);
+        }
     }
 
     private void loadUserParameters(InputStream is) throws IOException,
@@ -19,20 +19,24 @@
 
 package net.sf.mzmine.modules.projectmethods.projectload;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.project.impl.RawDataFileImpl;
 
 import org.xml.sax.SAXException;
 
 public interface RawDataFileOpenHandler {
 
-    RawDataFile readRawDataFile(InputStream is, File scansFile) throws IOException,
-            ParserConfigurationException, SAXException;
+    /**
+     * Reads the raw data description into given file, which already has its
+     * data points file opened.
+     */
+    RawDataFile readRawDataFile(InputStream is, RawDataFileImpl newFile)
+            throws IOException, ParserConfigurationException, SAXException;
 
     void cancel();
 
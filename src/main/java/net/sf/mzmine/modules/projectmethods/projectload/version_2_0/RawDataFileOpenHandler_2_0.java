@@ -19,10 +19,9 @@
 
 package net.sf.mzmine.modules.projectmethods.projectload.version_2_0;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.TreeMap;
+import java.util.NavigableMap;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -32,7 +31,6 @@ import javax.xml.parsers.SAXParserFactory;
 import net.sf.mzmine.datamodel.MassSpectrumType;
 import net.sf.mzmine.datamodel.PolarityType;
 import net.sf.mzmine.datamodel.RawDataFile;
-import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.projectmethods.projectload.RawDataFileOpenHandler;
 import net.sf.mzmine.project.impl.RawDataFileImpl;
 import net.sf.mzmine.project.impl.StorableScan;
@@ -71,15 +69,14 @@ public class RawDataFileOpenHandler_2_0 extends DefaultHandler implements
      * @throws SAXException
      * @throws ParserConfigurationException
      */
-    public RawDataFile readRawDataFile(InputStream is, File scansFile)
+    public RawDataFile readRawDataFile(InputStream is, RawDataFileImpl newFile)
             throws IOException, ParserConfigurationException, SAXException {
 
         storageFileOffset = 0;
 
         charBuffer = new StringBuffer();
 
-        newRawDataFile = (RawDataFileImpl) MZmineCore.createNewFile(null);
-        newRawDataFile.openDataPointsFile(scansFile);
+        newRawDataFile = newFile;
 
         // Reads the XML file (raw data description)
         SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -195,9 +192,9 @@ public class RawDataFileOpenHandler_2_0 extends DefaultHandler implements
 
             try {
                 int newStorageID = 1;
-                TreeMap<Integer, Long> dataPointsOffsets = newRawDataFile
+                NavigableMap<Integer, Long> dataPointsOffsets = newRawDataFile
                         .getDataPointsOffsets();
-                TreeMap<Integer, Integer> dataPointsLengths = newRawDataFile
+                NavigableMap<Integer, Integer> dataPointsLengths = newRawDataFile
                         .getDataPointsLengths();
                 if (!dataPointsOffsets.isEmpty())
                     newStorageID = dataPointsOffsets.lastKey().intValue() + 1;
@@ -19,11 +19,10 @@
 
 package net.sf.mzmine.modules.projectmethods.projectload.version_2_5;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.TreeMap;
+import java.util.NavigableMap;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -38,8 +37,8 @@ import com.google.common.collect.Range;
 
 import net.sf.mzmine.datamodel.PolarityType;
 import net.sf.mzmine.datamodel.RawDataFile;
-import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.projectmethods.projectload.RawDataFileOpenHandler;
+import net.sf.mzmine.project.impl.DataPointsCodec;
 import net.sf.mzmine.project.impl.RawDataFileImpl;
 import net.sf.mzmine.project.impl.StorableMassList;
 import net.sf.mzmine.project.impl.StorableScan;
@@ -64,8 +63,10 @@ public class RawDataFileOpenHandler_2_5 extends DefaultHandler
     private int currentStorageID;
     private int storedDataID;
     private int storedDataNumDP;
-    private TreeMap<Integer, Long> dataPointsOffsets;
-    private TreeMap<Integer, Integer> dataPointsLengths;
+    private int storedDataNumBytes;
+    private NavigableMap<Integer, Long> dataPointsOffsets;
+    private NavigableMap<Integer, Integer> dataPointsLengths;
+    private NavigableMap<Integer, Integer> dataPointsSizes;
     private ArrayList<StorableMassList> massLists;
     private PolarityType polarity = PolarityType.UNKNOWN;
     private String scanDescription = "";
@@ -83,17 +84,17 @@ public class RawDataFileOpenHandler_2_5 extends DefaultHandler
      * @throws SAXException
      * @throws ParserConfigurationException
      */
-    public RawDataFile readRawDataFile(InputStream is, File scansFile)
+    public RawDataFile readRawDataFile(InputStream is, RawDataFileImpl newFile)
             throws IOException, ParserConfigurationException, SAXException {
 
         charBuffer = new StringBuffer();
         massLists = new ArrayList<StorableMassList>();
 
-        newRawDataFile = (RawDataFileImpl) MZmineCore.createNewFile(null);
-        newRawDataFile.openDataPointsFile(scansFile);
+        newRawDataFile = newFile;
 
         dataPointsOffsets = newRawDataFile.getDataPointsOffsets();
         dataPointsLengths = newRawDataFile.getDataPointsLengths();
+        dataPointsSizes = newRawDataFile.getDataPointsSizes();
 
         // Reads the XML file (raw data description)
         SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -138,12 +139,33 @@ public class RawDataFileOpenHandler_2_5 extends DefaultHandler
                     RawDataElementName_2_5.STORAGE_ID.getElementName()));
         }
 
+        // Projects saved before the codec was introduced store floats
+        if (qName.equals(
+                RawDataElementName_2_5.STORED_DATAPOINTS.getElementName())) {
+            String codecName = attrs
+                    .getValue(RawDataElementName_2_5.CODEC.getElementName());
+            DataPointsCodec codec = DataPointsCodec.FLOAT;
+            if (codecName != null) {
+                try {
+                    codec = DataPointsCodec.valueOf(codecName);
+                } catch (IllegalArgumentException e) {
+                    throw new SAXException(
+                            "Unknown data points codec " + codecName);
+                }
+            }
+            newRawDataFile.setDataPointsCodec(codec);
+        }
+
         if (qName.equals(RawDataElementName_2_5.STORED_DATA.getElementName())) {
             storedDataID = Integer.parseInt(attrs.getValue(
                     RawDataElementName_2_5.STORAGE_ID.getElementName()));
             storedDataNumDP = Integer.parseInt(
                     attrs.getValue(RawDataElementName_2_5.QUANTITY_DATAPOINTS
                             .getElementName()));
+            String numBytes = attrs.getValue(
+                    RawDataElementName_2_5.QUANTITY_BYTES.getElementName());
+            storedDataNumBytes = (numBytes == null) ? -1
+                    : Integer.parseInt(numBytes);
         }
 
         if (qName.equals(RawDataElementName_2_5.MASS_LIST.getElementName())) {
@@ -190,6 +212,8 @@ public class RawDataFileOpenHandler_2_5 extends DefaultHandler
             long offset = Long.parseLong(getTextOfElement());
             dataPointsOffsets.put(storedDataID, offset);
             dataPointsLengths.put(storedDataID, storedDataNumDP);
+            if (storedDataNumBytes >= 0)
+                dataPointsSizes.put(storedDataID, storedDataNumBytes);
         }
 
         if (qName.equals(RawDataElementName_2_5.MS_LEVEL.getElementName())) {
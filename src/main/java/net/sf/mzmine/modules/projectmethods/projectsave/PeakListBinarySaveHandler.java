@@ -0,0 +1,345 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.projectmethods.projectsave;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.Feature.FeatureStatus;
+import net.sf.mzmine.datamodel.IsotopePattern;
+import net.sf.mzmine.datamodel.PeakIdentity;
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.PeakList.PeakListAppliedMethod;
+import net.sf.mzmine.datamodel.PeakListRow;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
+
+/**
+ * Saves a peak list to the project file in a compact binary format, which is
+ * read by PeakListBinaryOpenHandler. The rows are written in blocks. Within
+ * each block, the values of the rows, peaks and data points are stored column
+ * by column, so they can be written and read in bulk, and compress well.
+ * Blocks are limited to ROWS_PER_BLOCK rows and PEAKS_PER_BLOCK peaks, so
+ * large aligned peak lists are never held in memory in this form at once.
+ * 
+ * Peak lists exported to other programs use the XML format of
+ * PeakListSaveHandler.
+ */
+public class PeakListBinarySaveHandler {
+
+    /**
+     * First bytes of the binary peak list ("MZPL")
+     */
+    public static final int MAGIC = 0x4d5a504c;
+
+    /**
+     * Version of the binary format, increased on every incompatible change
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int ROWS_PER_BLOCK = 1024;
+    public static final int PEAKS_PER_BLOCK = 4096;
+
+    private Hashtable<RawDataFile, String> dataFilesIDMap;
+
+    private int numberOfRows, finishedRows;
+    private volatile boolean canceled = false;
+
+    private DataOutputStream finalStream;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    public PeakListBinarySaveHandler(OutputStream finalStream,
+	    Hashtable<RawDataFile, String> dataFilesIDMap) {
+	this.finalStream = new DataOutputStream(new BufferedOutputStream(
+		finalStream, 1 << 16));
+	this.dataFilesIDMap = dataFilesIDMap;
+    }
+
+    /**
+     * Saves the peak list in the binary format
+     * 
+     * @throws java.io.IOException
+     */
+    public void savePeakList(PeakList peakList) throws IOException {
+
+	numberOfRows = peakList.getNumberOfRows();
+	finishedRows = 0;
+
+	finalStream.writeInt(MAGIC);
+	finalStream.writeInt(FORMAT_VERSION);
+
+	// Name and date
+	writeString(peakList.getName());
+	String dateCreated = null;
+	if (peakList instanceof SimplePeakList)
+	    dateCreated = ((SimplePeakList) peakList).getDateCreated();
+	writeString(dateCreated);
+
+	// Applied methods
+	PeakListAppliedMethod[] processes = peakList.getAppliedMethods();
+	finalStream.writeInt(processes.length);
+	for (PeakListAppliedMethod proc : processes) {
+	    writeString(proc.getDescription());
+	    writeString(proc.getParameters());
+	}
+
+	// Raw data files
+	RawDataFile[] dataFiles = peakList.getRawDataFiles();
+	finalStream.writeInt(dataFiles.length);
+	for (RawDataFile dataFile : dataFiles)
+	    finalStream.writeInt(getDataFileID(dataFile));
+
+	// Peak states are saved as indexes to this table, so the format does
+	// not depend on the order of the enum
+	FeatureStatus states[] = FeatureStatus.values();
+	finalStream.writeInt(states.length);
+	for (FeatureStatus status : states)
+	    writeString(status.name());
+
+	// Rows
+	finalStream.writeInt(numberOfRows);
+	List<PeakListRow> blockRows = new ArrayList<PeakListRow>();
+	int blockPeaks = 0;
+	for (int i = 0; i < numberOfRows; i++) {
+
+	    if (canceled)
+		return;
+
+	    PeakListRow row = peakList.getRow(i);
+	    blockRows.add(row);
+	    blockPeaks += row.getNumberOfPeaks();
+
+	    if ((blockRows.size() >= ROWS_PER_BLOCK)
+		    || (blockPeaks >= PEAKS_PER_BLOCK)
+		    || (i == numberOfRows - 1)) {
+		writeBlock(blockRows.toArray(new PeakListRow[0]));
+		finishedRows = i + 1;
+		blockRows.clear();
+		blockPeaks = 0;
+	    }
+	}
+
+	finalStream.flush();
+    }
+
+    /**
+     * Writes a block of rows. The values are stored in this order: number of
+     * rows, row columns, identities, peak columns, isotope patterns, data
+     * point columns.
+     */
+    private void writeBlock(PeakListRow rows[]) throws IOException {
+
+	final int numOfRows = rows.length;
+	finalStream.writeInt(numOfRows);
+
+	// Row columns
+	int rowIDs[] = new int[numOfRows];
+	int peakCounts[] = new int[numOfRows];
+	int identityCounts[] = new int[numOfRows];
+	List<Feature> peaks = new ArrayList<Feature>();
+	for (int i = 0; i < numOfRows; i++) {
+	    Feature rowPeaks[] = rows[i].getPeaks();
+	    rowIDs[i] = rows[i].getID();
+	    peakCounts[i] = rowPeaks.length;
+	    identityCounts[i] = rows[i].getPeakIdentities().length;
+	    for (Feature peak : rowPeaks)
+		peaks.add(peak);
+	}
+	writeInts(rowIDs, numOfRows);
+	writeInts(peakCounts, numOfRows);
+	writeInts(identityCounts, numOfRows);
+	for (PeakListRow row : rows)
+	    writeString(row.getComment());
+
+	// Identities
+	for (PeakListRow row : rows) {
+	    PeakIdentity preferredIdentity = row.getPreferredPeakIdentity();
+	    for (PeakIdentity identity : row.getPeakIdentities()) {
+		finalStream.writeBoolean(identity == preferredIdentity);
+		Map<String, String> idProperties = identity.getAllProperties();
+		finalStream.writeInt(idProperties.size());
+		for (Entry<String, String> property : idProperties.entrySet()) {
+		    writeString(property.getKey());
+		    writeString(property.getValue());
+		}
+	    }
+	}
+
+	// Peak columns
+	final int numOfPeaks = peaks.size();
+	int dataFileIDs[] = new int[numOfPeaks];
+	double mzValues[] = new double[numOfPeaks];
+	double rtValues[] = new double[numOfPeaks];
+	double heights[] = new double[numOfPeaks];
+	double areas[] = new double[numOfPeaks];
+	byte states[] = new byte[numOfPeaks];
+	int charges[] = new int[numOfPeaks];
+	int representativeScans[] = new int[numOfPeaks];
+	int fragmentScans[] = new int[numOfPeaks];
+	int dataPointCounts[] = new int[numOfPeaks];
+	byte isotopePatternFlags[] = new byte[numOfPeaks];
+	int scanNumbers[][] = new int[numOfPeaks][];
+	int numOfDataPoints = 0;
+	for (int i = 0; i < numOfPeaks; i++) {
+	    Feature peak = peaks.get(i);
+	    dataFileIDs[i] = getDataFileID(peak.getDataFile());
+	    mzValues[i] = peak.getMZ();
+	    rtValues[i] = peak.getRT();
+	    heights[i] = peak.getHeight();
+	    areas[i] = peak.getArea();
+	    states[i] = (byte) peak.getFeatureStatus().ordinal();
+	    charges[i] = peak.getCharge();
+	    representativeScans[i] = peak.getRepresentativeScanNumber();
+	    fragmentScans[i] = peak.getMostIntenseFragmentScanNumber();
+	    isotopePatternFlags[i] = (byte) (peak.getIsotopePattern() != null ? 1
+		    : 0);
+	    scanNumbers[i] = peak.getScanNumbers();
+	    dataPointCounts[i] = scanNumbers[i].length;
+	    numOfDataPoints += scanNumbers[i].length;
+	}
+	writeInts(dataFileIDs, numOfPeaks);
+	writeDoubles(mzValues, numOfPeaks);
+	writeDoubles(rtValues, numOfPeaks);
+	writeDoubles(heights, numOfPeaks);
+	writeDoubles(areas, numOfPeaks);
+	finalStream.write(states, 0, numOfPeaks);
+	writeInts(charges, numOfPeaks);
+	writeInts(representativeScans, numOfPeaks);
+	writeInts(fragmentScans, numOfPeaks);
+	writeInts(dataPointCounts, numOfPeaks);
+	finalStream.write(isotopePatternFlags, 0, numOfPeaks);
+
+	// Isotope patterns
+	for (Feature peak : peaks) {
+	    IsotopePattern isotopePattern = peak.getIsotopePattern();
+	    if (isotopePattern == null)
+		continue;
+	    writeString(isotopePattern.getStatus().name());
+	    writeString(isotopePattern.getDescription());
+	    DataPoint isotopes[] = isotopePattern.getDataPoints();
+	    double isotopeMZValues[] = new double[isotopes.length];
+	    double isotopeIntensities[] = new double[isotopes.length];
+	    for (int i = 0; i < isotopes.length; i++) {
+		isotopeMZValues[i] = isotopes[i].getMZ();
+		isotopeIntensities[i] = isotopes[i].getIntensity();
+	    }
+	    finalStream.writeInt(isotopes.length);
+	    writeDoubles(isotopeMZValues, isotopes.length);
+	    writeDoubles(isotopeIntensities, isotopes.length);
+	}
+
+	// Data point columns. As in the XML format, the data points are saved
+	// with float precision and a missing data point has zero m/z.
+	int dataPointScans[] = new int[numOfDataPoints];
+	float dataPointMZValues[] = new float[numOfDataPoints];
+	float dataPointIntensities[] = new float[numOfDataPoints];
+	int index = 0;
+	for (int i = 0; i < numOfPeaks; i++) {
+	    Feature peak = peaks.get(i);
+	    for (int scan : scanNumbers[i]) {
+		dataPointScans[index] = scan;
+		DataPoint mzPeak = peak.getDataPoint(scan);
+		if (mzPeak != null) {
+		    dataPointMZValues[index] = (float) mzPeak.getMZ();
+		    dataPointIntensities[index] = (float) mzPeak.getIntensity();
+		}
+		index++;
+	    }
+	}
+	writeInts(dataPointScans, numOfDataPoints);
+	writeFloats(dataPointMZValues, numOfDataPoints);
+	writeFloats(dataPointIntensities, numOfDataPoints);
+
+    }
+
+    private int getDataFileID(RawDataFile dataFile) throws IOException {
+	String id = dataFilesIDMap.get(dataFile);
+	if (id == null) {
+	    throw new IOException("Raw data file " + dataFile
+		    + " is not part of the saved project");
+	}
+	return Integer.parseInt(id);
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by the UTF-8 bytes.
+     * Null is written as length -1.
+     */
+    private void writeString(String value) throws IOException {
+	if (value == null) {
+	    finalStream.writeInt(-1);
+	    return;
+	}
+	byte bytes[] = value.getBytes(StandardCharsets.UTF_8);
+	finalStream.writeInt(bytes.length);
+	finalStream.write(bytes);
+    }
+
+    private void writeInts(int values[], int count) throws IOException {
+	ByteBuffer columnBuffer = getBuffer(count * 4);
+	columnBuffer.asIntBuffer().put(values, 0, count);
+	finalStream.write(columnBuffer.array(), 0, count * 4);
+    }
+
+    private void writeFloats(float values[], int count) throws IOException {
+	ByteBuffer columnBuffer = getBuffer(count * 4);
+	columnBuffer.asFloatBuffer().put(values, 0, count);
+	finalStream.write(columnBuffer.array(), 0, count * 4);
+    }
+
+    private void writeDoubles(double values[], int count) throws IOException {
+	ByteBuffer columnBuffer = getBuffer(count * 8);
+	columnBuffer.asDoubleBuffer().put(values, 0, count);
+	finalStream.write(columnBuffer.array(), 0, count * 8);
+    }
+
+    private ByteBuffer getBuffer(int size) {
+	if (buffer.capacity() < size)
+	    buffer = ByteBuffer.allocate(size);
+	buffer.clear();
+	return buffer;
+    }
+
+    /**
+     * @return the progress of these functions saving the peak list to the zip
+     *         file.
+     */
+    public double getProgress() {
+	if (numberOfRows == 0)
+	    return 0;
+	return (double) finishedRows / numberOfRows;
+    }
+
+    public void cancel() {
+	canceled = true;
+    }
+
+}
@@ -16,65 +16,124 @@
  * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin
  * St, Fifth Floor, Boston, MA 02110-1301 USA
  */
-
 package net.sf.mzmine.modules.projectmethods.projectsave;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 
 import javax.xml.transform.TransformerConfigurationException;
 
 import net.sf.mzmine.datamodel.MZmineProject;
 import net.sf.mzmine.datamodel.PeakList;
 import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
 import net.sf.mzmine.desktop.impl.MainWindow;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.projectmethods.projectload.ProjectLoaderParameters;
 import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.project.impl.DataPointsCodec;
 import net.sf.mzmine.project.impl.MZmineProjectImpl;
 import net.sf.mzmine.project.impl.RawDataFileImpl;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
+import net.sf.mzmine.util.CompressedZipEntry;
 import net.sf.mzmine.util.ExceptionUtils;
 import net.sf.mzmine.util.StreamCopy;
+import net.sf.mzmine.util.ZipArchiveWriter;
+import net.sf.mzmine.util.ZipUtils;
 
 import org.xml.sax.SAXException;
 
 public class ProjectSavingTask extends AbstractTask {
 
     public static final String VERSION_FILENAME = "MZMINE_VERSION";
+
+    /**
+     * Projects which older MZmine versions cannot read store the version
+     * under this name instead of VERSION_FILENAME, followed by the number of
+     * the project format on the second line. Older versions refuse projects
+     * without VERSION_FILENAME, rather than opening them without their peak
+     * lists.
+     */
+    public static final String FORMAT_VERSION_FILENAME = "MZMINE_PROJECT_VERSION";
+
+    /**
+     * Project format with peak lists in binary format (.peaks entries)
+     */
+    public static final int PROJECT_FORMAT_BINARY_PEAK_LISTS = 1;
+
+    /**
+     * Project format with data points of some raw data files encoded by
+     * other codecs than DataPointsCodec.FLOAT
+     */
+    public static final int PROJECT_FORMAT_DATA_POINTS_CODECS = 2;
+
     public static final String CONFIG_FILENAME = "configuration.xml";
     public static final String PARAMETERS_FILENAME = "User parameters.xml";
 
+    // Number of items prepared in advance per thread. Prepared items hold
+    // their compressed content until they are written, large entries in
+    // temporary files (see CompressedZipEntry).
+    private static final int PENDING_ITEMS_PER_THREAD = 2;
+
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
     private File saveFile;
     private MZmineProjectImpl savedProject;
 
-    private RawDataFileSaveHandler rawDataFileSaveHandler;
-    private PeakListSaveHandler peakListSaveHandler;
     private UserParameterSaveHandler userParameterSaveHandler;
 
     private final int totalSaveItems;
     private int currentStage, finishedSaveItems = 0;
     private String currentSavedObjectName;
 
+    // Compression level of the XML entries, 0 for no compression
+    private final int compressionLevel;
+
+    // Raw data files and peak lists being saved, and the one being written
+    private List<SavedItem> savedItems;
+    private SavedItem currentItem;
+
     // This hashtable maps raw data files to their ID within the saved project
     private Hashtable<RawDataFile, String> dataFilesIDMap;
 
+    // IDs of the raw data files and peak lists within the saved project
+    private Hashtable<Object, Integer> savedItemIDs;
+
+    // Previous project file, from which we copy the entries of unmodified
+    // raw data files and peak lists, and the positions of the compressed data
+    // of its entries
+    private ZipFile previousProject;
+    private File previousProjectFile;
+    private Map<String, Long> previousEntryOffsets = Collections.emptyMap();
+
     public ProjectSavingTask(MZmineProject project, ParameterSet parameters) {
         this.savedProject = (MZmineProjectImpl) project;
         this.saveFile = parameters
                 .getParameter(ProjectLoaderParameters.projectFile).getValue();
         dataFilesIDMap = new Hashtable<RawDataFile, String>();
+        savedItemIDs = new Hashtable<Object, Integer>();
         this.totalSaveItems = project.getDataFiles().length
                 + project.getPeakLists().length;
+        this.compressionLevel = MZmineCore.getConfiguration().getPreferences()
+                .getProjectCompressionLevel();
     }
 
     /**
@@ -98,15 +157,12 @@ public class ProjectSavingTask extends AbstractTask {
 
         switch (currentStage) {
         case 2:
-            if (rawDataFileSaveHandler != null)
-                currentItemProgress = rawDataFileSaveHandler.getProgress();
+            SavedItem item = currentItem;
+            if (item != null)
+                currentItemProgress = item.getProgress();
             break;
         case 3:
-            if (peakListSaveHandler != null)
-                currentItemProgress = peakListSaveHandler.getProgress();
-            break;
         case 4:
-        case 5:
             return 1.0;
         default:
             return 0;
@@ -127,11 +183,11 @@ public class ProjectSavingTask extends AbstractTask {
 
         setStatus(TaskStatus.CANCELED);
 
-        if (rawDataFileSaveHandler != null)
-            rawDataFileSaveHandler.cancel();
-
-        if (peakListSaveHandler != null)
-            peakListSaveHandler.cancel();
+        List<SavedItem> items = savedItems;
+        if (items != null) {
+            for (SavedItem item : items)
+                item.cancel();
+        }
 
         if (userParameterSaveHandler != null)
             userParameterSaveHandler.cancel();
@@ -155,51 +211,48 @@ public class ProjectSavingTask extends AbstractTask {
                     saveFile.getParentFile());
             tempFile.deleteOnExit();
 
-            // Create a ZIP stream writing to the temporary file
-            FileOutputStream tempStream = new FileOutputStream(tempFile);
-            ZipOutputStream zipStream = new ZipOutputStream(tempStream);
+            // Create a ZIP archive writing to the temporary file
+            ZipArchiveWriter zipWriter = new ZipArchiveWriter(tempFile);
 
-            // Stage 1 - save version and configuration
-            currentStage++;
-            saveVersion(zipStream);
-            saveConfiguration(zipStream);
-            if (isCanceled()) {
-                zipStream.close();
-                tempFile.delete();
-                return;
+            // Unmodified items are copied from the previous project file
+            openPreviousProject();
+            assignIDs(savedProject.getDataFiles());
+            assignIDs(savedProject.getPeakLists());
+            for (RawDataFile dataFile : savedProject.getDataFiles()) {
+                dataFilesIDMap.put(dataFile,
+                        String.valueOf(savedItemIDs.get(dataFile)));
             }
 
-            // Stage 2 - save RawDataFile objects
+            // Stage 1 - save version and configuration
             currentStage++;
-            saveRawDataFiles(zipStream);
+            saveVersion(zipWriter);
+            saveConfiguration(zipWriter);
             if (isCanceled()) {
-                zipStream.close();
-                tempFile.delete();
+                discardTempFile(zipWriter, tempFile);
                 return;
             }
 
-            // Stage 3 - save PeakList objects
+            // Stage 2 - save RawDataFile and PeakList objects
             currentStage++;
-            savePeakLists(zipStream);
+            saveItems(zipWriter);
             if (isCanceled()) {
-                zipStream.close();
-                tempFile.delete();
+                discardTempFile(zipWriter, tempFile);
                 return;
             }
 
-            // Stage 4 - save user parameters
+            // Stage 3 - save user parameters
             currentStage++;
-            saveUserParameters(zipStream);
+            saveUserParameters(zipWriter);
             if (isCanceled()) {
-                zipStream.close();
-                tempFile.delete();
+                discardTempFile(zipWriter, tempFile);
                 return;
             }
 
-            // Stage 5 - finish and close the temporary ZIP file
+            // Stage 4 - finish and close the temporary ZIP file
             currentStage++;
             currentSavedObjectName = null;
-            zipStream.close();
+            zipWriter.close();
+            closePreviousProject();
 
             // Final check for cancel
             if (isCanceled()) {
@@ -208,9 +261,7 @@ public class ProjectSavingTask extends AbstractTask {
             }
 
             // Move the temporary ZIP file to the final location
-            if (saveFile.exists() && !saveFile.delete()) {
-                throw new IOException("Could not delete old file " + saveFile);
-            }
+            deleteOldProjectFile();
 
             boolean renameOK = tempFile.renameTo(saveFile);
             if (!renameOK) {
@@ -218,8 +269,13 @@ public class ProjectSavingTask extends AbstractTask {
                         + tempFile + " to the final location " + saveFile);
             }
 
-            // Update the location of the project
+            // Update the location of the project and the IDs of the saved
+            // items, so the next save can copy them from the new file
             savedProject.setProjectFile(saveFile);
+            savedProject.clearProjectFileIDs();
+            for (Object item : savedItemIDs.keySet()) {
+                savedProject.setProjectFileID(item, savedItemIDs.get(item));
+            }
 
             // Update the window title to reflect the new name of the project
             if (MZmineCore.getDesktop() instanceof MainWindow) {
@@ -244,6 +300,15 @@ public class ProjectSavingTask extends AbstractTask {
                         + ExceptionUtils.exceptionToString(e));
             }
 
+        } finally {
+
+            closePreviousProject();
+
+            // If the project file was not replaced, the items we saved are
+            // still modified compared to it
+            if (getStatus() != TaskStatus.FINISHED)
+                setModified(true);
+
         }
     }
 
@@ -252,13 +317,25 @@ public class ProjectSavingTask extends AbstractTask {
      * 
      * @throws java.io.IOException
      */
-    private void saveVersion(ZipOutputStream zipStream) throws IOException {
+    private void saveVersion(ZipArchiveWriter zipWriter) throws IOException {
 
-        zipStream.putNextEntry(new ZipEntry(VERSION_FILENAME));
+        CompressedZipEntry entry = new CompressedZipEntry(
+                FORMAT_VERSION_FILENAME, compressionLevel);
 
         String MZmineVersion = MZmineCore.getMZmineVersion();
+        // Versions which do not know the data points codecs would read the
+        // encoded data points as floats
+        int projectFormat = PROJECT_FORMAT_BINARY_PEAK_LISTS;
+        for (RawDataFile dataFile : savedProject.getDataFiles()) {
+            if ((dataFile instanceof RawDataFileImpl)
+                    && (((RawDataFileImpl) dataFile).getDataPointsCodec() != DataPointsCodec.FLOAT))
+                projectFormat = PROJECT_FORMAT_DATA_POINTS_CODECS;
+        }
 
-        zipStream.write(MZmineVersion.getBytes());
+        entry.getOutputStream().write(
+                (MZmineVersion + "\n" + projectFormat + "\n").getBytes());
+        entry.finish();
+        zipWriter.writeEntry(entry);
 
     }
 
@@ -267,14 +344,15 @@ public class ProjectSavingTask extends AbstractTask {
      * 
      * @throws java.io.IOException
      */
-    private void saveConfiguration(ZipOutputStream zipStream)
+    private void saveConfiguration(ZipArchiveWriter zipWriter)
             throws IOException {
 
         logger.info("Saving configuration file");
 
         currentSavedObjectName = "configuration";
 
-        zipStream.putNextEntry(new ZipEntry(CONFIG_FILENAME));
+        CompressedZipEntry entry = new CompressedZipEntry(CONFIG_FILENAME,
+                compressionLevel);
         File tempConfigFile = File.createTempFile("mzmineconfig", ".tmp");
 
         try {
@@ -287,77 +365,437 @@ public class ProjectSavingTask extends AbstractTask {
         FileInputStream fileStream = new FileInputStream(tempConfigFile);
 
         StreamCopy copyMachine = new StreamCopy();
-        copyMachine.copy(fileStream, zipStream);
+        copyMachine.copy(fileStream, entry.getOutputStream());
 
         fileStream.close();
         tempConfigFile.delete();
+
+        entry.finish();
+        zipWriter.writeEntry(entry);
     }
 
     /**
-     * Save the raw data files
-     * 
-     * @throws SAXException
-     * @throws TransformerConfigurationException
+     * Save the raw data files and peak lists. The items are prepared on a pool
+     * of worker threads, which serialize and compress their descriptions.
+     * This thread writes the prepared items to the project file in the
+     * original order, streaming the data points of each raw data file
+     * directly to the file. At most PENDING_ITEMS_PER_THREAD items per thread
+     * are prepared in advance.
      */
-    private void saveRawDataFiles(ZipOutputStream zipStream) throws IOException,
-            TransformerConfigurationException, SAXException {
+    private void saveItems(ZipArchiveWriter zipWriter) throws Exception {
 
-        rawDataFileSaveHandler = new RawDataFileSaveHandler(zipStream);
+        List<SavedItem> items = new ArrayList<SavedItem>();
+        for (RawDataFile dataFile : savedProject.getDataFiles())
+            items.add(new RawDataFileItem((RawDataFileImpl) dataFile));
+        for (PeakList peakList : savedProject.getPeakLists())
+            items.add(new PeakListItem(peakList));
+        savedItems = items;
 
-        RawDataFile rawDataFiles[] = savedProject.getDataFiles();
+        final int numOfThreads = MZmineCore.getConfiguration()
+                .getPreferences().getNumOfThreads();
+        final WorkerExecutor executor = new WorkerExecutor();
+        final ArrayDeque<Future<SavedItem>> pending = new ArrayDeque<Future<SavedItem>>();
+        final int maxPending = numOfThreads * PENDING_ITEMS_PER_THREAD;
 
-        for (int i = 0; i < rawDataFiles.length; i++) {
+        try {
+            int nextItem = 0;
+            while ((nextItem < items.size()) || (!pending.isEmpty())) {
 
-            if (isCanceled())
-                return;
+                if (isCanceled())
+                    return;
+
+                // Keep the workers supplied with items
+                while ((nextItem < items.size())
+                        && (pending.size() < maxPending)) {
+                    SavedItem item = items.get(nextItem++);
+
+                    // Changes made while we are saving will be saved next
+                    // time
+                    item.clearModified();
+
+                    pending.add(executor.submit(item));
+                }
 
-            currentSavedObjectName = rawDataFiles[i].getName();
-            rawDataFileSaveHandler
-                    .writeRawDataFile((RawDataFileImpl) rawDataFiles[i], i + 1);
-            dataFilesIDMap.put(rawDataFiles[i], String.valueOf(i + 1));
-            finishedSaveItems++;
+                // Write the oldest item, preserving the order
+                currentItem = items.get(finishedSaveItems);
+                currentSavedObjectName = currentItem.getName();
+                pending.remove().get().write(zipWriter);
+
+                finishedSaveItems++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setStatus(TaskStatus.CANCELED);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw e;
+        } finally {
+            executor.cancelAll();
+
+            // Delete the temporary files of the items which were not written
+            for (int i = finishedSaveItems; i < items.size(); i++)
+                items.get(i).discard();
         }
     }
 
     /**
-     * Save the peak lists
-     * 
-     * @throws SAXException
-     * @throws TransformerConfigurationException
+     * Raw data file or peak list being saved. The item is prepared by a
+     * worker thread and then written to the project file by the task thread.
+     */
+    private abstract class SavedItem implements Callable<SavedItem> {
+
+        final int id;
+        boolean modified = true;
+
+        SavedItem(Object item) {
+            this.id = savedItemIDs.get(item);
+        }
+
+        /**
+         * Stores the modification flag of the item to the 'modified' field and
+         * clears it, before the item is submitted for saving
+         */
+        abstract void clearModified();
+
+        abstract String getName();
+
+        abstract double getProgress();
+
+        abstract void cancel();
+
+        /**
+         * Releases the prepared content of an item which is not going to be
+         * written
+         */
+        abstract void discard();
+
+        /**
+         * Writes the prepared item to the project file
+         */
+        abstract void write(ZipArchiveWriter zipWriter) throws IOException;
+
+    }
+
+    private class RawDataFileItem extends SavedItem {
+
+        private final RawDataFileImpl rawDataFile;
+        private final RawDataFileSaveHandler saveHandler;
+
+        RawDataFileItem(RawDataFileImpl rawDataFile) {
+            super(rawDataFile);
+            this.rawDataFile = rawDataFile;
+            this.saveHandler = new RawDataFileSaveHandler(rawDataFile, id,
+                    compressionLevel);
+        }
+
+        public SavedItem call() throws Exception {
+            boolean copied = false;
+            if (!modified && isStoredInPreviousProject(rawDataFile))
+                copied = saveHandler.prepareCopy(previousProject,
+                        previousProjectFile, previousEntryOffsets);
+            if (!copied)
+                saveHandler.prepareRawDataFile();
+            return this;
+        }
+
+        void clearModified() {
+            modified = rawDataFile.isModified();
+            rawDataFile.setModified(false);
+        }
+
+        String getName() {
+            return rawDataFile.getName();
+        }
+
+        double getProgress() {
+            return saveHandler.getProgress();
+        }
+
+        void cancel() {
+            saveHandler.cancel();
+        }
+
+        void discard() {
+            saveHandler.discard();
+        }
+
+        void write(ZipArchiveWriter zipWriter) throws IOException {
+            saveHandler.writeRawDataFile(zipWriter);
+        }
+
+    }
+
+    private class PeakListItem extends SavedItem {
+
+        private final PeakList peakList;
+        private final String peakListSavedName;
+        private volatile PeakListBinarySaveHandler saveHandler;
+        private volatile StreamCopy copyMachine;
+        private volatile boolean prepared = false;
+        private volatile CompressedZipEntry entry;
+
+        // Entry of the previous project file, copied without decompressing
+        private ZipEntry previousEntry;
+        private long previousEntryOffset;
+
+        PeakListItem(PeakList peakList) {
+            super(peakList);
+            this.peakList = peakList;
+            this.peakListSavedName = "Peak list #" + id + " "
+                    + peakList.getName() + ".peaks";
+        }
+
+        public SavedItem call() throws Exception {
+
+            ZipEntry unmodifiedEntry = null;
+            if (!modified && isStoredInPreviousProject(peakList))
+                unmodifiedEntry = previousProject.getEntry(peakListSavedName);
+
+            // The compressed data of the previous entry are copied by write()
+            Long offset = (unmodifiedEntry != null) ? previousEntryOffsets
+                    .get(peakListSavedName) : null;
+            if (offset != null) {
+                logger.info("Copying unmodified peak list: "
+                        + peakList.getName());
+                previousEntry = unmodifiedEntry;
+                previousEntryOffset = offset;
+                prepared = true;
+                return this;
+            }
+
+            CompressedZipEntry newEntry = new CompressedZipEntry(
+                    peakListSavedName, compressionLevel);
+            entry = newEntry;
+
+            if (unmodifiedEntry != null) {
+                logger.info("Copying unmodified peak list: "
+                        + peakList.getName());
+                InputStream entryStream = previousProject
+                        .getInputStream(unmodifiedEntry);
+                copyMachine = new StreamCopy();
+                copyMachine.copy(entryStream, newEntry.getOutputStream(),
+                        unmodifiedEntry.getSize());
+                entryStream.close();
+            } else {
+                logger.info("Saving peak list: " + peakList.getName());
+                saveHandler = new PeakListBinarySaveHandler(
+                        newEntry.getOutputStream(), dataFilesIDMap);
+                if (isCanceled())
+                    saveHandler.cancel();
+                saveHandler.savePeakList(peakList);
+            }
+
+            newEntry.finish();
+            prepared = true;
+            return this;
+
+        }
+
+        void clearModified() {
+            if (peakList instanceof SimplePeakList) {
+                SimplePeakList simplePeakList = (SimplePeakList) peakList;
+                modified = simplePeakList.isModified();
+                simplePeakList.setModified(false);
+            }
+        }
+
+        String getName() {
+            return peakList.getName();
+        }
+
+        double getProgress() {
+            if (prepared)
+                return 1.0;
+            StreamCopy currentCopy = copyMachine;
+            if (currentCopy != null)
+                return currentCopy.getProgress();
+            PeakListBinarySaveHandler currentHandler = saveHandler;
+            if (currentHandler != null)
+                return currentHandler.getProgress();
+            return 0;
+        }
+
+        void cancel() {
+            StreamCopy currentCopy = copyMachine;
+            if (currentCopy != null)
+                currentCopy.cancel();
+            PeakListBinarySaveHandler currentHandler = saveHandler;
+            if (currentHandler != null)
+                currentHandler.cancel();
+        }
+
+        void discard() {
+            CompressedZipEntry currentEntry = entry;
+            if (currentEntry != null)
+                currentEntry.discard();
+        }
+
+        void write(ZipArchiveWriter zipWriter) throws IOException {
+            if (previousEntry != null)
+                zipWriter.copyEntry(previousEntry, previousProjectFile,
+                        previousEntryOffset);
+            else
+                zipWriter.writeEntry(entry);
+        }
+
+    }
+
+    /**
+     * Closes the canceled temporary file and deletes it
+     */
+    private void discardTempFile(ZipArchiveWriter zipWriter, File tempFile) {
+        try {
+            zipWriter.close();
+        } catch (IOException e) {
+            // The last entry may be incomplete, the file is deleted anyway
+        }
+        tempFile.delete();
+    }
+
+    /**
+     * Deletes the file we are saving to, if it exists. Raw data files opened
+     * from that file may read their data points directly from it (see
+     * RawDataFileImpl.openDataPointsArchive()), and on Windows a
+     * memory-mapped file cannot be deleted. In that case the data points of
+     * those raw data files are copied to temporary files first.
      */
-    private void savePeakLists(ZipOutputStream zipStream) throws IOException,
-            TransformerConfigurationException, SAXException {
+    private void deleteOldProjectFile() throws IOException {
 
-        PeakList peakLists[] = savedProject.getPeakLists();
+        if (!saveFile.exists() || saveFile.delete())
+            return;
 
-        for (int i = 0; i < peakLists.length; i++) {
+        boolean detached = false;
+        for (RawDataFile dataFile : savedProject.getDataFiles()) {
+            if ((dataFile instanceof RawDataFileImpl)
+                    && ((RawDataFileImpl) dataFile)
+                            .detachDataPointsArchive(saveFile))
+                detached = true;
+        }
 
-            if (isCanceled())
+        // The mapping is released only when the mapped buffers are garbage
+        // collected, see JDK bug #4724038
+        for (int attempt = 0; detached && (attempt < 10); attempt++) {
+            System.gc();
+            System.runFinalization();
+            if (saveFile.delete())
                 return;
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        throw new IOException("Could not delete old file " + saveFile);
+
+    }
 
-            logger.info("Saving peak list: " + peakLists[i].getName());
+    /**
+     * Opens the file the project was last saved to or loaded from, if it
+     * exists. The entries of unmodified items are copied from this file
+     * instead of being written again.
+     */
+    private void openPreviousProject() {
+        File previousFile = savedProject.getProjectFile();
+        if ((previousFile == null) || (!previousFile.exists()))
+            return;
+        try {
+            previousProject = new ZipFile(previousFile);
+            previousProjectFile = previousFile;
+        } catch (IOException e) {
+            logger.warning("Could not open the previous project file "
+                    + previousFile + ", all items will be saved again: "
+                    + ExceptionUtils.exceptionToString(e));
+            return;
+        }
+        // Without the positions, the entries are decompressed and compressed
+        // again
+        try {
+            previousEntryOffsets = ZipUtils.getEntryDataOffsets(previousFile);
+        } catch (IOException e) {
+            logger.warning("Could not read the structure of the previous project file "
+                    + previousFile + ": " + ExceptionUtils.exceptionToString(e));
+        }
+    }
 
-            String peakListSavedName = "Peak list #" + (i + 1) + " "
-                    + peakLists[i].getName();
+    private void closePreviousProject() {
+        if (previousProject == null)
+            return;
+        try {
+            previousProject.close();
+        } catch (IOException e) {
+            logger.warning("Could not close the previous project file: "
+                    + ExceptionUtils.exceptionToString(e));
+        }
+        previousProject = null;
+    }
 
-            zipStream.putNextEntry(new ZipEntry(peakListSavedName + ".xml"));
+    /**
+     * Assigns the IDs of the saved items. Items which are stored in the
+     * previous project file keep their IDs, so their entries can be copied.
+     * Other items get the lowest unused IDs.
+     */
+    private void assignIDs(Object items[]) {
+        Set<Integer> usedIDs = new HashSet<Integer>();
+        for (Object item : items) {
+            Integer id = savedProject.getProjectFileID(item);
+            if ((id != null) && usedIDs.add(id))
+                savedItemIDs.put(item, id);
+        }
+        int nextID = 1;
+        for (Object item : items) {
+            if (savedItemIDs.containsKey(item))
+                continue;
+            while (usedIDs.contains(nextID))
+                nextID++;
+            usedIDs.add(nextID);
+            savedItemIDs.put(item, nextID);
+        }
+    }
 
-            peakListSaveHandler = new PeakListSaveHandler(zipStream,
-                    dataFilesIDMap);
+    /**
+     * Checks if given raw data file or peak list is stored in the previous
+     * project file under the same ID. Peak lists refer to their raw data
+     * files by ID, so those have to keep their IDs, too.
+     */
+    private boolean isStoredInPreviousProject(Object item) {
+        if (previousProject == null)
+            return false;
+        if (!savedItemIDs.get(item).equals(savedProject.getProjectFileID(item)))
+            return false;
+        if (item instanceof PeakList) {
+            for (RawDataFile dataFile : ((PeakList) item).getRawDataFiles()) {
+                Integer id = savedItemIDs.get(dataFile);
+                if ((id == null)
+                        || !id.equals(savedProject.getProjectFileID(dataFile)))
+                    return false;
+            }
+        }
+        return true;
+    }
 
-            currentSavedObjectName = peakLists[i].getName();
-            peakListSaveHandler.savePeakList(peakLists[i]);
-            finishedSaveItems++;
+    /**
+     * Sets the modification flags of all raw data files and peak lists
+     */
+    private void setModified(boolean modified) {
+        for (RawDataFile dataFile : savedProject.getDataFiles())
+            ((RawDataFileImpl) dataFile).setModified(modified);
+        for (PeakList peakList : savedProject.getPeakLists()) {
+            if (peakList instanceof SimplePeakList)
+                ((SimplePeakList) peakList).setModified(modified);
         }
     }
 
     /**
-     * Save the peak lists
+     * Save the user parameters
      * 
      * @throws SAXException
      * @throws TransformerConfigurationException
      */
-    private void saveUserParameters(ZipOutputStream zipStream)
+    private void saveUserParameters(ZipArchiveWriter zipWriter)
             throws IOException, TransformerConfigurationException,
             SAXException {
 
@@ -366,14 +804,18 @@ public class ProjectSavingTask extends AbstractTask {
 
         logger.info("Saving user parameters");
 
-        zipStream.putNextEntry(new ZipEntry(PARAMETERS_FILENAME));
+        CompressedZipEntry entry = new CompressedZipEntry(PARAMETERS_FILENAME,
+                compressionLevel);
 
-        userParameterSaveHandler = new UserParameterSaveHandler(zipStream,
-                savedProject, dataFilesIDMap);
+        userParameterSaveHandler = new UserParameterSaveHandler(
+                entry.getOutputStream(), savedProject, dataFilesIDMap);
 
         currentSavedObjectName = "User parameters";
         userParameterSaveHandler.saveParameters();
 
+        entry.finish();
+        zipWriter.writeEntry(entry);
+
     }
 
 }
@@ -19,14 +19,18 @@
 
 package net.sf.mzmine.modules.projectmethods.projectsave;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
@@ -37,45 +41,74 @@ import javax.xml.transform.stream.StreamResult;
 
 import net.sf.mzmine.datamodel.MassList;
 import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.project.impl.DataPointsStorage;
 import net.sf.mzmine.project.impl.RawDataFileImpl;
 import net.sf.mzmine.project.impl.StorableMassList;
 import net.sf.mzmine.project.impl.StorableScan;
+import net.sf.mzmine.util.CompressedZipEntry;
+import net.sf.mzmine.util.StreamCopy;
+import net.sf.mzmine.util.ZipArchiveWriter;
 
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
 import com.google.common.collect.Range;
+import com.google.common.io.ByteStreams;
 
 class RawDataFileSaveHandler {
 
     private Logger logger = Logger.getLogger(this.getClass().getName());
     private int numOfScans, completedScans;
-    private ZipOutputStream zipOutputStream;
-    private boolean canceled = false;
+    private volatile boolean canceled = false;
     private Map<Integer, Long> dataPointsOffsets;
     private Map<Integer, Long> consolidatedDataPointsOffsets;
     private Map<Integer, Integer> dataPointsLengths;
-    private double progress = 0;
+    private volatile double progress = 0;
+    private volatile StreamCopy copyMachine;
 
-    RawDataFileSaveHandler(ZipOutputStream zipOutputStream) {
-	this.zipOutputStream = zipOutputStream;
+    private final RawDataFileImpl rawDataFile;
+    private final String rawDataSavedName;
+    private final int compressionLevel;
+
+    // Prepared content of the entries
+    private long scansSize, scansCrc;
+    private ZipFile previousProject;
+    private ZipEntry previousScansEntry;
+    private volatile CompressedZipEntry descriptionEntry;
+
+    // Description copied from the previous project without decompressing
+    private File previousProjectFile;
+    private ZipEntry previousDescriptionEntry;
+    private long previousDescriptionOffset;
+
+    /**
+     * @param number
+     *            ID of the raw data file within the saved project
+     * @param compressionLevel
+     *            compression level of the description, 0 for no compression
+     */
+    RawDataFileSaveHandler(RawDataFileImpl rawDataFile, int number,
+	    int compressionLevel) {
+	this.rawDataFile = rawDataFile;
+	this.rawDataSavedName = "Raw data file #" + number + " "
+		+ rawDataFile.getName();
+	this.compressionLevel = compressionLevel;
     }
 
     /**
-     * Copy the data points file of the raw data file from the temporary folder
-     * to the zip file. Create an XML file which contains the description of the
-     * same raw data file an copy it into the same zip file.
+     * Prepares the raw data file for saving. Calculates the size and CRC of
+     * the data points, which are saved without compression, so the project
+     * opening can read them directly from the project file. Such entry needs
+     * its size and CRC before the data. Then creates an XML description of the
+     * raw data file and compresses it in memory. This method does not write to
+     * the project file, so several raw data files can be prepared in parallel.
      * 
-     * @param rawDataFile
-     *            raw data file to be copied
-     * @param rawDataSavedName
-     *            name of the raw data inside the zip file
      * @throws java.io.IOException
      * @throws TransformerConfigurationException
      * @throws SAXException
      */
-    void writeRawDataFile(RawDataFileImpl rawDataFile, int number)
-	    throws IOException, TransformerConfigurationException, SAXException {
+    void prepareRawDataFile() throws IOException,
+	    TransformerConfigurationException, SAXException {
 
 	numOfScans = rawDataFile.getNumOfScans();
 
@@ -84,61 +117,169 @@ class RawDataFileSaveHandler {
 	dataPointsLengths = rawDataFile.getDataPointsLengths();
 	consolidatedDataPointsOffsets = new TreeMap<Integer, Long>();
 
-	// step 1 - save data file
+	// step 1 - calculate the size and CRC of the data points
+	logger.info("Preparing data points of: " + rawDataFile.getName());
+
+	CRC32 crc = new CRC32();
+	scansSize = copyDataPoints(new CheckedOutputStream(
+		ByteStreams.nullOutputStream(), crc), 0.0);
+	scansCrc = crc.getValue();
+
+	if (canceled)
+	    return;
+
+	// step 2 - create raw data description
+	descriptionEntry = new CompressedZipEntry(rawDataSavedName + ".xml",
+		compressionLevel);
+
+	StreamResult streamResult = new StreamResult(
+		descriptionEntry.getOutputStream());
+	SAXTransformerFactory tf = (SAXTransformerFactory) SAXTransformerFactory
+		.newInstance();
+
+	TransformerHandler hd = tf.newTransformerHandler();
+	Transformer serializer = hd.getTransformer();
+	serializer.setOutputProperty(OutputKeys.INDENT, "yes");
+	serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+
+	hd.setResult(streamResult);
+	hd.startDocument();
+	saveRawDataInformation(rawDataFile, hd);
+	hd.endDocument();
+	descriptionEntry.finish();
+    }
+
+    /**
+     * Prepares copying of the entries of an unmodified raw data file from the
+     * previous project file, without reading its data points. The compressed
+     * description is copied as it is if its position in the previous project
+     * file is known, otherwise it is decompressed and compressed again.
+     * Returns false if the previous project file does not contain this raw
+     * data file under the same number.
+     * 
+     * @param previousEntryOffsets
+     *            positions of the data of the entries of the previous project
+     *            file (see ZipUtils.getEntryDataOffsets())
+     */
+    boolean prepareCopy(ZipFile previousProject, File previousProjectFile,
+	    Map<String, Long> previousEntryOffsets) throws IOException {
+
+	ZipEntry scansEntry = previousProject.getEntry(rawDataSavedName
+		+ ".scans");
+	ZipEntry unmodifiedDescriptionEntry = previousProject
+		.getEntry(rawDataSavedName + ".xml");
+	if ((scansEntry == null) || (unmodifiedDescriptionEntry == null)
+		|| (scansEntry.getSize() < 0) || (scansEntry.getCrc() < 0))
+	    return false;
+
+	logger.info("Copying unmodified raw data file: "
+		+ rawDataFile.getName());
+
+	final Long descriptionOffset = previousEntryOffsets
+		.get(unmodifiedDescriptionEntry.getName());
+	if (descriptionOffset != null) {
+	    this.previousProjectFile = previousProjectFile;
+	    this.previousDescriptionEntry = unmodifiedDescriptionEntry;
+	    this.previousDescriptionOffset = descriptionOffset;
+	} else {
+	    CompressedZipEntry newEntry = new CompressedZipEntry(
+		    unmodifiedDescriptionEntry.getName(), compressionLevel);
+	    descriptionEntry = newEntry;
+	    InputStream entryStream = previousProject
+		    .getInputStream(unmodifiedDescriptionEntry);
+	    copyMachine = new StreamCopy();
+	    copyMachine.copy(entryStream, newEntry.getOutputStream(),
+		    unmodifiedDescriptionEntry.getSize());
+	    entryStream.close();
+	    copyMachine = null;
+	    newEntry.finish();
+	}
+
+	// The data points are copied by writeRawDataFile()
+	this.previousProject = previousProject;
+	this.previousScansEntry = scansEntry;
+	scansSize = scansEntry.getSize();
+	scansCrc = scansEntry.getCrc();
+
+	return true;
+
+    }
+
+    /**
+     * Writes the prepared raw data file to the project file. The data points
+     * are always saved without compression, even if the previous project
+     * compressed them.
+     * 
+     * @throws java.io.IOException
+     */
+    void writeRawDataFile(ZipArchiveWriter zipWriter) throws IOException {
+
+	if (canceled)
+	    return;
+
 	logger.info("Saving data points of: " + rawDataFile.getName());
 
-	String rawDataSavedName = "Raw data file #" + number + " "
-		+ rawDataFile.getName();
+	OutputStream scansStream = zipWriter.putStoredEntry(rawDataSavedName
+		+ ".scans", scansSize, scansCrc);
+
+	if (previousScansEntry != null) {
+	    InputStream entryStream = previousProject
+		    .getInputStream(previousScansEntry);
+	    copyMachine = new StreamCopy();
+	    copyMachine.copy(entryStream, scansStream, scansSize);
+	    entryStream.close();
+	    copyMachine = null;
+	} else {
+	    copyDataPoints(scansStream, 0.55);
+	}
 
-	zipOutputStream.putNextEntry(new ZipEntry(rawDataSavedName + ".scans"));
+	if (canceled)
+	    return;
 
-	// We save only those data points that still have a reference in the
-	// dataPointsOffset table. Some deleted mass lists may still be present
-	// in the data points file, we don't want to copy those.
+	if (previousDescriptionEntry != null)
+	    zipWriter.copyEntry(previousDescriptionEntry, previousProjectFile,
+		    previousDescriptionOffset);
+	else
+	    zipWriter.writeEntry(descriptionEntry);
+	progress = 1.0;
+
+    }
+
+    /**
+     * Writes the data points to given stream and returns the number of bytes
+     * written. We save only those data points that still have a reference in
+     * the dataPointsOffset table. Some deleted mass lists may still be present
+     * in the data points file, we don't want to copy those.
+     */
+    private long copyDataPoints(OutputStream outputStream,
+	    double startProgress) throws IOException {
+
+	DataPointsStorage dataPointsStorage = rawDataFile
+		.getDataPointsStorage();
 	long newOffset = 0;
 	byte buffer[] = new byte[1 << 20];
-	RandomAccessFile dataPointsFile = rawDataFile.getDataPointsFile();
 	for (Integer storageID : dataPointsOffsets.keySet()) {
 
 	    if (canceled)
-		return;
+		break;
 
 	    final long offset = dataPointsOffsets.get(storageID);
-	    dataPointsFile.seek(offset);
 
-	    final int bytes = dataPointsLengths.get(storageID) * 4 * 2;
+	    final int bytes = rawDataFile.getStoredDataPointsSize(storageID);
 	    consolidatedDataPointsOffsets.put(storageID, newOffset);
 	    if (buffer.length < bytes) {
 		buffer = new byte[bytes * 2];
 	    }
-	    dataPointsFile.read(buffer, 0, bytes);
-	    zipOutputStream.write(buffer, 0, bytes);
+	    ByteBuffer storedData = dataPointsStorage.read(offset, bytes);
+	    storedData.get(buffer, 0, bytes);
+	    outputStream.write(buffer, 0, bytes);
 	    newOffset += bytes;
-	    progress = 0.9 * ((double) offset / dataPointsFile.length());
+	    progress = startProgress + 0.45
+		    * ((double) offset / dataPointsStorage.getSize());
 	}
 
-	if (canceled)
-	    return;
-
-	// step 2 - save raw data description
-	logger.info("Saving raw data description of: " + rawDataFile.getName());
-
-	zipOutputStream.putNextEntry(new ZipEntry(rawDataSavedName + ".xml"));
-	OutputStream finalStream = zipOutputStream;
-
-	StreamResult streamResult = new StreamResult(finalStream);
-	SAXTransformerFactory tf = (SAXTransformerFactory) SAXTransformerFactory
-		.newInstance();
-
-	TransformerHandler hd = tf.newTransformerHandler();
-	Transformer serializer = hd.getTransformer();
-	serializer.setOutputProperty(OutputKeys.INDENT, "yes");
-	serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+	return newOffset;
 
-	hd.setResult(streamResult);
-	hd.startDocument();
-	saveRawDataInformation(rawDataFile, hd);
-	hd.endDocument();
     }
 
     /**
@@ -166,6 +307,8 @@ class RawDataFileSaveHandler {
 	// <STORED_DATAPOINTS>
 	atts.addAttribute("", "", RawDataElementName.QUANTITY.getElementName(),
 		"CDATA", String.valueOf(dataPointsOffsets.size()));
+	atts.addAttribute("", "", RawDataElementName.CODEC.getElementName(),
+		"CDATA", rawDataFile.getDataPointsCodec().name());
 	hd.startElement("", "",
 		RawDataElementName.STORED_DATAPOINTS.getElementName(), atts);
 	atts.clear();
@@ -180,6 +323,10 @@ class RawDataFileSaveHandler {
 	    atts.addAttribute("", "",
 		    RawDataElementName.QUANTITY_DATAPOINTS.getElementName(),
 		    "CDATA", String.valueOf(length));
+	    atts.addAttribute("", "",
+		    RawDataElementName.QUANTITY_BYTES.getElementName(),
+		    "CDATA", String.valueOf(rawDataFile
+			    .getStoredDataPointsSize(storageID)));
 	    hd.startElement("", "",
 		    RawDataElementName.STORED_DATA.getElementName(), atts);
 	    atts.clear();
@@ -216,7 +363,7 @@ class RawDataFileSaveHandler {
 	    hd.endElement("", "", RawDataElementName.SCAN.getElementName());
 	    atts.clear();
 	    completedScans++;
-	    progress = 0.9 + (0.1 * ((double) completedScans / numOfScans));
+	    progress = 0.45 + (0.1 * ((double) completedScans / numOfScans));
 	}
 
 	hd.endElement("", "", RawDataElementName.RAWDATA.getElementName());
@@ -362,10 +509,26 @@ class RawDataFileSaveHandler {
      *         to the zip file.
      */
     double getProgress() {
+	StreamCopy currentCopy = copyMachine;
+	if (currentCopy != null)
+	    return currentCopy.getProgress();
 	return progress;
     }
 
     void cancel() {
 	canceled = true;
+	StreamCopy currentCopy = copyMachine;
+	if (currentCopy != null)
+	    currentCopy.cancel();
+    }
+
+    /**
+     * Deletes the temporary file of the prepared description, if the raw data
+     * file is not going to be written
+     */
+    void discard() {
+	CompressedZipEntry currentEntry = descriptionEntry;
+	if (currentEntry != null)
+	    currentEntry.discard();
     }
 }
@@ -27,6 +27,10 @@ import java.awt.Window;
 
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.AsymmetryCorrector;
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.JavaAsymmetryCorrector;
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.JavaLocMinLoessCorrector;
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.JavaPeakDetectionCorrector;
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.JavaRollingBallCorrector;
 import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.LocMinLoessCorrector;
 import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.PeakDetectionCorrector;
 import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors.RollingBallCorrector;
@@ -87,8 +91,16 @@ public class BaselineCorrectionParameters extends SimpleParameterSet {
                                           // http://cran.r-project.org/web/packages/baseline/baseline.pdf)
             new RubberBandCorrector(), // (Package R "hyperSpec" -
                                        // http://cran.r-project.org/web/packages/hyperSpec/vignettes/baseline.pdf)
-            new LocMinLoessCorrector() // (Package R/Bioc. "PROcess" -
-                                       // http://bioconductor.org/packages/release/bioc/manuals/PROcess/man/PROcess.pdf)
+            new LocMinLoessCorrector(), // (Package R/Bioc. "PROcess" -
+                                        // http://bioconductor.org/packages/release/bioc/manuals/PROcess/man/PROcess.pdf)
+            new JavaAsymmetryCorrector(), // (Java port of "asysm", no R
+                                          // needed)
+            new JavaRollingBallCorrector(), // (Java port of "rollingBall", no
+                                            // R needed)
+            new JavaPeakDetectionCorrector(), // (Java port of
+                                              // "peakDetection", no R needed)
+            new JavaLocMinLoessCorrector() // (Java port of "bslnoff", no R
+                                           // needed)
     };
 
     public static final ModuleComboParameter<BaselineCorrector> BASELINE_CORRECTORS = new ModuleComboParameter<BaselineCorrector>(
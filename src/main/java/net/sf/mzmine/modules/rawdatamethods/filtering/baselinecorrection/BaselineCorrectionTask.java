@@ -113,15 +113,18 @@ public class BaselineCorrectionTask extends AbstractTask {
 
         try {
 
-            // Check R availability, by trying to open the connection.
-            String[] reqPackages = this.baselineCorrectorProcStep.getModule()
-                    .getRequiredRPackages();
-            String callerFeatureName = this.baselineCorrectorProcStep
-                    .getModule().getName();
-            this.rSession = new RSessionWrapper(callerFeatureName, reqPackages,
-                    null);
-
-            this.rSession.open();
+            // Check R availability, by trying to open the connection (only
+            // if the corrector computes its baselines through R).
+            if (this.baselineCorrectorProcStep.getModule().requiresRSession()) {
+                String[] reqPackages = this.baselineCorrectorProcStep
+                        .getModule().getRequiredRPackages();
+                String callerFeatureName = this.baselineCorrectorProcStep
+                        .getModule().getName();
+                this.rSession = new RSessionWrapper(callerFeatureName,
+                        reqPackages, null);
+
+                this.rSession.open();
+            }
 
             this.baselineCorrectorProcStep.getModule().initProgress(
                     origDataFile);
@@ -150,7 +153,7 @@ public class BaselineCorrectionTask extends AbstractTask {
                 LOG.info("Baseline corrected " + origDataFile.getName());
             }
             // Turn off R instance, once task ended gracefully.
-            if (!isCanceled())
+            if (!isCanceled() && this.rSession != null)
                 this.rSession.close(false);
 
         } catch (IOException | RSessionWrapperException e) {
@@ -170,7 +173,7 @@ public class BaselineCorrectionTask extends AbstractTask {
 
         // Turn off R instance, once task ended UNgracefully.
         try {
-            if (!isCanceled())
+            if (!isCanceled() && this.rSession != null)
                 this.rSession.close(isCanceled());
         } catch (RSessionWrapperException e) {
             if (!isCanceled()) {
@@ -20,7 +20,12 @@
 package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import net.sf.mzmine.datamodel.DataPoint;
@@ -32,6 +37,7 @@ import net.sf.mzmine.datamodel.impl.SimpleScan;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.MZmineModule;
 import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 import net.sf.mzmine.util.RangeUtils;
 import net.sf.mzmine.util.R.RSessionWrapper;
 import net.sf.mzmine.util.R.RSessionWrapperException;
@@ -75,6 +81,17 @@ public abstract class BaselineCorrector implements BaselineProvider,
         progressMap = new HashMap<RawDataFile, int[]>();
     }
 
+    /**
+     * Whether this corrector computes its baselines through an R session. If
+     * not, no session is opened for it and the m/z bins are processed in
+     * parallel.
+     * 
+     * @return true if computeBaseline() needs a running R session.
+     */
+    public boolean requiresRSession() {
+        return true;
+    }
+
     /**
      * Getting general parameters (common to all the correctors).
      * 
@@ -113,7 +130,8 @@ public abstract class BaselineCorrector implements BaselineProvider,
             final ParameterSet commonParameters) throws IOException,
             RSessionWrapperException {
 
-        if (isAborted(dataFile) || !rSession.isSessionRunning())
+        if (isAborted(dataFile)
+                || (requiresRSession() && !rSession.isSessionRunning()))
             return null;
         // Get very last information from root module setup
         // this.setGeneralParameters(MZmineCore.getConfiguration().getModuleParameters(BaselineCorrectionModule.class));
@@ -276,11 +294,7 @@ public abstract class BaselineCorrector implements BaselineProvider,
         // Calculate baselines: done in-place, i.e. overwrite chromatograms to
         // save memory.
         LOG.finest("Calculating baselines.");
-        for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-            baseChrom[binIndex] = computeBaseline(rSession, origDataFile,
-                    baseChrom[binIndex], parameters);
-            progressMap.get(origDataFile)[0]++;
-        }
+        correctBins(rSession, origDataFile, baseChrom, false, parameters);
 
         // Subtract baselines.
         LOG.finest("Subtracting baselines.");
@@ -338,23 +352,7 @@ public abstract class BaselineCorrector implements BaselineProvider,
         // Calculate baselines: done in-place, i.e. overwrite chromatograms to
         // save memory.
         LOG.finest("Calculating baselines.");
-        for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-
-            // Calculate baseline.
-            // final double[] baseline = asymBaseline(baseChrom[binIndex]);
-            final double[] baseline = computeBaseline(rSession, origDataFile,
-                    baseChrom[binIndex], parameters);
-
-            // Normalize the baseline w.r.t. chromatogram (TIC).
-            for (int scanIndex = 0; !isAborted(origDataFile)
-                    && scanIndex < numScans; scanIndex++) {
-                final double bc = baseChrom[binIndex][scanIndex];
-                if (bc != 0.0) {
-                    baseChrom[binIndex][scanIndex] = baseline[scanIndex] / bc;
-                }
-            }
-            progressMap.get(origDataFile)[0]++;
-        }
+        correctBins(rSession, origDataFile, baseChrom, true, parameters);
 
         // Subtract baselines.
         LOG.finest("Subtracting baselines.");
@@ -377,6 +375,109 @@ public abstract class BaselineCorrector implements BaselineProvider,
 
     }
 
+    /**
+     * Calculate the baselines of all m/z bins, replacing each chromatogram
+     * with its baseline (or with the baseline to chromatogram ratio, for TIC
+     * chromatograms). Bins are processed one after the other through the R
+     * session, or in parallel if the corrector does not need R.
+     * 
+     * @param origDataFile
+     *            dataFile of concern.
+     * @param baseChrom
+     *            the chromatograms, one for each m/z bin.
+     * @param normalize
+     *            whether to store the baseline to chromatogram ratio.
+     * @param parameters
+     *            parameters specific to the actual method for baseline
+     *            computing.
+     * @throws RSessionWrapperException
+     */
+    private void correctBins(final RSessionWrapper rSession,
+            final RawDataFile origDataFile, final double[][] baseChrom,
+            final boolean normalize, final ParameterSet parameters)
+            throws RSessionWrapperException {
+
+        final int numBins = baseChrom.length;
+        final int numOfThreads = MZmineCore.getConfiguration()
+                .getPreferences().getNumOfThreads();
+
+        if (requiresRSession() || numOfThreads < 2 || numBins < 2) {
+            for (int binIndex = 0; !isAborted(origDataFile)
+                    && binIndex < numBins; binIndex++) {
+                correctBin(rSession, origDataFile, baseChrom, binIndex,
+                        normalize, parameters);
+            }
+            return;
+        }
+
+        final WorkerExecutor executor = new WorkerExecutor();
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(
+                    numBins);
+            for (int i = 0; i < numBins; i++) {
+                final int binIndex = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws RSessionWrapperException {
+                        if (!isAborted(origDataFile)) {
+                            correctBin(rSession, origDataFile, baseChrom,
+                                    binIndex, normalize, parameters);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setAbortProcessing(origDataFile, true);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RSessionWrapperException)
+                throw (RSessionWrapperException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.cancelAll();
+        }
+    }
+
+    /**
+     * Calculate the baseline of a single m/z bin (see correctBins()).
+     */
+    private void correctBin(final RSessionWrapper rSession,
+            final RawDataFile origDataFile, final double[][] baseChrom,
+            final int binIndex, final boolean normalize,
+            final ParameterSet parameters) throws RSessionWrapperException {
+
+        final double[] chromatogram = baseChrom[binIndex];
+
+        // Calculate baseline.
+        final double[] baseline = computeBaseline(rSession, origDataFile,
+                chromatogram, parameters);
+
+        if (normalize) {
+            // Normalize the baseline w.r.t. chromatogram (TIC).
+            for (int scanIndex = 0; !isAborted(origDataFile)
+                    && scanIndex < chromatogram.length; scanIndex++) {
+                final double bc = chromatogram[scanIndex];
+                if (bc != 0.0) {
+                    chromatogram[scanIndex] = baseline[scanIndex] / bc;
+                }
+            }
+        } else {
+            baseChrom[binIndex] = baseline;
+        }
+
+        final int[] progress = progressMap.get(origDataFile);
+        synchronized (progress) {
+            progress[0]++;
+        }
+    }
+
     /**
      * Constructs base peak (max) chromatograms - one for each m/z bin.
      * 
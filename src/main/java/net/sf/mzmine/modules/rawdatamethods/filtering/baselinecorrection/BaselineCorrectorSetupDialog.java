@@ -213,15 +213,18 @@ public class BaselineCorrectorSetupDialog extends
             baselineCorrector.collectCommonParameters(null);
 
             // Check R availability, by trying to open the connection
-            try {
-                String[] reqPackages = baselineCorrector.getRequiredRPackages();
-                this.rSession = new RSessionWrapper(
-                        baselineCorrector.getName(), reqPackages, null);
-                this.rSession.open();
-            } catch (RSessionWrapperException e) {
-                errorMsg = e.getMessage();
-                updateStatus(TaskStatus.ERROR);
-                return;
+            if (baselineCorrector.requiresRSession()) {
+                try {
+                    String[] reqPackages = baselineCorrector
+                            .getRequiredRPackages();
+                    this.rSession = new RSessionWrapper(
+                            baselineCorrector.getName(), reqPackages, null);
+                    this.rSession.open();
+                } catch (RSessionWrapperException e) {
+                    errorMsg = e.getMessage();
+                    updateStatus(TaskStatus.ERROR);
+                    return;
+                }
             }
 
             // Set VK_ESCAPE KeyEvent listeners
@@ -271,7 +274,7 @@ public class BaselineCorrectorSetupDialog extends
 
             // Turn off R instance.
             try {
-                if (!this.userCanceled)
+                if (!this.userCanceled && this.rSession != null)
                     this.rSession.close(false);
             } catch (RSessionWrapperException e) {
                 if (!this.userCanceled) {
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection;
+
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.util.R.RSessionWrapper;
+
+/**
+ * @description Abstract corrector class for baseline correctors computing
+ *              their baselines in plain Java. Such correctors do not need an R
+ *              session and are expected to be stateless, so that the m/z bins
+ *              of a data file can be processed in parallel.
+ * 
+ */
+public abstract class JavaBaselineCorrector extends BaselineCorrector {
+
+    @Override
+    public String[] getRequiredRPackages() {
+        return new String[0];
+    }
+
+    @Override
+    public boolean requiresRSession() {
+        return false;
+    }
+
+    @Override
+    public final double[] computeBaseline(final RSessionWrapper rSession,
+            final RawDataFile origDataFile, final double[] chromatogram,
+            final ParameterSet parameters) {
+        return computeBaseline(chromatogram, parameters);
+    }
+
+    /**
+     * Returns a baseline for correcting the given chromatogram. May be called
+     * concurrently for different chromatograms.
+     * 
+     * @param chromatogram
+     *            the chromatogram, which must not be modified.
+     * @param parameters
+     *            parameters specific to the actual method.
+     * @return the baseline (same length as the chromatogram).
+     */
+    public abstract double[] computeBaseline(final double[] chromatogram,
+            final ParameterSet parameters);
+
+}
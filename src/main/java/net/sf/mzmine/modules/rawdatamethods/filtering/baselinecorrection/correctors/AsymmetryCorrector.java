@@ -56,13 +56,11 @@ public class AsymmetryCorrector extends BaselineCorrector {
 
         // try {
         // Set chromatogram.
-        // rSession.assignDoubleArray("chromatogram", chromatogram);
-        rSession.assign("chromatogram", chromatogram);
+        rSession.assignDoubleArray("chromatogram", chromatogram);
         // Calculate baseline.
         rSession.eval("baseline <- asysm(chromatogram," + smoothing + ','
                 + asymmetry + ')');
-        // baseline = rSession.collectDoubleArray("baseline");
-        baseline = (double[]) rSession.collect("baseline");
+        baseline = rSession.collectDoubleArray("baseline");
         // }
         // catch (Throwable t) {
         // //t.printStackTrace();
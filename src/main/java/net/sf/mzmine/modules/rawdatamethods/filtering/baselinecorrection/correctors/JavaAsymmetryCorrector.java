@@ -0,0 +1,161 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import javax.annotation.Nonnull;
+
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.JavaBaselineCorrector;
+import net.sf.mzmine.parameters.ParameterSet;
+
+/**
+ * @description Asymmetric baseline corrector computed in Java. Same algorithm
+ *              as "asysm" from "ptw" R-package: asymmetric least squares
+ *              fitting of a Whittaker smoother (second order differences),
+ *              re-weighting the points until the sum of the absolute changes
+ *              of the baseline falls below "eps".
+ * 
+ */
+public class JavaAsymmetryCorrector extends JavaBaselineCorrector {
+
+    // Same defaults as "asysm" (maxit and eps).
+    private static final int MAX_ITERATIONS = 25;
+    private static final double EPSILON = 1e-8;
+
+    @Override
+    public double[] computeBaseline(final double[] chromatogram,
+            final ParameterSet parameters) {
+
+        // Smoothing and asymmetry parameters.
+        final double smoothing = parameters.getParameter(
+                AsymmetryCorrectorParameters.SMOOTHING).getValue();
+        final double asymmetry = parameters.getParameter(
+                AsymmetryCorrectorParameters.ASYMMETRY).getValue();
+
+        return asysm(chromatogram, smoothing, asymmetry);
+    }
+
+    /**
+     * Same iterations as "asysm": starting from a zero baseline and unit
+     * weights, smooth, then give the points above the new baseline weight p
+     * and the others 1 - p. Stops when sum(abs(z - zold)) < eps, or after
+     * maxit iterations.
+     */
+    static double[] asysm(final double[] y, final double lambda,
+            final double p) {
+
+        final int size = y.length;
+        final double[] weights = new double[size];
+        for (int i = 0; i < size; i++)
+            weights[i] = 1.0;
+
+        double[] baseline = new double[size];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+
+            final double[] previous = baseline;
+            baseline = smooth(y, weights, lambda);
+
+            double change = 0.0;
+            for (int i = 0; i < size; i++) {
+                weights[i] = y[i] > baseline[i] ? p : 1.0 - p;
+                change += Math.abs(baseline[i] - previous[i]);
+            }
+            if (change < EPSILON)
+                break;
+        }
+
+        return baseline;
+    }
+
+    /**
+     * Weighted Whittaker smoother with second order differences: solves (W +
+     * lambda * D'D) z = W y, where the system matrix is symmetric and
+     * pentadiagonal (banded LDL' decomposition, linear in the number of
+     * points).
+     */
+    static double[] smooth(final double[] y, final double[] w,
+            final double lambda) {
+
+        final int size = y.length;
+        if (size < 3)
+            return y.clone();
+
+        // Diagonals of W + lambda * D'D.
+        final double[] d0 = new double[size];
+        final double[] d1 = new double[size];
+        final double[] d2 = new double[size];
+        for (int k = 0; k < size - 2; k++) {
+            d0[k] += lambda;
+            d0[k + 1] += 4.0 * lambda;
+            d0[k + 2] += lambda;
+            d1[k] -= 2.0 * lambda;
+            d1[k + 1] -= 2.0 * lambda;
+            d2[k] += lambda;
+        }
+        for (int i = 0; i < size; i++)
+            d0[i] += w[i];
+
+        // Decomposition: d0 becomes D, d1 and d2 the two sub-diagonals of L.
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                d0[i] -= d1[i - 1] * d1[i - 1] * d0[i - 1];
+            if (i > 1)
+                d0[i] -= d2[i - 2] * d2[i - 2] * d0[i - 2];
+            if (i < size - 1) {
+                if (i > 0)
+                    d1[i] -= d1[i - 1] * d0[i - 1] * d2[i - 1];
+                d1[i] /= d0[i];
+            }
+            if (i < size - 2)
+                d2[i] /= d0[i];
+        }
+
+        // Forward and backward substitution.
+        final double[] z = new double[size];
+        for (int i = 0; i < size; i++) {
+            z[i] = w[i] * y[i];
+            if (i > 0)
+                z[i] -= d1[i - 1] * z[i - 1];
+            if (i > 1)
+                z[i] -= d2[i - 2] * z[i - 2];
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            z[i] /= d0[i];
+            if (i < size - 1)
+                z[i] -= d1[i] * z[i + 1];
+            if (i < size - 2)
+                z[i] -= d2[i] * z[i + 2];
+        }
+
+        return z;
+    }
+
+    @Override
+    public @Nonnull
+    String getName() {
+        return "Asymmetric baseline corrector (Java)";
+    }
+
+    @Override
+    public @Nonnull
+    Class<? extends ParameterSet> getParameterSetClass() {
+        return JavaAsymmetryCorrectorParameters.class;
+    }
+
+}
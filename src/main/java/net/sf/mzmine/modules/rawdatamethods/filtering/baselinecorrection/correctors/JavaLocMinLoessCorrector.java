@@ -0,0 +1,192 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.JavaBaselineCorrector;
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.apache.commons.math.MathException;
+import org.apache.commons.math.analysis.interpolation.LoessInterpolator;
+
+/**
+ * @description Local Minima + LOESS baseline corrector computed in Java. Same
+ *              steps as the "bslnoff" method from "PROcess" R/Bioconductor
+ *              package, applied to scan numbers 1..n: the scans are cut into
+ *              "breaks - 1" intervals equally spaced on the log scale, the
+ *              local minimum (or the intensities below the "qntl" quantile)
+ *              of each interval is kept, and the baseline is fitted through
+ *              these points by LOESS (linear, without robustness iterations)
+ *              or by linear interpolation. Unlike R, the LOESS fit is
+ *              evaluated at the kept points and linearly interpolated in
+ *              between, and the bandwidth is raised to hold at least two
+ *              points.
+ * 
+ */
+public class JavaLocMinLoessCorrector extends JavaBaselineCorrector {
+
+    // Logger.
+    private static final Logger LOG = Logger
+            .getLogger(JavaLocMinLoessCorrector.class.getName());
+
+    @Override
+    public double[] computeBaseline(final double[] chromatogram,
+            final ParameterSet parameters) {
+
+        // Local Minima parameters.
+        final String method = parameters.getParameter(
+                LocMinLoessCorrectorParameters.METHOD).getValue();
+        final double bw = parameters.getParameter(
+                LocMinLoessCorrectorParameters.BW).getValue();
+        final int breaks = parameters.getParameter(
+                LocMinLoessCorrectorParameters.BREAKS).getValue();
+        final int breaks_width = parameters.getParameter(
+                LocMinLoessCorrectorParameters.BREAK_WIDTH).getValue();
+        final double qntl = parameters.getParameter(
+                LocMinLoessCorrectorParameters.QNTL).getValue();
+
+        // Breaks (as computed for the R based corrector).
+        final int numOfBreaks = (breaks_width > 0) ? (int) Math
+                .round((double) (chromatogram.length - 1)
+                        / (double) breaks_width) : breaks;
+
+        return bslnoff(chromatogram, numOfBreaks, qntl,
+                LocMinLoessCorrectorParameters.choices[0].equals(method), bw);
+    }
+
+    /**
+     * Baseline of the given chromatogram, fitted through the local minima
+     * (qntl = 0) or the low intensities (qntl > 0) of "breaks - 1" intervals.
+     */
+    static double[] bslnoff(final double[] chromatogram, final int breaks,
+            final double qntl, final boolean loess, final double bw) {
+
+        final int size = chromatogram.length;
+        if (size < 2)
+            return chromatogram.clone();
+
+        // Points kept in each interval, in increasing order.
+        final double[] xs = new double[size];
+        final double[] ys = new double[size];
+        int count = 0;
+
+        final double logMax = Math.log(size);
+        final int intervals = Math.max(1, breaks - 1);
+        int start = 0;
+        for (int k = 1; k <= intervals && start < size; k++) {
+
+            // Scans (1-based) up to the cut point belong to this interval.
+            final double cut = (k == intervals) ? size : Math.exp(logMax * k
+                    / intervals);
+            int end = start;
+            while (end < size && end + 1 <= cut)
+                end++;
+            if (end == start)
+                continue;
+
+            if (qntl > 0.0) {
+                final double threshold = quantile(chromatogram, start, end,
+                        Math.min(1.0, qntl));
+                for (int i = start; i < end; i++) {
+                    if (chromatogram[i] <= threshold) {
+                        xs[count] = i + 1;
+                        ys[count] = chromatogram[i];
+                        count++;
+                    }
+                }
+            } else {
+                int minimum = start;
+                for (int i = start + 1; i < end; i++)
+                    if (chromatogram[i] < chromatogram[minimum])
+                        minimum = i;
+                xs[count] = minimum + 1;
+                ys[count] = chromatogram[minimum];
+                count++;
+            }
+
+            start = end;
+        }
+
+        final double[] x = Arrays.copyOf(xs, count);
+        double[] fitted = Arrays.copyOf(ys, count);
+        if (loess && count > 2) {
+            try {
+                final double bandwidth = Math.min(1.0,
+                        Math.max(bw, 2.5 / count));
+                fitted = new LoessInterpolator(bandwidth, 0).smooth(x, fitted);
+            } catch (MathException e) {
+                LOG.warning("LOESS fit failed, using linear interpolation: "
+                        + e.getMessage());
+            }
+        }
+
+        // Linear interpolation, constant beyond the first and last points.
+        final double[] baseline = new double[size];
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            final double xi = i + 1;
+            while (j < count - 1 && x[j + 1] <= xi)
+                j++;
+            if (xi <= x[0])
+                baseline[i] = fitted[0];
+            else if (j == count - 1)
+                baseline[i] = fitted[count - 1];
+            else
+                baseline[i] = fitted[j] + (fitted[j + 1] - fitted[j])
+                        * (xi - x[j]) / (x[j + 1] - x[j]);
+        }
+
+        return baseline;
+    }
+
+    /**
+     * Quantile of values[from, to) with linear interpolation between order
+     * statistics (default type 7 of R's "quantile").
+     */
+    static double quantile(final double[] values, final int from,
+            final int to, final double probability) {
+
+        final double[] sorted = Arrays.copyOfRange(values, from, to);
+        Arrays.sort(sorted);
+        final double h = (sorted.length - 1) * probability;
+        final int lower = (int) Math.floor(h);
+        if (lower + 1 >= sorted.length)
+            return sorted[sorted.length - 1];
+        return sorted[lower] + (h - lower)
+                * (sorted[lower + 1] - sorted[lower]);
+    }
+
+    @Override
+    public @Nonnull
+    String getName() {
+        return "Local minima + LOESS baseline corrector (Java)";
+    }
+
+    @Override
+    public @Nonnull
+    Class<? extends ParameterSet> getParameterSetClass() {
+        return JavaLocMinLoessCorrectorParameters.class;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.JavaBaselineCorrector;
+import net.sf.mzmine.parameters.ParameterSet;
+
+/**
+ * @description Peak Detection baseline corrector computed in Java, following
+ *              the steps of the "peakDetection" method from "baseline"
+ *              R-package. Peaks are detected as local maxima over +/- left
+ *              scans, extending downhill over at most right scans on each
+ *              side, and are kept if their signal to noise ratio reaches
+ *              snminimum. The noise is the median absolute difference between
+ *              successive scans, over +/- multiplier * right scans. The kept
+ *              peaks are removed, and the local minima (+/- lwin) then the
+ *              local medians (+/- rwin) of the remaining scans give the
+ *              baseline, linearly interpolated below the peaks. If mono > 0,
+ *              the baseline is made monotonically decreasing.
+ * 
+ */
+public class JavaPeakDetectionCorrector extends JavaBaselineCorrector {
+
+    @Override
+    public double[] computeBaseline(final double[] chromatogram,
+            final ParameterSet parameters) {
+
+        // Peak Detection parameters.
+        final int left = parameters.getParameter(
+                PeakDetectionCorrectorParameters.LEFT).getValue();
+        final int right = parameters.getParameter(
+                PeakDetectionCorrectorParameters.RIGHT).getValue();
+        final int lwin = parameters.getParameter(
+                PeakDetectionCorrectorParameters.LWIN).getValue();
+        final int rwin = parameters.getParameter(
+                PeakDetectionCorrectorParameters.RWIN).getValue();
+        final double snminimum = parameters.getParameter(
+                PeakDetectionCorrectorParameters.SNMINIMUM).getValue();
+        final double mono = parameters.getParameter(
+                PeakDetectionCorrectorParameters.MONO).getValue();
+        final double multiplier = parameters.getParameter(
+                PeakDetectionCorrectorParameters.MULTIPLIER).getValue();
+
+        final boolean[] peaks = detectPeaks(chromatogram, left, right,
+                snminimum, multiplier);
+        return removePeaks(chromatogram, peaks, lwin, rwin, mono > 0.0);
+    }
+
+    /**
+     * Flags the scans belonging to peaks.
+     */
+    static boolean[] detectPeaks(final double[] chromatogram, final int left,
+            final int right, final double snminimum, final double multiplier) {
+
+        final int size = chromatogram.length;
+        final boolean[] peaks = new boolean[size];
+        if (size < 3)
+            return peaks;
+
+        final double[] differences = new double[size - 1];
+        for (int i = 0; i < size - 1; i++)
+            differences[i] = Math.abs(chromatogram[i + 1] - chromatogram[i]);
+
+        final double[] maxima = JavaRollingBallCorrector.rollingExtremum(
+                chromatogram, Math.max(1, left), false);
+        final int noiseWidth = (int) Math.round(multiplier
+                * Math.max(1, right));
+
+        for (int i = 1; i < size - 1; i++) {
+
+            // Local maximum, the first scan of a plateau.
+            if (chromatogram[i] < maxima[i]
+                    || chromatogram[i - 1] >= chromatogram[i])
+                continue;
+
+            // Extent of the peak.
+            int start = i;
+            while (start > 0 && i - start < right
+                    && chromatogram[start - 1] <= chromatogram[start])
+                start--;
+            int end = i;
+            while (end < size - 1 && end - i < right
+                    && chromatogram[end + 1] <= chromatogram[end])
+                end++;
+
+            // Signal to noise ratio.
+            final double height = chromatogram[i]
+                    - Math.max(chromatogram[start], chromatogram[end]);
+            final double noise = JavaLocMinLoessCorrector.quantile(
+                    differences, Math.max(0, i - noiseWidth),
+                    Math.min(size - 1, i + noiseWidth), 0.5);
+            if (height > 0.0
+                    && (noise == 0.0 || height / noise >= snminimum)) {
+                for (int j = start; j <= end; j++)
+                    peaks[j] = true;
+            }
+        }
+
+        return peaks;
+    }
+
+    /**
+     * Baseline of the scans which do not belong to peaks.
+     */
+    static double[] removePeaks(final double[] chromatogram,
+            final boolean[] peaks, final int lwin, final int rwin,
+            final boolean mono) {
+
+        final int size = chromatogram.length;
+        final double[] baseline = new double[size];
+
+        // Remaining scans.
+        final int[] scans = new int[size];
+        final double[] values = new double[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!peaks[i]) {
+                scans[count] = i;
+                values[count] = chromatogram[i];
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            double minimum = Double.MAX_VALUE;
+            for (final double value : chromatogram)
+                minimum = Math.min(minimum, value);
+            Arrays.fill(baseline, minimum);
+            return baseline;
+        }
+
+        // Local minima, then local medians.
+        final double[] minima = JavaRollingBallCorrector.rollingExtremum(
+                Arrays.copyOf(values, count), lwin, true);
+        final double[] medians = new double[count];
+        for (int j = 0; j < count; j++)
+            medians[j] = JavaLocMinLoessCorrector.quantile(minima,
+                    Math.max(0, j - rwin), Math.min(count, j + rwin + 1), 0.5);
+
+        // Linear interpolation below the peaks.
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < count - 1 && scans[j + 1] <= i)
+                j++;
+            if (i <= scans[0])
+                baseline[i] = medians[0];
+            else if (j == count - 1)
+                baseline[i] = medians[count - 1];
+            else
+                baseline[i] = medians[j] + (medians[j + 1] - medians[j])
+                        * (i - scans[j]) / (scans[j + 1] - scans[j]);
+        }
+
+        if (mono) {
+            for (int i = 1; i < size; i++)
+                baseline[i] = Math.min(baseline[i], baseline[i - 1]);
+        }
+
+        return baseline;
+    }
+
+    @Override
+    public @Nonnull
+    String getName() {
+        return "PeakDetection baseline corrector (Java)";
+    }
+
+    @Override
+    public @Nonnull
+    Class<? extends ParameterSet> getParameterSetClass() {
+        return JavaPeakDetectionCorrectorParameters.class;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import javax.annotation.Nonnull;
+
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.JavaBaselineCorrector;
+import net.sf.mzmine.parameters.ParameterSet;
+
+/**
+ * @description Rolling ball baseline corrector computed in Java. Same algorithm
+ *              as the "rollingBall" method from "baseline" R-package: local
+ *              minimization then maximization over windows of +/- wm scans,
+ *              followed by a moving average over windows of +/- ws scans
+ *              (windows are truncated at both ends of the chromatogram).
+ * 
+ */
+public class JavaRollingBallCorrector extends JavaBaselineCorrector {
+
+    @Override
+    public double[] computeBaseline(final double[] chromatogram,
+            final ParameterSet parameters) {
+
+        // Rolling Ball parameters.
+        final int wm = parameters.getParameter(
+                RollingBallCorrectorParameters.MIN_MAX_WIDTH).getValue();
+        final int ws = parameters.getParameter(
+                RollingBallCorrectorParameters.SMOOTHING).getValue();
+
+        final double[] minimized = rollingExtremum(chromatogram, wm, true);
+        final double[] maximized = rollingExtremum(minimized, wm, false);
+        return rollingMean(maximized, ws);
+    }
+
+    /**
+     * Minimum (or maximum) over the window [i - width, i + width] of each
+     * point, using a monotonic queue of indexes (linear in the number of
+     * points, whatever the window width).
+     */
+    static double[] rollingExtremum(final double[] values, final int width,
+            final boolean minimum) {
+
+        final int size = values.length;
+        final double[] result = new double[size];
+        final int[] queue = new int[size];
+        int head = 0, tail = 0;
+        int next = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            // Extend the window to the right.
+            final int upper = Math.min(size - 1, i + width);
+            for (; next <= upper; next++) {
+                final double v = values[next];
+                while (tail > head
+                        && (minimum ? values[queue[tail - 1]] >= v
+                                : values[queue[tail - 1]] <= v))
+                    tail--;
+                queue[tail++] = next;
+            }
+
+            // Shrink it from the left.
+            while (queue[head] < i - width)
+                head++;
+
+            result[i] = values[queue[head]];
+        }
+
+        return result;
+    }
+
+    /**
+     * Mean over the window [i - width, i + width] of each point.
+     */
+    static double[] rollingMean(final double[] values, final int width) {
+
+        final int size = values.length;
+        final double[] cumulated = new double[size + 1];
+        for (int i = 0; i < size; i++)
+            cumulated[i + 1] = cumulated[i] + values[i];
+
+        final double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            final int lower = Math.max(0, i - width);
+            final int upper = Math.min(size - 1, i + width);
+            result[i] = (cumulated[upper + 1] - cumulated[lower])
+                    / (upper - lower + 1);
+        }
+
+        return result;
+    }
+
+    @Override
+    public @Nonnull
+    String getName() {
+        return "RollingBall baseline corrector (Java)";
+    }
+
+    @Override
+    public @Nonnull
+    Class<? extends ParameterSet> getParameterSetClass() {
+        return JavaRollingBallCorrectorParameters.class;
+    }
+
+}
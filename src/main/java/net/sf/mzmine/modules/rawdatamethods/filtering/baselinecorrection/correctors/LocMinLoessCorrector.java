@@ -62,7 +62,7 @@ public class LocMinLoessCorrector extends BaselineCorrector {
         final double[] baseline;
 
         // Set chromatogram.
-        rSession.assign("chromatogram", chromatogram);
+        rSession.assignDoubleArray("chromatogram", chromatogram);
         // Transform chromatogram.
         int mini = 1;
         int maxi = chromatogram.length;
@@ -77,7 +77,7 @@ public class LocMinLoessCorrector extends BaselineCorrector {
         rSession.eval("bseoff <- bslnoff(mat, method=\"" + method + "\", bw="
                 + bw + ", breaks=breaks, qntl=" + qntl + ")");
         rSession.eval("baseline <- mat[,2] - bseoff[,2]");
-        baseline = (double[]) rSession.collect("baseline");
+        baseline = rSession.collectDoubleArray("baseline");
 
         return baseline;
     }
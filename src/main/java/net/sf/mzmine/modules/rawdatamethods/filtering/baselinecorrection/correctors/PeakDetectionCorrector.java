@@ -69,7 +69,7 @@ public class PeakDetectionCorrector extends BaselineCorrector {
         final double[] baseline;
 
         // Set chromatogram.
-        rSession.assign("chromatogram", chromatogram);
+        rSession.assignDoubleArray("chromatogram", chromatogram);
         // Transform chromatogram.
         rSession.eval("mat <- matrix(chromatogram, nrow=1)");
 
@@ -94,7 +94,7 @@ public class PeakDetectionCorrector extends BaselineCorrector {
         // Anyway, this usually happens when "chromatogram" is fully flat and
         // zeroed.
         rSession.eval("if (!is.null(bl)) { baseline <- getBaseline(bl); } else { baseline <- matrix(rep(min(chromatogram), length(chromatogram)), nrow=1); }");
-        baseline = ((double[][]) rSession.collect("baseline"))[0];
+        baseline = rSession.collectDoubleArray("baseline");
         return baseline;
     }
 
@@ -63,7 +63,7 @@ public class RubberBandCorrector extends BaselineCorrector {
         final double[] baseline;
 
         // Set chromatogram.
-        rSession.assign("chromatogram", chromatogram);
+        rSession.assignDoubleArray("chromatogram", chromatogram);
         // Transform chromatogram.
         rSession.eval("mat <- matrix(chromatogram, nrow=1)");
         rSession.eval("spc <- new (\"hyperSpec\", spc = mat, wavelength = as.numeric(seq("
@@ -77,7 +77,7 @@ public class RubberBandCorrector extends BaselineCorrector {
         rSession.eval("baseline <- spc.rubberband(spc + bend, noise = noise, df = "
                 + df + ", spline=" + (spline ? "T" : "F") + ") - bend");
         rSession.eval("baseline <- orderwl(baseline)[[1]]");
-        baseline = ((double[][]) rSession.collect("baseline"))[0];
+        baseline = rSession.collectDoubleArray("baseline");
 
         return baseline;
     }
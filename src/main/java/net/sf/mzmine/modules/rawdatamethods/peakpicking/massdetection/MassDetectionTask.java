@@ -19,20 +19,33 @@
 
 package net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.datamodel.Scan;
 import net.sf.mzmine.datamodel.impl.SimpleMassList;
+import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.modules.MZmineProcessingStep;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import net.sf.mzmine.taskcontrol.AbstractTask;
 import net.sf.mzmine.taskcontrol.TaskStatus;
+import net.sf.mzmine.taskcontrol.WorkerExecutor;
 
 public class MassDetectionTask extends AbstractTask {
 
+    /**
+     * Maximum number of detected but not yet stored scans per worker thread.
+     * Bounds the memory held by the pipeline while keeping the workers busy.
+     */
+    private static final int PENDING_SCANS_PER_THREAD = 4;
+
     private Logger logger = Logger.getLogger(this.getClass().getName());
     private final RawDataFile dataFile;
 
@@ -98,22 +111,26 @@ public class MassDetectionTask extends AbstractTask {
         final Scan scans[] = scanSelection.getMatchingScans(dataFile);
         totalScans = scans.length;
 
-        // Process scans one by one
-        for (Scan scan : scans) {
+        final int numOfThreads = MZmineCore.getConfiguration()
+                .getPreferences().getNumOfThreads();
 
-            if (isCanceled())
+        if (numOfThreads > 1) {
+            if (!detectMassesInParallel(scans, numOfThreads))
                 return;
+        } else {
+            // Process scans one by one
+            for (Scan scan : scans) {
 
-            MassDetector detector = massDetector.getModule();
-            DataPoint mzPeaks[] = detector.getMassValues(scan,
-                    massDetector.getParameterSet());
+                if (isCanceled())
+                    return;
 
-            SimpleMassList newMassList = new SimpleMassList(name, scan, mzPeaks);
+                SimpleMassList newMassList = detectMasses(scan);
 
-            // Add new mass list to the scan
-            scan.addMassList(newMassList);
+                // Add new mass list to the scan
+                scan.addMassList(newMassList);
 
-            processedScans++;
+                processedScans++;
+            }
         }
 
         setStatus(TaskStatus.FINISHED);
@@ -122,4 +139,73 @@ public class MassDetectionTask extends AbstractTask {
 
     }
 
+    /**
+     * Runs the mass detector on the given scan and wraps the result in a new
+     * mass list. Mass detectors keep no state between calls, so this method
+     * may be called from several threads at once.
+     */
+    private SimpleMassList detectMasses(Scan scan) {
+        MassDetector detector = massDetector.getModule();
+        DataPoint mzPeaks[] = detector.getMassValues(scan,
+                massDetector.getParameterSet());
+        return new SimpleMassList(name, scan, mzPeaks);
+    }
+
+    /**
+     * Detects masses on the worker threads shared by all tasks. Reading the data points and
+     * running the detector happens in the workers, while this thread adds the
+     * resulting mass lists to the scans in the original scan order, so the
+     * mass lists are stored in the raw data file exactly as in the sequential
+     * case. At most PENDING_SCANS_PER_THREAD scans per thread are in flight.
+     * 
+     * @return false if the task was canceled or failed
+     */
+    private boolean detectMassesInParallel(Scan scans[], int numOfThreads) {
+
+        final WorkerExecutor executor = new WorkerExecutor();
+        final ArrayDeque<Future<SimpleMassList>> pending = new ArrayDeque<Future<SimpleMassList>>();
+        final int maxPending = numOfThreads * PENDING_SCANS_PER_THREAD;
+
+        try {
+            int nextScan = 0;
+            while ((nextScan < scans.length) || (!pending.isEmpty())) {
+
+                if (isCanceled())
+                    return false;
+
+                // Keep the workers supplied with scans
+                while ((nextScan < scans.length)
+                        && (pending.size() < maxPending)) {
+                    final Scan scan = scans[nextScan++];
+                    pending.add(executor.submit(new Callable<SimpleMassList>() {
+                        public SimpleMassList call() {
+                            return detectMasses(scan);
+                        }
+                    }));
+                }
+
+                // Store the oldest result, preserving the scan order
+                SimpleMassList newMassList = pending.remove().get();
+                newMassList.getScan().addMassList(newMassList);
+
+                processedScans++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setStatus(TaskStatus.CANCELED);
+            return false;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Error detecting masses in " + dataFile,
+                    e.getCause());
+            setStatus(TaskStatus.ERROR);
+            setErrorMessage("Error detecting masses in " + dataFile + ": "
+                    + e.getCause());
+            return false;
+        } finally {
+            executor.cancelAll();
+        }
+
+        return true;
+    }
+
 }
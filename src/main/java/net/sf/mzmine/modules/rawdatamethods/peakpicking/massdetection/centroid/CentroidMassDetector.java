@@ -25,6 +25,7 @@ import javax.annotation.Nonnull;
 
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.MassDetector;
 import net.sf.mzmine.parameters.ParameterSet;
 
@@ -37,15 +38,19 @@ public class CentroidMassDetector implements MassDetector {
 
 	ArrayList<DataPoint> mzPeaks = new ArrayList<DataPoint>();
 
-	DataPoint dataPoints[] = scan.getDataPoints();
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	final int size = scan.getDataPointValues(mzValues, intensityValues);
 
 	// Find possible mzPeaks
-	for (int j = 0; j < dataPoints.length; j++) {
+	for (int j = 0; j < size; j++) {
 
 	    // Is intensity above the noise level?
-	    if (dataPoints[j].getIntensity() >= noiseLevel) {
+	    if (intensityValues[j] >= noiseLevel) {
 		// Yes, then mark this index as mzPeak
-		mzPeaks.add(dataPoints[j]);
+		mzPeaks.add(new SimpleDataPoint(mzValues[j],
+			intensityValues[j]));
 	    }
 	}
 	return mzPeaks.toArray(new DataPoint[0]);
@@ -26,6 +26,7 @@ import javax.annotation.Nonnull;
 
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.MassDetector;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.util.DataPointSorter;
@@ -91,21 +92,27 @@ public class ExactMassDetector implements MassDetector {
     private void getLocalMaxima(Scan scan,
 	    TreeSet<ExactMzDataPoint> candidatePeaks, double noiseLevel) {
 
-	DataPoint[] scanDataPoints = scan.getDataPoints();
-	if (scanDataPoints.length == 0)
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	final int size = scan.getDataPointValues(mzValues, intensityValues);
+	if (size == 0)
 	    return;
-	DataPoint localMaximum = scanDataPoints[0];
-	ArrayList<DataPoint> rangeDataPoints = new ArrayList<DataPoint>();
+
+	// Index of the local maximum and of the first data point of the current
+	// m/z peak. DataPoint instances are only created for peaks above the
+	// noise level.
+	int localMaximum = 0;
+	int rangeStart = -1;
 
 	boolean ascending = true;
 
 	// Iterate through all data points
-	for (int i = 0; i < scanDataPoints.length - 1; i++) {
+	for (int i = 0; i < size - 1; i++) {
 
-	    boolean nextIsBigger = scanDataPoints[i + 1].getIntensity() > scanDataPoints[i]
-		    .getIntensity();
-	    boolean nextIsZero = scanDataPoints[i + 1].getIntensity() == 0;
-	    boolean currentIsZero = scanDataPoints[i].getIntensity() == 0;
+	    boolean nextIsBigger = intensityValues[i + 1] > intensityValues[i];
+	    boolean nextIsZero = intensityValues[i + 1] == 0;
+	    boolean currentIsZero = intensityValues[i] == 0;
 
 	    // Ignore zero intensity regions
 	    if (currentIsZero) {
@@ -113,11 +120,12 @@ public class ExactMassDetector implements MassDetector {
 	    }
 
 	    // Add current (non-zero) data point to the current m/z peak
-	    rangeDataPoints.add(scanDataPoints[i]);
+	    if (rangeStart == -1)
+		rangeStart = i;
 
 	    // Check for local maximum
 	    if (ascending && (!nextIsBigger)) {
-		localMaximum = scanDataPoints[i];
+		localMaximum = i;
 		ascending = false;
 		continue;
 	    }
@@ -126,17 +134,24 @@ public class ExactMassDetector implements MassDetector {
 	    if ((!ascending) && (nextIsBigger || nextIsZero)) {
 
 		// Add the m/z peak if it is above the noise level
-		if (localMaximum.getIntensity() > noiseLevel) {
-
+		if (intensityValues[localMaximum] > noiseLevel) {
+
+		    ArrayList<DataPoint> rangeDataPoints = new ArrayList<DataPoint>();
+		    for (int j = rangeStart; j <= i; j++) {
+			if (intensityValues[j] != 0)
+			    rangeDataPoints.add(new SimpleDataPoint(
+				    mzValues[j], intensityValues[j]));
+		    }
 		    DataPoint[] rawDataPoints = rangeDataPoints
 			    .toArray(new DataPoint[0]);
-		    candidatePeaks.add(new ExactMzDataPoint(localMaximum,
-			    rawDataPoints));
+		    candidatePeaks.add(new ExactMzDataPoint(
+			    mzValues[localMaximum],
+			    intensityValues[localMaximum], rawDataPoints));
 		}
 
 		// Reset and start with new peak
 		ascending = true;
-		rangeDataPoints.clear();
+		rangeStart = -1;
 	    }
 
 	}
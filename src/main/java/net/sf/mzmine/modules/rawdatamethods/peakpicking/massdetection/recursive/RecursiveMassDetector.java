@@ -20,12 +20,12 @@
 package net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.recursive;
 
 import java.util.TreeSet;
-import java.util.Vector;
 
 import javax.annotation.Nonnull;
 
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.MassDetector;
 import net.sf.mzmine.parameters.ParameterSet;
 import net.sf.mzmine.util.DataPointSorter;
@@ -43,13 +43,17 @@ public class RecursiveMassDetector implements MassDetector {
 	double maximumMZPeakWidth = parameters.getParameter(
 		RecursiveMassDetectorParameters.maximumMZPeakWidth).getValue();
 
-	DataPoint dataPoints[] = scan.getDataPoints();
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	final int size = scan.getDataPointValues(mzValues, intensityValues);
+
 	TreeSet<DataPoint> mzPeaks = new TreeSet<DataPoint>(
 		new DataPointSorter(SortingProperty.MZ,
 			SortingDirection.Ascending));
 
 	// Find MzPeaks
-	recursiveThreshold(mzPeaks, dataPoints, 1, dataPoints.length - 1,
+	recursiveThreshold(mzPeaks, mzValues, intensityValues, 1, size - 1,
 		noiseLevel, minimumMZPeakWidth, maximumMZPeakWidth, 0);
 	return mzPeaks.toArray(new DataPoint[0]);
     }
@@ -58,19 +62,18 @@ public class RecursiveMassDetector implements MassDetector {
      * This function searches for maxima from given part of a spectrum
      */
     private int recursiveThreshold(TreeSet<DataPoint> mzPeaks,
-	    DataPoint dataPoints[], int startInd, int stopInd,
-	    double curentNoiseLevel, double minimumMZPeakWidth,
+	    double mzValues[], double intensityValues[], int startInd,
+	    int stopInd, double curentNoiseLevel, double minimumMZPeakWidth,
 	    double maximumMZPeakWidth, int recuLevel) {
 
 	// logger.finest(" Level of recursion " + recuLevel);
 
-	Vector<DataPoint> RawDataPointsInds = new Vector<DataPoint>();
 	int peakStartInd, peakStopInd, peakMaxInd;
 	double peakWidthMZ;
 
 	for (int ind = startInd; ind < stopInd; ind++) {
 
-	    boolean currentIsBiggerNoise = dataPoints[ind].getIntensity() > curentNoiseLevel;
+	    boolean currentIsBiggerNoise = intensityValues[ind] > curentNoiseLevel;
 	    double localMinimum = Double.MAX_VALUE;
 
 	    // Ignore intensities below curentNoiseLevel
@@ -84,33 +87,26 @@ public class RecursiveMassDetector implements MassDetector {
 
 	    // While peak is on
 	    while ((ind < stopInd)
-		    && (dataPoints[ind].getIntensity() > curentNoiseLevel)) {
+		    && (intensityValues[ind] > curentNoiseLevel)) {
 
-		boolean isLocalMinimum = (dataPoints[ind - 1].getIntensity() > dataPoints[ind]
-			.getIntensity())
-			&& (dataPoints[ind].getIntensity() < dataPoints[ind + 1]
-				.getIntensity());
+		boolean isLocalMinimum = (intensityValues[ind - 1] > intensityValues[ind])
+			&& (intensityValues[ind] < intensityValues[ind + 1]);
 
 		// Check if this is the minimum point of the peak
-		if (isLocalMinimum
-			&& (dataPoints[ind].getIntensity() < localMinimum))
-		    localMinimum = dataPoints[ind].getIntensity();
+		if (isLocalMinimum && (intensityValues[ind] < localMinimum))
+		    localMinimum = intensityValues[ind];
 
 		// Check if this is the maximum point of the peak
-		if (dataPoints[ind].getIntensity() > dataPoints[peakMaxInd]
-			.getIntensity())
+		if (intensityValues[ind] > intensityValues[peakMaxInd])
 		    peakMaxInd = ind;
 
-		// Forming the DataPoint array that defines this peak
-		RawDataPointsInds.add(dataPoints[ind]);
 		ind++;
 	    }
 
 	    // Add ending point of the peak
 	    peakStopInd = ind;
 
-	    peakWidthMZ = dataPoints[peakStopInd].getMZ()
-		    - dataPoints[peakStartInd].getMZ();
+	    peakWidthMZ = mzValues[peakStopInd] - mzValues[peakStartInd];
 
 	    // Verify width of the peak
 	    if ((peakWidthMZ >= minimumMZPeakWidth)
@@ -118,21 +114,22 @@ public class RecursiveMassDetector implements MassDetector {
 
 		// Declare a new MzPeak with intensity equal to max intensity
 		// data point
-		mzPeaks.add(dataPoints[peakMaxInd]);
+		mzPeaks.add(new SimpleDataPoint(mzValues[peakMaxInd],
+			intensityValues[peakMaxInd]));
 
 		if (recuLevel > 0) {
 		    // return stop index and beginning of the next peak
 		    return ind;
 		}
 	    }
-	    RawDataPointsInds.clear();
 
 	    // If the peak is still too big applies the same method until find a
 	    // peak of the right size
 	    if (peakWidthMZ > maximumMZPeakWidth) {
 		if (localMinimum < Double.MAX_VALUE) {
-		    ind = recursiveThreshold(mzPeaks, dataPoints, peakStartInd,
-			    peakStopInd, localMinimum, minimumMZPeakWidth,
+		    ind = recursiveThreshold(mzPeaks, mzValues,
+			    intensityValues, peakStartInd, peakStopInd,
+			    localMinimum, minimumMZPeakWidth,
 			    maximumMZPeakWidth, recuLevel + 1);
 		}
 
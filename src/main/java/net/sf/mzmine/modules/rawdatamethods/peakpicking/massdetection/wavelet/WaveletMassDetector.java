@@ -20,7 +20,6 @@
 package net.sf.mzmine.modules.rawdatamethods.peakpicking.massdetection.wavelet;
 
 import java.util.TreeSet;
-import java.util.Vector;
 
 import javax.annotation.Nonnull;
 
@@ -57,13 +56,16 @@ public class WaveletMassDetector implements MassDetector {
 	double waveletWindow = parameters.getParameter(
 		WaveletMassDetectorParameters.waveletWindow).getValue();
 
-	DataPoint originalDataPoints[] = scan.getDataPoints();
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	final int size = scan.getDataPointValues(mzValues, intensityValues);
 
-	DataPoint waveletDataPoints[] = performCWT(originalDataPoints,
+	double waveletIntensities[] = performCWT(intensityValues, size,
 		waveletWindow, scaleLevel);
 
-	DataPoint mzPeaks[] = getMzPeaks(noiseLevel, originalDataPoints,
-		waveletDataPoints);
+	DataPoint mzPeaks[] = getMzPeaks(noiseLevel, mzValues,
+		intensityValues, waveletIntensities);
 
 	return mzPeaks;
     }
@@ -71,12 +73,16 @@ public class WaveletMassDetector implements MassDetector {
     /**
      * Perform the CWT over raw data points in the selected scale level
      * 
-     * @param dataPoints
+     * @param intensityValues
+     *            intensities of the raw data points
+     * @param length
+     *            number of raw data points
+     * @return intensities of the wavelet data points (the m/z values are the
+     *         same as for the raw data points)
      */
-    private SimpleDataPoint[] performCWT(DataPoint[] dataPoints,
+    private double[] performCWT(double intensityValues[], int length,
 	    double waveletWindow, int scaleLevel) {
-	int length = dataPoints.length;
-	SimpleDataPoint[] cwtDataPoints = new SimpleDataPoint[length];
+	double[] cwtIntensities = new double[length];
 	double wstep = ((WAVELET_ESR - WAVELET_ESL) / NPOINTS);
 	double[] W = new double[(int) NPOINTS];
 
@@ -113,17 +119,16 @@ public class WaveletMassDetector implements MassDetector {
 		    ind = 0;
 		if (ind >= NPOINTS)
 		    ind = (int) NPOINTS - 1;
-		intensity += dataPoints[i].getIntensity() * W[ind];
+		intensity += intensityValues[i] * W[ind];
 	    }
 	    intensity /= sqrtScaleLevel;
 	    // Eliminate the negative part of the wavelet map
 	    if (intensity < 0)
 		intensity = 0;
-	    cwtDataPoints[dx] = new SimpleDataPoint(dataPoints[dx].getMZ(),
-		    (double) intensity);
+	    cwtIntensities[dx] = intensity;
 	}
 
-	return cwtDataPoints;
+	return cwtIntensities;
     }
 
     /**
@@ -149,37 +154,34 @@ public class WaveletMassDetector implements MassDetector {
     /**
      * This function searches for maximums from wavelet data points
      */
-    private DataPoint[] getMzPeaks(double noiseLevel,
-	    DataPoint[] originalDataPoints, DataPoint[] waveletDataPoints) {
+    private DataPoint[] getMzPeaks(double noiseLevel, double mzValues[],
+	    double intensityValues[], double waveletIntensities[]) {
 
 	TreeSet<DataPoint> mzPeaks = new TreeSet<DataPoint>(
 		new DataPointSorter(SortingProperty.MZ,
 			SortingDirection.Ascending));
 
-	Vector<DataPoint> rawDataPoints = new Vector<DataPoint>();
+	int peakStartInd = 0;
 	int peakMaxInd = 0;
-	int stopInd = waveletDataPoints.length - 1;
+	int stopInd = waveletIntensities.length - 1;
 
 	for (int ind = 0; ind <= stopInd; ind++) {
 
-	    while ((ind <= stopInd)
-		    && (waveletDataPoints[ind].getIntensity() == 0)) {
+	    while ((ind <= stopInd) && (waveletIntensities[ind] == 0)) {
 		ind++;
 	    }
 	    peakMaxInd = ind;
+	    peakStartInd = ind;
 	    if (ind >= stopInd) {
 		break;
 	    }
 
 	    // While peak is on
-	    while ((ind <= stopInd)
-		    && (waveletDataPoints[ind].getIntensity() > 0)) {
+	    while ((ind <= stopInd) && (waveletIntensities[ind] > 0)) {
 		// Check if this is the maximum point of the peak
-		if (waveletDataPoints[ind].getIntensity() > waveletDataPoints[peakMaxInd]
-			.getIntensity()) {
+		if (waveletIntensities[ind] > waveletIntensities[peakMaxInd]) {
 		    peakMaxInd = ind;
 		}
-		rawDataPoints.add(originalDataPoints[ind]);
 		ind++;
 	    }
 
@@ -187,30 +189,31 @@ public class WaveletMassDetector implements MassDetector {
 		break;
 	    }
 
-	    rawDataPoints.add(originalDataPoints[ind]);
-
-	    if (originalDataPoints[peakMaxInd].getIntensity() > noiseLevel) {
+	    if (intensityValues[peakMaxInd] > noiseLevel) {
 		SimpleDataPoint peakDataPoint = new SimpleDataPoint(
-			originalDataPoints[peakMaxInd].getMZ(),
-			calcAproxIntensity(rawDataPoints));
+			mzValues[peakMaxInd], calcAproxIntensity(
+				intensityValues, peakStartInd, ind));
 
 		mzPeaks.add(peakDataPoint);
 
 	    }
-	    rawDataPoints.clear();
 	}
 
 	return mzPeaks.toArray(new DataPoint[0]);
 
     }
 
-    private double calcAproxIntensity(Vector<DataPoint> rawDataPoints) {
+    /**
+     * Returns the highest raw intensity between given indexes (inclusive)
+     */
+    private double calcAproxIntensity(double intensityValues[],
+	    int startInd, int endInd) {
 
 	double aproxIntensity = 0;
 
-	for (DataPoint d : rawDataPoints) {
-	    if (d.getIntensity() > aproxIntensity)
-		aproxIntensity = d.getIntensity();
+	for (int i = startInd; i <= endInd; i++) {
+	    if (intensityValues[i] > aproxIntensity)
+		aproxIntensity = intensityValues[i];
 	}
 	return aproxIntensity;
     }
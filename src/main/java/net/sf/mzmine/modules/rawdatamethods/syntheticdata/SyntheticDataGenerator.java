@@ -0,0 +1,409 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.syntheticdata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.MassSpectrumType;
+import net.sf.mzmine.datamodel.PolarityType;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.RawDataFileWriter;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleScan;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.parameters.ParameterSet;
+import net.sf.mzmine.util.DataPointSorter;
+import net.sf.mzmine.util.SortingDirection;
+import net.sf.mzmine.util.SortingProperty;
+
+import com.google.common.collect.Range;
+
+/**
+ * Generates synthetic LC-MS raw data files. All samples contain the same set of
+ * compounds, each compound missing in some of the samples. The retention times
+ * of each sample are shifted by a random drift.
+ * 
+ * The generated data only depend on the parameters (including the random
+ * seed), so the same parameters always produce the same files. Scans can be
+ * generated independently of each other, also from several threads.
+ * 
+ * To generate data from code, e.g. in tests, use a copy of the module
+ * parameters:
+ * 
+ * <pre>
+ * ParameterSet parameters = MZmineCore.getConfiguration()
+ *         .getModuleParameters(SyntheticDataModule.class).cloneParameterSet();
+ * parameters.getParameter(SyntheticDataParameters.numberOfScans).setValue(500);
+ * RawDataFile dataFile = new SyntheticDataGenerator(parameters)
+ *         .generateSample(0);
+ * </pre>
+ */
+public class SyntheticDataGenerator {
+
+    private static final double FWHM_TO_SIGMA = 2.0 * Math.sqrt(2.0 * Math
+            .log(2.0));
+
+    private static final double C13_SPACING = 1.003355;
+    private static final double C13_ABUNDANCE = 0.0107;
+    private static final double DALTONS_PER_CARBON = 14.0;
+
+    private static final double PRESENCE_PROBABILITY = 0.8;
+
+    // Random retention time shift of each compound, relative to the drift of
+    // the whole sample
+    private static final double COMPOUND_RT_JITTER = 0.1;
+
+    // Profile spectra: number of data points per ion and their m/z spacing
+    private static final int PROFILE_POINTS = 7;
+    private static final double PROFILE_MZ_STEP = 0.002;
+
+    // Elution profile: Gaussian sigmas covered on each side, number of grid
+    // points per sigma and minimum relative intensity
+    private static final double PROFILE_SIGMAS = 4.0;
+    private static final int GRID_POINTS_PER_SIGMA = 20;
+    private static final double MIN_RELATIVE_INTENSITY = 1.0E-4;
+
+    // Independent random streams
+    private static final int STREAM_SAMPLE_SHIFT = 1;
+    private static final int STREAM_COMPOUND_SHIFT = 2;
+    private static final int STREAM_PRESENCE = 3;
+    private static final int STREAM_NOISE = 4;
+
+    private final String fileName;
+    private final int numberOfScans, pointsPerScan;
+    private final Range<Double> rtRange, mzRange;
+    private final MassSpectrumType spectrumType;
+    private final ElutionProfile elutionProfile;
+    private final double sigma, noiseLevel, rtDrift;
+    private final long seed;
+
+    // Compounds sorted by retention time: m/z, retention time and height.
+    // Retention times are also kept in a separate array for binary search.
+    private final double compounds[][], compoundRTs[];
+
+    // Relative isotope abundances of each compound
+    private final double isotopeAbundances[][];
+
+    // Elution profile of exponentially modified Gaussian peaks, sampled on a
+    // grid and normalized to maximum 1. The elution profile extends
+    // profileLeft before and profileRight after the apex.
+    private final double emgProfile[];
+    private final double profileLeft, profileRight;
+
+    public SyntheticDataGenerator(ParameterSet parameters) {
+
+        fileName = parameters.getParameter(SyntheticDataParameters.fileName)
+                .getValue();
+        numberOfScans = parameters.getParameter(
+                SyntheticDataParameters.numberOfScans).getValue();
+        rtRange = parameters.getParameter(SyntheticDataParameters.rtRange)
+                .getValue();
+        mzRange = parameters.getParameter(SyntheticDataParameters.mzRange)
+                .getValue();
+        pointsPerScan = parameters.getParameter(
+                SyntheticDataParameters.pointsPerScan).getValue();
+        spectrumType = parameters.getParameter(
+                SyntheticDataParameters.spectrumType).getValue();
+        elutionProfile = parameters.getParameter(
+                SyntheticDataParameters.elutionProfile).getValue();
+        sigma = parameters.getParameter(SyntheticDataParameters.peakWidth)
+                .getValue() / FWHM_TO_SIGMA;
+        final double tau = parameters.getParameter(
+                SyntheticDataParameters.peakTailing).getValue();
+        noiseLevel = parameters.getParameter(
+                SyntheticDataParameters.noiseLevel).getValue();
+        rtDrift = parameters.getParameter(SyntheticDataParameters.rtDrift)
+                .getValue();
+        seed = parameters.getParameter(SyntheticDataParameters.randomSeed)
+                .getValue();
+
+        final int numberOfCompounds = parameters.getParameter(
+                SyntheticDataParameters.numberOfCompounds).getValue();
+        final Range<Double> heightRange = parameters.getParameter(
+                SyntheticDataParameters.heightRange).getValue();
+        final int numberOfIsotopes = parameters.getParameter(
+                SyntheticDataParameters.isotopes).getValue();
+
+        // Compounds
+        final Random random = new Random(seed);
+        final double minLogHeight = Math.log(heightRange.lowerEndpoint());
+        final double maxLogHeight = Math.log(heightRange.upperEndpoint());
+        compounds = new double[numberOfCompounds][];
+        for (int i = 0; i < numberOfCompounds; i++) {
+            compounds[i] = new double[] {
+                    uniform(random.nextDouble(), mzRange),
+                    uniform(random.nextDouble(), rtRange),
+                    Math.exp(minLogHeight + (maxLogHeight - minLogHeight)
+                            * random.nextDouble()) };
+        }
+        Arrays.sort(compounds, new Comparator<double[]>() {
+            public int compare(double[] a, double[] b) {
+                return Double.compare(a[1], b[1]);
+            }
+        });
+        compoundRTs = new double[numberOfCompounds];
+        isotopeAbundances = new double[numberOfCompounds][];
+        for (int i = 0; i < numberOfCompounds; i++) {
+            compoundRTs[i] = compounds[i][1];
+            isotopeAbundances[i] = getIsotopeAbundances(compounds[i][0],
+                    numberOfIsotopes);
+        }
+
+        // Elution profile
+        if ((elutionProfile == ElutionProfile.EMG) && (tau > 0)) {
+            emgProfile = createEMGProfile(sigma, tau);
+            int apex = 0;
+            for (int i = 1; i < emgProfile.length; i++) {
+                if (emgProfile[i] > emgProfile[apex])
+                    apex = i;
+            }
+            final double step = sigma / GRID_POINTS_PER_SIGMA;
+            profileLeft = apex * step;
+            profileRight = (emgProfile.length - 1 - apex) * step;
+        } else {
+            emgProfile = null;
+            profileLeft = PROFILE_SIGMAS * sigma;
+            profileRight = PROFILE_SIGMAS * sigma;
+        }
+
+    }
+
+    public int getNumberOfScans() {
+        return numberOfScans;
+    }
+
+    /**
+     * Returns the file name of given sample. Sample numbers start at 0, names
+     * are numbered from 1.
+     */
+    public String getSampleName(int sample) {
+        return fileName + " " + (sample + 1);
+    }
+
+    /**
+     * Returns the retention time shift of given sample.
+     */
+    public double getRTShift(int sample) {
+        return rtDrift * (2.0 * uniform(STREAM_SAMPLE_SHIFT, sample, 0) - 1.0);
+    }
+
+    /**
+     * Generates given sample and writes it to a new raw data file. The file is
+     * not added to any project.
+     */
+    public RawDataFile generateSample(int sample) throws IOException {
+        final RawDataFileWriter writer = MZmineCore
+                .createNewFile(getSampleName(sample));
+        for (int i = 0; i < numberOfScans; i++)
+            writer.addScan(createScan(sample, i));
+        return writer.finishWriting();
+    }
+
+    /**
+     * Generates the scan with given index (0 to getNumberOfScans() - 1) of
+     * given sample. The scan number is index + 1.
+     */
+    public Scan createScan(int sample, int scanIndex) {
+
+        final double rt = numberOfScans > 1 ? rtRange.lowerEndpoint()
+                + (rtRange.upperEndpoint() - rtRange.lowerEndpoint())
+                * scanIndex / (numberOfScans - 1) : rtRange.lowerEndpoint();
+        final double sampleShift = getRTShift(sample);
+        final double maxCompoundShift = rtDrift * COMPOUND_RT_JITTER;
+
+        final List<DataPoint> dataPoints = new ArrayList<DataPoint>();
+
+        // Compounds eluting at this retention time
+        final double minRT = rt - sampleShift - maxCompoundShift
+                - profileRight;
+        final double maxRT = rt - sampleShift + maxCompoundShift
+                + profileLeft;
+        for (int i = lowerBound(compoundRTs, minRT); (i < compounds.length)
+                && (compoundRTs[i] <= maxRT); i++) {
+
+            if (uniform(STREAM_PRESENCE, sample, i) >= PRESENCE_PROBABILITY)
+                continue;
+
+            final double apexRT = compoundRTs[i] + sampleShift
+                    + maxCompoundShift
+                    * (2.0 * uniform(STREAM_COMPOUND_SHIFT, sample, i) - 1.0);
+            final double elution = getElution(rt - apexRT);
+            if (elution < MIN_RELATIVE_INTENSITY)
+                continue;
+
+            final double intensity = compounds[i][2] * elution;
+            for (int isotope = 0; isotope < isotopeAbundances[i].length; isotope++) {
+                addIon(dataPoints, compounds[i][0] + isotope * C13_SPACING,
+                        intensity * isotopeAbundances[i][isotope]);
+            }
+        }
+
+        // Fill up with noise
+        final Random noiseRandom = new Random(mix(mix(seed + STREAM_NOISE)
+                + sample)
+                + scanIndex);
+        final int noisePoints = pointsPerScan - dataPoints.size();
+        for (int i = 0; i < noisePoints; i++) {
+            dataPoints.add(new SimpleDataPoint(uniform(
+                    noiseRandom.nextDouble(), mzRange), noiseLevel
+                    * noiseRandom.nextDouble()));
+        }
+
+        final DataPoint sortedDataPoints[] = dataPoints
+                .toArray(new DataPoint[dataPoints.size()]);
+        Arrays.sort(sortedDataPoints, new DataPointSorter(SortingProperty.MZ,
+                SortingDirection.Ascending));
+
+        return new SimpleScan(null, scanIndex + 1, 1, rt, 0.0, 0, null,
+                sortedDataPoints, spectrumType, PolarityType.POSITIVE, "",
+                mzRange);
+    }
+
+    /**
+     * Returns the relative intensity of the elution profile at given distance
+     * from the apex.
+     */
+    private double getElution(double distance) {
+
+        if ((distance < -profileLeft) || (distance > profileRight))
+            return 0.0;
+
+        if (emgProfile == null) {
+            final double z = distance / sigma;
+            return Math.exp(-0.5 * z * z);
+        }
+
+        final double position = (distance + profileLeft)
+                / (sigma / GRID_POINTS_PER_SIGMA);
+        final int index = Math.min((int) position, emgProfile.length - 2);
+        final double fraction = position - index;
+        return emgProfile[index] * (1.0 - fraction) + emgProfile[index + 1]
+                * fraction;
+    }
+
+    private void addIon(List<DataPoint> dataPoints, double mz,
+            double intensity) {
+
+        if (spectrumType == MassSpectrumType.CENTROIDED) {
+            dataPoints.add(new SimpleDataPoint(mz, intensity));
+            return;
+        }
+
+        final int half = PROFILE_POINTS / 2;
+        for (int i = -half; i <= half; i++) {
+            dataPoints.add(new SimpleDataPoint(mz + i * PROFILE_MZ_STEP,
+                    intensity * Math.exp(-0.5 * i * i)));
+        }
+    }
+
+    /**
+     * Returns a deterministic random number in [0, 1) for given stream,
+     * sample and item.
+     */
+    private double uniform(int stream, int sample, int item) {
+        final long hash = mix(mix(mix(seed + stream) + sample) + item);
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Samples the exponentially modified Gaussian with given parameters on a
+     * grid with GRID_POINTS_PER_SIGMA points per sigma, normalized to maximum
+     * 1. The exponential tail is applied as a first order recursive filter.
+     */
+    private static double[] createEMGProfile(double sigma, double tau) {
+
+        final double step = sigma / GRID_POINTS_PER_SIGMA;
+        final double start = -PROFILE_SIGMAS * sigma;
+        final double end = PROFILE_SIGMAS * sigma - tau
+                * Math.log(MIN_RELATIVE_INTENSITY);
+        final int size = (int) Math.ceil((end - start) / step) + 1;
+
+        final double decay = Math.exp(-step / tau);
+        final double profile[] = new double[size];
+        double max = 0.0, filtered = 0.0;
+        for (int i = 0; i < size; i++) {
+            final double z = (start + i * step) / sigma;
+            filtered = filtered * decay + (1.0 - decay)
+                    * Math.exp(-0.5 * z * z);
+            profile[i] = filtered;
+            max = Math.max(max, filtered);
+        }
+        for (int i = 0; i < size; i++)
+            profile[i] /= max;
+
+        return profile;
+    }
+
+    /**
+     * Returns the abundances of the monoisotopic peak and given number of 13C
+     * isotopes relative to the monoisotopic peak, estimating the number of
+     * carbons from the m/z value.
+     */
+    private static double[] getIsotopeAbundances(double mz, int isotopes) {
+        final double carbons = mz / DALTONS_PER_CARBON;
+        final double ratio = C13_ABUNDANCE / (1.0 - C13_ABUNDANCE);
+        final double abundances[] = new double[isotopes + 1];
+        abundances[0] = 1.0;
+        for (int k = 1; k <= isotopes; k++) {
+            abundances[k] = abundances[k - 1]
+                    * Math.max(0.0, carbons - k + 1) / k * ratio;
+        }
+        return abundances;
+    }
+
+    private static double uniform(double random, Range<Double> range) {
+        return range.lowerEndpoint()
+                + (range.upperEndpoint() - range.lowerEndpoint()) * random;
+    }
+
+    /**
+     * Returns the index of the first value that is not smaller than given
+     * value.
+     */
+    private static int lowerBound(double sortedValues[], double value) {
+        int low = 0, high = sortedValues.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * SplitMix64 finalizer, used to derive independent random numbers from
+     * the seed.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.syntheticdata;
+
+import net.sf.mzmine.datamodel.MassSpectrumType;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.parameters.Parameter;
+import net.sf.mzmine.parameters.impl.SimpleParameterSet;
+import net.sf.mzmine.parameters.parametertypes.ComboParameter;
+import net.sf.mzmine.parameters.parametertypes.DoubleParameter;
+import net.sf.mzmine.parameters.parametertypes.IntegerParameter;
+import net.sf.mzmine.parameters.parametertypes.StringParameter;
+import net.sf.mzmine.parameters.parametertypes.ranges.DoubleRangeParameter;
+import net.sf.mzmine.parameters.parametertypes.ranges.RTRangeParameter;
+
+import com.google.common.collect.Range;
+
+public class SyntheticDataParameters extends SimpleParameterSet {
+
+    public static final StringParameter fileName = new StringParameter(
+            "File name",
+            "Name of the generated files. The sample number is appended to it.",
+            "Synthetic sample");
+
+    public static final IntegerParameter numberOfSamples = new IntegerParameter(
+            "Number of samples", "Number of raw data files to generate", 1, 1,
+            null);
+
+    public static final IntegerParameter numberOfScans = new IntegerParameter(
+            "Number of scans", "Number of MS1 scans in each sample", 1000, 1,
+            null);
+
+    public static final RTRangeParameter rtRange = new RTRangeParameter(
+            "Retention time range",
+            "Retention times of the first and the last scan", true,
+            Range.closed(0.0, 30.0));
+
+    public static final DoubleRangeParameter mzRange = new DoubleRangeParameter(
+            "m/z range", "m/z range of the generated compounds and noise",
+            MZmineCore.getConfiguration().getMZFormat(),
+            Range.closed(100.0, 1000.0));
+
+    public static final IntegerParameter pointsPerScan = new IntegerParameter(
+            "Data points per scan",
+            "Number of data points in each scan. Scans are filled up with noise to this number of data points.",
+            1000, 0, null);
+
+    public static final ComboParameter<MassSpectrumType> spectrumType = new ComboParameter<MassSpectrumType>(
+            "Spectrum type",
+            "Profile spectra contain several data points for each ion, centroided spectra contain one data point for each ion",
+            new MassSpectrumType[] { MassSpectrumType.CENTROIDED,
+                    MassSpectrumType.PROFILE },
+            MassSpectrumType.CENTROIDED);
+
+    public static final IntegerParameter numberOfCompounds = new IntegerParameter(
+            "Number of compounds",
+            "Number of compounds eluting during the run", 500, 0, null);
+
+    public static final ComboParameter<ElutionProfile> elutionProfile = new ComboParameter<ElutionProfile>(
+            "Elution profile", "Shape of the chromatographic peaks",
+            ElutionProfile.values(), ElutionProfile.GAUSSIAN);
+
+    public static final DoubleParameter peakWidth = new DoubleParameter(
+            "Peak width",
+            "Full width at half maximum of the Gaussian part of the chromatographic peaks, in minutes",
+            MZmineCore.getConfiguration().getRTFormat(), 0.1, 0.001, null);
+
+    public static final DoubleParameter peakTailing = new DoubleParameter(
+            "Peak tailing",
+            "Time constant of the exponential tail of exponentially modified Gaussian peaks, in minutes",
+            MZmineCore.getConfiguration().getRTFormat(), 0.05, 0.0, null);
+
+    public static final DoubleRangeParameter heightRange = new DoubleRangeParameter(
+            "Peak height range",
+            "Range of the compound peak heights. Heights are distributed uniformly on a logarithmic scale.",
+            MZmineCore.getConfiguration().getIntensityFormat(),
+            Range.closed(1.0E4, 1.0E7));
+
+    public static final IntegerParameter isotopes = new IntegerParameter(
+            "13C isotopes",
+            "Number of 13C isotope peaks following each monoisotopic peak", 2,
+            0, null);
+
+    public static final DoubleParameter noiseLevel = new DoubleParameter(
+            "Noise level", "Maximum intensity of the noise data points",
+            MZmineCore.getConfiguration().getIntensityFormat(), 1000.0, 0.0,
+            null);
+
+    public static final DoubleParameter rtDrift = new DoubleParameter(
+            "Retention time drift",
+            "Maximum retention time shift of a sample, in minutes. Each sample is shifted by a random amount within this limit.",
+            MZmineCore.getConfiguration().getRTFormat(), 0.1, 0.0, null);
+
+    public static final IntegerParameter randomSeed = new IntegerParameter(
+            "Random seed",
+            "Seed of the random generator. The same seed always generates the same data.",
+            0);
+
+    public SyntheticDataParameters() {
+        super(new Parameter[] { fileName, numberOfSamples, numberOfScans,
+                rtRange, mzRange, pointsPerScan, spectrumType,
+                numberOfCompounds, elutionProfile, peakWidth, peakTailing,
+                heightRange, isotopes, noiseLevel, rtDrift, randomSeed });
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.syntheticdata;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import net.sf.mzmine.datamodel.MZmineProject;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.RawDataFileWriter;
+import net.sf.mzmine.main.MZmineCore;
+import net.sf.mzmine.taskcontrol.AbstractTask;
+import net.sf.mzmine.taskcontrol.TaskStatus;
+
+class SyntheticDataTask extends AbstractTask {
+
+    private Logger logger = Logger.getLogger(this.getClass().getName());
+
+    private final MZmineProject project;
+    private final SyntheticDataGenerator generator;
+    private final int sample;
+
+    private int processedScans, totalScans;
+
+    SyntheticDataTask(MZmineProject project, SyntheticDataGenerator generator,
+            int sample) {
+        this.project = project;
+        this.generator = generator;
+        this.sample = sample;
+        this.totalScans = generator.getNumberOfScans();
+    }
+
+    public String getTaskDescription() {
+        return "Generating synthetic data " + generator.getSampleName(sample);
+    }
+
+    public double getFinishedPercentage() {
+        return totalScans == 0 ? 0 : (double) processedScans / totalScans;
+    }
+
+    public void run() {
+
+        setStatus(TaskStatus.PROCESSING);
+
+        logger.info("Started generating " + generator.getSampleName(sample));
+
+        try {
+
+            final RawDataFileWriter writer = MZmineCore
+                    .createNewFile(generator.getSampleName(sample));
+
+            for (processedScans = 0; processedScans < totalScans; processedScans++) {
+                if (isCanceled())
+                    return;
+                writer.addScan(generator.createScan(sample, processedScans));
+            }
+
+            final RawDataFile dataFile = writer.finishWriting();
+            project.addFile(dataFile);
+
+        } catch (IOException e) {
+            setStatus(TaskStatus.ERROR);
+            setErrorMessage("Could not write synthetic data: " + e);
+            return;
+        }
+
+        logger.info("Finished generating " + generator.getSampleName(sample));
+
+        setStatus(TaskStatus.FINISHED);
+
+    }
+
+}
@@ -25,14 +25,11 @@ import java.util.Arrays;
 import net.sf.mzmine.datamodel.DataPoint;
 import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.datamodel.Scan;
-import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.taskcontrol.Task;
 import net.sf.mzmine.taskcontrol.TaskPriority;
 import net.sf.mzmine.taskcontrol.TaskStatus;
-import net.sf.mzmine.util.DataPointSorter;
-import net.sf.mzmine.util.SortingDirection;
-import net.sf.mzmine.util.SortingProperty;
+import net.sf.mzmine.util.ScanUtils;
 
 import org.jfree.data.xy.AbstractXYDataset;
 
@@ -46,7 +43,9 @@ class TwoDDataSet extends AbstractXYDataset implements Task {
 
     private double retentionTimes[];
     private double basePeaks[];
-    private SoftReference<DataPoint[]> dataPointMatrix[];
+
+    // For each scan, the m/z values (index 0) and intensities (index 1)
+    private SoftReference<double[][]> dataPointMatrix[];
 
     private final Range<Double> totalRTRange, totalMZRange;
     private int totalScans, processedScans;
@@ -91,9 +90,8 @@ class TwoDDataSet extends AbstractXYDataset implements Task {
             retentionTimes[index] = scan.getRetentionTime();
             basePeaks[index] = (scanBasePeak == null ? 0 : scanBasePeak
                     .getIntensity());
-            DataPoint scanDataPoints[] = scan.getDataPoints();
-            dataPointMatrix[index] = new SoftReference<DataPoint[]>(
-                    scanDataPoints);
+            dataPointMatrix[index] = new SoftReference<double[][]>(
+                    readDataPointValues(scan));
             processedScans++;
         }
 
@@ -208,64 +206,75 @@ class TwoDDataSet extends AbstractXYDataset implements Task {
 
     private double upperEndpointIntensity(int dataPointMatrixIndex,
             Range<Double> mzRange, PlotMode plotMode) {
-        DataPoint dataPoints[] = dataPointMatrix[dataPointMatrixIndex].get();
-        if (dataPoints == null) {
+        double dataPointValues[][] = dataPointMatrix[dataPointMatrixIndex]
+                .get();
+        if (dataPointValues == null) {
             Scan scan = scans[dataPointMatrixIndex];
-            dataPoints = scan.getDataPoints();
-            dataPointMatrix[dataPointMatrixIndex] = new SoftReference<DataPoint[]>(
-                    dataPoints);
+            dataPointValues = readDataPointValues(scan);
+            dataPointMatrix[dataPointMatrixIndex] = new SoftReference<double[][]>(
+                    dataPointValues);
         }
-        return upperEndpointIntensity(dataPoints, mzRange, plotMode);
+        return upperEndpointIntensity(dataPointValues[0], dataPointValues[1],
+                mzRange, plotMode);
     }
 
-    private double upperEndpointIntensity(DataPoint dataPoints[],
-            Range<Double> mzRange, PlotMode plotMode) {
+    private double upperEndpointIntensity(double mzValues[],
+            double intensityValues[], Range<Double> mzRange,
+            PlotMode plotMode) {
 
         double maxIntensity = 0;
 
-        DataPoint searchMZ = new SimpleDataPoint(mzRange.lowerEndpoint(), 0);
-        int startMZIndex = Arrays.binarySearch(dataPoints, searchMZ,
-                new DataPointSorter(SortingProperty.MZ,
-                        SortingDirection.Ascending));
-        if (startMZIndex < 0)
-            startMZIndex = (startMZIndex * -1) - 1;
+        int startMZIndex = ScanUtils.findFirstIndexAbove(mzValues,
+                mzValues.length, mzRange.lowerEndpoint());
 
-        if (startMZIndex >= dataPoints.length)
+        if (startMZIndex >= mzValues.length)
             return 0;
 
-        if (dataPoints[startMZIndex].getMZ() > mzRange.upperEndpoint()) {
+        if (mzValues[startMZIndex] > mzRange.upperEndpoint()) {
             if (plotMode != PlotMode.CENTROID) {
                 if (startMZIndex == 0)
                     return 0;
-                if (startMZIndex == dataPoints.length - 1)
-                    return dataPoints[startMZIndex - 1].getIntensity();
+                if (startMZIndex == mzValues.length - 1)
+                    return intensityValues[startMZIndex - 1];
 
                 // find which data point is closer
-                double diffNext = dataPoints[startMZIndex].getMZ()
+                double diffNext = mzValues[startMZIndex]
                         - mzRange.upperEndpoint();
                 double diffPrev = mzRange.lowerEndpoint()
-                        - dataPoints[startMZIndex - 1].getMZ();
+                        - mzValues[startMZIndex - 1];
 
                 if (diffPrev < diffNext)
-                    return dataPoints[startMZIndex - 1].getIntensity();
+                    return intensityValues[startMZIndex - 1];
                 else
-                    return dataPoints[startMZIndex].getIntensity();
+                    return intensityValues[startMZIndex];
             } else {
                 return 0;
             }
 
         }
 
-        for (int mzIndex = startMZIndex; ((mzIndex < dataPoints.length) && (dataPoints[mzIndex]
-                .getMZ() <= mzRange.upperEndpoint())); mzIndex++) {
-            if (dataPoints[mzIndex].getIntensity() > maxIntensity)
-                maxIntensity = dataPoints[mzIndex].getIntensity();
+        for (int mzIndex = startMZIndex; ((mzIndex < mzValues.length) && (mzValues[mzIndex] <= mzRange
+                .upperEndpoint())); mzIndex++) {
+            if (intensityValues[mzIndex] > maxIntensity)
+                maxIntensity = intensityValues[mzIndex];
         }
 
         return maxIntensity;
 
     }
 
+    /**
+     * Reads the m/z and intensity values of given scan, without creating
+     * DataPoint instances
+     */
+    private static double[][] readDataPointValues(Scan scan) {
+        final int numOfDataPoints = scan.getNumberOfDataPoints();
+        double mzValues[] = new double[numOfDataPoints];
+        double intensityValues[] = new double[numOfDataPoints];
+        scan.getDataPointValues(mzValues, intensityValues);
+        return new double[][] { mzValues, intensityValues };
+    }
+
     @Override
     public void cancel() {
         status = TaskStatus.CANCELED;
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/**
+ * Data points storage which reads the data points directly from a project
+ * archive entry that was saved without compression. The entry is mapped in
+ * place, so opening a project does not need to extract the data points to a
+ * temporary file first. The archive itself is never modified. Data points
+ * appended later (e.g. new mass lists) are written to a temporary file, which
+ * is created on the first append. Offsets beyond the end of the archived data
+ * refer to that temporary file.
+ */
+public class ArchiveDataPointsStorage implements DataPointsStorage {
+
+    private Logger logger = Logger.getLogger(this.getClass().getName());
+
+    private final File archiveFileName;
+    private final RandomAccessFile archiveFile;
+    private final DataPointsStorage archivedData;
+    private final long archivedSize;
+
+    // Temporary file for appended data points, created on the first append
+    private File appendFileName;
+    private RandomAccessFile appendFile;
+    private volatile DataPointsStorage appendedData;
+
+    /**
+     * Opens the data points stored in given archive, at position dataOffset
+     * and dataLength bytes long.
+     */
+    public ArchiveDataPointsStorage(File archiveFileName, long dataOffset,
+	    long dataLength) throws IOException {
+
+	this.archiveFileName = archiveFileName;
+	this.archiveFile = new RandomAccessFile(archiveFileName, "r");
+
+	if ((dataOffset < 0)
+		|| (dataOffset + dataLength > archiveFile.length())) {
+	    archiveFile.close();
+	    throw new IOException("Cannot read " + dataLength
+		    + " bytes at position " + dataOffset + " of file "
+		    + archiveFileName);
+	}
+
+	this.archivedSize = dataLength;
+	this.archivedData = new MappedDataPointsStorage(
+		archiveFile.getChannel(), dataOffset, dataLength);
+    }
+
+    /**
+     * @return the archive containing the data points
+     */
+    public File getArchiveFile() {
+	return archiveFileName;
+    }
+
+    public synchronized long append(ByteBuffer data) throws IOException {
+
+	if (appendedData == null) {
+	    appendFileName = RawDataFileImpl.createNewDataPointsFile();
+	    appendFile = new RandomAccessFile(appendFileName, "rw");
+
+	    // Lock the temporary file, see RawDataFileImpl.openDataPointsFile()
+	    FileChannel fileChannel = appendFile.getChannel();
+	    fileChannel.lock();
+	    appendFileName.deleteOnExit();
+
+	    appendedData = new MappedDataPointsStorage(fileChannel);
+	}
+
+	return archivedSize + appendedData.append(data);
+    }
+
+    public ByteBuffer read(long offset, int length) throws IOException {
+
+	if (offset < archivedSize)
+	    return archivedData.read(offset, length);
+
+	final DataPointsStorage appended = appendedData;
+	if (appended == null) {
+	    throw new IOException("Cannot read " + length + " bytes at offset "
+		    + offset + ", storage size is " + archivedSize);
+	}
+	return appended.read(offset - archivedSize, length);
+
+    }
+
+    /**
+     * Appends all data points of this storage, archived and appended, to
+     * given empty storage, so that they keep their offsets
+     */
+    public void copyTo(DataPointsStorage storage) throws IOException {
+	copy(archivedData, storage);
+	final DataPointsStorage appended = appendedData;
+	if (appended != null)
+	    copy(appended, storage);
+    }
+
+    private static void copy(DataPointsStorage source,
+	    DataPointsStorage target) throws IOException {
+	final long size = source.getSize();
+	long offset = 0;
+	while (offset < size) {
+	    final int length = (int) Math.min(1 << 20, size - offset);
+	    target.append(source.read(offset, length));
+	    offset += length;
+	}
+    }
+
+    public long getSize() {
+	final DataPointsStorage appended = appendedData;
+	if (appended == null)
+	    return archivedSize;
+	return archivedSize + appended.getSize();
+    }
+
+    /**
+     * Unlike the other storages, this one owns its files - it closes the
+     * archive and removes the temporary file of appended data points.
+     */
+    public synchronized void close() {
+
+	archivedData.close();
+	try {
+	    archiveFile.close();
+	} catch (IOException e) {
+	    logger.warning("Could not close file " + archiveFileName + ": "
+		    + e.toString());
+	}
+
+	if (appendedData == null)
+	    return;
+
+	appendedData.close();
+	try {
+	    appendFile.close();
+	} catch (IOException e) {
+	    logger.warning("Could not close file " + appendFileName + ": "
+		    + e.toString());
+	}
+	appendFileName.delete();
+
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.sf.mzmine.datamodel.DataPoint;
+
+/**
+ * Encoding of the data points in the data points file of a RawDataFileImpl.
+ * Each raw data file uses a single codec for all its data points.
+ *
+ * FLOAT and DOUBLE_MZ use a fixed number of bytes per data point, so a part of
+ * the data points can be read without reading the rest (see
+ * RawDataFileImpl.readDataPoints(int, int, int)). DELTA stores the difference
+ * of each m/z value to the previous one as a variable-length integer, with
+ * the same precision as FLOAT. Intensities are rounded to 10 bits of mantissa
+ * (relative error below 0.05%) and runs of zero intensities, common in profile
+ * spectra, are stored as a single count. DELTA_DEFLATE further compresses the
+ * DELTA encoding of each spectrum with the fastest Deflate setting.
+ */
+public enum DataPointsCodec {
+
+    FLOAT("32-bit m/z and intensity", 8), //
+    DOUBLE_MZ("64-bit m/z (lossless), 32-bit intensity", 12), //
+    DELTA("Delta-encoded m/z, rounded intensity", 0), //
+    DELTA_DEFLATE("Delta-encoded m/z, rounded intensity, compressed", 0);
+
+    // Number of low mantissa bits dropped from the intensities by DELTA
+    private static final int INTENSITY_SHIFT = 13;
+
+    // Largest float magnitude which can be rounded without overflowing into
+    // infinity
+    private static final int MAX_ROUNDED_MAGNITUDE = 0x7f800000
+	    - (1 << (INTENSITY_SHIFT - 1));
+
+    private final String name;
+    private final int bytesPerDataPoint;
+
+    DataPointsCodec(String name, int bytesPerDataPoint) {
+	this.name = name;
+	this.bytesPerDataPoint = bytesPerDataPoint;
+    }
+
+    /**
+     * @return true if each data point takes the same number of bytes
+     */
+    public boolean isFixedSize() {
+	return bytesPerDataPoint > 0;
+    }
+
+    /**
+     * @return number of bytes of each data point, or 0 if the codec does not
+     *         have a fixed size
+     */
+    public int getBytesPerDataPoint() {
+	return bytesPerDataPoint;
+    }
+
+    /**
+     * Encodes given data points. The buffer is reused if it is large enough,
+     * otherwise a new one is allocated.
+     *
+     * @return the buffer holding the encoded data points between position 0
+     *         and its limit
+     */
+    public ByteBuffer encode(DataPoint dataPoints[], ByteBuffer buffer) {
+
+	final int maxBytes;
+	if (isFixedSize())
+	    maxBytes = dataPoints.length * bytesPerDataPoint;
+	else
+	    // At most 5 bytes per m/z delta and 6 per intensity (a zero
+	    // intensity followed by a run count), plus the length prefix of
+	    // DELTA_DEFLATE
+	    maxBytes = dataPoints.length * 11 + 16;
+
+	if ((buffer == null) || (buffer.capacity() < maxBytes)) {
+	    buffer = ByteBuffer.allocate(maxBytes * 2);
+	} else {
+	    buffer.clear();
+	}
+
+	switch (this) {
+
+	case FLOAT:
+	    for (DataPoint dp : dataPoints) {
+		buffer.putFloat((float) dp.getMZ());
+		buffer.putFloat((float) dp.getIntensity());
+	    }
+	    break;
+
+	case DOUBLE_MZ:
+	    for (DataPoint dp : dataPoints) {
+		buffer.putDouble(dp.getMZ());
+		buffer.putFloat((float) dp.getIntensity());
+	    }
+	    break;
+
+	case DELTA:
+	    encodeDelta(dataPoints, buffer);
+	    break;
+
+	case DELTA_DEFLATE:
+	    ByteBuffer encoded = ByteBuffer.allocate(maxBytes);
+	    encodeDelta(dataPoints, encoded);
+	    buffer = deflate(encoded.array(), encoded.position(), buffer);
+	    break;
+
+	}
+
+	buffer.flip();
+	return buffer;
+
+    }
+
+    /**
+     * Decodes numOfDataPoints data points from given buffer to given arrays.
+     * The codecs of fixed size can also decode any part of the encoded data
+     * points, starting at index (position of the buffer / bytes per data
+     * point).
+     */
+    public void decode(ByteBuffer data, int numOfDataPoints,
+	    double mzValues[], double intensityValues[]) throws IOException {
+
+	switch (this) {
+
+	case FLOAT:
+	    for (int i = 0; i < numOfDataPoints; i++) {
+		mzValues[i] = data.getFloat();
+		intensityValues[i] = data.getFloat();
+	    }
+	    break;
+
+	case DOUBLE_MZ:
+	    for (int i = 0; i < numOfDataPoints; i++) {
+		mzValues[i] = data.getDouble();
+		intensityValues[i] = data.getFloat();
+	    }
+	    break;
+
+	case DELTA:
+	    decodeDelta(data, numOfDataPoints, mzValues, intensityValues);
+	    break;
+
+	case DELTA_DEFLATE:
+	    decodeDelta(inflate(data), numOfDataPoints, mzValues,
+		    intensityValues);
+	    break;
+
+	}
+
+    }
+
+    public String toString() {
+	return name;
+    }
+
+    /**
+     * Writes all m/z values first, then all intensities, which compresses
+     * better than alternating them.
+     */
+    private static void encodeDelta(DataPoint dataPoints[], ByteBuffer buffer) {
+
+	// The bits of positive floats are ordered like their values, so the
+	// differences of sorted m/z values are small
+	long previousBits = 0;
+	for (DataPoint dp : dataPoints) {
+	    final long bits = Float.floatToIntBits((float) dp.getMZ());
+	    putVarLong(buffer, zigZag(bits - previousBits));
+	    previousBits = bits;
+	}
+
+	int i = 0;
+	while (i < dataPoints.length) {
+	    final int token = roundIntensity(dataPoints[i].getIntensity());
+	    putVarLong(buffer, token);
+	    i++;
+	    if (token != 0)
+		continue;
+	    int zeroRun = 0;
+	    while ((i < dataPoints.length)
+		    && (roundIntensity(dataPoints[i].getIntensity()) == 0)) {
+		zeroRun++;
+		i++;
+	    }
+	    putVarLong(buffer, zeroRun);
+	}
+
+    }
+
+    private static void decodeDelta(ByteBuffer data, int numOfDataPoints,
+	    double mzValues[], double intensityValues[]) throws IOException {
+
+	long bits = 0;
+	for (int i = 0; i < numOfDataPoints; i++) {
+	    final long delta = getVarLong(data);
+	    bits += (delta >>> 1) ^ -(delta & 1);
+	    mzValues[i] = Float.intBitsToFloat((int) bits);
+	}
+
+	int i = 0;
+	while (i < numOfDataPoints) {
+	    final int token = (int) getVarLong(data);
+	    if (token != 0) {
+		final int rounded = (token >>> 1) ^ -(token & 1);
+		intensityValues[i++] = Float
+			.intBitsToFloat(rounded << INTENSITY_SHIFT);
+		continue;
+	    }
+	    final long zeroRun = getVarLong(data);
+	    if (i + 1 + zeroRun > numOfDataPoints)
+		throw new IOException("Corrupted data points, run of "
+			+ zeroRun + " zero intensities at data point " + i
+			+ " of " + numOfDataPoints);
+	    for (long j = 0; j <= zeroRun; j++)
+		intensityValues[i++] = 0;
+	}
+
+    }
+
+    /**
+     * Rounds the intensity to a float with INTENSITY_SHIFT less bits of
+     * mantissa and returns those bits, zig-zag encoded. Zero and values
+     * smaller than the rounding step are encoded as 0.
+     */
+    private static int roundIntensity(double intensity) {
+	int bits = Float.floatToIntBits((float) intensity);
+	if ((bits & 0x7fffffff) < MAX_ROUNDED_MAGNITUDE)
+	    bits += 1 << (INTENSITY_SHIFT - 1);
+	final int rounded = bits >> INTENSITY_SHIFT;
+	return (rounded << 1) ^ (rounded >> 31);
+    }
+
+    private static long zigZag(long value) {
+	return (value << 1) ^ (value >> 63);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+	while ((value & ~0x7fL) != 0) {
+	    buffer.put((byte) ((value & 0x7f) | 0x80));
+	    value >>>= 7;
+	}
+	buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer data) throws IOException {
+	long value = 0;
+	for (int shift = 0; shift < 64; shift += 7) {
+	    final byte b = data.get();
+	    value |= (long) (b & 0x7f) << shift;
+	    if (b >= 0)
+		return value;
+	}
+	throw new IOException(
+		"Corrupted data points, variable-length integer too long");
+    }
+
+    /**
+     * Compresses given bytes, preceded by their number so that inflate() can
+     * allocate the output at once
+     */
+    private static ByteBuffer deflate(byte input[], int length,
+	    ByteBuffer buffer) {
+
+	final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	try {
+	    deflater.setInput(input, 0, length);
+	    deflater.finish();
+	    buffer.putInt(length);
+	    while (!deflater.finished()) {
+		if (!buffer.hasRemaining()) {
+		    ByteBuffer largerBuffer = ByteBuffer.allocate(buffer
+			    .capacity() * 2);
+		    buffer.flip();
+		    largerBuffer.put(buffer);
+		    buffer = largerBuffer;
+		}
+		final int compressed = deflater.deflate(buffer.array(),
+			buffer.arrayOffset() + buffer.position(),
+			buffer.remaining());
+		buffer.position(buffer.position() + compressed);
+	    }
+	} finally {
+	    deflater.end();
+	}
+	return buffer;
+
+    }
+
+    private static ByteBuffer inflate(ByteBuffer data) throws IOException {
+
+	final int length = data.getInt();
+	final byte compressed[] = new byte[data.remaining()];
+	data.get(compressed);
+
+	final byte output[] = new byte[length];
+	final Inflater inflater = new Inflater();
+	try {
+	    inflater.setInput(compressed);
+	    int inflated = 0;
+	    while (inflated < length) {
+		final int n = inflater.inflate(output, inflated, length
+			- inflated);
+		if ((n == 0)
+			&& (inflater.needsInput() || inflater.finished()))
+		    throw new IOException(
+			    "Corrupted data points, compressed data too short");
+		inflated += n;
+	    }
+	} catch (DataFormatException e) {
+	    throw new IOException("Corrupted data points: " + e.getMessage());
+	} finally {
+	    inflater.end();
+	}
+	return ByteBuffer.wrap(output);
+
+    }
+
+}
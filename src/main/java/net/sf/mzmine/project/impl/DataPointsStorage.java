@@ -0,0 +1,58 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage backend for the temporary data points file of a RawDataFileImpl.
+ * Appends are always serialized by RawDataFileImpl, but read() may be called
+ * from many threads at the same time, also while another thread is appending.
+ */
+public interface DataPointsStorage {
+
+    /**
+     * Appends the remaining bytes of the given buffer to the end of the
+     * storage.
+     * 
+     * @return offset at which the data was written
+     */
+    long append(ByteBuffer data) throws IOException;
+
+    /**
+     * Returns a buffer containing the given number of bytes stored at the
+     * given offset. The returned buffer is positioned at 0 and must be treated
+     * as read-only, it may be a view of a shared mapping.
+     */
+    ByteBuffer read(long offset, int length) throws IOException;
+
+    /**
+     * @return number of bytes written to the storage so far
+     */
+    long getSize();
+
+    /**
+     * Releases any resources held by this storage. The underlying file is
+     * closed by RawDataFileImpl.
+     */
+    void close();
+
+}
@@ -52,6 +52,10 @@ public class MZmineProjectImpl implements MZmineProject {
 
     private File projectFile;
 
+    // IDs of the raw data files and peak lists within the project file. Items
+    // which were not modified keep their entries when the project is saved.
+    private final Hashtable<Object, Integer> projectFileIDs = new Hashtable<Object, Integer>();
+
     private Collection<MZmineProjectListener> listeners = Collections
             .synchronizedCollection(new LinkedList<MZmineProjectListener>());
 
@@ -183,6 +187,8 @@ public class MZmineProjectImpl implements MZmineProject {
             e.printStackTrace();
         }
 
+        projectFileIDs.remove(file);
+
         // Close the data file, which also removed the temporary data
         file.close();
 
@@ -237,6 +243,8 @@ public class MZmineProjectImpl implements MZmineProject {
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        projectFileIDs.remove(peakList);
     }
 
     public PeakList[] getPeakLists(RawDataFile file) {
@@ -260,6 +268,22 @@ public class MZmineProjectImpl implements MZmineProject {
         // treeModel.notifyObjectChanged(this, false);
     }
 
+    /**
+     * Returns the ID under which given raw data file or peak list is stored in
+     * the project file, or null if it has not been saved yet
+     */
+    public Integer getProjectFileID(Object item) {
+        return projectFileIDs.get(item);
+    }
+
+    public void setProjectFileID(Object item, int id) {
+        projectFileIDs.put(item, id);
+    }
+
+    public void clearProjectFileIDs() {
+        projectFileIDs.clear();
+    }
+
     public void removeProjectFile() {
         projectFile.delete();
     }
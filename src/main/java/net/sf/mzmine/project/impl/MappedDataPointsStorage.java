@@ -0,0 +1,175 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Data points storage which maps the data points file into memory in segments
+ * of SEGMENT_SIZE bytes. Readers do not take any lock, they just slice the
+ * mapped segment (or copy the data, if it spans two segments). Appends are
+ * written through the FileChannel using positional writes, so they never move
+ * the file pointer used by other code. A segment is mapped when it is first
+ * read and mapped again when a reader needs bytes appended after the previous
+ * mapping was created. The storage may also start at a given position of the
+ * file (baseOffset), in which case all offsets are relative to that position.
+ */
+public class MappedDataPointsStorage implements DataPointsStorage {
+
+    /**
+     * Size of one mapped segment (64 MB)
+     */
+    static final int SEGMENT_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final long baseOffset;
+
+    // Number of bytes written so far
+    private volatile long size;
+
+    // Mapped segments, replaced by a bigger array when the file grows
+    private volatile AtomicReferenceArray<MappedByteBuffer> segments;
+
+    public MappedDataPointsStorage(FileChannel channel) throws IOException {
+	this(channel, 0, channel.size());
+    }
+
+    /**
+     * Creates a storage of the given number of bytes, starting at position
+     * baseOffset of the file.
+     */
+    public MappedDataPointsStorage(FileChannel channel, long baseOffset,
+	    long size) {
+	this.channel = channel;
+	this.baseOffset = baseOffset;
+	this.size = size;
+	this.segments = new AtomicReferenceArray<MappedByteBuffer>(
+		numOfSegments(size) + 1);
+    }
+
+    public long append(ByteBuffer data) throws IOException {
+	synchronized (channel) {
+	    final long offset = size;
+	    long position = baseOffset + offset;
+	    while (data.hasRemaining()) {
+		position += channel.write(data, position);
+	    }
+	    size = position - baseOffset;
+	    return offset;
+	}
+    }
+
+    public ByteBuffer read(long offset, int length) throws IOException {
+
+	if ((offset < 0) || (offset + length > size)) {
+	    throw new IOException("Cannot read " + length + " bytes at offset "
+		    + offset + ", storage size is " + size);
+	}
+
+	final int segmentIndex = (int) (offset / SEGMENT_SIZE);
+	final int segmentOffset = (int) (offset % SEGMENT_SIZE);
+
+	// Most common case - all data is inside one segment, no need to copy
+	if (segmentOffset + length <= SEGMENT_SIZE) {
+	    ByteBuffer view = getSegment(segmentIndex, segmentOffset + length)
+		    .duplicate();
+	    view.position(segmentOffset);
+	    view.limit(segmentOffset + length);
+	    return view.slice();
+	}
+
+	// Data spans over segment boundaries, copy it to a new buffer
+	ByteBuffer result = ByteBuffer.allocate(length);
+	long position = offset;
+	while (result.hasRemaining()) {
+	    final int index = (int) (position / SEGMENT_SIZE);
+	    final int start = (int) (position % SEGMENT_SIZE);
+	    final int chunk = Math.min(result.remaining(), SEGMENT_SIZE
+		    - start);
+	    ByteBuffer view = getSegment(index, start + chunk).duplicate();
+	    view.position(start);
+	    view.limit(start + chunk);
+	    result.put(view);
+	    position += chunk;
+	}
+	result.flip();
+	return result;
+
+    }
+
+    public long getSize() {
+	return size;
+    }
+
+    public void close() {
+	// Mapped buffers are released by the garbage collector, we can only
+	// drop the references
+	segments = new AtomicReferenceArray<MappedByteBuffer>(0);
+    }
+
+    /**
+     * Returns the mapping of given segment, which is at least minLength bytes
+     * long. Concurrent callers may both create a new mapping of the same
+     * segment, which is harmless - one of them simply wins.
+     */
+    private MappedByteBuffer getSegment(int index, int minLength)
+	    throws IOException {
+
+	AtomicReferenceArray<MappedByteBuffer> currentSegments = segments;
+	if (index >= currentSegments.length()) {
+	    currentSegments = growSegments(index + 1);
+	}
+
+	MappedByteBuffer segment = currentSegments.get(index);
+	if ((segment != null) && (segment.capacity() >= minLength))
+	    return segment;
+
+	final long segmentStart = (long) index * SEGMENT_SIZE;
+	final long segmentLength = Math.min(SEGMENT_SIZE, size - segmentStart);
+	segment = channel.map(MapMode.READ_ONLY, baseOffset + segmentStart,
+		segmentLength);
+	currentSegments.set(index, segment);
+	return segment;
+
+    }
+
+    private synchronized AtomicReferenceArray<MappedByteBuffer> growSegments(
+	    int minSegments) {
+	AtomicReferenceArray<MappedByteBuffer> currentSegments = segments;
+	if (currentSegments.length() >= minSegments)
+	    return currentSegments;
+	AtomicReferenceArray<MappedByteBuffer> newSegments = new AtomicReferenceArray<MappedByteBuffer>(
+		minSegments * 2);
+	for (int i = 0; i < currentSegments.length(); i++)
+	    newSegments.set(i, currentSegments.get(i));
+	segments = newSegments;
+	return newSegments;
+    }
+
+    private static int numOfSegments(long bytes) {
+	return (int) ((bytes + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Data points storage which reads the file using seek() and read() on a single
+ * RandomAccessFile. All access is synchronized. This is used as a fallback
+ * when the file cannot be memory-mapped.
+ */
+public class RandomAccessDataPointsStorage implements DataPointsStorage {
+
+    private final RandomAccessFile dataPointsFile;
+
+    public RandomAccessDataPointsStorage(RandomAccessFile dataPointsFile) {
+	this.dataPointsFile = dataPointsFile;
+    }
+
+    public synchronized long append(ByteBuffer data) throws IOException {
+	final long offset = dataPointsFile.length();
+	dataPointsFile.seek(offset);
+	if (data.hasArray()) {
+	    dataPointsFile.write(data.array(),
+		    data.arrayOffset() + data.position(), data.remaining());
+	    data.position(data.limit());
+	} else {
+	    byte bytes[] = new byte[data.remaining()];
+	    data.get(bytes);
+	    dataPointsFile.write(bytes);
+	}
+	return offset;
+    }
+
+    public synchronized ByteBuffer read(long offset, int length)
+	    throws IOException {
+	byte bytes[] = new byte[length];
+	dataPointsFile.seek(offset);
+	dataPointsFile.readFully(bytes);
+	return ByteBuffer.wrap(bytes);
+    }
+
+    public synchronized long getSize() {
+	try {
+	    return dataPointsFile.length();
+	} catch (IOException e) {
+	    return 0;
+	}
+    }
+
+    public void close() {
+	// Nothing to release, the file is closed by RawDataFileImpl
+    }
+
+}
@@ -23,15 +23,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.NavigableMap;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
@@ -49,13 +50,29 @@ import com.google.common.primitives.Ints;
  * RawDataFile implementation. It provides storage of data points for scans and
  * mass lists using the storeDataPoints() and readDataPoints() methods. The data
  * points are stored in a temporary file (dataPointsFile) and the structure of
- * the file is stored in two TreeMaps. The dataPointsOffsets maps storage ID to
- * the offset in the dataPointsFile. The dataPointsLength maps the storage ID to
- * the number of data points stored under this ID. When stored data points are
+ * the file is stored in two maps. The dataPointsOffsets maps storage ID to the
+ * offset in the dataPointsFile. The dataPointsLength maps the storage ID to the
+ * number of data points stored under this ID. When stored data points are
  * deleted using removeStoredDataPoints(), the dataPointsFile is not modified,
- * the storage ID is just deleted from the two TreeMaps. When the project is
- * saved, the contents of the dataPointsFile are consolidated - only data points
- * referenced by the TreeMaps are saved (see the RawDataFileSaveHandler class).
+ * the storage ID is just deleted from the two maps. When the project is saved,
+ * the contents of the dataPointsFile are consolidated - only data points
+ * referenced by the maps are saved (see the RawDataFileSaveHandler class).
+ * 
+ * The data points are encoded by the DataPointsCodec of the file, which must
+ * be set before any data points are stored. By default, m/z and intensity are
+ * stored as two floats. For codecs without a fixed size per data point, the
+ * number of bytes stored under each ID is kept in a third map
+ * (dataPointsSizes).
+ * 
+ * The actual file access is delegated to a DataPointsStorage. By default the
+ * file is memory-mapped (MappedDataPointsStorage), so readDataPoints() does not
+ * take any lock and many threads can read scans of the same file in parallel.
+ * Writing is still serialized by storeDataPoints(). Data files opened from a
+ * project read their data points directly from the project archive instead
+ * (ArchiveDataPointsStorage).
+ * 
+ * Decoded data points are kept in the ScanDataCache shared by all raw data
+ * files, so scans which are read repeatedly are only read from the file once.
  */
 public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 
@@ -70,12 +87,22 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
     private final Hashtable<Integer, int[]> scanNumbersCache;
 
     private ByteBuffer buffer = ByteBuffer.allocate(20000);
-    private final TreeMap<Integer, Long> dataPointsOffsets;
-    private final TreeMap<Integer, Integer> dataPointsLengths;
+    private final NavigableMap<Integer, Long> dataPointsOffsets;
+    private final NavigableMap<Integer, Integer> dataPointsLengths;
+    private final NavigableMap<Integer, Integer> dataPointsSizes;
+    private volatile DataPointsCodec dataPointsCodec = DataPointsCodec.FLOAT;
 
     // Temporary file for scan data storage
     private File dataPointsFileName;
     private RandomAccessFile dataPointsFile;
+    private volatile DataPointsStorage dataPointsStorage;
+
+    // Statistics of the data points cache
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    // Set whenever the file changes, cleared when the project is saved
+    private volatile boolean modified = true;
 
     /**
      * Scans
@@ -93,8 +120,9 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 	dataMaxBasePeakIntensity = new Hashtable<Integer, Double>();
 	dataMaxTIC = new Hashtable<Integer, Double>();
 	scans = new Hashtable<Integer, StorableScan>();
-	dataPointsOffsets = new TreeMap<Integer, Long>();
-	dataPointsLengths = new TreeMap<Integer, Integer>();
+	dataPointsOffsets = new ConcurrentSkipListMap<Integer, Long>();
+	dataPointsLengths = new ConcurrentSkipListMap<Integer, Integer>();
+	dataPointsSizes = new ConcurrentSkipListMap<Integer, Integer>();
 
     }
 
@@ -107,7 +135,8 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 
     /**
      * Returns the (already opened) data points file. Warning: may return null
-     * in case no scans have been added yet to this RawDataFileImpl instance
+     * in case no scans have been added yet to this RawDataFileImpl instance,
+     * or if the data points are read from a project archive
      */
     public RandomAccessFile getDataPointsFile() {
 	return dataPointsFile;
@@ -117,11 +146,13 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
      * Opens the given file as a data points file for this RawDataFileImpl
      * instance. If the file is not empty, the TreeMaps supplied as parameters
      * have to describe the mapping of storage IDs to data points in the file.
+     * The file is accessed through the storage returned by
+     * createDataPointsStorage().
      */
     public synchronized void openDataPointsFile(File dataPointsFileName)
 	    throws IOException {
 
-	if (this.dataPointsFile != null) {
+	if (this.dataPointsStorage != null) {
 	    throw new IOException(
 		    "Cannot open another data points file, because one is already open");
 	}
@@ -135,6 +166,8 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 	FileChannel fileChannel = dataPointsFile.getChannel();
 	fileChannel.lock();
 
+	this.dataPointsStorage = createDataPointsStorage(dataPointsFile);
+
 	// Unfortunately, deleteOnExit() doesn't work on Windows, see JDK
 	// bug #4171239. We will try to remove the temporary files in a
 	// shutdown hook registered in the main.ShutDownHook class
@@ -142,6 +175,117 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 
     }
 
+    /**
+     * Opens the data points stored in a project archive at given position.
+     * The data points are read in place, no temporary file is created unless
+     * new data points are stored later. As with openDataPointsFile(), the
+     * mapping of storage IDs to data points has to be supplied.
+     */
+    public synchronized void openDataPointsArchive(File archiveFile,
+	    long dataOffset, long dataLength) throws IOException {
+
+	if (this.dataPointsStorage != null) {
+	    throw new IOException(
+		    "Cannot open another data points file, because one is already open");
+	}
+
+	this.dataPointsStorage = new ArchiveDataPointsStorage(archiveFile,
+		dataOffset, dataLength);
+
+    }
+
+    /**
+     * Copies the data points read from given project archive to a new
+     * temporary data points file and closes the archive. The project saving
+     * calls this before replacing the archive, because a memory-mapped file
+     * cannot be deleted on Windows. The storage IDs and offsets of the data
+     * points do not change.
+     * 
+     * @return true if the data points were read from given archive
+     */
+    public synchronized boolean detachDataPointsArchive(File archiveFile)
+	    throws IOException {
+
+	if (!(dataPointsStorage instanceof ArchiveDataPointsStorage))
+	    return false;
+	final ArchiveDataPointsStorage archiveStorage = (ArchiveDataPointsStorage) dataPointsStorage;
+	if (!archiveStorage.getArchiveFile().getAbsoluteFile()
+		.equals(archiveFile.getAbsoluteFile()))
+	    return false;
+
+	final File newFileName = createNewDataPointsFile();
+	final RandomAccessFile newFile = new RandomAccessFile(newFileName,
+		"rw");
+	final DataPointsStorage newStorage;
+	try {
+	    // Lock the temporary file, see openDataPointsFile()
+	    newFile.getChannel().lock();
+	    newFileName.deleteOnExit();
+
+	    dataPointsFileName = newFileName;
+	    newStorage = createDataPointsStorage(newFile);
+
+	    archiveStorage.copyTo(newStorage);
+	} catch (IOException e) {
+	    dataPointsFileName = null;
+	    newFile.close();
+	    newFileName.delete();
+	    throw e;
+	}
+
+	dataPointsFile = newFile;
+	dataPointsStorage = newStorage;
+	archiveStorage.close();
+
+	logger.finest("Copied data points of " + dataFileName + " from "
+		+ archiveFile + " to " + newFileName);
+	return true;
+
+    }
+
+    /**
+     * Creates the storage backend for given (already opened and locked) data
+     * points file. If the file cannot be memory-mapped, we fall back to plain
+     * RandomAccessFile access.
+     */
+    protected DataPointsStorage createDataPointsStorage(
+	    RandomAccessFile dataPointsFile) {
+	try {
+	    return new MappedDataPointsStorage(dataPointsFile.getChannel());
+	} catch (IOException e) {
+	    logger.warning("Could not memory-map file " + dataPointsFileName
+		    + ", using random access instead: " + e.toString());
+	    return new RandomAccessDataPointsStorage(dataPointsFile);
+	}
+    }
+
+    /**
+     * @return the storage backend of the data points file, or null if no
+     *         scans have been added yet
+     */
+    public DataPointsStorage getDataPointsStorage() {
+	return dataPointsStorage;
+    }
+
+    /**
+     * @return the codec of the stored data points
+     */
+    public DataPointsCodec getDataPointsCodec() {
+	return dataPointsCodec;
+    }
+
+    /**
+     * Sets the codec of the stored data points. The codec cannot be changed
+     * once some data points have been stored.
+     */
+    public synchronized void setDataPointsCodec(DataPointsCodec codec) {
+	if ((codec != dataPointsCodec) && (!dataPointsOffsets.isEmpty())) {
+	    throw new IllegalStateException("Cannot change the codec of "
+		    + dataFileName + ", data points are already stored");
+	}
+	this.dataPointsCodec = codec;
+    }
+
     /**
      * @see net.sf.mzmine.datamodel.RawDataFile#getNumOfScans()
      */
@@ -309,13 +453,11 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
     public synchronized int storeDataPoints(DataPoint dataPoints[])
 	    throws IOException {
 
-	if (dataPointsFile == null) {
+	if (dataPointsStorage == null) {
 	    File newFile = RawDataFileImpl.createNewDataPointsFile();
 	    openDataPointsFile(newFile);
 	}
 
-	final long currentOffset = dataPointsFile.length();
-
 	final int currentID;
 	if (!dataPointsOffsets.isEmpty())
 	    currentID = dataPointsOffsets.lastKey() + 1;
@@ -324,34 +466,97 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 
 	final int numOfDataPoints = dataPoints.length;
 
-	// Convert the dataPoints into a byte array. Each float takes 4 bytes,
-	// so we get the current float offset by dividing the size of the file
-	// by 4
-	final int numOfBytes = numOfDataPoints * 2 * 4;
+	// Convert the dataPoints into a byte array
+	buffer = dataPointsCodec.encode(dataPoints, buffer);
+	final int numOfBytes = buffer.remaining();
 
-	if (buffer.capacity() < numOfBytes) {
-	    buffer = ByteBuffer.allocate(numOfBytes * 2);
-	} else {
-	    buffer.clear();
+	final long currentOffset = dataPointsStorage.append(buffer);
+
+	dataPointsOffsets.put(currentID, currentOffset);
+	dataPointsLengths.put(currentID, numOfDataPoints);
+	dataPointsSizes.put(currentID, numOfBytes);
+	modified = true;
+
+	// The ID of removed data points may be reused
+	ScanDataCache.getSharedCache().remove(this, currentID);
+
+	return currentID;
+
+    }
+
+    /**
+     * Reads the data points stored under given ID. This method is not
+     * synchronized, it may be called from many threads at once. Each call
+     * returns a new array, which the caller may modify.
+     */
+    public DataPoint[] readDataPoints(int ID) throws IOException {
+	// Copy the array, because it may be cached
+	return readSharedDataPoints(ID).clone();
+    }
+
+    /**
+     * Reads the data points stored under given ID, like readDataPoints(), but
+     * without copying the cached array. The returned array may be shared and
+     * must not be modified.
+     */
+    DataPoint[] readSharedDataPoints(int ID) throws IOException {
+
+	final ScanDataCache cache = ScanDataCache.getSharedCache();
+	final DataPoint cachedDataPoints[] = cache.get(this, ID);
+	if (cachedDataPoints != null) {
+	    cacheHits.incrementAndGet();
+	    return cachedDataPoints;
 	}
+	cacheMisses.incrementAndGet();
+
+	final Long currentOffset = dataPointsOffsets.get(ID);
+	final Integer numOfDataPoints = dataPointsLengths.get(ID);
 
-	FloatBuffer floatBuffer = buffer.asFloatBuffer();
-	for (DataPoint dp : dataPoints) {
-	    floatBuffer.put((float) dp.getMZ());
-	    floatBuffer.put((float) dp.getIntensity());
+	if ((currentOffset == null) || (numOfDataPoints == null)) {
+	    throw new IllegalArgumentException("Unknown storage ID " + ID);
 	}
 
-	dataPointsFile.seek(currentOffset);
-	dataPointsFile.write(buffer.array(), 0, numOfBytes);
+	final int numOfBytes = getStoredDataPointsSize(ID);
 
-	dataPointsOffsets.put(currentID, currentOffset);
-	dataPointsLengths.put(currentID, numOfDataPoints);
+	ByteBuffer data = dataPointsStorage.read(currentOffset, numOfBytes);
+	StorageReadCounter.countRead(numOfBytes);
 
-	return currentID;
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	dataPointsCodec.decode(data, numOfDataPoints, mzValues,
+		intensityValues);
+
+	DataPoint dataPoints[] = new DataPoint[numOfDataPoints];
+
+	for (int i = 0; i < numOfDataPoints; i++) {
+	    dataPoints[i] = new SimpleDataPoint(mzValues[i],
+		    intensityValues[i]);
+	}
+
+	cache.put(this, ID, dataPoints);
+
+	return dataPoints;
 
     }
 
-    public synchronized DataPoint[] readDataPoints(int ID) throws IOException {
+    /**
+     * Reads count data points starting at given index from the data points
+     * stored under given ID. Only the requested part is read from the file,
+     * unless all data points are cached. Codecs without a fixed size per data
+     * point cannot be read in part, in that case all data points are read and
+     * added to the cache.
+     */
+    public DataPoint[] readDataPoints(int ID, int startIndex, int count)
+	    throws IOException {
+
+	final DataPoint cachedDataPoints[] = ScanDataCache.getSharedCache()
+		.get(this, ID);
+	if (cachedDataPoints != null) {
+	    cacheHits.incrementAndGet();
+	    return Arrays.copyOfRange(cachedDataPoints, startIndex, startIndex
+		    + count);
+	}
+	cacheMisses.incrementAndGet();
 
 	final Long currentOffset = dataPointsOffsets.get(ID);
 	final Integer numOfDataPoints = dataPointsLengths.get(ID);
@@ -360,34 +565,144 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 	    throw new IllegalArgumentException("Unknown storage ID " + ID);
 	}
 
-	final int numOfBytes = numOfDataPoints * 2 * 4;
+	if ((startIndex < 0) || (count < 0)
+		|| (startIndex + count > numOfDataPoints)) {
+	    throw new IndexOutOfBoundsException("Cannot read data points "
+		    + startIndex + " to " + (startIndex + count) + " of "
+		    + numOfDataPoints);
+	}
 
-	if (buffer.capacity() < numOfBytes) {
-	    buffer = ByteBuffer.allocate(numOfBytes * 2);
-	} else {
-	    buffer.clear();
+	final DataPointsCodec codec = dataPointsCodec;
+	if (!codec.isFixedSize()) {
+	    return Arrays.copyOfRange(readSharedDataPoints(ID), startIndex,
+		    startIndex + count);
 	}
 
-	dataPointsFile.seek(currentOffset);
-	dataPointsFile.read(buffer.array(), 0, numOfBytes);
+	final int numOfBytes = count * codec.getBytesPerDataPoint();
 
-	FloatBuffer floatBuffer = buffer.asFloatBuffer();
+	StorageReadCounter.countRead(numOfBytes);
+	ByteBuffer data = dataPointsStorage.read(currentOffset
+		+ (long) startIndex * codec.getBytesPerDataPoint(), numOfBytes);
 
-	DataPoint dataPoints[] = new DataPoint[numOfDataPoints];
+	final double mzValues[] = new double[count];
+	final double intensityValues[] = new double[count];
+	codec.decode(data, count, mzValues, intensityValues);
 
-	for (int i = 0; i < numOfDataPoints; i++) {
-	    float mz = floatBuffer.get();
-	    float intensity = floatBuffer.get();
-	    dataPoints[i] = new SimpleDataPoint(mz, intensity);
+	DataPoint dataPoints[] = new DataPoint[count];
+
+	for (int i = 0; i < count; i++) {
+	    dataPoints[i] = new SimpleDataPoint(mzValues[i],
+		    intensityValues[i]);
 	}
 
 	return dataPoints;
 
     }
 
+    /**
+     * Reads the data points stored under given ID into given arrays, which
+     * must be long enough to hold all of them. DataPoint instances are only
+     * created to add the data points to the cache, if it is enabled. This
+     * method is not synchronized.
+     * 
+     * @return number of data points read
+     */
+    public int readDataPoints(int ID, double mzValues[],
+	    double intensityValues[]) throws IOException {
+
+	// Use the decoded data points if they are cached
+	final ScanDataCache cache = ScanDataCache.getSharedCache();
+	final DataPoint cachedDataPoints[] = cache.get(this, ID);
+	if (cachedDataPoints != null) {
+	    cacheHits.incrementAndGet();
+	    for (int i = 0; i < cachedDataPoints.length; i++) {
+		mzValues[i] = cachedDataPoints[i].getMZ();
+		intensityValues[i] = cachedDataPoints[i].getIntensity();
+	    }
+	    return cachedDataPoints.length;
+	}
+	cacheMisses.incrementAndGet();
+
+	final Long currentOffset = dataPointsOffsets.get(ID);
+	final Integer numOfDataPoints = dataPointsLengths.get(ID);
+
+	if ((currentOffset == null) || (numOfDataPoints == null)) {
+	    throw new IllegalArgumentException("Unknown storage ID " + ID);
+	}
+
+	final int numOfBytes = getStoredDataPointsSize(ID);
+
+	ByteBuffer data = dataPointsStorage.read(currentOffset, numOfBytes);
+	StorageReadCounter.countRead(numOfBytes);
+
+	dataPointsCodec.decode(data, numOfDataPoints, mzValues,
+		intensityValues);
+
+	// Cache the decoded data points, so that further reads of the same
+	// scan, by this method or by the others, do not read the storage again
+	if (cache.getMaxSize() > 0) {
+	    DataPoint dataPoints[] = new DataPoint[numOfDataPoints];
+	    for (int i = 0; i < numOfDataPoints; i++) {
+		dataPoints[i] = new SimpleDataPoint(mzValues[i],
+			intensityValues[i]);
+	    }
+	    cache.put(this, ID, dataPoints);
+	}
+
+	return numOfDataPoints;
+
+    }
+
+    /**
+     * @return number of data points stored under given ID, or 0 if the ID is
+     *         not known
+     */
+    public int getNumOfStoredDataPoints(int ID) {
+	final Integer numOfDataPoints = dataPointsLengths.get(ID);
+	if (numOfDataPoints == null)
+	    return 0;
+	return numOfDataPoints;
+    }
+
+    /**
+     * @return number of bytes of the encoded data points stored under given
+     *         ID, or 0 if the ID is not known
+     */
+    public int getStoredDataPointsSize(int ID) {
+	final Integer numOfBytes = dataPointsSizes.get(ID);
+	if (numOfBytes != null)
+	    return numOfBytes;
+
+	if (!dataPointsLengths.containsKey(ID))
+	    return 0;
+
+	// Projects saved with codecs of fixed size may omit the sizes
+	final DataPointsCodec codec = dataPointsCodec;
+	if (!codec.isFixedSize())
+	    throw new IllegalStateException("Unknown size of storage ID " + ID);
+	return getNumOfStoredDataPoints(ID) * codec.getBytesPerDataPoint();
+    }
+
     public synchronized void removeStoredDataPoints(int ID) throws IOException {
 	dataPointsOffsets.remove(ID);
 	dataPointsLengths.remove(ID);
+	dataPointsSizes.remove(ID);
+	ScanDataCache.getSharedCache().remove(this, ID);
+	modified = true;
+    }
+
+    /**
+     * @return number of reads of data points served from the ScanDataCache
+     */
+    public long getCacheHits() {
+	return cacheHits.get();
+    }
+
+    /**
+     * @return number of reads of data points which were not cached
+     */
+    public long getCacheMisses() {
+	return cacheMisses.get();
     }
 
     public synchronized void addScan(Scan newScan) throws IOException {
@@ -396,6 +711,7 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 	// and we just need store the reference
 	if (newScan instanceof StorableScan) {
 	    scans.put(newScan.getScanNumber(), (StorableScan) newScan);
+	    modified = true;
 	    return;
 	}
 
@@ -413,8 +729,12 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
      * @see net.sf.mzmine.datamodel.RawDataFileWriter#finishWriting()
      */
     public synchronized RawDataFile finishWriting() throws IOException {
-	for (StorableScan scan : scans.values()) {
-	    scan.updateValues();
+	// Scans read from a project archive calculate their values when they
+	// are first needed, so opening a project does not read all data points
+	if (!(dataPointsStorage instanceof ArchiveDataPointsStorage)) {
+	    for (StorableScan scan : scans.values()) {
+		scan.updateValues();
+	    }
 	}
 	logger.finest("Writing of scans to file " + dataPointsFileName
 		+ " finished");
@@ -504,16 +824,25 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 	return getScanNumbers(msLevel).length;
     }
 
-    public synchronized TreeMap<Integer, Long> getDataPointsOffsets() {
+    public NavigableMap<Integer, Long> getDataPointsOffsets() {
 	return dataPointsOffsets;
     }
 
-    public synchronized TreeMap<Integer, Integer> getDataPointsLengths() {
+    public NavigableMap<Integer, Integer> getDataPointsLengths() {
 	return dataPointsLengths;
     }
 
+    public NavigableMap<Integer, Integer> getDataPointsSizes() {
+	return dataPointsSizes;
+    }
+
     public synchronized void close() {
+	ScanDataCache.getSharedCache().removeAll(this);
+	logger.finest("Closing file " + dataFileName + ", data points cache hits "
+		+ cacheHits + ", misses " + cacheMisses);
 	try {
+	    if (dataPointsStorage != null)
+		dataPointsStorage.close();
 	    if(dataPointsFileName != null) {
     	    	dataPointsFile.close();
     	    	dataPointsFileName.delete();
@@ -530,6 +859,19 @@ public class RawDataFileImpl implements RawDataFile, RawDataFileWriter {
 
     public void setName(@Nonnull String name) {
 	this.dataFileName = name;
+	modified = true;
+    }
+
+    /**
+     * Returns true if this file was changed since it was last saved to or
+     * loaded from a project. New files are always modified.
+     */
+    public boolean isModified() {
+	return modified;
+    }
+
+    public void setModified(boolean modified) {
+	this.modified = modified;
     }
 
     public String toString() {
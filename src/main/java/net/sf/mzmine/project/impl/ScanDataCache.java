@@ -0,0 +1,219 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.util.Iterator;
+
+import net.sf.mzmine.datamodel.DataPoint;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * Cache of decoded data points of scans and mass lists, shared by all raw data
+ * files. The size of the cache is limited in bytes (estimated from the number
+ * of data points), and the least recently used entries are evicted first. The
+ * limit is set in the MZmine preferences.
+ * 
+ * The entries are kept in a Guava cache, which is divided into segments
+ * locked independently, so threads reading different scans do not wait for
+ * each other. Eviction is done per segment, so it only approximates the least
+ * recently used order of the whole cache. Each segment gets an equal share of
+ * the size limit, and entries larger than that share are not cached at all,
+ * so the number of segments is kept small (MAX_CONCURRENCY_LEVEL) to leave
+ * room for large profile scans.
+ */
+public class ScanDataCache {
+
+    public static final int DEFAULT_SIZE_MB = 256;
+
+    /**
+     * Estimated memory used by one cached data point: a SimpleDataPoint
+     * instance and the reference to it
+     */
+    private static final int BYTES_PER_DATA_POINT = 40;
+
+    /**
+     * Estimated memory used by one cache entry besides the data points
+     */
+    private static final int BYTES_PER_ENTRY = 100;
+
+    /**
+     * Maximum number of segments of the cache
+     */
+    static final int MAX_CONCURRENCY_LEVEL = 4;
+
+    private static final Weigher<Key, DataPoint[]> weigher = new Weigher<Key, DataPoint[]>() {
+	public int weigh(Key key, DataPoint dataPoints[]) {
+	    return (int) Math.min(Integer.MAX_VALUE, getSize(dataPoints));
+	}
+    };
+
+    private static final ScanDataCache sharedCache = new ScanDataCache(
+	    DEFAULT_SIZE_MB * 1024L * 1024L);
+
+    // Number of independently locked segments of the cache
+    private final int concurrencyLevel;
+    private final int numOfSegments;
+
+    // Replaced by a new cache when the size limit changes
+    private volatile Cache<Key, DataPoint[]> entries;
+    private volatile long maxSize;
+
+    ScanDataCache(long maxSize) {
+	this(maxSize, Math.min(MAX_CONCURRENCY_LEVEL, Runtime.getRuntime()
+		.availableProcessors()));
+    }
+
+    ScanDataCache(long maxSize, int concurrencyLevel) {
+	this.concurrencyLevel = concurrencyLevel;
+	// Guava rounds the concurrency level up to a power of two
+	this.numOfSegments = Integer.highestOneBit(Math.max(1,
+		concurrencyLevel * 2 - 1));
+	this.maxSize = maxSize;
+	this.entries = createCache(maxSize);
+    }
+
+    public static ScanDataCache getSharedCache() {
+	return sharedCache;
+    }
+
+    /**
+     * Sets the size limit in bytes. 0 disables the cache. The cached entries
+     * are kept as long as they fit in the new limit.
+     */
+    public synchronized void setMaxSize(long maxSize) {
+	if (maxSize == this.maxSize)
+	    return;
+	final Cache<Key, DataPoint[]> oldEntries = entries;
+	final Cache<Key, DataPoint[]> newEntries = createCache(maxSize);
+	if (maxSize > 0)
+	    newEntries.putAll(oldEntries.asMap());
+	this.maxSize = maxSize;
+	this.entries = newEntries;
+	oldEntries.invalidateAll();
+    }
+
+    public long getMaxSize() {
+	return maxSize;
+    }
+
+    /**
+     * @return estimated memory used by the cached data points, in bytes
+     */
+    public long getCurrentSize() {
+	long currentSize = 0;
+	for (DataPoint dataPoints[] : entries.asMap().values())
+	    currentSize += getSize(dataPoints);
+	return currentSize;
+    }
+
+    /**
+     * @return hit, miss and eviction counts since the size limit was last
+     *         changed
+     */
+    public CacheStats getStats() {
+	return entries.stats();
+    }
+
+    /**
+     * Returns the cached data points stored under given ID, or null. The
+     * returned array must not be modified.
+     */
+    DataPoint[] get(RawDataFileImpl dataFile, int ID) {
+	return entries.getIfPresent(new Key(dataFile, ID));
+    }
+
+    /**
+     * @return size in bytes of the largest data points which can be cached
+     */
+    public long getMaxEntrySize() {
+	return maxSize / numOfSegments;
+    }
+
+    /**
+     * Adds given data points to the cache, evicting the least recently used
+     * entries if necessary. The array must not be modified afterwards. Data
+     * points larger than getMaxEntrySize() are not cached, the segment would
+     * evict them right away, together with its other entries.
+     */
+    void put(RawDataFileImpl dataFile, int ID, DataPoint dataPoints[]) {
+	if (getSize(dataPoints) > getMaxEntrySize())
+	    return;
+	entries.put(new Key(dataFile, ID), dataPoints);
+    }
+
+    void remove(RawDataFileImpl dataFile, int ID) {
+	entries.invalidate(new Key(dataFile, ID));
+    }
+
+    /**
+     * Removes all entries of given raw data file
+     */
+    void removeAll(RawDataFileImpl dataFile) {
+	Iterator<Key> iterator = entries.asMap().keySet().iterator();
+	while (iterator.hasNext()) {
+	    if (iterator.next().dataFile == dataFile)
+		iterator.remove();
+	}
+    }
+
+    private Cache<Key, DataPoint[]> createCache(long maxSize) {
+	return CacheBuilder.newBuilder().maximumWeight(maxSize)
+		.weigher(weigher).concurrencyLevel(concurrencyLevel)
+		.recordStats().build();
+    }
+
+    private static long getSize(DataPoint dataPoints[]) {
+	return BYTES_PER_ENTRY + (long) dataPoints.length
+		* BYTES_PER_DATA_POINT;
+    }
+
+    /**
+     * Identifies stored data points by raw data file instance and storage ID
+     */
+    private static final class Key {
+
+	private final RawDataFileImpl dataFile;
+	private final int ID;
+
+	Key(RawDataFileImpl dataFile, int ID) {
+	    this.dataFile = dataFile;
+	    this.ID = ID;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+	    if (!(o instanceof Key))
+		return false;
+	    Key other = (Key) o;
+	    return (dataFile == other.dataFile) && (ID == other.ID);
+	}
+
+	@Override
+	public int hashCode() {
+	    return 31 * System.identityHashCode(dataFile) + ID;
+	}
+
+    }
+
+}
@@ -22,7 +22,6 @@ package net.sf.mzmine.project.impl;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Vector;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
@@ -34,6 +33,7 @@ import net.sf.mzmine.datamodel.MassSpectrumType;
 import net.sf.mzmine.datamodel.PolarityType;
 import net.sf.mzmine.datamodel.RawDataFile;
 import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
 import net.sf.mzmine.desktop.impl.projecttree.RawDataTreeModel;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.util.ScanUtils;
@@ -65,6 +65,13 @@ public class StorableScan implements Scan {
 
     private int storageID;
 
+    /**
+     * Number of data points per entry of the sparse m/z index
+     */
+    private static final int MZ_INDEX_STEP = 32;
+
+    private volatile float mzIndex[];
+
     /**
      * Constructor for creating a storable scan from a given scan
      */
@@ -132,52 +139,124 @@ public class StorableScan implements Scan {
     }
 
     /**
-     * @return Returns scan datapoints within a given range
+     * Reads scan data points from temporary file directly into given arrays.
+     */
+    public int getDataPointValues(@Nonnull double mzValues[],
+	    @Nonnull double intensityValues[]) {
+
+	try {
+	    return rawDataFile.readDataPoints(storageID, mzValues,
+		    intensityValues);
+	} catch (IOException e) {
+	    logger.severe("Could not read data from temporary file "
+		    + e.toString());
+	    return 0;
+	}
+
+    }
+
+    /**
+     * @return Returns scan datapoints within a given range. Using the m/z
+     *         index, only the part of the scan which may contain the range is
+     *         read from the temporary file.
      */
     public @Nonnull DataPoint[] getDataPointsByMass(
 	    @Nonnull Range<Double> mzRange) {
 
-	DataPoint dataPoints[] = getDataPoints();
+	try {
 
-	int startIndex, endIndex;
-	for (startIndex = 0; startIndex < dataPoints.length; startIndex++) {
-	    if (dataPoints[startIndex].getMZ() >= mzRange.lowerEndpoint()) {
-		break;
-	    }
-	}
+	    final float index[] = getMZIndex();
 
-	for (endIndex = startIndex; endIndex < dataPoints.length; endIndex++) {
-	    if (dataPoints[endIndex].getMZ() > mzRange.upperEndpoint()) {
-		break;
-	    }
-	}
+	    // Data points not sorted by m/z, check all of them
+	    if (index.length == 0)
+		return ScanUtils.selectDataPointsByMass(
+			rawDataFile.readSharedDataPoints(storageID), mzRange);
+
+	    // Index entry b is the m/z value of data point b * MZ_INDEX_STEP.
+	    // Blocks starting below the lower bound may only contain data
+	    // points within the range if they are the last such block, blocks
+	    // starting above the upper bound cannot contain any.
+	    final int firstBlock = Math.max(0,
+		    findFirstIndexAbove(index, mzRange.lowerEndpoint(), false) - 1);
+	    final int endBlock = findFirstIndexAbove(index,
+		    mzRange.upperEndpoint(), true);
 
-	DataPoint pointsWithinRange[] = new DataPoint[endIndex - startIndex];
+	    final int startIndex = firstBlock * MZ_INDEX_STEP;
+	    final int endIndex = Math.min(numberOfDataPoints, endBlock
+		    * MZ_INDEX_STEP);
+	    if (endIndex <= startIndex)
+		return new DataPoint[0];
 
-	// Copy the relevant points
-	System.arraycopy(dataPoints, startIndex, pointsWithinRange, 0, endIndex
-		- startIndex);
+	    final DataPoint dataPoints[] = rawDataFile.readDataPoints(
+		    storageID, startIndex, endIndex - startIndex);
+	    return ScanUtils.selectSortedDataPointsByMass(dataPoints, mzRange);
 
-	return pointsWithinRange;
+	} catch (IOException e) {
+	    logger.severe("Could not read data from temporary file "
+		    + e.toString());
+	    return new DataPoint[0];
+	}
     }
 
     /**
      * @return Returns scan datapoints over certain intensity
      */
     public @Nonnull DataPoint[] getDataPointsOverIntensity(double intensity) {
-	int index;
-	Vector<DataPoint> points = new Vector<DataPoint>();
-	DataPoint dataPoints[] = getDataPoints();
 
-	for (index = 0; index < dataPoints.length; index++) {
-	    if (dataPoints[index].getIntensity() >= intensity) {
-		points.add(dataPoints[index]);
-	    }
+	try {
+	    return ScanUtils.selectDataPointsOverIntensity(
+		    rawDataFile.readSharedDataPoints(storageID), intensity);
+	} catch (IOException e) {
+	    logger.severe("Could not read data from temporary file "
+		    + e.toString());
+	    return new DataPoint[0];
 	}
+    }
 
-	DataPoint pointsOverIntensity[] = points.toArray(new DataPoint[0]);
+    /**
+     * Returns the sparse m/z index of this scan, which contains the m/z value
+     * of every MZ_INDEX_STEP-th data point. An empty index means the data
+     * points are not sorted by m/z.
+     */
+    private float[] getMZIndex() {
+	if (mzIndex == null) {
+	    final double mzValues[] = new double[numberOfDataPoints];
+	    final double intensityValues[] = new double[numberOfDataPoints];
+	    final int size = getDataPointValues(mzValues, intensityValues);
+	    buildMZIndex(mzValues, size);
+	}
+	return mzIndex;
+    }
 
-	return pointsOverIntensity;
+    /**
+     * Binary search for the first index entry greater than or equal to given
+     * m/z (strictly greater, if strict is true)
+     */
+    private static int findFirstIndexAbove(float index[], double mz,
+	    boolean strict) {
+	int low = 0, high = index.length;
+	while (low < high) {
+	    final int mid = (low + high) >>> 1;
+	    if ((index[mid] < mz) || (strict && (index[mid] == mz)))
+		low = mid + 1;
+	    else
+		high = mid;
+	}
+	return low;
+    }
+
+    private void buildMZIndex(double mzValues[], int size) {
+	for (int i = 1; i < size; i++) {
+	    if (mzValues[i] < mzValues[i - 1]) {
+		mzIndex = new float[0];
+		return;
+	    }
+	}
+	final float index[] = new float[(size + MZ_INDEX_STEP - 1)
+		/ MZ_INDEX_STEP];
+	for (int i = 0; i < index.length; i++)
+	    index[i] = (float) mzValues[i * MZ_INDEX_STEP];
+	mzIndex = index;
     }
 
     public @Nonnull RawDataFile getDataFile() {
@@ -231,26 +310,34 @@ public class StorableScan implements Scan {
     }
 
     void updateValues() {
-	DataPoint dataPoints[] = getDataPoints();
+	final double mzValues[] = new double[numberOfDataPoints];
+	final double intensityValues[] = new double[numberOfDataPoints];
+	final int size = getDataPointValues(mzValues, intensityValues);
+
+	buildMZIndex(mzValues, size);
 
 	// find m/z range and base peak
-	if (dataPoints.length > 0) {
+	if (size > 0) {
 
-	    basePeak = dataPoints[0];
-	    mzRange = Range.singleton(dataPoints[0].getMZ());
+	    int basePeakIndex = 0;
+	    double minMZ = mzValues[0], maxMZ = mzValues[0];
 	    double tic = 0;
 
-	    for (DataPoint dp : dataPoints) {
+	    for (int i = 0; i < size; i++) {
 
-		if (dp.getIntensity() > basePeak.getIntensity())
-		    basePeak = dp;
+		if (intensityValues[i] > intensityValues[basePeakIndex])
+		    basePeakIndex = i;
 
-		mzRange = mzRange.span(Range.singleton(dp.getMZ()));
+		minMZ = Math.min(minMZ, mzValues[i]);
+		maxMZ = Math.max(maxMZ, mzValues[i]);
 
-		tic += dp.getIntensity();
+		tic += intensityValues[i];
 
 	    }
 
+	    basePeak = new SimpleDataPoint(mzValues[basePeakIndex],
+		    intensityValues[basePeakIndex]);
+	    mzRange = Range.closed(minMZ, maxMZ);
 	    totalIonCurrent = new Double(tic);
 
 	} else {
@@ -297,7 +384,11 @@ public class StorableScan implements Scan {
      */
     public MassSpectrumType getSpectrumType() {
 	if (spectrumType == null) {
-	    spectrumType = ScanUtils.detectSpectrumType(getDataPoints());
+	    final double mzValues[] = new double[numberOfDataPoints];
+	    final double intensityValues[] = new double[numberOfDataPoints];
+	    final int size = getDataPointValues(mzValues, intensityValues);
+	    spectrumType = ScanUtils.detectSpectrumType(mzValues,
+		    intensityValues, size);
 	}
 	return spectrumType;
     }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the scans (including mass lists) and bytes read from the data points
+ * storage of raw data files. Each thread has its own counter, so the task
+ * controller can attribute the reads to the task running on the thread.
+ */
+public class StorageReadCounter {
+
+    private static final ThreadLocal<StorageReadCounter> threadCounters = new ThreadLocal<StorageReadCounter>() {
+        @Override
+        protected StorageReadCounter initialValue() {
+            return new StorageReadCounter();
+        }
+    };
+
+    private final AtomicLong scansRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private StorageReadCounter() {
+    }
+
+    /**
+     * Returns the counter of the current thread
+     */
+    public static StorageReadCounter getThreadCounter() {
+        return threadCounters.get();
+    }
+
+    /**
+     * Called by RawDataFileImpl whenever the current thread reads the data
+     * points of one scan or mass list
+     */
+    static void countRead(int numOfBytes) {
+        final StorageReadCounter counter = threadCounters.get();
+        counter.scansRead.incrementAndGet();
+        counter.bytesRead.addAndGet(numOfBytes);
+    }
+
+    public long getScansRead() {
+        return scansRead.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+}
@@ -19,20 +19,41 @@
 
 package net.sf.mzmine.taskcontrol;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * An abstract implementation of task which defines common methods to make Task
  * implementation easier
  */
 public abstract class AbstractTask implements Task {
 
-    private TaskStatus status = TaskStatus.WAITING;
+    private volatile TaskStatus status = TaskStatus.WAITING;
     private String errorMessage = null;
 
+    private final List<TaskListener> taskListeners = new CopyOnWriteArrayList<TaskListener>();
+
     /**
      * @see net.sf.mzmine.taskcontrol.Task#setStatus()
      */
     public final void setStatus(TaskStatus newStatus) {
+	if (this.status == newStatus)
+	    return;
 	this.status = newStatus;
+	for (TaskListener listener : taskListeners)
+	    listener.statusChanged(this, newStatus);
+    }
+
+    /**
+     * Adds a listener which will be notified of every status change of this
+     * task, including its completion (FINISHED, CANCELED or ERROR status)
+     */
+    public final void addTaskListener(TaskListener listener) {
+	taskListeners.add(listener);
+    }
+
+    public final void removeTaskListener(TaskListener listener) {
+	taskListeners.remove(listener);
     }
 
     /**
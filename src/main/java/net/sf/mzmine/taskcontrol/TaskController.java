@@ -19,6 +19,8 @@
 
 package net.sf.mzmine.taskcontrol;
 
+import java.util.concurrent.Executor;
+
 import net.sf.mzmine.taskcontrol.impl.TaskQueue;
 
 /**
@@ -36,8 +38,20 @@ public interface TaskController {
 
     public void setTaskPriority(Task task, TaskPriority priority);
 
+    /**
+     * Returns the resources used by given task, or null if the task was not
+     * added to this controller
+     */
+    public TaskMetrics getTaskMetrics(Task task);
+
     public void addTaskControlListener(TaskControlListener listener);
 
     public TaskQueue getTaskQueue();
 
+    /**
+     * Returns the thread pool shared by all tasks for their parallel parts.
+     * Tasks should submit their jobs through a WorkerExecutor.
+     */
+    public Executor getWorkerThreadPool();
+
 }
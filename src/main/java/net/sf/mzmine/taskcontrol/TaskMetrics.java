@@ -0,0 +1,250 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.taskcontrol;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+
+import net.sf.mzmine.project.impl.StorageReadCounter;
+
+/**
+ * Resources used by one task: wall time, CPU time and memory allocated by the
+ * thread processing the task, and scans and bytes read from raw data file
+ * storage by that thread. The task controller starts the measurement before
+ * the task is processed and stops it afterwards. While the task is running,
+ * the getters return the values measured so far.
+ * 
+ * Jobs which the task runs on the worker thread pool through a WorkerExecutor
+ * are measured on the worker thread, and their usage is added to the task
+ * once each job finishes. CPU time and allocated memory are -1 if the JVM
+ * cannot measure them.
+ */
+public class TaskMetrics {
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory
+	    .getThreadMXBean();
+
+    private static final boolean cpuTimeSupported, allocatedMemorySupported;
+
+    static {
+	boolean cpuTime = false, allocatedMemory = false;
+	try {
+	    if (threadMXBean.isThreadCpuTimeSupported()) {
+		if (!threadMXBean.isThreadCpuTimeEnabled())
+		    threadMXBean.setThreadCpuTimeEnabled(true);
+		cpuTime = true;
+	    }
+	    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadMXBean;
+		if (sunBean.isThreadAllocatedMemorySupported()) {
+		    if (!sunBean.isThreadAllocatedMemoryEnabled())
+			sunBean.setThreadAllocatedMemoryEnabled(true);
+		    allocatedMemory = true;
+		}
+	    }
+	} catch (UnsupportedOperationException | SecurityException e) {
+	    // Measure only what is available
+	}
+	cpuTimeSupported = cpuTime;
+	allocatedMemorySupported = allocatedMemory;
+    }
+
+    // Metrics of the task processed by the current thread
+    private static final ThreadLocal<TaskMetrics> currentMetrics = new ThreadLocal<TaskMetrics>();
+
+    private boolean started, running;
+    private long threadId;
+    private StorageReadCounter readCounter;
+
+    // Values when the measurement started, and the totals once stopped
+    private long startWallTime, startCpuTime, startAllocatedBytes,
+	    startScansRead, startBytesRead;
+    private long wallTime, cpuTime, allocatedBytes, scansRead, bytesRead;
+
+    // Totals of the finished worker jobs of the task
+    private long workerCpuTime, workerAllocatedBytes, workerScansRead,
+	    workerBytesRead;
+
+    /**
+     * @return metrics of the task processed by the current thread, or null if
+     *         the thread is not processing a task
+     */
+    public static TaskMetrics getCurrentMetrics() {
+	return currentMetrics.get();
+    }
+
+    /**
+     * Starts measuring. Must be called from the thread processing the task.
+     */
+    public synchronized void start() {
+	threadId = Thread.currentThread().getId();
+	readCounter = StorageReadCounter.getThreadCounter();
+	startWallTime = System.nanoTime();
+	startCpuTime = getThreadCpuTime(threadId);
+	startAllocatedBytes = getThreadAllocatedBytes(threadId);
+	startScansRead = readCounter.getScansRead();
+	startBytesRead = readCounter.getBytesRead();
+	started = true;
+	running = true;
+	currentMetrics.set(this);
+    }
+
+    /**
+     * Stops measuring. Must be called from the same thread as start().
+     */
+    public synchronized void stop() {
+	if (!running)
+	    return;
+	currentMetrics.remove();
+	wallTime = System.nanoTime() - startWallTime;
+	cpuTime = cpuTimeSupported ? getThreadCpuTime(threadId) - startCpuTime
+		: -1;
+	allocatedBytes = allocatedMemorySupported ? getThreadAllocatedBytes(threadId)
+		- startAllocatedBytes : -1;
+	scansRead = readCounter.getScansRead() - startScansRead;
+	bytesRead = readCounter.getBytesRead() - startBytesRead;
+	running = false;
+	notifyAll();
+    }
+
+    /**
+     * @return true if the task has been started
+     */
+    public synchronized boolean isStarted() {
+	return started;
+    }
+
+    /**
+     * Waits until the measurement is stopped. The status of a task changes to
+     * FINISHED slightly before the task controller stops the measurement.
+     */
+    public synchronized void waitUntilStopped() throws InterruptedException {
+	while (running)
+	    wait();
+    }
+
+    /**
+     * @return wall time in nanoseconds
+     */
+    public synchronized long getWallTime() {
+	if (running)
+	    return System.nanoTime() - startWallTime;
+	return wallTime;
+    }
+
+    /**
+     * @return CPU time of the task thread and its worker jobs in nanoseconds,
+     *         or -1
+     */
+    public synchronized long getCpuTime() {
+	if (!cpuTimeSupported)
+	    return -1;
+	if (running)
+	    return getThreadCpuTime(threadId) - startCpuTime + workerCpuTime;
+	return cpuTime + workerCpuTime;
+    }
+
+    /**
+     * @return bytes allocated by the task thread and its worker jobs, or -1
+     */
+    public synchronized long getAllocatedBytes() {
+	if (!allocatedMemorySupported)
+	    return -1;
+	if (running)
+	    return getThreadAllocatedBytes(threadId) - startAllocatedBytes
+		    + workerAllocatedBytes;
+	return allocatedBytes + workerAllocatedBytes;
+    }
+
+    /**
+     * @return number of scans and mass lists read from raw data file storage
+     */
+    public synchronized long getScansRead() {
+	if (running)
+	    return readCounter.getScansRead() - startScansRead
+		    + workerScansRead;
+	return scansRead + workerScansRead;
+    }
+
+    /**
+     * @return number of bytes read from raw data file storage
+     */
+    public synchronized long getBytesRead() {
+	if (running)
+	    return readCounter.getBytesRead() - startBytesRead
+		    + workerBytesRead;
+	return bytesRead + workerBytesRead;
+    }
+
+    /**
+     * Runs given job of the task on the current worker thread, and adds the
+     * CPU time, memory and storage reads of the job to the totals of the task.
+     * Worker jobs submitted by the job are measured for the same task.
+     */
+    <T> T runWorkerJob(Callable<T> job) throws Exception {
+
+	final long workerId = Thread.currentThread().getId();
+	final StorageReadCounter workerCounter = StorageReadCounter
+		.getThreadCounter();
+	final long jobStartCpuTime = getThreadCpuTime(workerId);
+	final long jobStartAllocatedBytes = getThreadAllocatedBytes(workerId);
+	final long jobStartScansRead = workerCounter.getScansRead();
+	final long jobStartBytesRead = workerCounter.getBytesRead();
+
+	final TaskMetrics previousMetrics = currentMetrics.get();
+	currentMetrics.set(this);
+	try {
+	    return job.call();
+	} finally {
+	    if (previousMetrics != null)
+		currentMetrics.set(previousMetrics);
+	    else
+		currentMetrics.remove();
+	    final long jobCpuTime = getThreadCpuTime(workerId)
+		    - jobStartCpuTime;
+	    final long jobAllocatedBytes = getThreadAllocatedBytes(workerId)
+		    - jobStartAllocatedBytes;
+	    synchronized (this) {
+		workerCpuTime += jobCpuTime;
+		workerAllocatedBytes += jobAllocatedBytes;
+		workerScansRead += workerCounter.getScansRead()
+			- jobStartScansRead;
+		workerBytesRead += workerCounter.getBytesRead()
+			- jobStartBytesRead;
+	    }
+	}
+
+    }
+
+    private static long getThreadCpuTime(long threadId) {
+	if (!cpuTimeSupported)
+	    return -1;
+	return threadMXBean.getThreadCpuTime(threadId);
+    }
+
+    private static long getThreadAllocatedBytes(long threadId) {
+	if (!allocatedMemorySupported)
+	    return -1;
+	return ((com.sun.management.ThreadMXBean) threadMXBean)
+		.getThreadAllocatedBytes(threadId);
+    }
+
+}
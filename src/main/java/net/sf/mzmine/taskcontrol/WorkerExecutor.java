@@ -0,0 +1,121 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.taskcontrol;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import net.sf.mzmine.main.MZmineCore;
+
+/**
+ * Runs the parallel parts of one task on the worker thread pool of the task
+ * controller. The pool is shared by all tasks and has as many threads as set
+ * in the preferences, so several tasks running at once do not start more
+ * threads than there are processors. Each task uses its own WorkerExecutor,
+ * which keeps track of the jobs of that task only, so cancelAll() does not
+ * affect the jobs of other tasks. The resources used by the jobs are added to
+ * the TaskMetrics of the task which created the executor.
+ *
+ * Jobs must not wait for other jobs submitted to the worker pool, otherwise
+ * all workers may end up waiting.
+ */
+public class WorkerExecutor {
+
+    private final Executor workerPool;
+
+    // Metrics of the task submitting the jobs, or null
+    private final TaskMetrics metrics;
+
+    // Jobs which were submitted and are not done yet
+    private final Set<Future<?>> pendingJobs = Collections
+	    .newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+
+    /**
+     * Creates an executor using the worker pool of the task controller. Must
+     * be called from the thread processing the task, so that the jobs are
+     * measured as part of the task.
+     */
+    public WorkerExecutor() {
+	this(MZmineCore.getTaskController().getWorkerThreadPool());
+    }
+
+    public WorkerExecutor(Executor workerPool) {
+	this.workerPool = workerPool;
+	this.metrics = TaskMetrics.getCurrentMetrics();
+    }
+
+    public <T> Future<T> submit(Callable<T> job) {
+	return execute(new JobFuture<T>(measured(job)));
+    }
+
+    public Future<?> submit(Runnable job) {
+	return submit(Executors.callable(job));
+    }
+
+    /**
+     * Cancels all jobs of this executor which are not done yet. Running jobs
+     * are interrupted. Tasks call this method when they finish, so a canceled
+     * or failed task does not leave its jobs in the shared pool.
+     */
+    public void cancelAll() {
+	for (Future<?> job : pendingJobs)
+	    job.cancel(true);
+    }
+
+    /**
+     * Measures the job inside the callable, so the usage of the job is added
+     * to the task metrics before its future is done
+     */
+    private <T> Callable<T> measured(final Callable<T> job) {
+	if (metrics == null)
+	    return job;
+	return new Callable<T>() {
+	    public T call() throws Exception {
+		return metrics.runWorkerJob(job);
+	    }
+	};
+    }
+
+    private <T> Future<T> execute(JobFuture<T> future) {
+	pendingJobs.add(future);
+	workerPool.execute(future);
+	return future;
+    }
+
+    private class JobFuture<T> extends FutureTask<T> {
+
+	JobFuture(Callable<T> job) {
+	    super(job);
+	}
+
+	@Override
+	protected void done() {
+	    pendingJobs.remove(this);
+	}
+
+    }
+
+}
@@ -20,47 +20,79 @@
 package net.sf.mzmine.taskcontrol.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
-import net.sf.mzmine.desktop.preferences.MZminePreferences;
-import net.sf.mzmine.desktop.preferences.NumOfThreadsParameter;
 import net.sf.mzmine.main.GoogleAnalyticsTracker;
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.taskcontrol.Task;
 import net.sf.mzmine.taskcontrol.TaskControlListener;
 import net.sf.mzmine.taskcontrol.TaskController;
+import net.sf.mzmine.taskcontrol.TaskMetrics;
 import net.sf.mzmine.taskcontrol.TaskPriority;
-import net.sf.mzmine.taskcontrol.TaskStatus;
 
 /**
- * Task controller implementation
+ * Task controller implementation. Tasks of NORMAL priority are processed by a
+ * thread pool whose size follows the number of threads set in the preferences
+ * dialog. Tasks of HIGH priority are processed immediately by a separate pool
+ * without a size limit. Tasks which run parts of their work in parallel submit
+ * them to a single worker pool of the same size, so running several such
+ * tasks at once does not multiply the number of busy threads.
  */
-public class TaskControllerImpl implements TaskController, Runnable {
+public class TaskControllerImpl implements TaskController {
 
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
-    ArrayList<TaskControlListener> listeners = new ArrayList<TaskControlListener>();
+    List<TaskControlListener> listeners = new ArrayList<TaskControlListener>();
 
     /**
-     * Update the task progress window every 300 ms
+     * Update the progress bars in the task progress window every 300 ms while
+     * tasks are running
      */
-    private final int TASKCONTROLLER_THREAD_SLEEP = 300;
+    private final int PROGRESS_UPDATE_INTERVAL = 300;
 
-    private Thread taskControllerThread;
+    /**
+     * How long an idle pooled thread is kept alive, in seconds
+     */
+    private final int THREAD_KEEP_ALIVE_TIME = 60;
 
     private TaskQueue taskQueue;
 
+    private ThreadPoolExecutor normalPriorityExecutor;
+    private ThreadPoolExecutor workerThreadPool;
+    private ExecutorService highPriorityExecutor;
+    private ScheduledExecutorService progressUpdater;
+
     /**
-     * This vector contains references to all running threads of NORMAL
-     * priority. Maximum number of concurrent threads is specified in the
-     * preferences dialog.
+     * Tasks which were submitted to the normal priority pool, but have not
+     * started yet
      */
-    private Vector<WorkerThread> runningThreads;
+    private final Map<WrappedTask, TaskRunner> waitingTasks = new ConcurrentHashMap<WrappedTask, TaskRunner>();
+
+    /**
+     * Resources used by each task. Tasks in the queue are replaced by
+     * FinishedTask when they finish, so the metrics are kept here as long as
+     * somebody else holds a reference to the original task.
+     */
+    private final Map<Task, TaskMetrics> taskMetrics = Collections
+	    .synchronizedMap(new WeakHashMap<Task, TaskMetrics>());
+
+    private int previousNumOfWaitingTasks = -1;
 
     /**
      * Initialize the task controller
@@ -69,13 +101,37 @@ public class TaskControllerImpl implements TaskController, Runnable {
 
 	taskQueue = new TaskQueue();
 
-	runningThreads = new Vector<WorkerThread>();
-
-	// Create a low-priority thread that will manage the queue and start
-	// worker threads for tasks
-	taskControllerThread = new Thread(this, "Task controller thread");
-	taskControllerThread.setPriority(Thread.MIN_PRIORITY);
-	taskControllerThread.start();
+	final int numOfThreads = MZmineCore.getConfiguration()
+		.getPreferences().getNumOfThreads();
+	normalPriorityExecutor = new ThreadPoolExecutor(numOfThreads,
+		numOfThreads, THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+		new LinkedBlockingQueue<Runnable>(), new TaskThreadFactory(
+			"Normal priority task thread", Thread.NORM_PRIORITY,
+			false));
+	normalPriorityExecutor.allowCoreThreadTimeOut(true);
+
+	workerThreadPool = new ThreadPoolExecutor(numOfThreads, numOfThreads,
+		THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+		new LinkedBlockingQueue<Runnable>(), new TaskThreadFactory(
+			"Task worker thread", Thread.NORM_PRIORITY, true));
+	workerThreadPool.allowCoreThreadTimeOut(true);
+
+	highPriorityExecutor = Executors
+		.newCachedThreadPool(new TaskThreadFactory(
+			"High priority task thread", Thread.MAX_PRIORITY, false));
+
+	// Create a low-priority thread that will refresh the progress of
+	// running tasks
+	progressUpdater = Executors
+		.newSingleThreadScheduledExecutor(new TaskThreadFactory(
+			"Task progress updater", Thread.MIN_PRIORITY, true));
+	progressUpdater.scheduleWithFixedDelay(new Runnable() {
+	    public void run() {
+		if (taskQueue.getNumOfWaitingTasks() > 0)
+		    taskQueue.refresh();
+	    }
+	}, PROGRESS_UPDATE_INTERVAL, PROGRESS_UPDATE_INTERVAL,
+		TimeUnit.MILLISECONDS);
 
     }
 
@@ -101,14 +157,28 @@ public class TaskControllerImpl implements TaskController, Runnable {
 	if ((tasks == null) || (tasks.length == 0))
 	    return;
 
+	// Apply a possible change of the number of threads
+	updateNumOfThreads();
+
 	List<String> taskClass = new ArrayList<String>();
 	String taskClassName;
 	for (Task task : tasks) {
 	    taskClassName = task.getClass().getName();
 	    taskClassName = taskClassName.substring(taskClassName.lastIndexOf(".") + 1);
 	    taskClass.add(taskClassName);
-	    WrappedTask newQueueEntry = new WrappedTask(task, priority);
+	    TaskMetrics metrics = new TaskMetrics();
+	    taskMetrics.put(task, metrics);
+	    WrappedTask newQueueEntry = new WrappedTask(task, priority,
+		    metrics);
 	    taskQueue.addWrappedTask(newQueueEntry);
+
+	    TaskRunner runner = new TaskRunner(newQueueEntry, this);
+	    if (priority == TaskPriority.HIGH) {
+		highPriorityExecutor.execute(runner);
+	    } else {
+		waitingTasks.put(newQueueEntry, runner);
+		normalPriorityExecutor.execute(runner);
+	    }
 	}
 
 	// Track module usage
@@ -121,104 +191,65 @@ public class TaskControllerImpl implements TaskController, Runnable {
 	    gatThread.start();
 	}
 
-	// Wake up the task controller thread
-	synchronized (this) {
-	    this.notifyAll();
-	}
+	fireNumberOfWaitingTasksChanged();
 
     }
 
     /**
-     * Task controller thread main method.
-     * 
-     * @see java.lang.Runnable#run()
+     * Called by TaskRunner when a task starts processing
      */
-    public void run() {
-
-	int previousQueueSize = -1;
-
-	while (true) {
-
-	    int currentQueueSize = taskQueue.getNumOfWaitingTasks();
-	    if (currentQueueSize != previousQueueSize) {
-		previousQueueSize = currentQueueSize;
-		for (TaskControlListener listener : listeners)
-		    listener.numberOfWaitingTasksChanged(currentQueueSize);
-	    }
-
-	    // If the queue is empty, we can sleep. When new task is added into
-	    // the queue, we will be awaken by notify()
-	    synchronized (this) {
-		while (taskQueue.isEmpty()) {
-		    try {
-			this.wait();
-		    } catch (InterruptedException e) {
-			// Ignore
-		    }
-		}
-	    }
-
-	    // Check if all tasks in the queue are finished
-	    if (taskQueue.allTasksFinished()) {
-		taskQueue.clear();
-		continue;
-	    }
+    void taskStarted(TaskRunner runner) {
+	waitingTasks.remove(runner.getWrappedTask());
+	taskQueue.refresh();
+    }
 
-	    // Remove already finished threads from runningThreads
-	    Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-	    while (threadIterator.hasNext()) {
-		WorkerThread thread = threadIterator.next();
-		if (thread.isFinished())
-		    threadIterator.remove();
-	    }
+    /**
+     * Called by TaskRunner when a task has finished, failed or was canceled
+     */
+    void taskFinished(TaskRunner runner) {
+	waitingTasks.remove(runner.getWrappedTask());
 
-	    // Get a snapshot of the queue
-	    WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
-
-	    // Obtain the settings of max concurrent threads
-	    NumOfThreadsParameter parameter = MZmineCore.getConfiguration()
-		    .getPreferences()
-		    .getParameter(MZminePreferences.numOfThreads);
-	    int maxRunningThreads;
-	    if (parameter.isAutomatic() || (parameter.getValue() == null))
-		maxRunningThreads = Runtime.getRuntime().availableProcessors();
-	    else
-		maxRunningThreads = parameter.getValue();
-
-	    // Check all tasks in the queue
-	    for (WrappedTask task : queueSnapshot) {
-
-		// Skip assigned and canceled tasks
-		if (task.isAssigned()
-			|| (task.getActualTask().getStatus() == TaskStatus.CANCELED))
-		    continue;
-
-		// Create a new thread if the task is high-priority or if we
-		// have less then maximum # of threads running
-		if ((task.getPriority() == TaskPriority.HIGH)
-			|| (runningThreads.size() < maxRunningThreads)) {
-		    WorkerThread newThread = new WorkerThread(task);
-
-		    if (task.getPriority() == TaskPriority.NORMAL) {
-			runningThreads.add(newThread);
-		    }
+	// Remove all tasks from the queue once they are all finished
+	taskQueue.clearIfAllTasksFinished();
+	taskQueue.refresh();
 
-		    newThread.start();
-		}
-	    }
+	fireNumberOfWaitingTasksChanged();
+    }
 
-	    // Tell the queue to refresh the Task progress window
-	    taskQueue.refresh();
+    public Executor getWorkerThreadPool() {
+	return workerThreadPool;
+    }
 
-	    // Sleep for a while until next update
-	    try {
-		Thread.sleep(TASKCONTROLLER_THREAD_SLEEP);
-	    } catch (InterruptedException e) {
-		// Ignore
-	    }
+    /**
+     * Resizes the normal priority pool and the worker pool if the number of
+     * threads was changed in the preferences
+     */
+    private synchronized void updateNumOfThreads() {
+	final int numOfThreads = MZmineCore.getConfiguration()
+		.getPreferences().getNumOfThreads();
+	resizePool(normalPriorityExecutor, numOfThreads);
+	resizePool(workerThreadPool, numOfThreads);
+    }
 
+    private static void resizePool(ThreadPoolExecutor pool, int numOfThreads) {
+	if (numOfThreads > pool.getMaximumPoolSize()) {
+	    pool.setMaximumPoolSize(numOfThreads);
+	    pool.setCorePoolSize(numOfThreads);
+	} else if (numOfThreads < pool.getMaximumPoolSize()) {
+	    pool.setCorePoolSize(numOfThreads);
+	    pool.setMaximumPoolSize(numOfThreads);
 	}
+    }
 
+    private void fireNumberOfWaitingTasksChanged() {
+	final int currentQueueSize = taskQueue.getNumOfWaitingTasks();
+	synchronized (listeners) {
+	    if (currentQueueSize == previousNumOfWaitingTasks)
+		return;
+	    previousNumOfWaitingTasks = currentQueueSize;
+	    for (TaskControlListener listener : listeners)
+		listener.numberOfWaitingTasksChanged(currentQueueSize);
+	}
     }
 
     public void setTaskPriority(Task task, TaskPriority priority) {
@@ -234,16 +265,58 @@ public class TaskControllerImpl implements TaskController, Runnable {
 			+ task.getTaskDescription() + "\" to " + priority);
 		wrappedTask.setPriority(priority);
 
-		// Call refresh to re-sort the queue according to new priority
-		// and update the Task progress window
+		// A waiting task raised to high priority starts immediately
+		if (priority == TaskPriority.HIGH) {
+		    TaskRunner runner = waitingTasks.get(wrappedTask);
+		    if ((runner != null)
+			    && normalPriorityExecutor.remove(runner)) {
+			waitingTasks.remove(wrappedTask);
+			highPriorityExecutor.execute(runner);
+		    }
+		}
+
+		// Update the Task progress window
 		taskQueue.refresh();
 	    }
 	}
     }
 
+    @Override
+    public TaskMetrics getTaskMetrics(Task task) {
+	return taskMetrics.get(task);
+    }
+
     @Override
     public void addTaskControlListener(TaskControlListener listener) {
-	listeners.add(listener);
+	synchronized (listeners) {
+	    listeners.add(listener);
+	}
+    }
+
+    /**
+     * Creates named threads of given priority for the thread pools
+     */
+    private static class TaskThreadFactory implements ThreadFactory {
+
+	private final String name;
+	private final int priority;
+	private final boolean daemon;
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+	TaskThreadFactory(String name, int priority, boolean daemon) {
+	    this.name = name;
+	    this.priority = priority;
+	    this.daemon = daemon;
+	}
+
+	public Thread newThread(Runnable runnable) {
+	    Thread thread = new Thread(runnable, name + " "
+		    + threadNumber.getAndIncrement());
+	    thread.setPriority(priority);
+	    thread.setDaemon(daemon);
+	    return thread;
+	}
+
     }
 
 }
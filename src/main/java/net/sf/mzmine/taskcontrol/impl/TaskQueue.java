@@ -26,6 +26,7 @@ import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import net.sf.mzmine.taskcontrol.Task;
+import net.sf.mzmine.taskcontrol.TaskMetrics;
 import net.sf.mzmine.taskcontrol.TaskPriority;
 import net.sf.mzmine.taskcontrol.TaskStatus;
 import net.sf.mzmine.util.components.LabeledProgressBar;
@@ -144,6 +145,14 @@ public class TaskQueue extends AbstractTableModel {
 	return true;
     }
 
+    /**
+     * Removes all tasks from the queue, if they are all finished
+     */
+    synchronized void clearIfAllTasksFinished() {
+	if (allTasksFinished())
+	    clear();
+    }
+
     public synchronized WrappedTask[] getQueueSnapshot() {
 	WrappedTask[] snapshot = new WrappedTask[size];
 	System.arraycopy(queue, 0, snapshot, 0, size);
@@ -153,7 +162,7 @@ public class TaskQueue extends AbstractTableModel {
     /* TableModel implementation */
 
     private static final String columns[] = { "Item", "Priority", "Status",
-	    "% done" };
+	    "% done", "Time", "CPU time", "Allocated", "Read" };
 
     /**
      * @see javax.swing.table.TableModel#getRowCount()
@@ -200,6 +209,18 @@ public class TaskQueue extends AbstractTableModel {
 		    progressBar.setValue(finishedPercentage);
 		}
 		return progressBar;
+	    case 4:
+		return formatTime(wrappedTask.getMetrics().getWallTime());
+	    case 5:
+		return formatTime(wrappedTask.getMetrics().getCpuTime());
+	    case 6:
+		return formatBytes(wrappedTask.getMetrics().getAllocatedBytes());
+	    case 7:
+		TaskMetrics metrics = wrappedTask.getMetrics();
+		if (metrics.getScansRead() == 0)
+		    return "";
+		return metrics.getScansRead() + " scans, "
+			+ formatBytes(metrics.getBytesRead());
 	    }
 	}
 
@@ -220,9 +241,29 @@ public class TaskQueue extends AbstractTableModel {
 	    return TaskStatus.class;
 	case 3:
 	    return LabeledProgressBar.class;
+	case 4:
+	case 5:
+	case 6:
+	case 7:
+	    return String.class;
 	}
 	return null;
 
     }
 
+    /**
+     * Formats nanoseconds as seconds
+     */
+    private static String formatTime(long nanoseconds) {
+	if (nanoseconds <= 0)
+	    return "";
+	return String.format("%.1f s", nanoseconds / 1e9);
+    }
+
+    private static String formatBytes(long bytes) {
+	if (bytes <= 0)
+	    return "";
+	return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
 }
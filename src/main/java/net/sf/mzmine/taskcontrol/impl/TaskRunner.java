@@ -24,24 +24,27 @@ import java.util.logging.Logger;
 
 import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.taskcontrol.Task;
+import net.sf.mzmine.taskcontrol.TaskMetrics;
 import net.sf.mzmine.taskcontrol.TaskStatus;
 import net.sf.mzmine.util.ExceptionUtils;
 
 /**
- * Task controller worker thread, this thread will process one task and then
- * finish
+ * Processes one task on a thread of the task controller's thread pools
  */
-class WorkerThread extends Thread {
+class TaskRunner implements Runnable {
 
     private Logger logger = Logger.getLogger(this.getClass().getName());
 
-    private WrappedTask wrappedTask;
-    private boolean finished = false;
+    private final WrappedTask wrappedTask;
+    private final TaskControllerImpl taskController;
 
-    WorkerThread(WrappedTask wrappedTask) {
-	super("Thread executing task " + wrappedTask);
+    TaskRunner(WrappedTask wrappedTask, TaskControllerImpl taskController) {
 	this.wrappedTask = wrappedTask;
-	wrappedTask.assignTo(this);
+	this.taskController = taskController;
+    }
+
+    WrappedTask getWrappedTask() {
+	return wrappedTask;
     }
 
     /**
@@ -50,6 +53,22 @@ class WorkerThread extends Thread {
     public void run() {
 
 	Task actualTask = wrappedTask.getActualTask();
+	TaskMetrics metrics = wrappedTask.getMetrics();
+
+	// Tasks canceled while waiting in the queue are never started
+	if (actualTask.getStatus() == TaskStatus.CANCELED) {
+	    wrappedTask.removeTaskReference();
+	    taskController.taskFinished(this);
+	    return;
+	}
+
+	final Thread currentThread = Thread.currentThread();
+	final String threadName = currentThread.getName();
+	final int threadPriority = currentThread.getPriority();
+	currentThread.setName("Thread executing task " + wrappedTask);
+	wrappedTask.assignTo(currentThread);
+
+	taskController.taskStarted(this);
 
 	try {
 
@@ -58,7 +77,12 @@ class WorkerThread extends Thread {
 		    + actualTask.getTaskDescription());
 
 	    // Process the actual task
-	    actualTask.run();
+	    metrics.start();
+	    try {
+		actualTask.run();
+	    } finally {
+		metrics.stop();
+	    }
 
 	    // Check if task finished with an error
 	    if (actualTask.getStatus() == TaskStatus.ERROR) {
@@ -111,15 +135,18 @@ class WorkerThread extends Thread {
 
 	}
 
+	// Stop measuring also if the task failed with an exception
+	metrics.stop();
+
 	/*
-	 * Mark this thread as finished
+	 * Return the pooled thread to its original state
 	 */
-	finished = true;
+	wrappedTask.assignTo(null);
+	currentThread.setName(threadName);
+	currentThread.setPriority(threadPriority);
 
-    }
+	taskController.taskFinished(this);
 
-    boolean isFinished() {
-	return finished;
     }
 
 }
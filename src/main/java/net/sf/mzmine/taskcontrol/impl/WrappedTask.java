@@ -20,6 +20,7 @@
 package net.sf.mzmine.taskcontrol.impl;
 
 import net.sf.mzmine.taskcontrol.Task;
+import net.sf.mzmine.taskcontrol.TaskMetrics;
 import net.sf.mzmine.taskcontrol.TaskPriority;
 
 /**
@@ -29,11 +30,13 @@ public class WrappedTask {
 
     private Task task;
     private TaskPriority priority;
-    private WorkerThread assignedTo;
+    private Thread assignedTo;
+    private final TaskMetrics metrics;
 
-    WrappedTask(Task task, TaskPriority priority) {
+    WrappedTask(Task task, TaskPriority priority, TaskMetrics metrics) {
 	this.task = task;
 	this.priority = priority;
+	this.metrics = metrics;
     }
 
     /**
@@ -47,7 +50,7 @@ public class WrappedTask {
      * @param priority
      *            The priority to set.
      */
-    void setPriority(TaskPriority priority) {
+    synchronized void setPriority(TaskPriority priority) {
 	this.priority = priority;
 	if (assignedTo != null) {
 	    switch (priority) {
@@ -64,12 +67,18 @@ public class WrappedTask {
     /**
      * @return Returns the assigned.
      */
-    boolean isAssigned() {
+    synchronized boolean isAssigned() {
 	return assignedTo != null;
     }
 
-    void assignTo(WorkerThread thread) {
+    /**
+     * Assigns this task to the thread processing it, or to null when the
+     * processing is over
+     */
+    synchronized void assignTo(Thread thread) {
 	assignedTo = thread;
+	if (thread != null)
+	    setPriority(priority);
     }
 
     /**
@@ -79,6 +88,13 @@ public class WrappedTask {
 	return task;
     }
 
+    /**
+     * @return Returns the resources used by the task.
+     */
+    public TaskMetrics getMetrics() {
+	return metrics;
+    }
+
     public synchronized String toString() {
 	return task.getTaskDescription();
     }
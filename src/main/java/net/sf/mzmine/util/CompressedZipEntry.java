@@ -0,0 +1,220 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP archive entry which is compressed in advance, before it is written to
+ * the archive by ZipArchiveWriter. Each entry has its own Deflater, so several
+ * entries can be compressed by different threads at the same time. The
+ * content is written to getOutputStream() and the entry must be finished by
+ * calling finish().
+ * 
+ * The first MEMORY_LIMIT bytes of the compressed content are kept in memory,
+ * larger entries are moved to a temporary file. The temporary file is deleted
+ * when the entry is written to the archive, or by discard().
+ */
+public class CompressedZipEntry {
+
+    private static final int MEMORY_LIMIT = 1 << 20;
+
+    private final String name;
+    private final long time;
+    private final int method;
+
+    // Compressed content, in memory or in the temporary file
+    private ByteArrayOutputStream memoryData;
+    private File spillFile;
+    private OutputStream spillStream;
+    private long compressedSize;
+
+    private final DeflaterOutputStream deflaterStream;
+    private final Deflater deflater;
+    private final OutputStream outputStream;
+    private final CRC32 crc = new CRC32();
+    private long size;
+
+    /**
+     * @param level
+     *            compression level from 1 (fastest) to 9 (smallest), or 0 to
+     *            store the content without compression
+     */
+    public CompressedZipEntry(String name, int level) {
+
+	this.name = name;
+	this.time = System.currentTimeMillis();
+	this.memoryData = new ByteArrayOutputStream(1 << 16);
+
+	final OutputStream compressedStream = new OutputStream() {
+	    public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	    }
+
+	    public void write(byte b[], int off, int len) throws IOException {
+		if ((spillStream == null)
+			&& (memoryData.size() + len > MEMORY_LIMIT))
+		    spill();
+		if (spillStream != null)
+		    spillStream.write(b, off, len);
+		else
+		    memoryData.write(b, off, len);
+		compressedSize += len;
+	    }
+	};
+
+	if (level > 0) {
+	    method = ZipEntry.DEFLATED;
+	    // ZIP entries contain raw deflate data, without the zlib header
+	    deflater = new Deflater(level, true);
+	    deflaterStream = new DeflaterOutputStream(compressedStream,
+		    deflater, 1 << 16);
+	} else {
+	    method = ZipEntry.STORED;
+	    deflater = null;
+	    deflaterStream = null;
+	}
+
+	final OutputStream targetStream = (deflaterStream != null) ? deflaterStream
+		: compressedStream;
+
+	outputStream = new OutputStream() {
+	    public void write(int b) throws IOException {
+		crc.update(b);
+		size++;
+		targetStream.write(b);
+	    }
+
+	    public void write(byte b[], int off, int len) throws IOException {
+		crc.update(b, off, len);
+		size += len;
+		targetStream.write(b, off, len);
+	    }
+	};
+
+    }
+
+    /**
+     * @return stream accepting the uncompressed content of this entry
+     */
+    public OutputStream getOutputStream() {
+	return outputStream;
+    }
+
+    /**
+     * Finishes the compression. No content may be written after this call.
+     */
+    public void finish() throws IOException {
+	if (deflaterStream != null) {
+	    deflaterStream.finish();
+	    deflater.end();
+	}
+	if (spillStream != null)
+	    spillStream.close();
+    }
+
+    /**
+     * Deletes the temporary file of an entry which is not going to be
+     * written
+     */
+    public void discard() {
+	if (deflater != null)
+	    deflater.end();
+	if (spillFile == null)
+	    return;
+	try {
+	    spillStream.close();
+	} catch (IOException e) {
+	    // The file is deleted anyway
+	}
+	spillFile.delete();
+	spillFile = null;
+    }
+
+    public String getName() {
+	return name;
+    }
+
+    public long getTime() {
+	return time;
+    }
+
+    /**
+     * @return ZipEntry.DEFLATED or ZipEntry.STORED
+     */
+    public int getMethod() {
+	return method;
+    }
+
+    public long getCrc() {
+	return crc.getValue();
+    }
+
+    /**
+     * @return size of the uncompressed content
+     */
+    public long getSize() {
+	return size;
+    }
+
+    public long getCompressedSize() {
+	return compressedSize;
+    }
+
+    /**
+     * Writes the compressed content to given stream
+     */
+    void writeCompressedData(OutputStream os) throws IOException {
+	if (spillFile == null) {
+	    memoryData.writeTo(os);
+	    return;
+	}
+	try (InputStream is = new FileInputStream(spillFile)) {
+	    byte buffer[] = new byte[1 << 16];
+	    int len;
+	    while ((len = is.read(buffer)) > 0)
+		os.write(buffer, 0, len);
+	}
+    }
+
+    /**
+     * Moves the content kept in memory to a temporary file
+     */
+    private void spill() throws IOException {
+	spillFile = File.createTempFile("mzmine_entry", ".tmp");
+	spillFile.deleteOnExit();
+	spillStream = new BufferedOutputStream(
+		new FileOutputStream(spillFile), 1 << 16);
+	memoryData.writeTo(spillStream);
+	memoryData = null;
+    }
+
+}
@@ -27,7 +27,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +46,7 @@ import org.rosuda.REngine.REngineException;
 import org.rosuda.REngine.Rserve.RConnection;
 import org.rosuda.REngine.Rserve.RserveException;
 
+import net.sf.mzmine.main.MZmineCore;
 import net.sf.mzmine.util.LoggerStream;
 import net.sf.mzmine.util.TextUtils;
 import net.sf.mzmine.util.R.Rsession.RserverConf;
@@ -65,6 +70,32 @@ public class RSessionWrapper {
 
     private final Object R_DUMMY_SEMAPHORE = new Object();
 
+    // Pool of Rserve instances. Closing a session without error hands its
+    // instance (and the packages already loaded in it) back to the pool, so
+    // the next session does not have to spawn R and load packages again. At
+    // most one instance per worker thread (see preferences) is alive.
+    private static final Object R_POOL_SEMAPHORE = new Object();
+    private static final Deque<PooledInstance> R_IDLE_INSTANCES = new ArrayDeque<PooledInstance>();
+    private static int leasedInstances = 0;
+    // Delay between two checks for a free instance, or for user cancel.
+    private static final long POOL_WAIT_MILLIS = 1000L;
+
+    /**
+     * Idle Rserve instance, waiting in the pool for its next session.
+     */
+    private static class PooledInstance {
+
+        private final Rsession session;
+        private final int pid;
+        private final Set<String> loadedPackages;
+
+        PooledInstance(Rsession session, int pid, Set<String> loadedPackages) {
+            this.session = session;
+            this.pid = pid;
+            this.loadedPackages = loadedPackages;
+        }
+    }
+
     private static final Level rsLogLvl = Level.FINEST;
     private static final Level logLvl = Level.FINEST;
     private static PrintStream logStream = new LoggerStream(LOG, rsLogLvl);
@@ -89,8 +120,12 @@ public class RSessionWrapper {
     final static private boolean TRY_MODE = false;
 
     private int rServePid = -1;
+    // Packages already loaded in the current Rserve instance.
+    private Set<String> loadedPackages = new HashSet<String>();
+    // Whether this session holds one of the pool's instance slots.
+    private boolean leased = false;
 
-    private boolean userCanceled = false;
+    private volatile boolean userCanceled = false;
 
     // MISC UTILITIES
 
@@ -377,6 +412,9 @@ public class RSessionWrapper {
                 + "the \"" + packageName
                 + "\" R package, which couldn't be loaded - is it installed in R?";
 
+        if (this.loadedPackages.contains(packageName))
+            return;
+
         if (this.session != null && !this.userCanceled) {
             LOG.log(logLvl, "Loading package '" + packageName + "'...");
             int loaded = 0;
@@ -404,6 +442,8 @@ public class RSessionWrapper {
                     throw new RSessionWrapperException(errorMsg);
 
             LOG.log(logLvl, "Loaded package: '" + packageName + "'.");
+            if (loaded > 0)
+                this.loadedPackages.add(packageName);
         }
     }
 
@@ -573,12 +613,47 @@ public class RSessionWrapper {
     public <T> void assign(String objName, T object)
             throws RSessionWrapperException {
 
+        assignREXP(objName, InputREXPFactory.getREXP(object));
+    }
+
+    /**
+     * Sends given values as a native R numeric vector. Unlike building R code
+     * holding the values, nothing is formatted to text nor parsed by R.
+     */
+    public void assignDoubleArray(String objName, double[] values)
+            throws RSessionWrapperException {
+
+        assignREXP(objName, new REXPDouble(values));
+    }
+
+    /**
+     * Sends given values as a native R integer vector.
+     */
+    public void assignIntArray(String objName, int[] values)
+            throws RSessionWrapperException {
+
+        assignREXP(objName, new REXPInteger(values));
+    }
+
+    /**
+     * Sends given matrix as a native R numeric matrix, 'matrix[i]' being its
+     * row 'i + 1'. The matrix must have at least one row, all rows having the
+     * same length.
+     */
+    public void assignDoubleMatrix(String objName, double[][] matrix)
+            throws RSessionWrapperException {
+
+        assignREXP(objName, REXP.createDoubleMatrix(matrix));
+    }
+
+    private void assignREXP(String objName, REXP rexp)
+            throws RSessionWrapperException {
+
         if (this.session != null && !this.userCanceled) {
             String msg = "Rserve error: couldn't assign R object '" + objName
                     + "' (instance '" + this.getPID() + "').";
             try {
-                ((RConnection) this.rEngine).assign(objName,
-                        InputREXPFactory.getREXP(object));
+                ((RConnection) this.rEngine).assign(objName, rexp);
             } catch (REngineException e) {
                 throw new RSessionWrapperException(msg);
             } catch (Exception e) {
@@ -729,6 +804,66 @@ public class RSessionWrapper {
         return object;
     }
 
+    /**
+     * Gets the result of given R expression as a numeric vector (matrices are
+     * flattened column by column). Contrary to {@link #collect(String)}, a
+     * result of length one is still returned as an array.
+     */
+    public double[] collectDoubleArray(String obj)
+            throws RSessionWrapperException {
+
+        final REXP r = collectREXP(obj);
+        try {
+            return (r == null) ? null : r.asDoubles();
+        } catch (REXPMismatchException e) {
+            throw new RSessionWrapperException("Rserve error: R expression '"
+                    + obj + "' is not numeric.");
+        }
+    }
+
+    /**
+     * Gets the result of given R expression as an integer vector.
+     */
+    public int[] collectIntArray(String obj) throws RSessionWrapperException {
+
+        final REXP r = collectREXP(obj);
+        try {
+            return (r == null) ? null : r.asIntegers();
+        } catch (REXPMismatchException e) {
+            throw new RSessionWrapperException("Rserve error: R expression '"
+                    + obj + "' is not numeric.");
+        }
+    }
+
+    /**
+     * Gets the result of given R expression as a numeric matrix, indexed by
+     * [row][column].
+     */
+    public double[][] collectDoubleMatrix(String obj)
+            throws RSessionWrapperException {
+
+        final REXP r = collectREXP(obj);
+        try {
+            return (r == null) ? null : r.asDoubleMatrix();
+        } catch (REXPMismatchException e) {
+            throw new RSessionWrapperException("Rserve error: R expression '"
+                    + obj + "' is not a numeric matrix.");
+        }
+    }
+
+    private REXP collectREXP(String obj) throws RSessionWrapperException {
+
+        if (this.session == null || this.userCanceled)
+            return null;
+
+        final REXP r = this.session.eval(obj, true);
+        if (r == null)
+            throw new RSessionWrapperException(
+                    "Rserve error: couldn't collect result for R expression '"
+                            + obj + "' (instance '" + this.getPID() + "').");
+        return r;
+    }
+
     public void open() throws RSessionWrapperException {
 
         // Redirect 'Rsession' gossiping on standard outputs to logger.
@@ -738,14 +873,153 @@ public class RSessionWrapper {
         // Do nothing if session was canceled.
         if (!this.userCanceled) {
 
+            try {
+                // Load R engine: reuse an idle instance from the pool if
+                // any, spawn a new one otherwise.
+                if (acquirePoolSlot() && !leaseIdleInstance())
+                    getRengineInstance();
+
+                // Load & check required R packages.
+                loadAndCheckRequiredPackages();
+            } catch (RSessionWrapperException e) {
+                if (this.session == null)
+                    releasePoolSlot();
+                throw e;
+            }
+
+        }
+    }
+
+    /**
+     * Waits until the number of Rserve instances in use drops below the
+     * number of worker threads, then takes one slot.
+     * 
+     * @return false if the session was canceled while waiting.
+     */
+    private boolean acquirePoolSlot() throws RSessionWrapperException {
+
+        synchronized (R_POOL_SEMAPHORE) {
+            while (!this.userCanceled && leasedInstances >= getPoolSize()) {
+                try {
+                    R_POOL_SEMAPHORE.wait(POOL_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new RSessionWrapperException(
+                            "Interrupted while waiting for an Rserve instance.");
+                }
+            }
+            if (this.userCanceled)
+                return false;
+            ++leasedInstances;
+            this.leased = true;
+            return true;
+        }
+    }
+
+    private void releasePoolSlot() {
+
+        synchronized (R_POOL_SEMAPHORE) {
+            if (this.leased) {
+                this.leased = false;
+                --leasedInstances;
+                R_POOL_SEMAPHORE.notifyAll();
+            }
+        }
+    }
+
+    private static int getPoolSize() {
+        return Math.max(1, MZmineCore.getConfiguration().getPreferences()
+                .getNumOfThreads());
+    }
+
+    /**
+     * Takes a healthy idle instance from the pool. Instances whose Rserve
+     * process died meanwhile are dropped.
+     * 
+     * @return false if no idle instance was available.
+     */
+    private boolean leaseIdleInstance() throws RSessionWrapperException {
+
+        while (true) {
+
+            final PooledInstance instance;
+            synchronized (R_POOL_SEMAPHORE) {
+                instance = R_IDLE_INSTANCES.pollFirst();
+            }
+            if (instance == null)
+                return false;
+
+            try {
+                checkConnectivity(instance.session.connection);
+            } catch (RSessionWrapperException e) {
+                LOG.log(logLvl, "Rserve: dropped dead pooled instance (pid: '"
+                        + instance.pid + "').");
+                endInstance(instance);
+                continue;
+            }
+
+            this.session = instance.session;
+            this.rServePid = instance.pid;
+            this.rEngine = instance.session.connection;
+            this.loadedPackages = instance.loadedPackages;
+            this.register();
+            LOG.log(logLvl, "Rserve: reusing pooled instance (pid: '"
+                    + this.rServePid + "' | port: '"
+                    + this.session.rServeConf.port + "').");
+
+            // Same as for a new instance: canceled meanwhile, kill it.
+            if (this.userCanceled)
+                this.close(true);
+            return true;
+        }
+    }
+
+    /**
+     * Clears the R workspace and hands the instance back to the pool.
+     * 
+     * @return false if the instance is broken, or not needed anymore, and
+     *         must be terminated instead.
+     */
+    private boolean returnToPool() {
+
+        if (this.rEngine == null || this.rServePid == -1)
+            return false;
+
+        synchronized (R_POOL_SEMAPHORE) {
+            if (leasedInstances + R_IDLE_INSTANCES.size() > getPoolSize())
+                return false;
+        }
+
+        try {
+            ((RConnection) this.rEngine).voidEval(
+                    "rm(list = ls(all.names = TRUE)); graphics.off()");
+        } catch (RserveException e) {
+            return false;
+        }
 
-            // Load R engine.
-            getRengineInstance();
+        synchronized (R_POOL_SEMAPHORE) {
+            R_IDLE_INSTANCES.addFirst(new PooledInstance(this.session,
+                    this.rServePid, this.loadedPackages));
+        }
+        LOG.log(logLvl, "Rserve: returned instance to pool (pid: '"
+                + this.rServePid + "').");
+
+        this.session = null;
+        this.rEngine = null;
+        this.rServePid = -1;
+        this.loadedPackages = new HashSet<String>();
+        return true;
+    }
 
-            // Load & check required R packages.
-            loadAndCheckRequiredPackages();
-            
+    private static void endInstance(PooledInstance instance) {
 
+        RSessionWrapper.muteStdOutErr();
+        try {
+            RSessionWrapper.killRserveInstance(instance.pid);
+            instance.session.end();
+        } catch (Throwable t) {
+            // Silent.
+        } finally {
+            RSessionWrapper.unMuteStdOutErr();
         }
     }
 
@@ -763,6 +1037,13 @@ public class RSessionWrapper {
 
         this.userCanceled = userCanceled;
 
+        // Keep the instance alive for later sessions if nothing went wrong.
+        if (!userCanceled && this.session != null && returnToPool()) {
+            this.unRegister();
+            releasePoolSlot();
+            return;
+        }
+
         if (this.session != null) {
 
             try {
@@ -800,6 +1081,7 @@ public class RSessionWrapper {
                 // Release session (prevents from calling close again on a
                 // closed instance).
                 this.session = null;
+                this.rEngine = null;
 
             } catch (Throwable t) {
                 // Adapt/refactor message accordingly to the way the termination
@@ -820,10 +1102,12 @@ public class RSessionWrapper {
                 // Make sure to restore standard outputs.
                 System.setOut(System.out);
                 System.setErr(System.err);
+                releasePoolSlot();
             }
         }
 
         this.unRegister();
+        releasePoolSlot();
     }
 
     private void register() {
@@ -856,7 +1140,14 @@ public class RSessionWrapper {
     public static void killRserveInstance(RSessionWrapper rSession)
             throws RSessionWrapperException {
 
-        if (rSession != null && rSession.getPID() != -1) {
+        if (rSession != null)
+            killRserveInstance(rSession.getPID());
+    }
+
+    private static void killRserveInstance(int pid)
+            throws RSessionWrapperException {
+
+        if (pid != -1) {
             // Win: faster to brute force kill the process (avoids
             // "Rsession.newInstanceTry()"
             // to attempt to recover the connection).
@@ -891,7 +1182,7 @@ public class RSessionWrapper {
                     };
 
                     Process proc = new ProcessBuilder("TASKKILL", "/PID",
-                            "" + rSession.getPID(), "/F").start();
+                            "" + pid, "/F").start();
                     StreamGobbler errorGobbler = new StreamGobbler(
                             proc.getErrorStream(), "Error", os_err); // ,
                     // fos_err);
@@ -909,7 +1200,7 @@ public class RSessionWrapper {
                     if (exitVal != 0)
                         throw new RSessionWrapperException(
                                 "Killing Rserve instance of PID '"
-                                        + rSession.getPID() + "'"
+                                        + pid + "'"
                                         + " failed. \n" + os_err.toString());
                     // fos_out.flush(); fos_out.close();
                     // fos_err.flush(); fos_err.close();
@@ -927,8 +1218,8 @@ public class RSessionWrapper {
                     // SIGTERM might not be understood everywhere: so using
                     // explicitly SIGKILL signal, as well.
                     if (c2 != null && c2.isConnected()) {
-                        c2.eval("tools::pskill(" + rSession.getPID() + ")"); // win
-                        c2.eval("tools::pskill(" + rSession.getPID()
+                        c2.eval("tools::pskill(" + pid + ")"); // win
+                        c2.eval("tools::pskill(" + pid
                                 + ", tools::SIGKILL)"); // *nux
                         c2.close();
                     }
@@ -966,6 +1257,18 @@ public class RSessionWrapper {
             }
         }
 
+        // Cleanup idle pooled instances.
+        while (true) {
+            final PooledInstance instance;
+            synchronized (R_POOL_SEMAPHORE) {
+                instance = R_IDLE_INSTANCES.pollFirst();
+            }
+            if (instance == null)
+                break;
+            LOG.info("CleanAll / pooled instance: " + instance.pid);
+            endInstance(instance);
+        }
+
     }
 
 }
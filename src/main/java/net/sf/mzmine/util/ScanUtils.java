@@ -105,16 +105,42 @@ public class ScanUtils {
     public static @Nonnull DataPoint findBasePeak(@Nonnull Scan scan,
 	    @Nonnull Range<Double> mzRange) {
 
-	DataPoint dataPoints[] = scan.getDataPointsByMass(mzRange);
-	DataPoint basePeak = null;
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	scan.getDataPointValues(mzValues, intensityValues);
 
-	for (DataPoint dp : dataPoints) {
-	    if ((basePeak == null)
-		    || (dp.getIntensity() > basePeak.getIntensity()))
-		basePeak = dp;
-	}
+	final int basePeakIndex = findBasePeakIndex(mzValues, intensityValues,
+		numOfDataPoints, mzRange);
 
-	return basePeak;
+	if (basePeakIndex == -1)
+	    return null;
+
+	return new SimpleDataPoint(mzValues[basePeakIndex],
+		intensityValues[basePeakIndex]);
+    }
+
+    /**
+     * Find the index of the highest data point within given m/z range. The
+     * first size elements of mzValues must be sorted by m/z.
+     * 
+     * @return index of the highest data point, or -1 if there is no data point
+     *         within the range
+     */
+    public static int findBasePeakIndex(@Nonnull double mzValues[],
+	    @Nonnull double intensityValues[], int size,
+	    @Nonnull Range<Double> mzRange) {
+	int basePeakIndex = -1;
+	final int startIndex = findFirstIndexAbove(mzValues, size,
+		mzRange.lowerEndpoint());
+	for (int i = startIndex; i < size; i++) {
+	    if (mzValues[i] > mzRange.upperEndpoint())
+		break;
+	    if ((basePeakIndex == -1)
+		    || (intensityValues[i] > intensityValues[basePeakIndex]))
+		basePeakIndex = i;
+	}
+	return basePeakIndex;
     }
 
     /**
@@ -128,13 +154,107 @@ public class ScanUtils {
      */
     public static double calculateTIC(Scan scan, Range<Double> mzRange) {
 
+	final int numOfDataPoints = scan.getNumberOfDataPoints();
+	final double mzValues[] = new double[numOfDataPoints];
+	final double intensityValues[] = new double[numOfDataPoints];
+	scan.getDataPointValues(mzValues, intensityValues);
+
 	double tic = 0.0;
-	for (final DataPoint dataPoint : scan.getDataPointsByMass(mzRange)) {
-	    tic += dataPoint.getIntensity();
+	final int startIndex = findFirstIndexAbove(mzValues, numOfDataPoints,
+		mzRange.lowerEndpoint());
+	for (int i = startIndex; i < numOfDataPoints; i++) {
+	    if (mzValues[i] > mzRange.upperEndpoint())
+		break;
+	    tic += intensityValues[i];
 	}
 	return tic;
     }
 
+    /**
+     * Copies m/z and intensity values of given data points into given arrays,
+     * which must have at least dataPoints.length elements.
+     * 
+     * @return number of copied data points
+     */
+    public static int copyDataPointValues(@Nonnull DataPoint dataPoints[],
+	    @Nonnull double mzValues[], @Nonnull double intensityValues[]) {
+	for (int i = 0; i < dataPoints.length; i++) {
+	    mzValues[i] = dataPoints[i].getMZ();
+	    intensityValues[i] = dataPoints[i].getIntensity();
+	}
+	return dataPoints.length;
+    }
+
+    /**
+     * Sorts the first size elements of given m/z and intensity arrays by
+     * descending intensity. Data points with same intensity are sorted by
+     * descending m/z, so the resulting order is the same as when sorting
+     * DataPoints using DataPointSorter(Intensity, Descending).
+     */
+    public static void sortDataPointValuesByIntensity(
+	    @Nonnull double mzValues[], @Nonnull double intensityValues[],
+	    int size) {
+
+	if (size < 2)
+	    return;
+
+	// Merge sort of the indexes, stable and without boxing
+	int indexes[] = new int[size];
+	for (int i = 0; i < size; i++)
+	    indexes[i] = i;
+	int temp[] = new int[size];
+	for (int width = 1; width < size; width *= 2) {
+	    for (int left = 0; left < size; left += 2 * width) {
+		final int middle = Math.min(left + width, size);
+		final int right = Math.min(left + 2 * width, size);
+		int i = left, j = middle, k = left;
+		while ((i < middle) && (j < right)) {
+		    final int a = indexes[i], b = indexes[j];
+		    int result = Double.compare(intensityValues[b],
+			    intensityValues[a]);
+		    if (result == 0)
+			result = Double.compare(mzValues[b], mzValues[a]);
+		    temp[k++] = (result <= 0) ? indexes[i++] : indexes[j++];
+		}
+		while (i < middle)
+		    temp[k++] = indexes[i++];
+		while (j < right)
+		    temp[k++] = indexes[j++];
+	    }
+	    int swap[] = indexes;
+	    indexes = temp;
+	    temp = swap;
+	}
+
+	final double sortedMZ[] = new double[size];
+	final double sortedIntensity[] = new double[size];
+	for (int i = 0; i < size; i++) {
+	    sortedMZ[i] = mzValues[indexes[i]];
+	    sortedIntensity[i] = intensityValues[indexes[i]];
+	}
+	System.arraycopy(sortedMZ, 0, mzValues, 0, size);
+	System.arraycopy(sortedIntensity, 0, intensityValues, 0, size);
+
+    }
+
+    /**
+     * Returns the index of the first m/z value which is greater than or equal
+     * to given m/z, using binary search in the first size elements of given
+     * sorted array. Returns size if there is no such value.
+     */
+    public static int findFirstIndexAbove(@Nonnull double mzValues[],
+	    int size, double mz) {
+	int low = 0, high = size;
+	while (low < high) {
+	    final int mid = (low + high) >>> 1;
+	    if (mzValues[mid] < mz)
+		low = mid + 1;
+	    else
+		high = mid;
+	}
+	return low;
+    }
+
     /**
      * Selects data points within given m/z range
      * 
@@ -150,17 +270,59 @@ public class ScanUtils {
     }
 
     /**
-     * Selects data points with intensity >= given intensity
-     * 
+     * Selects data points within given m/z range from data points sorted by
+     * m/z, using binary search. Same as selectDataPointsByMass() for sorted
+     * data points, but faster.
+     */
+    public static DataPoint[] selectSortedDataPointsByMass(
+	    DataPoint dataPoints[], Range<Double> mzRange) {
+	final int startIndex = findFirstIndexAbove(dataPoints,
+		mzRange.lowerEndpoint(), false);
+	final int endIndex = findFirstIndexAbove(dataPoints,
+		mzRange.upperEndpoint(), true);
+	if (endIndex <= startIndex)
+	    return new DataPoint[0];
+	return Arrays.copyOfRange(dataPoints, startIndex, endIndex);
+    }
+
+    /**
+     * Returns the index of the first data point whose m/z value is greater
+     * than or equal to given m/z (or strictly greater, if strict is true),
+     * using binary search in given data points sorted by m/z. Returns the
+     * length of the array if there is no such data point.
+     */
+    private static int findFirstIndexAbove(DataPoint dataPoints[], double mz,
+	    boolean strict) {
+	int low = 0, high = dataPoints.length;
+	while (low < high) {
+	    final int mid = (low + high) >>> 1;
+	    final double midMZ = dataPoints[mid].getMZ();
+	    if ((midMZ < mz) || (strict && (midMZ == mz)))
+		low = mid + 1;
+	    else
+		high = mid;
+	}
+	return low;
+    }
+
+    /**
+     * Selects data points with intensity >= given intensity. The data points
+     * are counted first, so only the resulting array is allocated.
      */
     public static DataPoint[] selectDataPointsOverIntensity(
 	    DataPoint dataPoints[], double minIntensity) {
-	ArrayList<DataPoint> goodPoints = new ArrayList<DataPoint>();
+	int count = 0;
 	for (DataPoint dp : dataPoints) {
 	    if (dp.getIntensity() >= minIntensity)
-		goodPoints.add(dp);
+		count++;
 	}
-	return goodPoints.toArray(new DataPoint[0]);
+	final DataPoint goodPoints[] = new DataPoint[count];
+	int index = 0;
+	for (DataPoint dp : dataPoints) {
+	    if (dp.getIntensity() >= minIntensity)
+		goodPoints[index++] = dp;
+	}
+	return goodPoints;
     }
 
     /**
@@ -396,21 +558,32 @@ public class ScanUtils {
 
         double[] intensityValues = new double[dataPoints.length];
         double[] mzValues = new double[dataPoints.length];
+        copyDataPointValues(dataPoints, mzValues, intensityValues);
+
+        return detectSpectrumType(mzValues, intensityValues, dataPoints.length);
+
+    }
+
+    /**
+     * Determines the spectrum type from the first size elements of given m/z
+     * and intensity arrays.
+     * 
+     * @see #detectSpectrumType(DataPoint[])
+     */
+    public static MassSpectrumType detectSpectrumType(
+            @Nonnull double mzValues[], @Nonnull double intensityValues[],
+            int size) {
 
         // If the spectrum has less than 5 data points, it should be centroided.
-        if (dataPoints.length < 5)
+        if (size < 5)
             return MassSpectrumType.CENTROIDED;
 
         int basePeakIndex = 0;
         boolean hasZeroDataPoint = false;
 
         // Go through the data points and find the highest one
-        int size = dataPoints.length;
         for (int i = 0; i < size; i++) {
 
-            intensityValues[i] = dataPoints[i].getIntensity();
-            mzValues[i] = dataPoints[i].getMZ();
-
             // Update the maxDataPointIndex accordingly
             if (intensityValues[i] > intensityValues[basePeakIndex])
                 basePeakIndex = i;
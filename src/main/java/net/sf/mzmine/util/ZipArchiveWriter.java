@@ -0,0 +1,384 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a ZIP archive entry by entry, similar to ZipOutputStream. Unlike
+ * ZipOutputStream, it accepts entries which were compressed in advance
+ * (CompressedZipEntry), so several entries can be compressed in parallel and
+ * then written to the archive in order. Large uncompressed entries can be
+ * streamed directly using putStoredEntry(), and entries of another archive
+ * can be copied without decompressing them using copyEntry(). ZIP64 extensions are used when
+ * the archive or an entry exceeds 4 GB or 65535 entries, the result can be
+ * read by java.util.zip.ZipFile.
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int ZIP64_MAGIC_COUNT = 0xffff;
+
+    /**
+     * Information needed for the central directory
+     */
+    private static class Entry {
+	byte name[];
+	int method, dosTime;
+	long crc, size, compressedSize, offset;
+    }
+
+    private final OutputStream output;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private long position = 0;
+
+    // Entry being written by the stream returned from putStoredEntry()
+    private Entry storedEntry;
+    private long storedEntryRemaining;
+
+    public ZipArchiveWriter(File file) throws IOException {
+	this.output = new BufferedOutputStream(new FileOutputStream(file),
+		1 << 16);
+    }
+
+    /**
+     * Writes an entry which was compressed in advance. The temporary file of
+     * the entry, if any, is deleted afterwards.
+     */
+    public void writeEntry(CompressedZipEntry compressedEntry)
+	    throws IOException {
+
+	try {
+	    finishStoredEntry();
+
+	    Entry entry = createEntry(compressedEntry.getName(),
+		    compressedEntry.getMethod(), compressedEntry.getCrc(),
+		    compressedEntry.getSize(),
+		    compressedEntry.getCompressedSize(), compressedEntry.getTime());
+	    writeLocalHeader(entry);
+	    compressedEntry.writeCompressedData(output);
+	    position += entry.compressedSize;
+	} finally {
+	    compressedEntry.discard();
+	}
+
+    }
+
+    /**
+     * Copies an entry of another ZIP archive, keeping its compressed data and
+     * CRC as they are.
+     * 
+     * @param sourceEntry
+     *            entry of the source archive, as read from its central
+     *            directory
+     * @param sourceFile
+     *            the source archive
+     * @param dataOffset
+     *            position of the compressed data of the entry in the source
+     *            archive (see ZipUtils.getEntryDataOffsets())
+     */
+    public void copyEntry(ZipEntry sourceEntry, File sourceFile,
+	    long dataOffset) throws IOException {
+
+	finishStoredEntry();
+
+	if ((sourceEntry.getCompressedSize() < 0)
+		|| (sourceEntry.getSize() < 0) || (sourceEntry.getCrc() < 0)) {
+	    throw new IOException("Unknown size of entry "
+		    + sourceEntry.getName() + " in " + sourceFile);
+	}
+
+	Entry entry = createEntry(sourceEntry.getName(),
+		sourceEntry.getMethod(), sourceEntry.getCrc(),
+		sourceEntry.getSize(), sourceEntry.getCompressedSize(),
+		sourceEntry.getTime());
+	writeLocalHeader(entry);
+
+	try (RandomAccessFile file = new RandomAccessFile(sourceFile, "r")) {
+	    file.seek(dataOffset);
+	    byte buffer[] = new byte[1 << 16];
+	    long remaining = entry.compressedSize;
+	    while (remaining > 0) {
+		final int len = file.read(buffer, 0,
+			(int) Math.min(buffer.length, remaining));
+		if (len < 0) {
+		    throw new IOException("Unexpected end of entry "
+			    + sourceEntry.getName() + " in " + sourceFile);
+		}
+		output.write(buffer, 0, len);
+		remaining -= len;
+	    }
+	}
+	position += entry.compressedSize;
+
+    }
+
+    /**
+     * Starts an entry stored without compression. Exactly 'size' bytes must be
+     * written to the returned stream before the next entry is started. The
+     * CRC of the content has to be known in advance.
+     */
+    public OutputStream putStoredEntry(String name, long size, long crc)
+	    throws IOException {
+
+	finishStoredEntry();
+
+	Entry entry = createEntry(name, ZipEntry.STORED, crc, size, size,
+		System.currentTimeMillis());
+	writeLocalHeader(entry);
+	storedEntry = entry;
+	storedEntryRemaining = size;
+
+	return new OutputStream() {
+	    public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	    }
+
+	    public void write(byte b[], int off, int len) throws IOException {
+		if (len > storedEntryRemaining) {
+		    throw new IOException("Too much data written to entry "
+			    + new String(storedEntry.name,
+				    StandardCharsets.UTF_8));
+		}
+		output.write(b, off, len);
+		storedEntryRemaining -= len;
+		position += len;
+	    }
+	};
+
+    }
+
+    /**
+     * Writes the central directory and closes the archive
+     */
+    public void close() throws IOException {
+
+	finishStoredEntry();
+
+	final long directoryOffset = position;
+	for (Entry entry : entries) {
+	    writeCentralHeader(entry);
+	}
+	final long directorySize = position - directoryOffset;
+
+	final boolean zip64 = (entries.size() >= ZIP64_MAGIC_COUNT)
+		|| (directoryOffset >= ZIP64_MAGIC)
+		|| (directorySize >= ZIP64_MAGIC);
+
+	if (zip64) {
+	    final long zip64EndOffset = position;
+
+	    ByteBuffer zip64End = allocate(ZIP64_END_SIZE);
+	    zip64End.putInt(ZIP64_END_SIGNATURE);
+	    zip64End.putLong(ZIP64_END_SIZE - 12);
+	    zip64End.putShort((short) VERSION_ZIP64);
+	    zip64End.putShort((short) VERSION_ZIP64);
+	    zip64End.putInt(0);
+	    zip64End.putInt(0);
+	    zip64End.putLong(entries.size());
+	    zip64End.putLong(entries.size());
+	    zip64End.putLong(directorySize);
+	    zip64End.putLong(directoryOffset);
+	    write(zip64End);
+
+	    ByteBuffer locator = allocate(ZIP64_LOCATOR_SIZE);
+	    locator.putInt(ZIP64_LOCATOR_SIGNATURE);
+	    locator.putInt(0);
+	    locator.putLong(zip64EndOffset);
+	    locator.putInt(1);
+	    write(locator);
+	}
+
+	ByteBuffer end = allocate(END_SIZE);
+	end.putInt(END_SIGNATURE);
+	end.putShort((short) 0);
+	end.putShort((short) 0);
+	end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+	end.putShort((short) Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+	end.putInt((int) Math.min(directorySize, ZIP64_MAGIC));
+	end.putInt((int) Math.min(directoryOffset, ZIP64_MAGIC));
+	end.putShort((short) 0);
+	write(end);
+
+	output.close();
+
+    }
+
+    private void finishStoredEntry() throws IOException {
+	if (storedEntry == null)
+	    return;
+	if (storedEntryRemaining != 0) {
+	    throw new IOException("Missing " + storedEntryRemaining
+		    + " bytes of entry "
+		    + new String(storedEntry.name, StandardCharsets.UTF_8));
+	}
+	storedEntry = null;
+    }
+
+    private Entry createEntry(String name, int method, long crc, long size,
+	    long compressedSize, long time) {
+	Entry entry = new Entry();
+	entry.name = name.getBytes(StandardCharsets.UTF_8);
+	entry.method = method;
+	entry.crc = crc;
+	entry.size = size;
+	entry.compressedSize = compressedSize;
+	entry.dosTime = toDosTime(time);
+	entry.offset = position;
+	entries.add(entry);
+	return entry;
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+
+	final boolean zip64 = (entry.size >= ZIP64_MAGIC)
+		|| (entry.compressedSize >= ZIP64_MAGIC);
+	final int extraLength = zip64 ? 20 : 0;
+
+	ByteBuffer header = allocate(LOCAL_HEADER_SIZE + entry.name.length
+		+ extraLength);
+	header.putInt(LOCAL_HEADER_SIGNATURE);
+	header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+	header.putShort((short) UTF8_FLAG);
+	header.putShort((short) entry.method);
+	header.putInt(entry.dosTime);
+	header.putInt((int) entry.crc);
+	header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+	header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+	header.putShort((short) entry.name.length);
+	header.putShort((short) extraLength);
+	header.put(entry.name);
+	if (zip64) {
+	    header.putShort((short) ZIP64_EXTRA_ID);
+	    header.putShort((short) 16);
+	    header.putLong(entry.size);
+	    header.putLong(entry.compressedSize);
+	}
+	write(header);
+
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+
+	// The ZIP64 extra field contains only the values which do not fit to
+	// the header, in this order
+	final boolean zip64Size = entry.size >= ZIP64_MAGIC;
+	final boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+	final boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+	int zip64Values = 0;
+	if (zip64Size)
+	    zip64Values++;
+	if (zip64CompressedSize)
+	    zip64Values++;
+	if (zip64Offset)
+	    zip64Values++;
+	final int extraLength = (zip64Values > 0) ? 4 + 8 * zip64Values : 0;
+	final int version = (zip64Values > 0) ? VERSION_ZIP64 : VERSION;
+
+	ByteBuffer header = allocate(CENTRAL_HEADER_SIZE + entry.name.length
+		+ extraLength);
+	header.putInt(CENTRAL_HEADER_SIGNATURE);
+	header.putShort((short) version);
+	header.putShort((short) version);
+	header.putShort((short) UTF8_FLAG);
+	header.putShort((short) entry.method);
+	header.putInt(entry.dosTime);
+	header.putInt((int) entry.crc);
+	header.putInt((int) Math.min(entry.compressedSize, ZIP64_MAGIC));
+	header.putInt((int) Math.min(entry.size, ZIP64_MAGIC));
+	header.putShort((short) entry.name.length);
+	header.putShort((short) extraLength);
+	header.putShort((short) 0); // comment length
+	header.putShort((short) 0); // disk number
+	header.putShort((short) 0); // internal attributes
+	header.putInt(0); // external attributes
+	header.putInt((int) Math.min(entry.offset, ZIP64_MAGIC));
+	header.put(entry.name);
+	if (zip64Values > 0) {
+	    header.putShort((short) ZIP64_EXTRA_ID);
+	    header.putShort((short) (8 * zip64Values));
+	    if (zip64Size)
+		header.putLong(entry.size);
+	    if (zip64CompressedSize)
+		header.putLong(entry.compressedSize);
+	    if (zip64Offset)
+		header.putLong(entry.offset);
+	}
+	write(header);
+
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+	output.write(buffer.array(), 0, buffer.position());
+	position += buffer.position();
+    }
+
+    private static ByteBuffer allocate(int size) {
+	return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Converts the time to the MS-DOS format used by ZIP files, date in the
+     * upper and time in the lower 16 bits
+     */
+    private static int toDosTime(long time) {
+	Calendar calendar = Calendar.getInstance();
+	calendar.setTimeInMillis(time);
+	final int year = calendar.get(Calendar.YEAR);
+	if (year < 1980)
+	    return (1 << 21) | (1 << 16);
+	return ((year - 1980) << 25)
+		| ((calendar.get(Calendar.MONTH) + 1) << 21)
+		| (calendar.get(Calendar.DAY_OF_MONTH) << 16)
+		| (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+		| (calendar.get(Calendar.MINUTE) << 5)
+		| (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+}
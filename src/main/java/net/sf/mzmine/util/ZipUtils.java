@@ -0,0 +1,240 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * ZIP archive related utilities
+ */
+public class ZipUtils {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    /**
+     * Returns the positions of the data of all entries of given ZIP file which
+     * are stored without compression (ZipEntry.STORED), mapped by the entry
+     * names. The data of such entries can be read directly from the file.
+     * java.util.zip.ZipFile does not provide these positions, so we read them
+     * from the central directory and the local headers of the archive,
+     * including the ZIP64 extensions used by archives larger than 4 GB.
+     */
+    public static Map<String, Long> getStoredEntryOffsets(File zipFile)
+	    throws IOException {
+	return getEntryDataOffsets(zipFile, true);
+    }
+
+    /**
+     * Returns the positions of the data of all entries of given ZIP file,
+     * compressed or not, mapped by the entry names. The compressed data of an
+     * entry can be copied to another archive using
+     * ZipArchiveWriter.copyEntry().
+     */
+    public static Map<String, Long> getEntryDataOffsets(File zipFile)
+	    throws IOException {
+	return getEntryDataOffsets(zipFile, false);
+    }
+
+    private static Map<String, Long> getEntryDataOffsets(File zipFile,
+	    boolean storedOnly) throws IOException {
+
+	final Map<String, Long> offsets = new HashMap<String, Long>();
+
+	try (RandomAccessFile file = new RandomAccessFile(zipFile, "r")) {
+
+	    final long endPosition = findEndOfCentralDirectory(file);
+	    if (endPosition < 0) {
+		throw new IOException("Could not find the central directory of "
+			+ zipFile);
+	    }
+
+	    final ByteBuffer end = read(file, endPosition, END_SIZE);
+	    long numOfEntries = end.getShort(10) & 0xffff;
+	    long directorySize = end.getInt(12) & ZIP64_MAGIC;
+	    long directoryOffset = end.getInt(16) & ZIP64_MAGIC;
+
+	    // ZIP64 archives keep the real values in a separate record
+	    if (endPosition >= ZIP64_LOCATOR_SIZE) {
+		final ByteBuffer locator = read(file, endPosition
+			- ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+		if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+		    final ByteBuffer zip64End = read(file, locator.getLong(8),
+			    ZIP64_END_SIZE);
+		    if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+			throw new IOException(
+				"Invalid ZIP64 end of central directory in "
+					+ zipFile);
+		    }
+		    numOfEntries = zip64End.getLong(32);
+		    directorySize = zip64End.getLong(40);
+		    directoryOffset = zip64End.getLong(48);
+		}
+	    }
+
+	    if (directorySize > Integer.MAX_VALUE) {
+		throw new IOException("Central directory of " + zipFile
+			+ " is too large");
+	    }
+
+	    final ByteBuffer directory = read(file, directoryOffset,
+		    (int) directorySize);
+
+	    int position = 0;
+	    for (long i = 0; i < numOfEntries; i++) {
+
+		if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+		    throw new IOException("Invalid central directory of "
+			    + zipFile);
+		}
+
+		final int method = directory.getShort(position + 10) & 0xffff;
+		final long compressedSize = directory.getInt(position + 20)
+			& ZIP64_MAGIC;
+		final long size = directory.getInt(position + 24) & ZIP64_MAGIC;
+		final int nameLength = directory.getShort(position + 28) & 0xffff;
+		final int extraLength = directory.getShort(position + 30) & 0xffff;
+		final int commentLength = directory.getShort(position + 32) & 0xffff;
+		long localHeaderOffset = directory.getInt(position + 42)
+			& ZIP64_MAGIC;
+
+		final byte nameBytes[] = new byte[nameLength];
+		directory.position(position + CENTRAL_HEADER_SIZE);
+		directory.get(nameBytes);
+		final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+		if (localHeaderOffset == ZIP64_MAGIC) {
+		    localHeaderOffset = getZip64LocalHeaderOffset(directory,
+			    position + CENTRAL_HEADER_SIZE + nameLength,
+			    extraLength, size == ZIP64_MAGIC,
+			    compressedSize == ZIP64_MAGIC);
+		}
+
+		position += CENTRAL_HEADER_SIZE + nameLength + extraLength
+			+ commentLength;
+
+		if (storedOnly && (method != ZipEntry.STORED))
+		    continue;
+
+		// The local header may have a different extra field than the
+		// central directory, so we have to read its length
+		final ByteBuffer localHeader = read(file, localHeaderOffset,
+			LOCAL_HEADER_SIZE);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+		    throw new IOException("Invalid header of entry " + name
+			    + " in " + zipFile);
+		}
+		final int localNameLength = localHeader.getShort(26) & 0xffff;
+		final int localExtraLength = localHeader.getShort(28) & 0xffff;
+
+		offsets.put(name, localHeaderOffset + LOCAL_HEADER_SIZE
+			+ localNameLength + localExtraLength);
+
+	    }
+
+	}
+
+	return offsets;
+
+    }
+
+    /**
+     * Finds the end of central directory record, which is followed only by
+     * the archive comment. Returns -1 if there is no such record.
+     */
+    private static long findEndOfCentralDirectory(RandomAccessFile file)
+	    throws IOException {
+
+	final long fileLength = file.length();
+	if (fileLength < END_SIZE)
+	    return -1;
+
+	final int searchLength = (int) Math.min(fileLength, END_SIZE
+		+ MAX_COMMENT_SIZE);
+	final long searchStart = fileLength - searchLength;
+	final ByteBuffer tail = read(file, searchStart, searchLength);
+
+	for (int i = searchLength - END_SIZE; i >= 0; i--) {
+	    if (tail.getInt(i) == END_SIGNATURE)
+		return searchStart + i;
+	}
+
+	return -1;
+
+    }
+
+    /**
+     * Reads the local header offset from the ZIP64 extra field of a central
+     * directory header. The field contains only the values which did not fit
+     * to the header, in the order: size, compressed size, local header offset.
+     */
+    private static long getZip64LocalHeaderOffset(ByteBuffer directory,
+	    int extraStart, int extraLength, boolean hasSize,
+	    boolean hasCompressedSize) throws IOException {
+
+	int position = extraStart;
+	while (position + 4 <= extraStart + extraLength) {
+	    final int id = directory.getShort(position) & 0xffff;
+	    final int length = directory.getShort(position + 2) & 0xffff;
+	    if (id == ZIP64_EXTRA_ID) {
+		int valuePosition = position + 4;
+		if (hasSize)
+		    valuePosition += 8;
+		if (hasCompressedSize)
+		    valuePosition += 8;
+		return directory.getLong(valuePosition);
+	    }
+	    position += 4 + length;
+	}
+
+	throw new IOException("Missing ZIP64 extra field");
+
+    }
+
+    private static ByteBuffer read(RandomAccessFile file, long position,
+	    int length) throws IOException {
+	final byte bytes[] = new byte[length];
+	file.seek(position);
+	file.readFully(bytes);
+	return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+}
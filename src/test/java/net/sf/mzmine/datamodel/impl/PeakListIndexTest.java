@@ -0,0 +1,186 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.datamodel.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.Feature.FeatureStatus;
+import net.sf.mzmine.datamodel.PeakListRow;
+import net.sf.mzmine.project.impl.RawDataFileImpl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+public class PeakListIndexTest {
+
+    private static SimplePeakList createPeakList(String name,
+	    RawDataFileImpl dataFile, Random random, int numOfRows) {
+	SimplePeakList peakList = new SimplePeakList(name, dataFile);
+	for (int i = 0; i < numOfRows; i++) {
+	    SimplePeakListRow row = new SimplePeakListRow(i + 1);
+	    // Round the positions, so that some rows share them and some lie
+	    // exactly on the range bounds
+	    final double mz = 100.0 + random.nextInt(5000) * 0.1;
+	    final double rt = random.nextInt(600) * 0.1;
+	    row.addPeak(dataFile, new SimpleFeature(dataFile, mz, rt, 1000.0,
+		    10000.0, new int[] { 1 },
+		    new DataPoint[] { new SimpleDataPoint(mz, 1000.0) },
+		    FeatureStatus.DETECTED, -1, -1, Range.singleton(rt),
+		    Range.singleton(mz), Range.singleton(1000.0)));
+	    peakList.addRow(row);
+	}
+	return peakList;
+    }
+
+    private static Range<Double> randomRange(Random random, double min,
+	    double width) {
+	final double lower = min + random.nextInt((int) (width * 10)) * 0.1;
+	final double upper = lower + random.nextInt((int) (width * 2)) * 0.1;
+	switch (random.nextInt(6)) {
+	case 0:
+	    return Range.all();
+	case 1:
+	    return Range.atLeast(lower);
+	case 2:
+	    return Range.lessThan(upper);
+	case 3:
+	    return Range.open(lower, upper + 0.1);
+	default:
+	    return Range.closed(lower, upper);
+	}
+    }
+
+    /**
+     * Test that the indexed queries return the same rows and peaks, in the
+     * same order, as a linear scan over the peak list
+     */
+    @Test
+    public void testQueries() throws Exception {
+
+	final Random random = new Random(1);
+	final RawDataFileImpl dataFile = new RawDataFileImpl("test");
+
+	try {
+	    SimplePeakList peakList = createPeakList("test", dataFile, random,
+		    3000);
+
+	    for (int i = 0; i < 500; i++) {
+		Range<Double> rtRange = randomRange(random, 0.0, 60.0);
+		Range<Double> mzRange = randomRange(random, 100.0, 500.0);
+
+		List<PeakListRow> expectedRows = new ArrayList<PeakListRow>();
+		List<Feature> expectedPeaks = new ArrayList<Feature>();
+		for (PeakListRow row : peakList.getRows()) {
+		    if (rtRange.contains(row.getAverageRT())
+			    && mzRange.contains(row.getAverageMZ()))
+			expectedRows.add(row);
+		    Feature peak = row.getPeak(dataFile);
+		    if (rtRange.contains(peak.getRT())
+			    && mzRange.contains(peak.getMZ()))
+			expectedPeaks.add(peak);
+		}
+
+		Assert.assertArrayEquals(expectedRows.toArray(),
+			peakList.getRowsInsideScanAndMZRange(rtRange, mzRange));
+		Assert.assertArrayEquals(expectedPeaks.toArray(),
+			peakList.getPeaksInsideScanAndMZRange(dataFile,
+				rtRange, mzRange));
+
+		// Move a row, so that the index must be rebuilt
+		if (i % 50 == 0) {
+		    PeakListRow row = peakList.getRow(random.nextInt(3000));
+		    row.setAverageMZ(100.0 + random.nextInt(5000) * 0.1);
+		    ((SimpleFeature) row.getPeak(dataFile)).setRT(random
+			    .nextInt(600) * 0.1);
+		}
+	    }
+	} finally {
+	    dataFile.close();
+	}
+    }
+
+    /**
+     * Test that moving the rows or peaks of one peak list does not rebuild the
+     * indexes of another one, but rebuilds the indexes of all peak lists
+     * sharing the moved row or peak
+     */
+    @Test
+    public void testInvalidation() throws Exception {
+
+	final Random random = new Random(2);
+	final RawDataFileImpl dataFile = new RawDataFileImpl("test");
+
+	try {
+	    SimplePeakList peakList = createPeakList("list", dataFile, random,
+		    100);
+	    SimplePeakList otherPeakList = createPeakList("other list",
+		    dataFile, random, 100);
+	    SimplePeakList sharingPeakList = new SimplePeakList("sharing list",
+		    dataFile);
+	    SimplePeakListRow sharedRow = new SimplePeakListRow(1);
+	    SimpleFeature sharedPeak = (SimpleFeature) peakList.getRow(0)
+		    .getPeak(dataFile);
+	    sharedRow.addPeak(dataFile, sharedPeak);
+	    sharingPeakList.addRow(sharedRow);
+
+	    PeakListIndex<PeakListRow> rowIndex = peakList.getRowIndex();
+	    PeakListIndex<Feature> peakIndex = peakList.getPeakIndex(dataFile);
+	    PeakListIndex<PeakListRow> otherRowIndex = otherPeakList
+		    .getRowIndex();
+	    PeakListIndex<Feature> otherPeakIndex = otherPeakList
+		    .getPeakIndex(dataFile);
+	    PeakListIndex<PeakListRow> sharingRowIndex = sharingPeakList
+		    .getRowIndex();
+
+	    Assert.assertSame(rowIndex, peakList.getRowIndex());
+	    Assert.assertSame(peakIndex, peakList.getPeakIndex(dataFile));
+
+	    peakList.getRow(1).setAverageRT(1.0);
+	    Assert.assertNotSame(rowIndex, peakList.getRowIndex());
+	    Assert.assertNotSame(peakIndex, peakList.getPeakIndex(dataFile));
+	    Assert.assertSame(otherRowIndex, otherPeakList.getRowIndex());
+	    Assert.assertSame(otherPeakIndex,
+		    otherPeakList.getPeakIndex(dataFile));
+	    Assert.assertSame(sharingRowIndex, sharingPeakList.getRowIndex());
+
+	    rowIndex = peakList.getRowIndex();
+	    sharedPeak.setMZ(150.0);
+	    Assert.assertNotSame(rowIndex, peakList.getRowIndex());
+	    Assert.assertNotSame(sharingRowIndex, sharingPeakList.getRowIndex());
+	    Assert.assertSame(otherRowIndex, otherPeakList.getRowIndex());
+
+	    // A peak replaced in its row no longer invalidates the row's peak
+	    // lists
+	    sharedRow.addPeak(dataFile, new SimpleFeature(sharedPeak));
+	    sharingRowIndex = sharingPeakList.getRowIndex();
+	    sharedPeak.setRT(2.0);
+	    Assert.assertSame(sharingRowIndex, sharingPeakList.getRowIndex());
+	} finally {
+	    dataFile.close();
+	}
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ * 
+ * This file is part of MZmine 2.
+ * 
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ * 
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.mzmine.modules.peaklistmethods.peakpicking.deconvolution.centwave.CentWaveDetectorParameters.PeakIntegrationMethod;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+public class CentWaveTest {
+
+    private static final int NUM_SCANS = 300;
+
+    // One scan every 0.6 s
+    private static final double SCAN_INTERVAL = 0.01;
+
+    // Wavelet scales 2 - 14 scans
+    private static final Range<Double> PEAK_WIDTH = Range.closed(0.05, 0.3);
+
+    private static final double SN_THRESHOLD = 10.0;
+
+    // Results of XCMS findPeaks.centWave, see centwave/generate_fixtures.R
+    private static final String FIXTURES = "/centwave/";
+
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Two Gaussian peaks, each in its own region of interest, must be found
+     * with either integration method, and their boundaries must stay within
+     * their region (extended by one zero intensity scan).
+     */
+    @Test
+    public void testSeparatedPeaks() {
+
+	final double retentionTimes[] = retentionTimes();
+	final double intensities[] = new double[NUM_SCANS];
+	for (int i = 0; i < NUM_SCANS; i++) {
+	    final double intensity = gaussian(i, 80, 5, 1e5)
+		    + gaussian(i, 200, 7, 4e4);
+	    intensities[i] = intensity >= 50.0 ? intensity : 0.0;
+	}
+
+	for (PeakIntegrationMethod method : PeakIntegrationMethod.values()) {
+
+	    final List<int[]> peaks = CentWave.findPeaks(retentionTimes,
+		    intensities, PEAK_WIDTH, SN_THRESHOLD, method);
+
+	    Assert.assertEquals(method.toString(), 2, peaks.size());
+	    checkPeak(peaks.get(0), 80, 60, 100);
+	    checkPeak(peaks.get(1), 200, 174, 226);
+	}
+
+	// Integration on the smoothed data yields narrower peaks
+	final int smoothed[] = CentWave.findPeaks(retentionTimes, intensities,
+		PEAK_WIDTH, SN_THRESHOLD,
+		PeakIntegrationMethod.UseSmoothedData).get(0);
+	final int raw[] = CentWave.findPeaks(retentionTimes, intensities,
+		PEAK_WIDTH, SN_THRESHOLD, PeakIntegrationMethod.UseRawData)
+		.get(0);
+	Assert.assertTrue(smoothed[1] - smoothed[0] < raw[1] - raw[0]);
+    }
+
+    /**
+     * Noise only: no peak.
+     */
+    @Test
+    public void testNoise() {
+
+	final Random random = new Random(1);
+	final double intensities[] = new double[NUM_SCANS];
+	for (int i = 0; i < NUM_SCANS; i++)
+	    intensities[i] = Math.max(0.0, 100.0 + 20.0 * random.nextGaussian());
+
+	for (PeakIntegrationMethod method : PeakIntegrationMethod.values()) {
+	    Assert.assertTrue(CentWave.findPeaks(retentionTimes(), intensities,
+		    PEAK_WIDTH, SN_THRESHOLD, method).isEmpty());
+	}
+    }
+
+    /**
+     * No scale fits the peak width: no peak.
+     */
+    @Test
+    public void testNoScales() {
+
+	final double intensities[] = new double[NUM_SCANS];
+	for (int i = 0; i < NUM_SCANS; i++)
+	    intensities[i] = gaussian(i, 80, 5, 1e5);
+
+	Assert.assertTrue(CentWave.findPeaks(retentionTimes(), intensities,
+		Range.closed(0.001, 0.002), SN_THRESHOLD,
+		PeakIntegrationMethod.UseRawData).isEmpty());
+    }
+
+    /**
+     * The wavelet has a zero mean, so a constant signal has (almost) zero
+     * coefficients. Scales whose wavelet is longer than the signal are not
+     * computed.
+     */
+    @Test
+    public void testWaveletTransform() {
+
+	final double signal[] = new double[64];
+	Arrays.fill(signal, 5.0);
+
+	final double coefficients[][] = CentWave.cwt(signal, new int[] { 2, 4,
+		6 });
+	Assert.assertEquals(2, coefficients.length);
+	for (double scaleCoefficients[] : coefficients) {
+	    Assert.assertEquals(signal.length, scaleCoefficients.length);
+	    for (double c : scaleCoefficients)
+		Assert.assertEquals(0.0, c, 1e-9);
+	}
+    }
+
+    @Test
+    public void testHelpers() {
+
+	final double y[] = { 5, 3, 1, 2, 6, 9, 4, 2, 2, 7 };
+
+	Assert.assertArrayEquals(new int[] { 2, 7 },
+		CentWave.descendMin(y, 5));
+	Assert.assertArrayEquals(new int[] { 0, 2 },
+		CentWave.descendMin(y, 0));
+
+	// One outlier (7) is tolerated, but the descent stops on it
+	Assert.assertArrayEquals(new int[] { 2, 8 },
+		CentWave.descendMinTol(y, 5, 5, 1));
+
+	Assert.assertTrue(CentWave.continuousPtsAboveThreshold(y, 1.5, 7));
+	Assert.assertFalse(CentWave.continuousPtsAboveThreshold(y, 1.5, 8));
+
+	// Too few positive values: plain mean
+	Assert.assertEquals(4.1, CentWave.estimateChromNoise(y, 20), 1e-9);
+
+	final boolean localMax[] = CentWave.localMaximum(y, 5);
+	for (int i = 0; i < y.length; i++)
+	    Assert.assertEquals("index " + i, i == 5, localMax[i]);
+    }
+
+    /**
+     * The peaks must match those found by XCMS on the stored fixtures: same
+     * bounds (rtmin, rtmax), and same maximum and integrated (raw) intensity
+     * over these bounds. Skipped if the fixtures have not been generated.
+     */
+    @Test
+    public void testXcmsFixtures() throws IOException {
+
+	final List<String[]> cases = readCsv("cases.csv");
+	Assume.assumeNotNull(cases);
+
+	for (String testCase[] : cases) {
+
+	    final String name = testCase[0];
+	    final List<String[]> chromatogram = readCsv(testCase[1]
+		    + ".chromatogram.csv");
+	    final List<String[]> expectedPeaks = readCsv(name + ".peaks.csv");
+	    Assert.assertNotNull(name, chromatogram);
+	    Assert.assertNotNull(name, expectedPeaks);
+
+	    final double retentionTimes[] = new double[chromatogram.size()];
+	    final double intensities[] = new double[chromatogram.size()];
+	    for (int i = 0; i < retentionTimes.length; i++) {
+		retentionTimes[i] = Double.parseDouble(chromatogram.get(i)[0]);
+		intensities[i] = Double.parseDouble(chromatogram.get(i)[1]);
+	    }
+
+	    PeakIntegrationMethod method = null;
+	    for (PeakIntegrationMethod m : PeakIntegrationMethod.values())
+		if (m.getIndex() == Integer.parseInt(testCase[5]))
+		    method = m;
+
+	    final List<int[]> peaks = CentWave.findPeaks(retentionTimes,
+		    intensities, Range.closed(Double.parseDouble(testCase[3]),
+			    Double.parseDouble(testCase[4])), Double
+			    .parseDouble(testCase[2]), method);
+
+	    // Compare in order of retention time
+	    Collections.sort(peaks, new Comparator<int[]>() {
+		@Override
+		public int compare(int p1[], int p2[]) {
+		    return Integer.compare(p1[0], p2[0]);
+		}
+	    });
+	    Collections.sort(expectedPeaks, new Comparator<String[]>() {
+		@Override
+		public int compare(String p1[], String p2[]) {
+		    return Double.compare(Double.parseDouble(p1[0]),
+			    Double.parseDouble(p2[0]));
+		}
+	    });
+
+	    Assert.assertEquals(name, expectedPeaks.size(), peaks.size());
+	    for (int i = 0; i < peaks.size(); i++) {
+
+		final int first = peaks.get(i)[0];
+		final int last = peaks.get(i)[1];
+		final String expected[] = expectedPeaks.get(i);
+		final String message = name + " peak " + i;
+
+		double maxo = 0.0;
+		double sum = 0.0;
+		for (int j = first; j <= last; j++) {
+		    maxo = Math.max(maxo, intensities[j]);
+		    sum += intensities[j];
+		}
+
+		// Seconds per scan, as integrated by XCMS
+		final double width = last > first ? 60.0
+			* (retentionTimes[last] - retentionTimes[first])
+			/ (last - first) : 1.0;
+
+		Assert.assertEquals(message, Double.parseDouble(expected[0]),
+			60.0 * retentionTimes[first], TOLERANCE);
+		Assert.assertEquals(message, Double.parseDouble(expected[1]),
+			60.0 * retentionTimes[last], TOLERANCE);
+		Assert.assertEquals(message, 1.0, width * sum
+			/ Double.parseDouble(expected[2]), TOLERANCE);
+		Assert.assertEquals(message, 1.0,
+			maxo / Double.parseDouble(expected[3]), TOLERANCE);
+	    }
+	}
+    }
+
+    /**
+     * Reads a CSV file written by R (write.csv), without its header line.
+     * 
+     * @return the rows, or null if the file does not exist.
+     */
+    private static List<String[]> readCsv(String fileName) throws IOException {
+
+	final InputStream stream = CentWaveTest.class
+		.getResourceAsStream(FIXTURES + fileName);
+	if (stream == null)
+	    return null;
+
+	final List<String[]> rows = new ArrayList<String[]>();
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+		stream, StandardCharsets.UTF_8))) {
+	    reader.readLine();
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (!line.isEmpty())
+		    rows.add(line.replace("\"", "").split(","));
+	    }
+	}
+	return rows;
+    }
+
+    private static double[] retentionTimes() {
+	final double retentionTimes[] = new double[NUM_SCANS];
+	for (int i = 0; i < NUM_SCANS; i++)
+	    retentionTimes[i] = i * SCAN_INTERVAL;
+	return retentionTimes;
+    }
+
+    private static double gaussian(int x, int center, double sigma,
+	    double height) {
+	final double z = (x - center) / sigma;
+	return height * Math.exp(-z * z / 2.0);
+    }
+
+    private static void checkPeak(int peak[], int apex, int min, int max) {
+	Assert.assertTrue(Arrays.toString(peak), peak[0] < apex);
+	Assert.assertTrue(Arrays.toString(peak), peak[1] > apex);
+	Assert.assertTrue(Arrays.toString(peak), peak[0] >= min);
+	Assert.assertTrue(Arrays.toString(peak), peak[1] <= max);
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.projectmethods.projectload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Hashtable;
+import java.util.Random;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.Feature;
+import net.sf.mzmine.datamodel.Feature.FeatureStatus;
+import net.sf.mzmine.datamodel.IsotopePattern;
+import net.sf.mzmine.datamodel.IsotopePattern.IsotopePatternStatus;
+import net.sf.mzmine.datamodel.MassSpectrumType;
+import net.sf.mzmine.datamodel.PeakList;
+import net.sf.mzmine.datamodel.PeakListRow;
+import net.sf.mzmine.datamodel.PolarityType;
+import net.sf.mzmine.datamodel.RawDataFile;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleFeature;
+import net.sf.mzmine.datamodel.impl.SimpleIsotopePattern;
+import net.sf.mzmine.datamodel.impl.SimplePeakIdentity;
+import net.sf.mzmine.datamodel.impl.SimplePeakList;
+import net.sf.mzmine.datamodel.impl.SimplePeakListAppliedMethod;
+import net.sf.mzmine.datamodel.impl.SimplePeakListRow;
+import net.sf.mzmine.datamodel.impl.SimpleScan;
+import net.sf.mzmine.modules.projectmethods.projectsave.PeakListBinarySaveHandler;
+import net.sf.mzmine.project.impl.RawDataFileImpl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+public class PeakListBinaryOpenHandlerTest {
+
+    private static final int NUM_SCANS = 50;
+
+    /**
+     * Test that a peak list saved by PeakListBinarySaveHandler is read back
+     * unchanged. The peak list has more rows and peaks than fit to one block.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+
+	final Random random = new Random(1);
+
+	RawDataFileImpl dataFiles[] = new RawDataFileImpl[3];
+	Hashtable<RawDataFile, String> savedIDs = new Hashtable<RawDataFile, String>();
+	Hashtable<String, RawDataFile> loadedIDs = new Hashtable<String, RawDataFile>();
+	for (int i = 0; i < dataFiles.length; i++) {
+	    dataFiles[i] = new RawDataFileImpl("file" + i);
+	    for (int scan = 1; scan <= NUM_SCANS; scan++) {
+		DataPoint dataPoints[] = { new SimpleDataPoint(100.0, 1000.0) };
+		dataFiles[i].addScan(new SimpleScan(null, scan, 1, scan * 0.1,
+			0.0, 0, null, dataPoints, MassSpectrumType.CENTROIDED,
+			PolarityType.POSITIVE, "", Range.closed(0.0, 1000.0)));
+	    }
+	    dataFiles[i].finishWriting();
+	    savedIDs.put(dataFiles[i], String.valueOf(i + 1));
+	    loadedIDs.put(String.valueOf(i + 1), dataFiles[i]);
+	}
+
+	try {
+	    SimplePeakList peakList = new SimplePeakList("Aligned peak list",
+		    dataFiles);
+	    peakList.addDescriptionOfAppliedTask(new SimplePeakListAppliedMethod(
+		    "Join aligner", "<parameters/>"));
+
+	    for (int i = 0; i < 2000; i++) {
+		SimplePeakListRow row = new SimplePeakListRow(i + 1);
+		if (i % 3 == 0)
+		    row.setComment("Comment " + i);
+		if (i % 5 == 0) {
+		    row.addPeakIdentity(new SimplePeakIdentity("Compound " + i),
+			    false);
+		    row.addPeakIdentity(new SimplePeakIdentity("Preferred " + i),
+			    true);
+		}
+		for (RawDataFile dataFile : dataFiles) {
+		    if (random.nextInt(4) == 0)
+			continue;
+		    row.addPeak(dataFile, createPeak(dataFile, i, random));
+		}
+		peakList.addRow(row);
+	    }
+
+	    ByteArrayOutputStream savedPeakList = new ByteArrayOutputStream();
+	    new PeakListBinarySaveHandler(savedPeakList, savedIDs)
+		    .savePeakList(peakList);
+	    PeakList loadedPeakList = new PeakListBinaryOpenHandler(loadedIDs)
+		    .readPeakList(new ByteArrayInputStream(savedPeakList
+			    .toByteArray()));
+
+	    assertPeakListsEqual(peakList, loadedPeakList);
+
+	} finally {
+	    for (RawDataFileImpl dataFile : dataFiles)
+		dataFile.close();
+	}
+    }
+
+    private Feature createPeak(RawDataFile dataFile, int index, Random random) {
+
+	final int firstScan = 1 + random.nextInt(NUM_SCANS - 10);
+	final int numOfScans = 1 + random.nextInt(10);
+	int scanNumbers[] = new int[numOfScans];
+	DataPoint dataPoints[] = new DataPoint[numOfScans];
+	for (int i = 0; i < numOfScans; i++) {
+	    scanNumbers[i] = firstScan + i;
+	    // Some scans have no data point
+	    if (random.nextInt(5) > 0) {
+		dataPoints[i] = new SimpleDataPoint(
+			(float) (100.0 + random.nextDouble()),
+			(float) (random.nextDouble() * 1.0E6));
+	    }
+	}
+
+	SimpleFeature peak = new SimpleFeature(dataFile, 100.0 + index
+		+ random.nextDouble(), random.nextDouble() * 5.0,
+		random.nextDouble() * 1.0E6, random.nextDouble() * 1.0E7,
+		scanNumbers, dataPoints, FeatureStatus.values()[index
+			% FeatureStatus.values().length], firstScan, -1,
+		Range.closed(0.0, 5.0), Range.closed(100.0, 101.0),
+		Range.closed(0.0, 1.0E6));
+	peak.setCharge(index % 3);
+
+	if (index % 7 == 0) {
+	    DataPoint isotopes[] = { new SimpleDataPoint(100.0, 1000.0),
+		    new SimpleDataPoint(101.0034, 110.0) };
+	    peak.setIsotopePattern(new SimpleIsotopePattern(isotopes,
+		    IsotopePatternStatus.DETECTED, "Isotopes " + index));
+	}
+
+	return peak;
+    }
+
+    private void assertPeakListsEqual(PeakList expected, PeakList actual) {
+
+	Assert.assertEquals(expected.getName(), actual.getName());
+	Assert.assertEquals(((SimplePeakList) expected).getDateCreated(),
+		((SimplePeakList) actual).getDateCreated());
+	Assert.assertArrayEquals(expected.getRawDataFiles(),
+		actual.getRawDataFiles());
+	Assert.assertEquals(expected.getAppliedMethods().length,
+		actual.getAppliedMethods().length);
+	Assert.assertEquals(expected.getAppliedMethods()[0].getParameters(),
+		actual.getAppliedMethods()[0].getParameters());
+	Assert.assertEquals(expected.getNumberOfRows(),
+		actual.getNumberOfRows());
+
+	for (int i = 0; i < expected.getNumberOfRows(); i++) {
+	    PeakListRow expectedRow = expected.getRow(i);
+	    PeakListRow actualRow = actual.getRow(i);
+
+	    Assert.assertEquals(expectedRow.getID(), actualRow.getID());
+	    Assert.assertEquals(expectedRow.getComment(),
+		    actualRow.getComment());
+	    Assert.assertEquals(expectedRow.getPeakIdentities().length,
+		    actualRow.getPeakIdentities().length);
+	    if (expectedRow.getPreferredPeakIdentity() != null) {
+		Assert.assertEquals(expectedRow.getPreferredPeakIdentity()
+			.getName(), actualRow.getPreferredPeakIdentity()
+			.getName());
+	    }
+
+	    Feature expectedPeaks[] = expectedRow.getPeaks();
+	    Feature actualPeaks[] = actualRow.getPeaks();
+	    Assert.assertEquals(expectedPeaks.length, actualPeaks.length);
+	    for (int j = 0; j < expectedPeaks.length; j++)
+		assertPeaksEqual(expectedPeaks[j], actualPeaks[j]);
+	}
+    }
+
+    private void assertPeaksEqual(Feature expected, Feature actual) {
+
+	Assert.assertSame(expected.getDataFile(), actual.getDataFile());
+	Assert.assertEquals(expected.getMZ(), actual.getMZ(), 0.0);
+	Assert.assertEquals(expected.getRT(), actual.getRT(), 0.0);
+	Assert.assertEquals(expected.getHeight(), actual.getHeight(), 0.0);
+	Assert.assertEquals(expected.getArea(), actual.getArea(), 0.0);
+	Assert.assertEquals(expected.getFeatureStatus(),
+		actual.getFeatureStatus());
+	Assert.assertEquals(expected.getCharge(), actual.getCharge());
+	Assert.assertEquals(expected.getRepresentativeScanNumber(),
+		actual.getRepresentativeScanNumber());
+	Assert.assertEquals(expected.getMostIntenseFragmentScanNumber(),
+		actual.getMostIntenseFragmentScanNumber());
+	Assert.assertArrayEquals(expected.getScanNumbers(),
+		actual.getScanNumbers());
+
+	// Data points are saved with float precision, the test data points
+	// are floats
+	for (int scan : expected.getScanNumbers()) {
+	    DataPoint expectedDataPoint = expected.getDataPoint(scan);
+	    DataPoint actualDataPoint = actual.getDataPoint(scan);
+	    if (expectedDataPoint == null) {
+		Assert.assertNull(actualDataPoint);
+		continue;
+	    }
+	    Assert.assertEquals(expectedDataPoint.getMZ(),
+		    actualDataPoint.getMZ(), 0.0);
+	    Assert.assertEquals(expectedDataPoint.getIntensity(),
+		    actualDataPoint.getIntensity(), 0.0);
+	}
+
+	IsotopePattern expectedPattern = expected.getIsotopePattern();
+	IsotopePattern actualPattern = actual.getIsotopePattern();
+	if (expectedPattern == null) {
+	    Assert.assertNull(actualPattern);
+	    return;
+	}
+	Assert.assertEquals(expectedPattern.getStatus(),
+		actualPattern.getStatus());
+	Assert.assertEquals(expectedPattern.getDescription(),
+		actualPattern.getDescription());
+	Assert.assertEquals(expectedPattern.getNumberOfDataPoints(),
+		actualPattern.getNumberOfDataPoints());
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Random;
+
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JavaAsymmetryCorrectorTest {
+
+    /**
+     * Sloped baseline with a few Gaussian peaks and some noise
+     */
+    static double[] createChromatogram(Random random, int size) {
+	double chromatogram[] = new double[size];
+	for (int i = 0; i < size; i++) {
+	    chromatogram[i] = 100.0 + 0.5 * i + random.nextDouble() * 10.0;
+	    for (int peak = 1; peak <= 3; peak++) {
+		final double x = (i - peak * size / 4.0) / 5.0;
+		chromatogram[i] += 1000.0 * peak * Math.exp(-x * x / 2.0);
+	    }
+	}
+	return chromatogram;
+    }
+
+    /**
+     * Test that a straight line is not changed by the second order
+     * differences
+     */
+    @Test
+    public void testSmooth() throws Exception {
+
+	double line[] = new double[50];
+	for (int i = 0; i < line.length; i++)
+	    line[i] = 10.0 + 3.0 * i;
+	double ones[] = new double[line.length];
+	for (int i = 0; i < ones.length; i++)
+	    ones[i] = 1.0;
+	for (double lambda : new double[] { 1.0, 1e4 }) {
+	    Assert.assertArrayEquals(line,
+		    JavaAsymmetryCorrector.smooth(line, ones, lambda), 1e-6);
+	}
+    }
+
+    /**
+     * Test that the baseline stays below the peaks
+     */
+    @Test
+    public void testAsysm() throws Exception {
+
+	final Random random = new Random(2);
+	for (double p : new double[] { 0.001, 0.05 }) {
+	    for (double lambda : new double[] { 1e2, 1e4 }) {
+		final double y[] = createChromatogram(random, 200);
+		final double baseline[] = JavaAsymmetryCorrector.asysm(y,
+			lambda, p);
+		for (int peak = 1; peak <= 3; peak++)
+		    Assert.assertTrue(baseline[peak * 50] < y[peak * 50] - 500.0);
+	    }
+	}
+
+	// Flat chromatograms converge after the first iterations
+	Assert.assertArrayEquals(new double[10],
+		JavaAsymmetryCorrector.asysm(new double[10], 1e4, 0.01), 0.0);
+    }
+
+    /**
+     * Test that the baseline is the one computed by "asysm" in R
+     */
+    @Test
+    public void testRFixture() throws Exception {
+
+	final ParameterSet parameters = new JavaAsymmetryCorrectorParameters();
+	parameters.getParameter(AsymmetryCorrectorParameters.SMOOTHING)
+		.setValue(1e4);
+	parameters.getParameter(AsymmetryCorrectorParameters.ASYMMETRY)
+		.setValue(0.001);
+	RFixtures.assertBaseline("asymmetry", new JavaAsymmetryCorrector(),
+		parameters);
+    }
+
+}
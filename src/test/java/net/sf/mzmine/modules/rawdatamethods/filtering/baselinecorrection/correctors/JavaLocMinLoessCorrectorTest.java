@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Random;
+
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JavaLocMinLoessCorrectorTest {
+
+    /**
+     * Test that a straight line is its own baseline, with local minima or
+     * quantiles, fitted by LOESS or linear interpolation
+     */
+    @Test
+    public void testLine() throws Exception {
+
+	double line[] = new double[100];
+	for (int i = 0; i < line.length; i++)
+	    line[i] = 50.0 - 0.3 * i;
+
+	for (double qntl : new double[] { 0.0, 0.2 }) {
+	    for (boolean loess : new boolean[] { false, true }) {
+		Assert.assertArrayEquals(line, JavaLocMinLoessCorrector
+			.bslnoff(line, 10, qntl, loess, 0.3), 1e-9);
+	    }
+	}
+    }
+
+    /**
+     * Test that the baseline stays below the peaks
+     */
+    @Test
+    public void testPeaks() throws Exception {
+
+	final double y[] = JavaAsymmetryCorrectorTest.createChromatogram(
+		new Random(1), 200);
+	for (boolean loess : new boolean[] { false, true }) {
+	    final double baseline[] = JavaLocMinLoessCorrector.bslnoff(y, 20,
+		    0.0, loess, 0.2);
+	    for (int peak = 1; peak <= 3; peak++)
+		Assert.assertTrue(baseline[peak * 50] < y[peak * 50] - 500.0);
+	}
+
+	// Too small bandwidths are raised to hold two points
+	Assert.assertEquals(y.length,
+		JavaLocMinLoessCorrector.bslnoff(y, 20, 0.0, true, 0.0).length);
+    }
+
+    @Test
+    public void testQuantile() throws Exception {
+
+	final double values[] = { 10, 4, 1, 3, 2 };
+
+	// quantile(c(10, 4, 1, 3, 2), c(0, 0.3, 0.5, 1)) in R
+	Assert.assertEquals(1.0,
+		JavaLocMinLoessCorrector.quantile(values, 0, 5, 0.0), 1e-12);
+	Assert.assertEquals(2.2,
+		JavaLocMinLoessCorrector.quantile(values, 0, 5, 0.3), 1e-12);
+	Assert.assertEquals(3.0,
+		JavaLocMinLoessCorrector.quantile(values, 0, 5, 0.5), 1e-12);
+	Assert.assertEquals(10.0,
+		JavaLocMinLoessCorrector.quantile(values, 0, 5, 1.0), 1e-12);
+    }
+
+    /**
+     * Test that the baseline is the one computed by "bslnoff" in R
+     */
+    @Test
+    public void testRFixture() throws Exception {
+
+	final ParameterSet parameters = new JavaLocMinLoessCorrectorParameters();
+	parameters.getParameter(LocMinLoessCorrectorParameters.METHOD)
+		.setValue("loess");
+	parameters.getParameter(LocMinLoessCorrectorParameters.BW).setValue(
+		0.2);
+	parameters.getParameter(LocMinLoessCorrectorParameters.BREAKS)
+		.setValue(20);
+	parameters.getParameter(LocMinLoessCorrectorParameters.BREAK_WIDTH)
+		.setValue(-1);
+	parameters.getParameter(LocMinLoessCorrectorParameters.QNTL).setValue(
+		0.0);
+	RFixtures.assertBaseline("locminloess", new JavaLocMinLoessCorrector(),
+		parameters);
+    }
+
+}
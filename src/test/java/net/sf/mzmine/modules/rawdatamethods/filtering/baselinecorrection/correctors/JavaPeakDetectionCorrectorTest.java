@@ -0,0 +1,105 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JavaPeakDetectionCorrectorTest {
+
+    /**
+     * Test that the peaks are detected and removed from the baseline
+     */
+    @Test
+    public void testPeaks() throws Exception {
+
+	final double y[] = JavaAsymmetryCorrectorTest.createChromatogram(
+		new Random(1), 200);
+
+	final boolean peaks[] = JavaPeakDetectionCorrector.detectPeaks(y, 5,
+		20, 1.0, 5.0);
+	for (int peak = 1; peak <= 3; peak++)
+	    Assert.assertTrue(peaks[peak * 50]);
+
+	final double baseline[] = JavaPeakDetectionCorrector.removePeaks(y,
+		peaks, 5, 10, false);
+	for (int peak = 1; peak <= 3; peak++) {
+	    final int apex = peak * 50;
+	    Assert.assertEquals(100.0 + 0.5 * apex, baseline[apex], 15.0);
+	}
+
+	// A monotonically decreasing baseline
+	final double mono[] = JavaPeakDetectionCorrector.removePeaks(y, peaks,
+		5, 10, true);
+	for (int i = 1; i < mono.length; i++)
+	    Assert.assertTrue(mono[i] <= mono[i - 1]);
+    }
+
+    /**
+     * Test that a constant chromatogram is its own baseline, and that a
+     * chromatogram without any scan left gets a flat baseline
+     */
+    @Test
+    public void testFlat() throws Exception {
+
+	double constant[] = new double[20];
+	Arrays.fill(constant, 5.0);
+	Assert.assertArrayEquals(constant, JavaPeakDetectionCorrector
+		.removePeaks(constant, JavaPeakDetectionCorrector.detectPeaks(
+			constant, 3, 5, 1.0, 1.0), 3, 3, false), 0.0);
+
+	boolean all[] = new boolean[3];
+	Arrays.fill(all, true);
+	Assert.assertArrayEquals(new double[] { 2.0, 2.0, 2.0 },
+		JavaPeakDetectionCorrector.removePeaks(new double[] { 4.0,
+			2.0, 3.0 }, all, 1, 1, false), 0.0);
+    }
+
+    /**
+     * Test that the baseline is the one computed by "peakDetection" in R
+     */
+    @Test
+    public void testRFixture() throws Exception {
+
+	final ParameterSet parameters = new JavaPeakDetectionCorrectorParameters();
+	parameters.getParameter(PeakDetectionCorrectorParameters.LEFT)
+		.setValue(10);
+	parameters.getParameter(PeakDetectionCorrectorParameters.RIGHT)
+		.setValue(30);
+	parameters.getParameter(PeakDetectionCorrectorParameters.LWIN)
+		.setValue(10);
+	parameters.getParameter(PeakDetectionCorrectorParameters.RWIN)
+		.setValue(20);
+	parameters.getParameter(PeakDetectionCorrectorParameters.SNMINIMUM)
+		.setValue(1.0);
+	parameters.getParameter(PeakDetectionCorrectorParameters.MONO)
+		.setValue(0.0);
+	parameters.getParameter(PeakDetectionCorrectorParameters.MULTIPLIER)
+		.setValue(5.0);
+	RFixtures.assertBaseline("peakdetection",
+		new JavaPeakDetectionCorrector(), parameters);
+    }
+
+}
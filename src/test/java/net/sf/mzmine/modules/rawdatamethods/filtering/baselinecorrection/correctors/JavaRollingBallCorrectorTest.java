@@ -0,0 +1,87 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.util.Random;
+
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JavaRollingBallCorrectorTest {
+
+    /**
+     * Test the rolling extremum and mean against naive windows, also wider
+     * than the chromatogram
+     */
+    @Test
+    public void testRollingWindows() throws Exception {
+
+	final Random random = new Random(1);
+	final double y[] = JavaAsymmetryCorrectorTest.createChromatogram(
+		random, 200);
+
+	for (int width : new int[] { 0, 1, 10, 250 }) {
+	    final double minimum[] = JavaRollingBallCorrector.rollingExtremum(
+		    y, width, true);
+	    final double maximum[] = JavaRollingBallCorrector.rollingExtremum(
+		    y, width, false);
+	    final double mean[] = JavaRollingBallCorrector.rollingMean(y,
+		    width);
+	    for (int u = 0; u < y.length; u++) {
+		final int lower = Math.max(0, u - width);
+		final int upper = Math.min(y.length - 1, u + width);
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE, sum = 0.0;
+		for (int i = lower; i <= upper; i++) {
+		    min = Math.min(min, y[i]);
+		    max = Math.max(max, y[i]);
+		    sum += y[i];
+		}
+		Assert.assertEquals(min, minimum[u], 0.0);
+		Assert.assertEquals(max, maximum[u], 0.0);
+		Assert.assertEquals(sum / (upper - lower + 1), mean[u], 1e-9);
+	    }
+	}
+
+	// A constant chromatogram is its own baseline
+	double constant[] = new double[20];
+	java.util.Arrays.fill(constant, 5.0);
+	Assert.assertArrayEquals(constant, JavaRollingBallCorrector
+		.rollingMean(JavaRollingBallCorrector.rollingExtremum(
+			constant, 3, true), 2), 1e-12);
+    }
+
+    /**
+     * Test that the baseline is the one computed by "rollingBall" in R
+     */
+    @Test
+    public void testRFixture() throws Exception {
+
+	final ParameterSet parameters = new JavaRollingBallCorrectorParameters();
+	parameters.getParameter(RollingBallCorrectorParameters.MIN_MAX_WIDTH)
+		.setValue(10);
+	parameters.getParameter(RollingBallCorrectorParameters.SMOOTHING)
+		.setValue(5);
+	RFixtures.assertBaseline("rollingball", new JavaRollingBallCorrector(),
+		parameters);
+    }
+
+}
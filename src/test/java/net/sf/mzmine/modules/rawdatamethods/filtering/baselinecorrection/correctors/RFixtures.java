@@ -0,0 +1,98 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.correctors;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.mzmine.modules.rawdatamethods.filtering.baselinecorrection.JavaBaselineCorrector;
+import net.sf.mzmine.parameters.ParameterSet;
+
+import org.junit.Assert;
+import org.junit.Assume;
+
+/**
+ * Baselines computed by the R based correctors on a stored chromatogram, see
+ * baselinecorrection/generate_fixtures.R
+ */
+final class RFixtures {
+
+    private static final String FIXTURES = "/baselinecorrection/";
+
+    private static final double TOLERANCE = 1e-6;
+
+    private RFixtures() {
+    }
+
+    /**
+     * Test that the Java corrector computes the same baseline as R. Skipped
+     * if the fixtures have not been generated.
+     */
+    static void assertBaseline(String name, JavaBaselineCorrector corrector,
+	    ParameterSet parameters) throws IOException {
+
+	final double chromatogram[] = read("chromatogram");
+	final double expected[] = read(name);
+	Assume.assumeNotNull(chromatogram, expected);
+
+	final double baseline[] = corrector.computeBaseline(chromatogram,
+		parameters);
+	Assert.assertEquals(name, expected.length, baseline.length);
+	for (int i = 0; i < expected.length; i++) {
+	    Assert.assertEquals(name + " scan " + i, expected[i], baseline[i],
+		    TOLERANCE * Math.max(1.0, Math.abs(expected[i])));
+	}
+    }
+
+    /**
+     * Reads the single column of a CSV file written by R (write.csv).
+     * 
+     * @return the values, or null if the file does not exist.
+     */
+    static double[] read(String name) throws IOException {
+
+	final InputStream stream = RFixtures.class.getResourceAsStream(FIXTURES
+		+ name + ".csv");
+	if (stream == null)
+	    return null;
+
+	final List<Double> values = new ArrayList<Double>();
+	try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+		stream, StandardCharsets.UTF_8))) {
+	    reader.readLine();
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (!line.isEmpty())
+		    values.add(Double.valueOf(line));
+	    }
+	}
+
+	final double result[] = new double[values.size()];
+	for (int i = 0; i < result.length; i++)
+	    result[i] = values.get(i);
+	return result;
+    }
+
+}
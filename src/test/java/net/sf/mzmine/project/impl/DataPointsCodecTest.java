@@ -0,0 +1,184 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataPointsCodecTest {
+
+    /**
+     * Creates a profile spectrum with runs of zero intensities, a few
+     * negative and very large intensities
+     */
+    private static DataPoint[] createSpectrum(Random random, int size) {
+	DataPoint dataPoints[] = new DataPoint[size];
+	double mz = 100.0 + random.nextDouble();
+	for (int i = 0; i < size; i++) {
+	    mz += 0.001 + random.nextDouble() * 0.01;
+	    double intensity;
+	    switch (random.nextInt(8)) {
+	    case 0:
+	    case 1:
+	    case 2:
+		intensity = 0.0;
+		break;
+	    case 3:
+		intensity = -random.nextDouble() * 100.0;
+		break;
+	    case 4:
+		intensity = random.nextDouble() * 1.0E12;
+		break;
+	    default:
+		intensity = random.nextDouble() * 1.0E5;
+	    }
+	    dataPoints[i] = new SimpleDataPoint(mz, intensity);
+	}
+	return dataPoints;
+    }
+
+    private static void assertDecoded(DataPointsCodec codec,
+	    DataPoint expected[], double mzValues[], double intensityValues[],
+	    int startIndex, int count) {
+	for (int i = 0; i < count; i++) {
+	    DataPoint dp = expected[startIndex + i];
+	    if (codec == DataPointsCodec.DOUBLE_MZ)
+		Assert.assertEquals(dp.getMZ(), mzValues[i], 0.0);
+	    else
+		Assert.assertEquals((float) dp.getMZ(), mzValues[i], 0.0);
+	    float intensity = (float) dp.getIntensity();
+	    if (codec.isFixedSize())
+		Assert.assertEquals(intensity, intensityValues[i], 0.0);
+	    else
+		Assert.assertEquals(intensity, intensityValues[i],
+			Math.abs(intensity) / 2048.0);
+	}
+    }
+
+    /**
+     * Test that all codecs decode the encoded data points with the expected
+     * precision, and that the delta encodings need less space
+     */
+    @Test
+    public void testEncodeDecode() throws Exception {
+
+	final Random random = new Random(1);
+
+	for (int size : new int[] { 0, 1, 2, 1000 }) {
+	    DataPoint dataPoints[] = createSpectrum(random, size);
+	    ByteBuffer buffer = null;
+	    for (DataPointsCodec codec : DataPointsCodec.values()) {
+		buffer = codec.encode(dataPoints, buffer);
+		final int numOfBytes = buffer.remaining();
+		if (codec.isFixedSize())
+		    Assert.assertEquals(size * codec.getBytesPerDataPoint(),
+			    numOfBytes);
+		else if (size == 1000)
+		    Assert.assertTrue(numOfBytes < size * 5);
+
+		double mzValues[] = new double[size];
+		double intensityValues[] = new double[size];
+		codec.decode(buffer, size, mzValues, intensityValues);
+		assertDecoded(codec, dataPoints, mzValues, intensityValues, 0,
+			size);
+	    }
+	}
+    }
+
+    /**
+     * Test that RawDataFileImpl reads the stored data points, whole or in
+     * part, with every codec
+     */
+    @Test
+    public void testRawDataFile() throws Exception {
+
+	final Random random = new Random(2);
+	final ScanDataCache cache = ScanDataCache.getSharedCache();
+	final long cacheSize = cache.getMaxSize();
+
+	try {
+	    cache.setMaxSize(0);
+	    for (DataPointsCodec codec : DataPointsCodec.values()) {
+
+		RawDataFileImpl dataFile = new RawDataFileImpl("test");
+		dataFile.setDataPointsCodec(codec);
+
+		DataPoint spectra[][] = new DataPoint[20][];
+		int storageIDs[] = new int[spectra.length];
+		for (int i = 0; i < spectra.length; i++) {
+		    spectra[i] = createSpectrum(random, random.nextInt(500));
+		    storageIDs[i] = dataFile.storeDataPoints(spectra[i]);
+		}
+
+		// The codec is fixed once data points are stored
+		DataPointsCodec otherCodec = (codec == DataPointsCodec.FLOAT) ? DataPointsCodec.DELTA
+			: DataPointsCodec.FLOAT;
+		try {
+		    dataFile.setDataPointsCodec(otherCodec);
+		    Assert.fail("Codec changed after storing data points");
+		} catch (IllegalStateException e) {
+		    // expected
+		}
+
+		for (int i = 0; i < spectra.length; i++) {
+		    final int size = spectra[i].length;
+		    final int ID = storageIDs[i];
+
+		    DataPoint dataPoints[] = dataFile.readDataPoints(ID);
+		    double mzValues[] = new double[size];
+		    double intensityValues[] = new double[size];
+		    for (int j = 0; j < size; j++) {
+			mzValues[j] = dataPoints[j].getMZ();
+			intensityValues[j] = dataPoints[j].getIntensity();
+		    }
+		    assertDecoded(codec, spectra[i], mzValues,
+			    intensityValues, 0, size);
+
+		    Assert.assertEquals(size, dataFile.readDataPoints(ID,
+			    mzValues, intensityValues));
+		    assertDecoded(codec, spectra[i], mzValues,
+			    intensityValues, 0, size);
+
+		    final int startIndex = random.nextInt(size + 1);
+		    final int count = random.nextInt(size - startIndex + 1);
+		    dataPoints = dataFile.readDataPoints(ID, startIndex, count);
+		    Assert.assertEquals(count, dataPoints.length);
+		    for (int j = 0; j < count; j++) {
+			mzValues[j] = dataPoints[j].getMZ();
+			intensityValues[j] = dataPoints[j].getIntensity();
+		    }
+		    assertDecoded(codec, spectra[i], mzValues,
+			    intensityValues, startIndex, count);
+		}
+
+		dataFile.close();
+	    }
+	} finally {
+	    cache.setMaxSize(cacheSize);
+	}
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RawDataFileImplTest {
+
+    private static DataPoint[] createDataPoints(int size) {
+	DataPoint dataPoints[] = new DataPoint[size];
+	for (int i = 0; i < size; i++)
+	    dataPoints[i] = new SimpleDataPoint(100.0 + i, 1000.0 + i);
+	return dataPoints;
+    }
+
+    private static void assertDataPoints(DataPoint expected[],
+	    DataPoint actual[]) {
+	Assert.assertEquals(expected.length, actual.length);
+	for (int i = 0; i < expected.length; i++) {
+	    Assert.assertEquals(expected[i].getMZ(), actual[i].getMZ(), 0.001);
+	    Assert.assertEquals(expected[i].getIntensity(),
+		    actual[i].getIntensity(), 0.001);
+	}
+    }
+
+    /**
+     * Test that data points read from a project archive remain readable after
+     * they are copied to a temporary file, and the archive is closed
+     */
+    @Test
+    public void testDetachDataPointsArchive() throws Exception {
+
+	final ScanDataCache cache = ScanDataCache.getSharedCache();
+	final long cacheSize = cache.getMaxSize();
+	cache.setMaxSize(0);
+
+	final RawDataFileImpl storedFile = new RawDataFileImpl("stored");
+	final RawDataFileImpl archivedFile = new RawDataFileImpl("archived");
+	final File archive = File.createTempFile("mzmine_test", ".zip");
+
+	try {
+	    // Store the data points in the archive after some other bytes, as
+	    // in a project file
+	    DataPoint dataPoints[][] = new DataPoint[3][];
+	    int IDs[] = new int[3];
+	    for (int i = 0; i < 2; i++) {
+		dataPoints[i] = createDataPoints(100 * (i + 1));
+		IDs[i] = storedFile.storeDataPoints(dataPoints[i]);
+	    }
+	    final long dataLength = storedFile.getDataPointsStorage().getSize();
+	    ByteBuffer data = storedFile.getDataPointsStorage().read(0,
+		    (int) dataLength);
+	    try (RandomAccessFile archiveFile = new RandomAccessFile(archive,
+		    "rw")) {
+		archiveFile.write(new byte[100]);
+		archiveFile.getChannel().write(data, 100);
+	    }
+
+	    archivedFile.openDataPointsArchive(archive, 100, dataLength);
+	    archivedFile.getDataPointsOffsets().putAll(
+		    storedFile.getDataPointsOffsets());
+	    archivedFile.getDataPointsLengths().putAll(
+		    storedFile.getDataPointsLengths());
+
+	    // Data points appended to the archived ones
+	    dataPoints[2] = createDataPoints(50);
+	    IDs[2] = archivedFile.storeDataPoints(dataPoints[2]);
+
+	    Assert.assertFalse(archivedFile.detachDataPointsArchive(new File(
+		    archive.getParentFile(), "other.zip")));
+	    Assert.assertTrue(archivedFile.detachDataPointsArchive(archive));
+	    Assert.assertFalse(archivedFile.getDataPointsStorage() instanceof ArchiveDataPointsStorage);
+	    Assert.assertFalse(archivedFile.detachDataPointsArchive(archive));
+	    Assert.assertTrue(archive.delete());
+
+	    for (int i = 0; i < 3; i++)
+		assertDataPoints(dataPoints[i],
+			archivedFile.readDataPoints(IDs[i]));
+
+	    DataPoint newDataPoints[] = createDataPoints(10);
+	    int newID = archivedFile.storeDataPoints(newDataPoints);
+	    assertDataPoints(newDataPoints, archivedFile.readDataPoints(newID));
+	} finally {
+	    cache.setMaxSize(cacheSize);
+	    storedFile.close();
+	    archivedFile.close();
+	    archive.delete();
+	}
+    }
+
+}
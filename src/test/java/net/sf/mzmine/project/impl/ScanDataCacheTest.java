@@ -0,0 +1,152 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScanDataCacheTest {
+
+    private static DataPoint[] createDataPoints(int size) {
+	DataPoint dataPoints[] = new DataPoint[size];
+	for (int i = 0; i < size; i++)
+	    dataPoints[i] = new SimpleDataPoint(100.0 + i, 1000.0);
+	return dataPoints;
+    }
+
+    /**
+     * Test that the cache evicts the least recently used entries once the
+     * estimated size of the data points exceeds the limit, and never caches
+     * data points larger than the limit
+     */
+    @Test
+    public void testEvictionBySize() throws Exception {
+
+	final RawDataFileImpl dataFile = new RawDataFileImpl("test");
+
+	try {
+	    // 1000 data points take 40100 bytes, so three of them fit
+	    ScanDataCache cache = new ScanDataCache(130000, 1);
+	    DataPoint dataPoints[][] = new DataPoint[4][];
+	    for (int i = 0; i < dataPoints.length; i++)
+		dataPoints[i] = createDataPoints(1000);
+
+	    cache.put(dataFile, 0, dataPoints[0]);
+	    cache.put(dataFile, 1, dataPoints[1]);
+	    cache.put(dataFile, 2, dataPoints[2]);
+	    Assert.assertEquals(3 * 40100, cache.getCurrentSize());
+
+	    // Entry 0 was used recently, so entry 1 is evicted
+	    Assert.assertSame(dataPoints[0], cache.get(dataFile, 0));
+	    cache.put(dataFile, 3, dataPoints[3]);
+	    Assert.assertSame(dataPoints[0], cache.get(dataFile, 0));
+	    Assert.assertNull(cache.get(dataFile, 1));
+	    Assert.assertSame(dataPoints[2], cache.get(dataFile, 2));
+	    Assert.assertSame(dataPoints[3], cache.get(dataFile, 3));
+	    Assert.assertEquals(3 * 40100, cache.getCurrentSize());
+	    Assert.assertEquals(1, cache.getStats().evictionCount());
+
+	    // Too large for the cache
+	    cache.put(dataFile, 4, createDataPoints(4000));
+	    Assert.assertNull(cache.get(dataFile, 4));
+	    Assert.assertSame(dataPoints[0], cache.get(dataFile, 0));
+
+	    // A smaller limit keeps the entries which fit
+	    cache.setMaxSize(90000);
+	    Assert.assertEquals(2 * 40100, cache.getCurrentSize());
+
+	    cache.setMaxSize(0);
+	    Assert.assertEquals(0, cache.getCurrentSize());
+	    cache.put(dataFile, 0, dataPoints[0]);
+	    Assert.assertNull(cache.get(dataFile, 0));
+	} finally {
+	    dataFile.close();
+	}
+    }
+
+    /**
+     * Test that data points larger than the share of one segment are not
+     * cached, and do not evict the other entries of their segment
+     */
+    @Test
+    public void testMaxEntrySize() throws Exception {
+
+	final RawDataFileImpl dataFile = new RawDataFileImpl("test");
+
+	try {
+	    // 3 segments are rounded up to 4, 100000 bytes each
+	    ScanDataCache cache = new ScanDataCache(400000, 3);
+	    Assert.assertEquals(100000, cache.getMaxEntrySize());
+
+	    DataPoint dataPoints[] = createDataPoints(2000);
+	    cache.put(dataFile, 0, dataPoints);
+	    cache.put(dataFile, 1, createDataPoints(3000));
+	    Assert.assertNull(cache.get(dataFile, 1));
+	    Assert.assertSame(dataPoints, cache.get(dataFile, 0));
+	    Assert.assertEquals(80100, cache.getCurrentSize());
+
+	    // The shared cache uses few segments, whatever the processors
+	    Assert.assertTrue(ScanDataCache.getSharedCache().getMaxEntrySize() >= ScanDataCache
+		    .getSharedCache().getMaxSize()
+		    / ScanDataCache.MAX_CONCURRENCY_LEVEL);
+	} finally {
+	    dataFile.close();
+	}
+    }
+
+    /**
+     * Test that removeAll() removes the entries of one raw data file only
+     */
+    @Test
+    public void testRemoveAll() throws Exception {
+
+	final RawDataFileImpl dataFile = new RawDataFileImpl("test");
+	final RawDataFileImpl otherDataFile = new RawDataFileImpl("other");
+
+	try {
+	    ScanDataCache cache = new ScanDataCache(1024 * 1024);
+	    DataPoint dataPoints[] = createDataPoints(10);
+	    DataPoint otherDataPoints[] = createDataPoints(10);
+	    for (int ID = 0; ID < 10; ID++) {
+		cache.put(dataFile, ID, dataPoints);
+		cache.put(otherDataFile, ID, otherDataPoints);
+	    }
+
+	    cache.remove(dataFile, 0);
+	    Assert.assertNull(cache.get(dataFile, 0));
+	    Assert.assertSame(otherDataPoints, cache.get(otherDataFile, 0));
+
+	    cache.removeAll(dataFile);
+	    for (int ID = 0; ID < 10; ID++) {
+		Assert.assertNull(cache.get(dataFile, ID));
+		Assert.assertSame(otherDataPoints,
+			cache.get(otherDataFile, ID));
+	    }
+	    Assert.assertEquals(10 * 500, cache.getCurrentSize());
+	} finally {
+	    dataFile.close();
+	    otherDataFile.close();
+	}
+    }
+
+}
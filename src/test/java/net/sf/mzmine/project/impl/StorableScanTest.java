@@ -0,0 +1,105 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.project.impl;
+
+import java.util.Random;
+
+import net.sf.mzmine.datamodel.DataPoint;
+import net.sf.mzmine.datamodel.MassSpectrumType;
+import net.sf.mzmine.datamodel.PolarityType;
+import net.sf.mzmine.datamodel.Scan;
+import net.sf.mzmine.datamodel.impl.SimpleDataPoint;
+import net.sf.mzmine.datamodel.impl.SimpleScan;
+import net.sf.mzmine.util.ScanUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Range;
+
+public class StorableScanTest {
+
+    /**
+     * Test that the m/z index of getDataPointsByMass() returns the same data
+     * points as checking all data points, with and without the scan cache
+     */
+    @Test
+    public void testGetDataPointsByMass() throws Exception {
+
+	final Random random = new Random(1);
+
+	// Sorted m/z values with some duplicates
+	DataPoint dataPoints[] = new DataPoint[1000];
+	double mz = 100.0;
+	for (int i = 0; i < dataPoints.length; i++) {
+	    if (random.nextInt(10) > 0)
+		mz += random.nextDouble();
+	    dataPoints[i] = new SimpleDataPoint(mz, random.nextDouble() * 1000);
+	}
+
+	RawDataFileImpl dataFile = new RawDataFileImpl("test");
+	dataFile.addScan(new SimpleScan(null, 1, 1, 1.0, 0.0, 0, null,
+		dataPoints, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE,
+		"", null));
+	dataFile.finishWriting();
+
+	final ScanDataCache cache = ScanDataCache.getSharedCache();
+	final long cacheSize = cache.getMaxSize();
+
+	try {
+	    for (boolean cached : new boolean[] { false, true }) {
+
+		cache.setMaxSize(cached ? cacheSize : 0);
+
+		Scan scan = dataFile.getScan(1);
+		DataPoint allDataPoints[] = scan.getDataPoints();
+
+		for (int i = 0; i < 1000; i++) {
+		    double lower = 90.0 + random.nextDouble() * (mz - 80.0);
+		    double upper = lower + random.nextDouble() * 20.0;
+
+		    // Range boundaries exactly on data points
+		    if (i % 10 == 0) {
+			lower = allDataPoints[random.nextInt(1000)].getMZ();
+			upper = Math.max(lower,
+				allDataPoints[random.nextInt(1000)].getMZ());
+		    }
+
+		    Range<Double> mzRange = Range.closed(lower, upper);
+		    DataPoint expected[] = ScanUtils.selectDataPointsByMass(
+			    allDataPoints, mzRange);
+		    DataPoint actual[] = scan.getDataPointsByMass(mzRange);
+
+		    Assert.assertEquals(expected.length, actual.length);
+		    for (int j = 0; j < expected.length; j++) {
+			Assert.assertEquals(expected[j].getMZ(),
+				actual[j].getMZ(), 0.0);
+			Assert.assertEquals(expected[j].getIntensity(),
+				actual[j].getIntensity(), 0.0);
+		    }
+		}
+	    }
+	} finally {
+	    cache.setMaxSize(cacheSize);
+	    dataFile.close();
+	}
+    }
+
+}
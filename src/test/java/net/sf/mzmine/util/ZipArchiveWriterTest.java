@@ -0,0 +1,117 @@
+/*
+ * Copyright 2006-2015 The MZmine 2 Development Team
+ *
+ * This file is part of MZmine 2.
+ *
+ * MZmine 2 is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * MZmine 2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * MZmine 2; if not, write to the Free Software Foundation, Inc., 51 Franklin St,
+ * Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package net.sf.mzmine.util;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class ZipArchiveWriterTest {
+
+    private static byte[] createContent(Random random, int size) {
+	// Random bytes of a small alphabet, so they can be compressed, but
+	// larger entries still exceed the memory limit of CompressedZipEntry
+	byte content[] = new byte[size];
+	for (int i = 0; i < size; i++)
+	    content[i] = (byte) ('a' + random.nextInt(16));
+	return content;
+    }
+
+    private static void assertEntry(ZipFile zipFile, String name,
+	    byte expected[]) throws Exception {
+	ZipEntry entry = zipFile.getEntry(name);
+	Assert.assertNotNull(entry);
+	try (InputStream is = zipFile.getInputStream(entry)) {
+	    Assert.assertArrayEquals(expected, ByteStreams.toByteArray(is));
+	}
+    }
+
+    /**
+     * Test that entries compressed in advance, in memory or in a temporary
+     * file, can be read back, and that entries copied from that archive
+     * without decompressing keep their content
+     */
+    @Test
+    public void testWriteAndCopy() throws Exception {
+
+	final Random random = new Random(1);
+	final byte small[] = createContent(random, 1000);
+	final byte large[] = createContent(random, 5 << 20);
+
+	File archive = File.createTempFile("mzmine_test", ".zip");
+	File copy = File.createTempFile("mzmine_test", ".zip");
+
+	try {
+	    ZipArchiveWriter writer = new ZipArchiveWriter(archive);
+	    for (int level : new int[] { 0, 1 }) {
+		for (byte content[] : new byte[][] { small, large }) {
+		    CompressedZipEntry entry = new CompressedZipEntry(level
+			    + "-" + content.length, level);
+		    entry.getOutputStream().write(content);
+		    entry.finish();
+		    Assert.assertEquals(content.length, entry.getSize());
+		    writer.writeEntry(entry);
+		}
+	    }
+	    writer.close();
+
+	    Map<String, Long> offsets = ZipUtils.getEntryDataOffsets(archive);
+	    Assert.assertEquals(4, offsets.size());
+	    Assert.assertEquals(2, ZipUtils.getStoredEntryOffsets(archive)
+		    .size());
+
+	    try (ZipFile zipFile = new ZipFile(archive)) {
+		ZipArchiveWriter copyWriter = new ZipArchiveWriter(copy);
+		for (ZipEntry entry : new ZipEntry[] {
+			zipFile.getEntry("1-" + large.length),
+			zipFile.getEntry("0-" + small.length) }) {
+		    copyWriter.copyEntry(entry, archive,
+			    offsets.get(entry.getName()));
+		}
+		copyWriter.close();
+
+		for (int level : new int[] { 0, 1 }) {
+		    assertEntry(zipFile, level + "-" + small.length, small);
+		    assertEntry(zipFile, level + "-" + large.length, large);
+		}
+	    }
+
+	    try (ZipFile zipFile = new ZipFile(copy)) {
+		Assert.assertEquals(2, zipFile.size());
+		Assert.assertEquals(ZipEntry.DEFLATED,
+			zipFile.getEntry("1-" + large.length).getMethod());
+		assertEntry(zipFile, "1-" + large.length, large);
+		assertEntry(zipFile, "0-" + small.length, small);
+	    }
+	} finally {
+	    archive.delete();
+	    copy.delete();
+	}
+    }
+
+}